@@ -2,16 +2,24 @@ package com.asre.asre.api.ingestion;
 
 import com.asre.asre.api.ingestion.dto.LogsIngestionRequest;
 import com.asre.asre.api.ingestion.dto.MetricsIngestionRequest;
+import com.asre.asre.application.ingestion.AdmissionControlService;
+import com.asre.asre.application.ingestion.AdmissionDecision;
+import com.asre.asre.application.ingestion.IngestionPipeline;
 import com.asre.asre.application.ingestion.IngestionService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @RestController
 @RequestMapping("/api/ingest")
@@ -21,22 +29,44 @@ public class IngestionController {
 
     private final IngestionService ingestionService;
     private final IngestionDtoMapper mapper;
+    private final AdmissionControlService admissionControlService;
+    private final IngestionRequestReader requestReader;
 
-    @PostMapping("/metrics")
+    /**
+     * Accepts {"metrics": [...]} JSON or NDJSON (one metric per line), optionally gzip/zstd
+     * compressed. The body is streamed and enqueued in chunks rather than bound in full.
+     */
+    @PostMapping(value = "/metrics",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, IngestionRequestReader.NDJSON_CONTENT_TYPE})
     public ResponseEntity<?> ingestMetrics(
-            @RequestBody MetricsIngestionRequest request,
+            HttpServletRequest request,
             Authentication authentication) {
+        AtomicInteger accepted = new AtomicInteger();
         try {
             // Extract project_id from authentication (set by ApiKeyAuthenticationFilter)
             UUID projectId = UUID.fromString(authentication.getName());
 
-            // Convert DTO to domain command
-            var command = mapper.toCommand(request, projectId);
+            // Shed load before reading the body if the pipeline is backed up
+            AdmissionDecision decision = admissionControlService.admit(projectId, IngestionPipeline.METRICS, 0);
+            if (!decision.isAccepted()) {
+                return rejected(decision);
+            }
 
-            // Delegate to application service
-            ingestionService.ingestMetrics(command);
+            // Convert each chunk to a domain command and delegate to the application service
+            requestReader.read(request, "metrics", MetricsIngestionRequest.MetricDto.class, chunk -> {
+                ingestionService.ingestMetrics(mapper.toMetricsCommand(chunk, projectId));
+                admissionControlService.recordAcceptedPoints(projectId, chunk.size());
+                accepted.addAndGet(chunk.size());
+            });
 
             return ResponseEntity.accepted().build();
+        } catch (IngestionRequestReader.UnsupportedContentEncodingException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IngestionRequestReader.DecompressedBodyTooLargeException e) {
+            return tooLarge(e, accepted.get());
+        } catch (JsonProcessingException e) {
+            return malformed(e, accepted.get());
         } catch (Exception e) {
             log.error("Error ingesting metrics", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -44,25 +74,71 @@ public class IngestionController {
         }
     }
 
-    @PostMapping("/logs")
+    /**
+     * Accepts {"logs": [...]} JSON or NDJSON (one log per line), optionally gzip/zstd
+     * compressed. The body is streamed and enqueued in chunks rather than bound in full.
+     */
+    @PostMapping(value = "/logs",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, IngestionRequestReader.NDJSON_CONTENT_TYPE})
     public ResponseEntity<?> ingestLogs(
-            @RequestBody LogsIngestionRequest request,
+            HttpServletRequest request,
             Authentication authentication) {
+        AtomicInteger accepted = new AtomicInteger();
         try {
             // Extract project_id from authentication
             UUID projectId = UUID.fromString(authentication.getName());
 
-            // Convert DTO to domain command
-            var command = mapper.toCommand(request, projectId);
+            // Shed load before reading the body if the pipeline is backed up
+            AdmissionDecision decision = admissionControlService.admit(projectId, IngestionPipeline.LOGS, 0);
+            if (!decision.isAccepted()) {
+                return rejected(decision);
+            }
 
-            // Delegate to application service
-            ingestionService.ingestLogs(command);
+            // Convert each chunk to a domain command and delegate to the application service
+            requestReader.read(request, "logs", LogsIngestionRequest.LogDto.class, chunk -> {
+                ingestionService.ingestLogs(mapper.toLogsCommand(chunk, projectId));
+                admissionControlService.recordAcceptedPoints(projectId, chunk.size());
+                accepted.addAndGet(chunk.size());
+            });
 
             return ResponseEntity.accepted().build();
+        } catch (IngestionRequestReader.UnsupportedContentEncodingException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IngestionRequestReader.DecompressedBodyTooLargeException e) {
+            return tooLarge(e, accepted.get());
+        } catch (JsonProcessingException e) {
+            return malformed(e, accepted.get());
         } catch (Exception e) {
             log.error("Error ingesting logs", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to ingest logs"));
         }
     }
+
+    /**
+     * Chunks enqueued before the parse error stay accepted; the count lets clients resume.
+     */
+    private ResponseEntity<?> malformed(JsonProcessingException e, int accepted) {
+        log.debug("Malformed ingestion payload after {} items: {}", accepted, e.getOriginalMessage());
+        return ResponseEntity.badRequest()
+                .body(Map.of("error", "Malformed payload: " + e.getOriginalMessage(), "accepted", accepted));
+    }
+
+    /**
+     * Like a parse error, chunks enqueued before the limit was reached stay accepted.
+     */
+    private ResponseEntity<?> tooLarge(IngestionRequestReader.DecompressedBodyTooLargeException e, int accepted) {
+        return ResponseEntity.status(HttpStatus.CONTENT_TOO_LARGE)
+                .body(Map.of("error", e.getMessage(), "accepted", accepted));
+    }
+
+    private ResponseEntity<?> rejected(AdmissionDecision decision) {
+        boolean throttled = decision.outcome() == AdmissionDecision.Outcome.THROTTLED;
+        return ResponseEntity.status(throttled ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()))
+                .body(Map.of("error", throttled
+                        ? "Ingestion throttled, retry later"
+                        : "Ingestion pipeline overloaded, retry later"));
+    }
 }
@@ -4,6 +4,8 @@ import com.asre.asre.api.ingestion.dto.LogsIngestionRequest;
 import com.asre.asre.api.ingestion.dto.MetricsIngestionRequest;
 import com.asre.asre.application.ingestion.IngestLogsCommand;
 import com.asre.asre.application.ingestion.IngestMetricsCommand;
+import com.asre.asre.domain.ingestion.HistogramValue;
+import com.asre.asre.domain.ingestion.MetricKind;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
@@ -14,20 +16,67 @@ import java.util.stream.Collectors;
 public class IngestionDtoMapper {
 
         public IngestMetricsCommand toCommand(MetricsIngestionRequest request, UUID projectId) {
-                List<IngestMetricsCommand.MetricData> metrics = request.getMetrics().stream()
+                return toMetricsCommand(request.getMetrics(), projectId);
+        }
+
+        public IngestMetricsCommand toMetricsCommand(List<MetricsIngestionRequest.MetricDto> dtos, UUID projectId) {
+                List<IngestMetricsCommand.MetricData> metrics = dtos.stream()
                                 .map(dto -> new IngestMetricsCommand.MetricData(
                                                 dto.getServiceId(),
                                                 dto.getName(),
                                                 dto.getValue(),
                                                 dto.getTimestamp(),
-                                                dto.getTags()))
+                                                dto.getTags(),
+                                                toKind(dto.getType()),
+                                                toHistogram(dto.getHistogram())))
                                 .collect(Collectors.toList());
 
                 return new IngestMetricsCommand(projectId, metrics);
         }
 
+        /**
+         * Unknown kinds map to null so the point fails validation and is dead-lettered like
+         * any other invalid point.
+         */
+        private MetricKind toKind(String type) {
+                try {
+                        return MetricKind.fromString(type);
+                } catch (IllegalArgumentException e) {
+                        return null;
+                }
+        }
+
+        private HistogramValue toHistogram(MetricsIngestionRequest.HistogramDto dto) {
+                if (dto == null) {
+                        return null;
+                }
+                try {
+                        if (dto.getScale() != null) {
+                                MetricsIngestionRequest.ExponentialBucketsDto positive = dto.getPositive();
+                                MetricsIngestionRequest.ExponentialBucketsDto negative = dto.getNegative();
+                                return HistogramValue.ofExponentialBuckets(
+                                                dto.getScale(),
+                                                dto.getZeroCount() != null ? dto.getZeroCount() : 0,
+                                                positive != null && positive.getOffset() != null ? positive.getOffset() : 0,
+                                                positive != null ? positive.getCounts() : null,
+                                                negative != null && negative.getOffset() != null ? negative.getOffset() : 0,
+                                                negative != null ? negative.getCounts() : null,
+                                                dto.getSum(), dto.getMin(), dto.getMax());
+                        }
+                        return HistogramValue.ofExplicitBuckets(dto.getBounds(), dto.getCounts(),
+                                        dto.getSum(), dto.getMin(), dto.getMax());
+                } catch (IllegalArgumentException e) {
+                        // Malformed histogram: the point stays invalid
+                        return null;
+                }
+        }
+
         public IngestLogsCommand toCommand(LogsIngestionRequest request, UUID projectId) {
-                List<IngestLogsCommand.LogData> logs = request.getLogs().stream()
+                return toLogsCommand(request.getLogs(), projectId);
+        }
+
+        public IngestLogsCommand toLogsCommand(List<LogsIngestionRequest.LogDto> dtos, UUID projectId) {
+                List<IngestLogsCommand.LogData> logs = dtos.stream()
                                 .map(dto -> new IngestLogsCommand.LogData(
                                                 dto.getServiceId(),
                                                 dto.getLevel(),
@@ -0,0 +1,221 @@
+package com.asre.asre.api.ingestion;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.airlift.compress.zstd.ZstdInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams ingestion request bodies with the Jackson streaming parser and hands items on in
+ * bounded chunks, so large SDK flushes are processed in constant memory.
+ * Accepts a JSON envelope ({"metrics": [...]}) or NDJSON (one item per line), optionally
+ * compressed with gzip or zstd (Content-Encoding). Decompressed bodies are capped at
+ * {@code ingestion.max-decompressed-bytes}.
+ */
+@Component
+@RequiredArgsConstructor
+public class IngestionRequestReader {
+
+    public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+    private static final int DECOMPRESSION_BUFFER_BYTES = 64 * 1024;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${ingestion.publish.max-batch-size:500}")
+    private int chunkSize;
+
+    @Value("${ingestion.max-decompressed-bytes:67108864}")
+    private long maxDecompressedBytes;
+
+    /**
+     * Reads items of {@code type} from the request and passes them to {@code sink} in chunks.
+     *
+     * @param arrayField name of the item array in the JSON envelope (ignored for NDJSON)
+     * @return total number of items read
+     */
+    public <T> int read(HttpServletRequest request, String arrayField, Class<T> type,
+                        Consumer<List<T>> sink) throws IOException {
+        ObjectReader reader = objectMapper.readerFor(type)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        try (InputStream body = openBody(request);
+             JsonParser parser = objectMapper.createParser(body)) {
+            ChunkedSink<T> chunks = new ChunkedSink<>(Math.max(1, chunkSize), sink);
+            if (isNdjson(request)) {
+                MappingIterator<T> items = reader.readValues(parser);
+                while (items.hasNextValue()) {
+                    chunks.add(items.nextValue());
+                }
+            } else {
+                readEnvelope(parser, arrayField, reader, chunks);
+            }
+            return chunks.finish();
+        }
+    }
+
+    private <T> void readEnvelope(JsonParser parser, String arrayField, ObjectReader reader,
+                                  ChunkedSink<T> chunks) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (arrayField.equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    chunks.add(reader.readValue(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Opens the request body, decoding its Content-Encoding. Reading more than
+     * {@code ingestion.max-decompressed-bytes} from a decoded body throws
+     * {@link DecompressedBodyTooLargeException}.
+     */
+    InputStream openBody(HttpServletRequest request) throws IOException {
+        InputStream body = request.getInputStream();
+        String encoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+        if (encoding == null || encoding.isBlank()) {
+            return body;
+        }
+        return switch (encoding.trim().toLowerCase(Locale.ROOT)) {
+            case "identity" -> body;
+            case "gzip", "x-gzip" -> new BoundedInputStream(
+                    new GZIPInputStream(body, DECOMPRESSION_BUFFER_BYTES), maxDecompressedBytes);
+            case "zstd" -> new BoundedInputStream(new ZstdInputStream(body), maxDecompressedBytes);
+            default -> throw new UnsupportedContentEncodingException(encoding);
+        };
+    }
+
+    private boolean isNdjson(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith(NDJSON_CONTENT_TYPE);
+    }
+
+    /**
+     * Collects items and flushes them to the sink every {@code chunkSize} items.
+     */
+    private static final class ChunkedSink<T> {
+        private final int chunkSize;
+        private final Consumer<List<T>> sink;
+        private List<T> chunk;
+        private int total;
+
+        ChunkedSink(int chunkSize, Consumer<List<T>> sink) {
+            this.chunkSize = chunkSize;
+            this.sink = sink;
+            this.chunk = new ArrayList<>(chunkSize);
+        }
+
+        void add(T item) {
+            chunk.add(item);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        int finish() {
+            if (!chunk.isEmpty()) {
+                flush();
+            }
+            return total;
+        }
+
+        private void flush() {
+            sink.accept(chunk);
+            total += chunk.size();
+            chunk = new ArrayList<>(chunkSize);
+        }
+    }
+
+    /**
+     * Thrown for a Content-Encoding the ingestion endpoints cannot decode.
+     */
+    public static class UnsupportedContentEncodingException extends IOException {
+        public UnsupportedContentEncodingException(String encoding) {
+            super("Unsupported Content-Encoding: " + encoding);
+        }
+    }
+
+    /**
+     * Thrown once a decoded request body grows past {@code ingestion.max-decompressed-bytes}.
+     */
+    public static class DecompressedBodyTooLargeException extends IOException {
+        public DecompressedBodyTooLargeException(long limit) {
+            super("Decompressed request body exceeds " + limit + " bytes");
+        }
+    }
+
+    /**
+     * Counts the bytes read through it and fails once more than {@code limit} were read.
+     */
+    static final class BoundedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long n) throws DecompressedBodyTooLargeException {
+            count += n;
+            if (count > limit) {
+                throw new DecompressedBodyTooLargeException(limit);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.asre.asre.api.ingestion;
+
+import com.asre.asre.application.ingestion.AdmissionControlService;
+import com.asre.asre.application.ingestion.AdmissionDecision;
+import com.asre.asre.application.ingestion.IngestLogsCommand;
+import com.asre.asre.application.ingestion.IngestMetricsCommand;
+import com.asre.asre.application.ingestion.IngestionPipeline;
+import com.asre.asre.application.ingestion.IngestionService;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.opentelemetry.proto.collector.logs.v1.ExportLogsServiceRequest;
+import io.opentelemetry.proto.collector.logs.v1.ExportLogsServiceResponse;
+import io.opentelemetry.proto.collector.metrics.v1.ExportMetricsServiceRequest;
+import io.opentelemetry.proto.collector.metrics.v1.ExportMetricsServiceResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+import java.util.UUID;
+
+/**
+ * OTLP/HTTP receiver (binary protobuf, optionally gzip-compressed) so OpenTelemetry SDKs and
+ * collectors can export straight to ASRE. Authenticated with the project API key like /api/ingest.
+ */
+@RestController
+@RequestMapping("/v1")
+@RequiredArgsConstructor
+@Slf4j
+public class OtlpIngestionController {
+
+    public static final String PROTOBUF_CONTENT_TYPE = "application/x-protobuf";
+
+    private final IngestionService ingestionService;
+    private final OtlpRequestMapper mapper;
+    private final AdmissionControlService admissionControlService;
+    private final IngestionRequestReader requestReader;
+
+    @PostMapping(value = "/metrics", consumes = PROTOBUF_CONTENT_TYPE, produces = PROTOBUF_CONTENT_TYPE)
+    public ResponseEntity<byte[]> exportMetrics(
+            HttpServletRequest request,
+            Authentication authentication) {
+        try {
+            UUID projectId = UUID.fromString(authentication.getName());
+
+            AdmissionDecision decision = admissionControlService.admit(projectId, IngestionPipeline.METRICS, 0);
+            if (!decision.isAccepted()) {
+                return rejected(decision);
+            }
+
+            ExportMetricsServiceRequest export;
+            // Read the bounded body first: parseFrom(InputStream) wraps its IOExceptions
+            try (InputStream body = requestReader.openBody(request)) {
+                export = ExportMetricsServiceRequest.parseFrom(body.readAllBytes());
+            }
+
+            IngestMetricsCommand command = mapper.toCommand(export, projectId);
+            if (!command.getMetrics().isEmpty()) {
+                ingestionService.ingestMetrics(command);
+                admissionControlService.recordAcceptedPoints(projectId, command.getMetrics().size());
+            }
+
+            return ResponseEntity.ok(ExportMetricsServiceResponse.getDefaultInstance().toByteArray());
+        } catch (InvalidProtocolBufferException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IngestionRequestReader.UnsupportedContentEncodingException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+        } catch (IngestionRequestReader.DecompressedBodyTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.CONTENT_TOO_LARGE).build();
+        } catch (Exception e) {
+            log.error("Error ingesting OTLP metrics", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping(value = "/logs", consumes = PROTOBUF_CONTENT_TYPE, produces = PROTOBUF_CONTENT_TYPE)
+    public ResponseEntity<byte[]> exportLogs(
+            HttpServletRequest request,
+            Authentication authentication) {
+        try {
+            UUID projectId = UUID.fromString(authentication.getName());
+
+            AdmissionDecision decision = admissionControlService.admit(projectId, IngestionPipeline.LOGS, 0);
+            if (!decision.isAccepted()) {
+                return rejected(decision);
+            }
+
+            ExportLogsServiceRequest export;
+            // Read the bounded body first: parseFrom(InputStream) wraps its IOExceptions
+            try (InputStream body = requestReader.openBody(request)) {
+                export = ExportLogsServiceRequest.parseFrom(body.readAllBytes());
+            }
+
+            IngestLogsCommand command = mapper.toCommand(export, projectId);
+            if (!command.getLogs().isEmpty()) {
+                ingestionService.ingestLogs(command);
+                admissionControlService.recordAcceptedPoints(projectId, command.getLogs().size());
+            }
+
+            return ResponseEntity.ok(ExportLogsServiceResponse.getDefaultInstance().toByteArray());
+        } catch (InvalidProtocolBufferException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IngestionRequestReader.UnsupportedContentEncodingException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+        } catch (IngestionRequestReader.DecompressedBodyTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.CONTENT_TOO_LARGE).build();
+        } catch (Exception e) {
+            log.error("Error ingesting OTLP logs", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * OTLP exporters retry 429 and 503 and honour Retry-After.
+     */
+    private ResponseEntity<byte[]> rejected(AdmissionDecision decision) {
+        boolean throttled = decision.outcome() == AdmissionDecision.Outcome.THROTTLED;
+        return ResponseEntity.status(throttled ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()))
+                .build();
+    }
+}
@@ -0,0 +1,334 @@
+package com.asre.asre.api.ingestion;
+
+import com.asre.asre.application.ingestion.CumulativeHistogramConverter;
+import com.asre.asre.application.ingestion.HistogramSnapshot;
+import com.asre.asre.application.ingestion.IngestLogsCommand;
+import com.asre.asre.application.ingestion.IngestMetricsCommand;
+import com.asre.asre.domain.ingestion.HistogramValue;
+import com.asre.asre.domain.ingestion.MetricKind;
+import com.asre.asre.domain.logs.LogLevel;
+import com.google.protobuf.ByteString;
+import io.opentelemetry.proto.collector.logs.v1.ExportLogsServiceRequest;
+import io.opentelemetry.proto.collector.metrics.v1.ExportMetricsServiceRequest;
+import io.opentelemetry.proto.common.v1.AnyValue;
+import io.opentelemetry.proto.common.v1.KeyValue;
+import io.opentelemetry.proto.logs.v1.LogRecord;
+import io.opentelemetry.proto.logs.v1.ResourceLogs;
+import io.opentelemetry.proto.logs.v1.ScopeLogs;
+import io.opentelemetry.proto.metrics.v1.AggregationTemporality;
+import io.opentelemetry.proto.metrics.v1.ExponentialHistogramDataPoint;
+import io.opentelemetry.proto.metrics.v1.HistogramDataPoint;
+import io.opentelemetry.proto.metrics.v1.Metric;
+import io.opentelemetry.proto.metrics.v1.NumberDataPoint;
+import io.opentelemetry.proto.metrics.v1.ResourceMetrics;
+import io.opentelemetry.proto.metrics.v1.ScopeMetrics;
+import io.opentelemetry.proto.metrics.v1.SummaryDataPoint;
+import io.opentelemetry.proto.resource.v1.Resource;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Maps decoded OTLP export requests directly onto ingestion commands.
+ * Gauges and sums become one point per data point; cumulative monotonic sums are counters.
+ * Explicit and exponential histograms become one histogram point each; cumulative ones are
+ * first turned into deltas (see {@link CumulativeHistogramConverter}), since stored histogram
+ * points are added up. Summaries are flattened Prometheus-style into _count, _sum and
+ * quantile (tag "quantile") series.
+ */
+@Component
+@RequiredArgsConstructor
+public class OtlpRequestMapper {
+
+    /**
+     * Resource attribute carrying the ASRE service ID. Without it the service ID is derived
+     * from service.name, so the same service always maps to the same ID within a project.
+     */
+    public static final String SERVICE_ID_ATTRIBUTE = "asre.service.id";
+    private static final String SERVICE_NAME_ATTRIBUTE = "service.name";
+
+    // Data point flag: no value was recorded for this interval
+    private static final int FLAG_NO_RECORDED_VALUE = 1;
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final CumulativeHistogramConverter cumulativeHistogramConverter;
+
+    public IngestMetricsCommand toCommand(ExportMetricsServiceRequest request, UUID projectId) {
+        List<IngestMetricsCommand.MetricData> points = new ArrayList<>();
+        for (ResourceMetrics resourceMetrics : request.getResourceMetricsList()) {
+            UUID serviceId = resolveServiceId(resourceMetrics.getResource(), projectId);
+            for (ScopeMetrics scopeMetrics : resourceMetrics.getScopeMetricsList()) {
+                for (Metric metric : scopeMetrics.getMetricsList()) {
+                    addMetric(points, projectId, serviceId, metric);
+                }
+            }
+        }
+        return new IngestMetricsCommand(projectId, points);
+    }
+
+    public IngestLogsCommand toCommand(ExportLogsServiceRequest request, UUID projectId) {
+        List<IngestLogsCommand.LogData> logs = new ArrayList<>();
+        for (ResourceLogs resourceLogs : request.getResourceLogsList()) {
+            UUID serviceId = resolveServiceId(resourceLogs.getResource(), projectId);
+            for (ScopeLogs scopeLogs : resourceLogs.getScopeLogsList()) {
+                for (LogRecord record : scopeLogs.getLogRecordsList()) {
+                    long timeNanos = record.getTimeUnixNano() != 0
+                            ? record.getTimeUnixNano()
+                            : record.getObservedTimeUnixNano();
+                    Map<String, Object> context = record.getAttributesCount() > 0
+                            ? toContext(record.getAttributesList())
+                            : null;
+                    logs.add(new IngestLogsCommand.LogData(
+                            serviceId,
+                            toLevel(record).name(),
+                            anyValueToString(record.getBody()),
+                            toTimestamp(timeNanos),
+                            toHex(record.getTraceId()),
+                            context));
+                }
+            }
+        }
+        return new IngestLogsCommand(projectId, logs);
+    }
+
+    private void addMetric(List<IngestMetricsCommand.MetricData> points, UUID projectId, UUID serviceId,
+                           Metric metric) {
+        String name = metric.getName();
+        switch (metric.getDataCase()) {
+            case GAUGE -> metric.getGauge().getDataPointsList()
+                    .forEach(point -> addNumberPoint(points, serviceId, name, MetricKind.GAUGE, point));
+            case SUM -> {
+                MetricKind kind = metric.getSum().getIsMonotonic()
+                        && metric.getSum().getAggregationTemporality() == AggregationTemporality.AGGREGATION_TEMPORALITY_CUMULATIVE
+                        ? MetricKind.COUNTER
+                        : MetricKind.GAUGE;
+                metric.getSum().getDataPointsList()
+                        .forEach(point -> addNumberPoint(points, serviceId, name, kind, point));
+            }
+            case HISTOGRAM -> {
+                boolean cumulative = metric.getHistogram().getAggregationTemporality()
+                        == AggregationTemporality.AGGREGATION_TEMPORALITY_CUMULATIVE;
+                metric.getHistogram().getDataPointsList()
+                        .forEach(point -> addHistogramPoint(points, projectId, serviceId, name, cumulative, point));
+            }
+            case SUMMARY -> metric.getSummary().getDataPointsList()
+                    .forEach(point -> addSummaryPoint(points, serviceId, name, point));
+            case EXPONENTIAL_HISTOGRAM -> {
+                boolean cumulative = metric.getExponentialHistogram().getAggregationTemporality()
+                        == AggregationTemporality.AGGREGATION_TEMPORALITY_CUMULATIVE;
+                metric.getExponentialHistogram().getDataPointsList()
+                        .forEach(point -> addExponentialHistogramPoint(points, projectId, serviceId, name, cumulative,
+                                point));
+            }
+            default -> {
+                // DATA_NOT_SET: nothing to ingest
+            }
+        }
+    }
+
+    private void addNumberPoint(List<IngestMetricsCommand.MetricData> points, UUID serviceId, String name,
+                                MetricKind kind, NumberDataPoint point) {
+        if ((point.getFlags() & FLAG_NO_RECORDED_VALUE) != 0) {
+            return;
+        }
+        double value = switch (point.getValueCase()) {
+            case AS_DOUBLE -> point.getAsDouble();
+            case AS_INT -> point.getAsInt();
+            default -> Double.NaN;
+        };
+        if (Double.isNaN(value)) {
+            return;
+        }
+        Map<String, String> tags = toTags(point.getAttributesList());
+        points.add(new IngestMetricsCommand.MetricData(serviceId, name, value, toTimestamp(point.getTimeUnixNano()),
+                tags.isEmpty() ? null : tags, kind, null));
+    }
+
+    private void addHistogramPoint(List<IngestMetricsCommand.MetricData> points, UUID projectId, UUID serviceId,
+                                   String name, boolean cumulative, HistogramDataPoint point) {
+        if ((point.getFlags() & FLAG_NO_RECORDED_VALUE) != 0 || point.getCount() == 0) {
+            return;
+        }
+        Map<String, String> tags = toTags(point.getAttributesList());
+        HistogramSnapshot snapshot = HistogramSnapshot.ofExplicit(point.getStartTimeUnixNano(), point.getTimeUnixNano(),
+                point.hasSum() ? point.getSum() : null, point.getExplicitBoundsList(), point.getBucketCountsList());
+        Double min = point.hasMin() ? point.getMin() : null;
+        Double max = point.hasMax() ? point.getMax() : null;
+        if (cumulative) {
+            Optional<HistogramSnapshot> delta = cumulativeHistogramConverter.toDelta(projectId, serviceId, name, tags,
+                    snapshot);
+            if (delta.isEmpty()) {
+                return;
+            }
+            snapshot = delta.get();
+            // Cumulative min/max cover the whole lifetime; the interval's are derived from its buckets
+            min = null;
+            max = null;
+        }
+        HistogramValue histogram;
+        try {
+            histogram = HistogramValue.ofExplicitBuckets(snapshot.bounds(), snapshot.positiveCounts(),
+                    snapshot.sum(), min, max);
+        } catch (IllegalArgumentException e) {
+            // Malformed point: left invalid so it is dead-lettered
+            histogram = null;
+        }
+        addHistogram(points, serviceId, name, point.getTimeUnixNano(), tags, histogram);
+    }
+
+    private void addExponentialHistogramPoint(List<IngestMetricsCommand.MetricData> points, UUID projectId,
+                                              UUID serviceId, String name, boolean cumulative,
+                                              ExponentialHistogramDataPoint point) {
+        if ((point.getFlags() & FLAG_NO_RECORDED_VALUE) != 0 || point.getCount() == 0) {
+            return;
+        }
+        Map<String, String> tags = toTags(point.getAttributesList());
+        HistogramSnapshot snapshot = HistogramSnapshot.ofExponential(point.getStartTimeUnixNano(),
+                point.getTimeUnixNano(), point.hasSum() ? point.getSum() : null, point.getScale(), point.getZeroCount(),
+                point.getPositive().getOffset(), point.getPositive().getBucketCountsList(),
+                point.getNegative().getOffset(), point.getNegative().getBucketCountsList());
+        Double min = point.hasMin() ? point.getMin() : null;
+        Double max = point.hasMax() ? point.getMax() : null;
+        if (cumulative) {
+            Optional<HistogramSnapshot> delta = cumulativeHistogramConverter.toDelta(projectId, serviceId, name, tags,
+                    snapshot);
+            if (delta.isEmpty()) {
+                return;
+            }
+            snapshot = delta.get();
+            min = null;
+            max = null;
+        }
+        HistogramValue histogram;
+        try {
+            histogram = HistogramValue.ofExponentialBuckets(snapshot.scale(), snapshot.zeroCount(),
+                    snapshot.positiveOffset(), snapshot.positiveCounts(),
+                    snapshot.negativeOffset(), snapshot.negativeCounts(),
+                    snapshot.sum(), min, max);
+        } catch (IllegalArgumentException e) {
+            histogram = null;
+        }
+        addHistogram(points, serviceId, name, point.getTimeUnixNano(), tags, histogram);
+    }
+
+    private void addHistogram(List<IngestMetricsCommand.MetricData> points, UUID serviceId, String name,
+                              long timeUnixNano, Map<String, String> tags, HistogramValue histogram) {
+        points.add(new IngestMetricsCommand.MetricData(serviceId, name, null, toTimestamp(timeUnixNano),
+                tags.isEmpty() ? null : tags, MetricKind.HISTOGRAM, histogram));
+    }
+
+    private void addSummaryPoint(List<IngestMetricsCommand.MetricData> points, UUID serviceId, String name,
+                                 SummaryDataPoint point) {
+        if ((point.getFlags() & FLAG_NO_RECORDED_VALUE) != 0) {
+            return;
+        }
+        Map<String, String> tags = toTags(point.getAttributesList());
+        String timestamp = toTimestamp(point.getTimeUnixNano());
+
+        points.add(point(serviceId, name + "_count", point.getCount(), timestamp, tags));
+        points.add(point(serviceId, name + "_sum", point.getSum(), timestamp, tags));
+        for (SummaryDataPoint.ValueAtQuantile quantile : point.getQuantileValuesList()) {
+            Map<String, String> quantileTags = new HashMap<>(tags);
+            quantileTags.put("quantile", Double.toString(quantile.getQuantile()));
+            points.add(point(serviceId, name, quantile.getValue(), timestamp, quantileTags));
+        }
+    }
+
+    private IngestMetricsCommand.MetricData point(UUID serviceId, String name, double value,
+                                                  String timestamp, Map<String, String> tags) {
+        return new IngestMetricsCommand.MetricData(serviceId, name, value, timestamp, tags.isEmpty() ? null : tags);
+    }
+
+    private UUID resolveServiceId(Resource resource, UUID projectId) {
+        String serviceName = null;
+        for (KeyValue attribute : resource.getAttributesList()) {
+            if (SERVICE_ID_ATTRIBUTE.equals(attribute.getKey())) {
+                try {
+                    return UUID.fromString(attribute.getValue().getStringValue());
+                } catch (IllegalArgumentException e) {
+                    // Fall back to service.name
+                }
+            } else if (SERVICE_NAME_ATTRIBUTE.equals(attribute.getKey())) {
+                serviceName = attribute.getValue().getStringValue();
+            }
+        }
+        if (serviceName == null || serviceName.isBlank()) {
+            serviceName = "unknown_service";
+        }
+        return UUID.nameUUIDFromBytes((projectId + "/" + serviceName).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Maps OTLP severity numbers (1-24, in groups of four) to log levels,
+     * falling back to the severity text and then INFO.
+     */
+    private LogLevel toLevel(LogRecord record) {
+        int severity = record.getSeverityNumberValue();
+        if (severity >= 1 && severity <= 24) {
+            return LogLevel.values()[(severity - 1) / 4];
+        }
+        try {
+            return LogLevel.fromString(record.getSeverityText());
+        } catch (IllegalArgumentException e) {
+            return LogLevel.INFO;
+        }
+    }
+
+    private String toTimestamp(long unixNanos) {
+        if (unixNanos == 0) {
+            return Instant.now().toString();
+        }
+        return Instant.ofEpochSecond(0, unixNanos).toString();
+    }
+
+    private String toHex(ByteString id) {
+        return id.isEmpty() ? null : HEX.formatHex(id.toByteArray());
+    }
+
+    private Map<String, String> toTags(List<KeyValue> attributes) {
+        Map<String, String> tags = new HashMap<>(attributes.size());
+        for (KeyValue attribute : attributes) {
+            tags.put(attribute.getKey(), anyValueToString(attribute.getValue()));
+        }
+        return tags;
+    }
+
+    private Map<String, Object> toContext(List<KeyValue> attributes) {
+        Map<String, Object> context = new HashMap<>(attributes.size());
+        for (KeyValue attribute : attributes) {
+            context.put(attribute.getKey(), toObject(attribute.getValue()));
+        }
+        return context;
+    }
+
+    private Object toObject(AnyValue value) {
+        return switch (value.getValueCase()) {
+            case STRING_VALUE -> value.getStringValue();
+            case BOOL_VALUE -> value.getBoolValue();
+            case INT_VALUE -> value.getIntValue();
+            case DOUBLE_VALUE -> value.getDoubleValue();
+            case ARRAY_VALUE -> value.getArrayValue().getValuesList().stream().map(this::toObject).toList();
+            case KVLIST_VALUE -> toContext(value.getKvlistValue().getValuesList());
+            case BYTES_VALUE -> HEX.formatHex(value.getBytesValue().toByteArray());
+            default -> null;
+        };
+    }
+
+    private String anyValueToString(AnyValue value) {
+        if (value.getValueCase() == AnyValue.ValueCase.STRING_VALUE) {
+            return value.getStringValue();
+        }
+        Object object = toObject(value);
+        return object != null ? object.toString() : "";
+    }
+}
@@ -27,6 +27,38 @@ public class MetricsIngestionRequest {
         private UUID serviceId;
         private String timestamp;
         private Map<String, String> tags;
+        /**
+         * gauge (default), counter (cumulative) or histogram; histograms set {@link #histogram} instead of value.
+         */
+        private String type;
+        private HistogramDto histogram;
+    }
+
+    /**
+     * Either explicit buckets (bounds with one more count for the overflow bucket) or
+     * exponential buckets (scale, zeroCount, positive/negative offset and counts).
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class HistogramDto {
+        private List<Double> bounds;
+        private List<Long> counts;
+        private Integer scale;
+        private Long zeroCount;
+        private ExponentialBucketsDto positive;
+        private ExponentialBucketsDto negative;
+        private Double sum;
+        private Double min;
+        private Double max;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ExponentialBucketsDto {
+        private Integer offset;
+        private List<Long> counts;
     }
 }
 
@@ -26,10 +26,31 @@ public class MetricsDtoMapper {
                 ),
                 new RollupPeriod(request.getRollup()),
                 request.getServiceId(),
-                null // Tags not supported in request yet
+                toTagFilters(request.getTag()),
+                GroupBy.fromString(request.getGroupBy()),
+                toSeriesLimit(request.getTopK(), request.getBottomK())
         );
     }
 
+    private List<TagFilter> toTagFilters(List<String> expressions) {
+        if (expressions == null) {
+            return List.of();
+        }
+        return expressions.stream()
+                .map(TagFilter::parse)
+                .collect(Collectors.toList());
+    }
+
+    private SeriesLimit toSeriesLimit(Integer topK, Integer bottomK) {
+        if (topK != null && bottomK != null) {
+            throw new InvalidMetricQueryException("topK and bottomK cannot be combined");
+        }
+        if (topK != null) {
+            return SeriesLimit.top(topK);
+        }
+        return bottomK != null ? SeriesLimit.bottom(bottomK) : null;
+    }
+
     public MultiMetricQuery toDomainMultiQuery(MultiMetricQueryRequest request, UUID projectId) {
         List<MultiMetricQuery.SingleMetricQuery> queries = request.getQueries().stream()
                 .map(q -> new MultiMetricQuery.SingleMetricQuery(
@@ -60,7 +81,8 @@ public class MetricsDtoMapper {
                         Instant.parse(request.getEndTime())
                 ),
                 request.getBins(),
-                request.getServiceId()
+                request.getServiceId(),
+                HistogramScale.fromString(request.getScale())
         );
     }
 
@@ -78,20 +100,27 @@ public class MetricsDtoMapper {
     }
 
     public MetricQueryResponse toResponse(MetricQueryResult result) {
-        List<MetricQueryResponse.DataPoint> dataPoints = result.getDataPoints().stream()
-                .map(p -> new MetricQueryResponse.DataPoint(
-                        p.getTimestamp().toString(),
-                        p.getValue()
-                ))
+        List<MetricQueryResponse.Group> groups = result.getGroups().isEmpty() ? null : result.getGroups().stream()
+                .map(g -> new MetricQueryResponse.Group(g.getKey(), toDataPoints(g.getDataPoints())))
                 .collect(Collectors.toList());
 
         return new MetricQueryResponse(
                 result.getMetricName(),
                 result.getAggregationType().getValue(),
-                dataPoints
+                toDataPoints(result.getDataPoints()),
+                groups
         );
     }
 
+    private List<MetricQueryResponse.DataPoint> toDataPoints(List<TimeSeriesPoint> points) {
+        return points.stream()
+                .map(p -> new MetricQueryResponse.DataPoint(
+                        p.getTimestamp().toString(),
+                        p.getValue()
+                ))
+                .collect(Collectors.toList());
+    }
+
     public MultiMetricQueryResponse toMultiResponse(MultiMetricQueryResult result) {
         List<MetricQueryResponse> responses = result.getResults().stream()
                 .map(this::toResponse)
@@ -28,5 +28,10 @@ public class HistogramQueryRequest {
     private String endTime;
 
     private UUID serviceId;
+
+    /**
+     * linear (default) or log
+     */
+    private String scale;
 }
 
@@ -1,11 +1,14 @@
 package com.asre.asre.api.metrics.dto;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
 import java.util.UUID;
 
 @Data
@@ -28,5 +31,20 @@ public class MetricQueryRequest {
     private String endTime; // ISO timestamp
 
     private UUID serviceId; // Optional
+
+    /**
+     * Tag filters, all of which must match: key=value, key=[a,b,c] or key=~regex
+     */
+    private List<String> tag;
+
+    private String groupBy; // Optional: service or tag:<key>
+
+    @Min(1)
+    @Max(100)
+    private Integer topK; // Optional, requires groupBy
+
+    @Min(1)
+    @Max(100)
+    private Integer bottomK; // Optional, requires groupBy
 }
 
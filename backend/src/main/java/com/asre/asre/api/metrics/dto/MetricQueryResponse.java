@@ -13,6 +13,7 @@ public class MetricQueryResponse {
     private String metric;
     private String stat;
     private List<DataPoint> data;
+    private List<Group> groups; // Grouped queries only
 
     @Data
     @NoArgsConstructor
@@ -21,5 +22,12 @@ public class MetricQueryResponse {
         private String timestamp;
         private Double value;
     }
-}
 
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Group {
+        private String key;
+        private List<DataPoint> data;
+    }
+}
@@ -0,0 +1,219 @@
+package com.asre.asre.application.ingestion;
+
+import com.asre.asre.domain.ingestion.MetricsCollectorPort;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control for the ingestion API.
+ * Watches queue depth and worker flush latency per pipeline. Under soft pressure, projects
+ * sending more than their fair share of recent traffic are throttled (429); past the hard
+ * limits every request is rejected (503). Both carry a Retry-After so SDKs back off.
+ * Flush latency only counts while there is a backlog: with the queue empty the estimate decays,
+ * so a few slow flushes cannot keep rejecting traffic once nothing is left to flush.
+ */
+@Service
+@Slf4j
+public class AdmissionControlService {
+
+    private static final double LATENCY_EWMA_ALPHA = 0.2;
+
+    private final IngestionBacklogPort backlog;
+    private final MetricsCollectorPort metricsCollector;
+    private final Clock clock;
+
+    @Value("${ingestion.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ingestion.admission.soft-queue-depth:2000}")
+    private long softQueueDepth;
+
+    @Value("${ingestion.admission.hard-queue-depth:10000}")
+    private long hardQueueDepth;
+
+    @Value("${ingestion.admission.soft-flush-latency-ms:2000}")
+    private long softFlushLatencyMs;
+
+    @Value("${ingestion.admission.hard-flush-latency-ms:10000}")
+    private long hardFlushLatencyMs;
+
+    @Value("${ingestion.admission.idle-latency-half-life-seconds:5}")
+    private long idleLatencyHalfLifeSeconds;
+
+    @Value("${ingestion.admission.retry-after-seconds:5}")
+    private int baseRetryAfterSeconds;
+
+    @Value("${ingestion.admission.max-retry-after-seconds:60}")
+    private int maxRetryAfterSeconds;
+
+    @Value("${ingestion.admission.traffic-window-seconds:10}")
+    private long trafficWindowSeconds;
+
+    /**
+     * Flush latency EWMA of a pipeline and when it was last updated, by a flush or by decay.
+     */
+    private record FlushLatency(double ewmaMs, long updatedMillis) {
+    }
+
+    private final Map<IngestionPipeline, AtomicReference<FlushLatency>> flushLatency;
+
+    // Accepted points per project: the window being filled and the last complete one
+    private volatile ConcurrentHashMap<UUID, LongAdder> currentWindow = new ConcurrentHashMap<>();
+    private volatile Map<UUID, Long> previousWindow = Map.of();
+    private volatile long previousWindowTotal = 0;
+    private volatile long windowStartMillis;
+
+    @Autowired
+    public AdmissionControlService(IngestionBacklogPort backlog, MetricsCollectorPort metricsCollector) {
+        this(backlog, metricsCollector, Clock.systemUTC());
+    }
+
+    AdmissionControlService(IngestionBacklogPort backlog, MetricsCollectorPort metricsCollector, Clock clock) {
+        this.backlog = backlog;
+        this.metricsCollector = metricsCollector;
+        this.clock = clock;
+        long now = clock.millis();
+        this.flushLatency = new EnumMap<>(Map.of(
+                IngestionPipeline.METRICS, new AtomicReference<>(new FlushLatency(0.0, now)),
+                IngestionPipeline.LOGS, new AtomicReference<>(new FlushLatency(0.0, now))));
+        this.windowStartMillis = now;
+    }
+
+    /**
+     * Decide whether to accept a request carrying {@code points} metrics or logs for a project.
+     */
+    public AdmissionDecision admit(UUID projectId, IngestionPipeline pipeline, int points) {
+        if (!enabled) {
+            return AdmissionDecision.accepted();
+        }
+        rotateWindowIfDue();
+
+        long depth = Math.max(0, backlog.getQueueDepth(pipeline.getQueueName()));
+        double latencyMs = depth > 0 ? getFlushLatencyMs(pipeline) : decayIdleLatency(pipeline);
+        double pressure = Math.max((double) depth / softQueueDepth, latencyMs / softFlushLatencyMs);
+
+        AdmissionDecision decision;
+        int pressureLevel;
+        if (depth >= hardQueueDepth || latencyMs >= hardFlushLatencyMs) {
+            pressureLevel = 2;
+            decision = new AdmissionDecision(AdmissionDecision.Outcome.OVERLOADED, retryAfterSeconds(pressure));
+        } else if (pressure >= 1.0) {
+            pressureLevel = 1;
+            decision = isOverFairShare(projectId)
+                    ? new AdmissionDecision(AdmissionDecision.Outcome.THROTTLED, retryAfterSeconds(pressure))
+                    : AdmissionDecision.accepted();
+        } else {
+            pressureLevel = 0;
+            decision = AdmissionDecision.accepted();
+        }
+
+        if (decision.isAccepted()) {
+            recordAcceptedPoints(projectId, points);
+        } else {
+            log.debug("Rejected {} ingestion for project {}: {} (queue depth {}, flush latency {}ms)",
+                    pipeline, projectId, decision.outcome(), depth, Math.round(latencyMs));
+        }
+
+        String pipelineName = pipeline.name().toLowerCase();
+        metricsCollector.recordAdmissionState(pipelineName, pressureLevel, latencyMs);
+        metricsCollector.recordAdmissionDecision(pipelineName, decision.outcome().name().toLowerCase());
+        return decision;
+    }
+
+    /**
+     * Count points toward a project's share of traffic. Streamed requests are admitted before
+     * their size is known and report points here as chunks are enqueued.
+     */
+    public void recordAcceptedPoints(UUID projectId, int points) {
+        if (!enabled || points <= 0) {
+            return;
+        }
+        currentWindow.computeIfAbsent(projectId, id -> new LongAdder()).add(points);
+    }
+
+    /**
+     * Feed a worker batch flush duration into the pipeline's latency estimate.
+     */
+    public void recordFlushLatency(IngestionPipeline pipeline, long durationMs) {
+        long now = clock.millis();
+        flushLatency.get(pipeline).updateAndGet(current -> new FlushLatency(
+                current.ewmaMs() + LATENCY_EWMA_ALPHA * (durationMs - current.ewmaMs()), now));
+    }
+
+    public double getFlushLatencyMs(IngestionPipeline pipeline) {
+        return flushLatency.get(pipeline).get().ewmaMs();
+    }
+
+    /**
+     * With an empty queue the latency estimate only describes past work; it is halved every
+     * half-life since its last update, and the decayed value is kept so admitted traffic
+     * does not bring the stale estimate back.
+     */
+    private double decayIdleLatency(IngestionPipeline pipeline) {
+        long now = clock.millis();
+        FlushLatency decayed = flushLatency.get(pipeline).updateAndGet(current -> {
+            long elapsedMillis = now - current.updatedMillis();
+            if (elapsedMillis <= 0 || current.ewmaMs() == 0.0) {
+                return current;
+            }
+            double factor = Math.pow(0.5, elapsedMillis / (idleLatencyHalfLifeSeconds * 1000.0));
+            return new FlushLatency(current.ewmaMs() * factor, now);
+        });
+        return decayed.ewmaMs();
+    }
+
+    /**
+     * A project is over its fair share when it sent more than 1/N of the last window's traffic.
+     * A lone project never is, so single-tenant load is only shed at the hard limits.
+     */
+    private boolean isOverFairShare(UUID projectId) {
+        Map<UUID, Long> window = previousWindow;
+        long total = previousWindowTotal;
+        if (window.size() < 2 || total == 0) {
+            return false;
+        }
+        long projectPoints = window.getOrDefault(projectId, 0L);
+        return (double) projectPoints / total > 1.0 / window.size();
+    }
+
+    private void rotateWindowIfDue() {
+        long now = clock.millis();
+        if (now - windowStartMillis < trafficWindowSeconds * 1000) {
+            return;
+        }
+        synchronized (this) {
+            if (now - windowStartMillis < trafficWindowSeconds * 1000) {
+                return;
+            }
+            ConcurrentHashMap<UUID, LongAdder> completed = currentWindow;
+            currentWindow = new ConcurrentHashMap<>();
+            windowStartMillis = now;
+
+            Map<UUID, Long> snapshot = new HashMap<>();
+            long total = 0;
+            for (Map.Entry<UUID, LongAdder> entry : completed.entrySet()) {
+                long points = entry.getValue().sum();
+                snapshot.put(entry.getKey(), points);
+                total += points;
+            }
+            previousWindow = snapshot;
+            previousWindowTotal = total;
+        }
+    }
+
+    private int retryAfterSeconds(double pressure) {
+        long seconds = Math.round(baseRetryAfterSeconds * Math.max(1.0, pressure));
+        return (int) Math.min(maxRetryAfterSeconds, Math.max(baseRetryAfterSeconds, seconds));
+    }
+}
@@ -0,0 +1,22 @@
+package com.asre.asre.application.ingestion;
+
+/**
+ * Result of an ingestion admission check.
+ * Rejected requests carry the number of seconds the client should wait before retrying.
+ */
+public record AdmissionDecision(Outcome outcome, int retryAfterSeconds) {
+
+    public enum Outcome {
+        ACCEPTED,
+        THROTTLED,   // This project is over its fair share while the pipeline is under pressure
+        OVERLOADED   // The pipeline is saturated for everyone
+    }
+
+    public static AdmissionDecision accepted() {
+        return new AdmissionDecision(Outcome.ACCEPTED, 0);
+    }
+
+    public boolean isAccepted() {
+        return outcome == Outcome.ACCEPTED;
+    }
+}
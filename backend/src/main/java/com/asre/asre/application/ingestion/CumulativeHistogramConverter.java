@@ -0,0 +1,159 @@
+package com.asre.asre.application.ingestion;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Turns cumulative histogram points (the OpenTelemetry SDK default) into deltas against the
+ * previous point of the same series, since stored histogram points are added up by queries.
+ * The first point of a series only becomes its baseline; a new start time or shrinking
+ * counts mark a reset, after which the point counts from the new start. Exponential baselines
+ * are downscaled when the SDK lowers the scale. Points are dropped when no baseline can be
+ * read, rather than stored cumulative.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CumulativeHistogramConverter {
+
+    private final HistogramBaselinePort baselines;
+
+    @Value("${ingestion.otlp.cumulative-baseline-ttl-minutes:60}")
+    private long baselineTtlMinutes;
+
+    /**
+     * @return the increase since the previous point, or empty if there is nothing to store
+     */
+    public Optional<HistogramSnapshot> toDelta(UUID projectId, UUID serviceId, String metricName,
+                                               Map<String, String> tags, HistogramSnapshot cumulative) {
+        Optional<HistogramSnapshot> previous;
+        try {
+            previous = baselines.swap(seriesKey(projectId, serviceId, metricName, tags), cumulative,
+                    Duration.ofMinutes(baselineTtlMinutes));
+        } catch (Exception e) {
+            log.warn("Error reading cumulative histogram baseline for {}, point dropped", metricName, e);
+            return Optional.empty();
+        }
+
+        if (previous.isEmpty()) {
+            return Optional.empty();
+        }
+        HistogramSnapshot baseline = previous.get();
+        if (baseline.timeUnixNano() >= cumulative.timeUnixNano()) {
+            // Duplicate or out-of-order export; the newer baseline was kept
+            return Optional.empty();
+        }
+        if (baseline.startTimeUnixNano() != cumulative.startTimeUnixNano()) {
+            return Optional.of(cumulative);
+        }
+        return cumulative.hasExplicitBounds() ? explicitDelta(cumulative, baseline) : exponentialDelta(cumulative, baseline);
+    }
+
+    private Optional<HistogramSnapshot> explicitDelta(HistogramSnapshot current, HistogramSnapshot baseline) {
+        if (!baseline.hasExplicitBounds() || !baseline.bounds().equals(current.bounds())) {
+            // Bucket layout changed: the current point is the new baseline
+            return Optional.empty();
+        }
+        long[] counts = toArray(current.positiveCounts());
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] -= baseline.positiveCounts().get(i);
+            if (counts[i] < 0) {
+                return Optional.of(current);
+            }
+        }
+        return nonEmpty(HistogramSnapshot.ofExplicit(current.startTimeUnixNano(), current.timeUnixNano(),
+                sumDelta(current, baseline), current.bounds(), toList(counts)), counts, 0);
+    }
+
+    private Optional<HistogramSnapshot> exponentialDelta(HistogramSnapshot current, HistogramSnapshot baseline) {
+        if (baseline.hasExplicitBounds() || baseline.scale() < current.scale()) {
+            return Optional.empty();
+        }
+        int shift = baseline.scale() - current.scale();
+        long[] positive = toArray(current.positiveCounts());
+        long[] negative = toArray(current.negativeCounts());
+        long zeroCount = current.zeroCount() - baseline.zeroCount();
+        if (zeroCount < 0
+                || !subtractDownscaled(positive, current.positiveOffset(), baseline.positiveCounts(),
+                        baseline.positiveOffset(), shift)
+                || !subtractDownscaled(negative, current.negativeOffset(), baseline.negativeCounts(),
+                        baseline.negativeOffset(), shift)) {
+            return Optional.of(current);
+        }
+        HistogramSnapshot delta = HistogramSnapshot.ofExponential(current.startTimeUnixNano(), current.timeUnixNano(),
+                sumDelta(current, baseline), current.scale(), zeroCount,
+                current.positiveOffset(), toList(positive), current.negativeOffset(), toList(negative));
+        long[] all = new long[positive.length + negative.length];
+        System.arraycopy(positive, 0, all, 0, positive.length);
+        System.arraycopy(negative, 0, all, positive.length, negative.length);
+        return nonEmpty(delta, all, zeroCount);
+    }
+
+    /**
+     * Subtracts baseline buckets, mapped to the current scale (index >> shift), from counts.
+     *
+     * @return false if any count would go negative, i.e. the series was reset
+     */
+    private static boolean subtractDownscaled(long[] counts, int offset, List<Long> baselineCounts,
+                                              int baselineOffset, int shift) {
+        for (int i = 0; i < baselineCounts.size(); i++) {
+            long count = baselineCounts.get(i);
+            if (count == 0) {
+                continue;
+            }
+            int index = ((baselineOffset + i) >> shift) - offset;
+            if (index < 0 || index >= counts.length) {
+                return false;
+            }
+            counts[index] -= count;
+            if (counts[index] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Optional<HistogramSnapshot> nonEmpty(HistogramSnapshot delta, long[] counts, long zeroCount) {
+        long total = zeroCount;
+        for (long count : counts) {
+            total += count;
+        }
+        return total > 0 ? Optional.of(delta) : Optional.empty();
+    }
+
+    private static Double sumDelta(HistogramSnapshot current, HistogramSnapshot baseline) {
+        return current.sum() != null && baseline.sum() != null ? current.sum() - baseline.sum() : null;
+    }
+
+    private static String seriesKey(UUID projectId, UUID serviceId, String metricName, Map<String, String> tags) {
+        String series = projectId + "/" + serviceId + "/" + metricName + "/" + new TreeMap<>(tags);
+        return projectId + ":" + UUID.nameUUIDFromBytes(series.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long[] toArray(List<Long> values) {
+        long[] array = new long[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private static List<Long> toList(long[] values) {
+        List<Long> list = new ArrayList<>(values.length);
+        for (long value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,16 @@
+package com.asre.asre.application.ingestion;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Port for the last cumulative histogram seen per series, shared by all API nodes.
+ * Implementation will be in infrastructure layer (Redis).
+ */
+public interface HistogramBaselinePort {
+    /**
+     * Atomically stores the snapshot as the series' baseline unless the stored one is at least
+     * as recent, and returns the baseline that was stored before, if any.
+     */
+    Optional<HistogramSnapshot> swap(String seriesKey, HistogramSnapshot snapshot, Duration ttl);
+}
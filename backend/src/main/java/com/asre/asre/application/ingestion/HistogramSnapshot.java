@@ -0,0 +1,32 @@
+package com.asre.asre.application.ingestion;
+
+import java.util.List;
+
+/**
+ * Raw bucket counts of one OTLP histogram data point, before they are turned into a
+ * HistogramValue. Explicit histograms carry their bounds and use positiveCounts for the
+ * bucket counts; exponential histograms have no bounds and carry scale, offsets and zeroCount.
+ */
+public record HistogramSnapshot(long startTimeUnixNano, long timeUnixNano, Double sum,
+                                List<Double> bounds, int scale, long zeroCount,
+                                int positiveOffset, List<Long> positiveCounts,
+                                int negativeOffset, List<Long> negativeCounts) {
+
+    public static HistogramSnapshot ofExplicit(long startTimeUnixNano, long timeUnixNano, Double sum,
+                                               List<Double> bounds, List<Long> counts) {
+        return new HistogramSnapshot(startTimeUnixNano, timeUnixNano, sum, List.copyOf(bounds), 0, 0,
+                0, List.copyOf(counts), 0, List.of());
+    }
+
+    public static HistogramSnapshot ofExponential(long startTimeUnixNano, long timeUnixNano, Double sum,
+                                                  int scale, long zeroCount,
+                                                  int positiveOffset, List<Long> positiveCounts,
+                                                  int negativeOffset, List<Long> negativeCounts) {
+        return new HistogramSnapshot(startTimeUnixNano, timeUnixNano, sum, null, scale, zeroCount,
+                positiveOffset, List.copyOf(positiveCounts), negativeOffset, List.copyOf(negativeCounts));
+    }
+
+    public boolean hasExplicitBounds() {
+        return bounds != null;
+    }
+}
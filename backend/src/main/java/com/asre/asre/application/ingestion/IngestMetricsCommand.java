@@ -1,5 +1,8 @@
 package com.asre.asre.application.ingestion;
 
+import com.asre.asre.domain.ingestion.HistogramValue;
+import com.asre.asre.domain.ingestion.MetricKind;
+import lombok.AllArgsConstructor;
 import lombok.Value;
 
 import java.util.List;
@@ -12,12 +15,19 @@ public class IngestMetricsCommand {
     List<MetricData> metrics;
 
     @Value
+    @AllArgsConstructor
     public static class MetricData {
         UUID serviceId;
         String metricName;
         Double value;
         String timestamp;
         Map<String, String> tags;
+        MetricKind kind;
+        HistogramValue histogram;
+
+        public MetricData(UUID serviceId, String metricName, Double value, String timestamp,
+                          Map<String, String> tags) {
+            this(serviceId, metricName, value, timestamp, tags, MetricKind.GAUGE, null);
+        }
     }
 }
-
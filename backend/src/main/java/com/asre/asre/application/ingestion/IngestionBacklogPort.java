@@ -0,0 +1,12 @@
+package com.asre.asre.application.ingestion;
+
+/**
+ * Port for observing the backlog of the ingestion queues.
+ * Implementation will be in infrastructure layer (RabbitMQ).
+ */
+public interface IngestionBacklogPort {
+    /**
+     * Last observed number of messages waiting in the queue, or -1 if unknown.
+     */
+    long getQueueDepth(String queueName);
+}
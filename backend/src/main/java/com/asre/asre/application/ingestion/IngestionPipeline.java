@@ -0,0 +1,19 @@
+package com.asre.asre.application.ingestion;
+
+/**
+ * Ingestion pipelines subject to admission control, with the queue that feeds each one.
+ */
+public enum IngestionPipeline {
+    METRICS("metrics.ingest"),
+    LOGS("logs.ingest");
+
+    private final String queueName;
+
+    IngestionPipeline(String queueName) {
+        this.queueName = queueName;
+    }
+
+    public String getQueueName() {
+        return queueName;
+    }
+}
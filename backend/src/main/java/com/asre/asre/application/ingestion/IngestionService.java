@@ -1,37 +1,100 @@
 package com.asre.asre.application.ingestion;
 
+import com.asre.asre.application.logs.LogSamplingService;
+import com.asre.asre.domain.ingestion.HistogramValue;
+import com.asre.asre.domain.ingestion.LogEntry;
 import com.asre.asre.domain.ingestion.MessagePublisherPort;
+import com.asre.asre.domain.ingestion.Metric;
+import com.asre.asre.domain.ingestion.MetricKind;
+import com.asre.asre.domain.logs.LogLevel;
+import com.asre.asre.domain.logs.LogSamplingPolicy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class IngestionService {
 
+    /**
+     * Version of the batch envelope published to the ingestion queues.
+     * Workers still accept the legacy one-point-per-message format.
+     */
+    public static final int ENVELOPE_VERSION = 1;
+
     private final MessagePublisherPort messagePublisher;
     private final ObjectMapper objectMapper;
+    private final LogSamplingService logSamplingService;
+
+    @Value("${ingestion.publish.max-batch-size:500}")
+    private int maxBatchSize;
+
+    /**
+     * Queue message format: "binary" (IngestionMessageCodec batches) or "json" (batch envelopes).
+     */
+    @Value("${ingestion.publish.codec:binary}")
+    private String publishCodec;
 
+    /**
+     * Where log sampling is applied: "edge" (before publishing, the default) or "worker" (after the queue).
+     */
+    @Value("${ingestion.sampling.mode:edge}")
+    private String samplingMode;
+
+    /**
+     * Publishes metrics as batch envelopes, one message per chunk of at most
+     * {@code maxBatchSize} points, instead of one message per point.
+     * With the binary codec, points that fail to convert are still sent as JSON so the
+     * worker dead-letters them as before.
+     */
     public void ingestMetrics(IngestMetricsCommand command) {
         try {
-            for (var metric : command.getMetrics()) {
-                Map<String, Object> message = new HashMap<>();
-                message.put("project_id", command.getProjectId().toString());
-                message.put("service_id", metric.getServiceId().toString());
-                message.put("metric_name", metric.getMetricName());
-                message.put("value", metric.getValue());
-                message.put("timestamp", metric.getTimestamp());
-                if (metric.getTags() != null) {
-                    message.put("tags", metric.getTags());
+            List<IngestMetricsCommand.MetricData> metrics = command.getMetrics();
+            int chunkSize = Math.max(1, maxBatchSize);
+            if (useBinaryCodec()) {
+                metrics = publishMetricsBinary(command, chunkSize);
+            }
+
+            for (int start = 0; start < metrics.size(); start += chunkSize) {
+                List<IngestMetricsCommand.MetricData> chunk = metrics.subList(start,
+                        Math.min(start + chunkSize, metrics.size()));
+
+                List<Map<String, Object>> points = new ArrayList<>(chunk.size());
+                for (var metric : chunk) {
+                    Map<String, Object> point = new HashMap<>();
+                    point.put("service_id", metric.getServiceId().toString());
+                    point.put("metric_name", metric.getMetricName());
+                    point.put("value", metric.getValue());
+                    point.put("timestamp", metric.getTimestamp());
+                    if (metric.getTags() != null) {
+                        point.put("tags", metric.getTags());
+                    }
+                    if (metric.getKind() != MetricKind.GAUGE) {
+                        point.put("kind", metric.getKind() != null ? metric.getKind().name() : "INVALID");
+                    }
+                    if (metric.getHistogram() != null) {
+                        point.put("histogram", toHistogramPayload(metric.getHistogram()));
+                    }
+                    points.add(point);
                 }
 
-                messagePublisher.publishMetricsMessage("metrics.ingest", objectMapper.writeValueAsString(message));
+                Map<String, Object> envelope = new HashMap<>();
+                envelope.put("version", ENVELOPE_VERSION);
+                envelope.put("project_id", command.getProjectId().toString());
+                envelope.put("metrics", points);
+
+                messagePublisher.publishMetricsMessage("metrics.ingest", objectMapper.writeValueAsString(envelope));
             }
         } catch (Exception e) {
             log.error("Error enqueueing metrics", e);
@@ -39,27 +102,161 @@ public class IngestionService {
         }
     }
 
+    /**
+     * Publishes logs as batch envelopes, one message per chunk of at most
+     * {@code maxBatchSize} entries, instead of one message per log line.
+     * In edge sampling mode the project's sampling policy is applied here, so dropped
+     * logs never reach the broker; the decision travels with each entry as "sampled".
+     */
     public void ingestLogs(IngestLogsCommand command) {
         try {
+            boolean edgeSampling = "edge".equalsIgnoreCase(samplingMode);
+            boolean binary = useBinaryCodec();
+            LogSamplingPolicy policy = edgeSampling ? logSamplingService.getPolicy(command.getProjectId()) : null;
+            int chunkSize = Math.max(1, maxBatchSize);
+
+            List<LogEntry> binaryEntries = new ArrayList<>(Math.min(chunkSize, command.getLogs().size()));
+            List<Map<String, Object>> entries = new ArrayList<>();
+            int kept = 0;
             for (var log : command.getLogs()) {
-                Map<String, Object> message = new HashMap<>();
-                message.put("project_id", command.getProjectId().toString());
-                message.put("service_id", log.getServiceId().toString());
-                message.put("level", log.getLevel());
-                message.put("message", log.getMessage());
-                message.put("timestamp", log.getTimestamp());
+                Boolean sampled = edgeSampling ? applyEdgeSampling(policy, log) : null;
+                if (Boolean.FALSE.equals(sampled)) {
+                    continue;
+                }
+                kept++;
+
+                LogEntry logEntry = binary ? toLogEntry(command.getProjectId(), log) : null;
+                if (logEntry != null) {
+                    if (sampled != null) {
+                        logEntry.setSampled(policy.getSamplingRate(log.getServiceId(), logEntry.getLevel()) < 1.0);
+                        logEntry.setSamplingApplied(true);
+                    }
+                    binaryEntries.add(logEntry);
+                    if (binaryEntries.size() >= chunkSize) {
+                        messagePublisher.publishLogs("logs.ingest", command.getProjectId(), binaryEntries);
+                        binaryEntries = new ArrayList<>(chunkSize);
+                    }
+                    continue;
+                }
+
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("service_id", log.getServiceId().toString());
+                entry.put("level", log.getLevel());
+                entry.put("message", log.getMessage());
+                entry.put("timestamp", log.getTimestamp());
                 if (log.getTraceId() != null) {
-                    message.put("trace_id", log.getTraceId());
+                    entry.put("trace_id", log.getTraceId());
                 }
                 if (log.getContext() != null) {
-                    message.put("context", log.getContext());
+                    entry.put("context", log.getContext());
+                }
+                if (sampled != null) {
+                    entry.put("sampled", policy.getSamplingRate(log.getServiceId(),
+                            LogLevel.fromString(log.getLevel())) < 1.0);
                 }
 
-                messagePublisher.publishLogsMessage("logs.ingest", objectMapper.writeValueAsString(message));
+                entries.add(entry);
+                if (entries.size() >= chunkSize) {
+                    publishLogsEnvelope(command, entries);
+                    entries = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!binaryEntries.isEmpty()) {
+                messagePublisher.publishLogs("logs.ingest", command.getProjectId(), binaryEntries);
+            }
+            if (!entries.isEmpty()) {
+                publishLogsEnvelope(command, entries);
+            }
+
+            if (edgeSampling) {
+                log.debug("Edge sampling kept {} of {} logs for project {}",
+                        kept, command.getLogs().size(), command.getProjectId());
             }
         } catch (Exception e) {
             log.error("Error enqueueing logs", e);
             throw new RuntimeException("Failed to enqueue logs", e);
         }
     }
+
+    private void publishLogsEnvelope(IngestLogsCommand command, List<Map<String, Object>> entries) throws Exception {
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put("version", ENVELOPE_VERSION);
+        envelope.put("project_id", command.getProjectId().toString());
+        envelope.put("logs", entries);
+
+        messagePublisher.publishLogsMessage("logs.ingest", objectMapper.writeValueAsString(envelope));
+    }
+
+    /**
+     * Applies the sampling policy to one log: TRUE if kept, FALSE if dropped.
+     * Logs with an unparseable level are passed through undecided (null) so the worker can reject them.
+     */
+    private Boolean applyEdgeSampling(LogSamplingPolicy policy, IngestLogsCommand.LogData log) {
+        LogLevel level;
+        try {
+            level = LogLevel.fromString(log.getLevel());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return logSamplingService.shouldKeep(policy, log.getServiceId(), level, log.getTraceId());
+    }
+
+    private boolean useBinaryCodec() {
+        return "binary".equalsIgnoreCase(publishCodec);
+    }
+
+    /**
+     * Publishes the convertible points in binary batches and returns the rest.
+     */
+    private List<IngestMetricsCommand.MetricData> publishMetricsBinary(IngestMetricsCommand command, int chunkSize) {
+        List<IngestMetricsCommand.MetricData> unconverted = new ArrayList<>();
+        List<Metric> batch = new ArrayList<>(Math.min(chunkSize, command.getMetrics().size()));
+        for (var data : command.getMetrics()) {
+            Metric metric = toMetric(command.getProjectId(), data);
+            if (metric == null) {
+                unconverted.add(data);
+                continue;
+            }
+            batch.add(metric);
+            if (batch.size() >= chunkSize) {
+                messagePublisher.publishMetrics("metrics.ingest", command.getProjectId(), batch);
+                batch = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            messagePublisher.publishMetrics("metrics.ingest", command.getProjectId(), batch);
+        }
+        return unconverted;
+    }
+
+    private Metric toMetric(UUID projectId, IngestMetricsCommand.MetricData data) {
+        try {
+            Metric metric = new Metric(projectId, data.getServiceId(), data.getMetricName(), data.getValue(),
+                    Instant.parse(data.getTimestamp()), data.getTags(), data.getKind(), data.getHistogram());
+            return metric.isValid() ? metric : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private Map<String, Object> toHistogramPayload(HistogramValue histogram) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("count", histogram.getCount());
+        payload.put("sum", histogram.getSum());
+        payload.put("min", histogram.getMin());
+        payload.put("max", histogram.getMax());
+        payload.put("bucket_values", histogram.getBucketValues());
+        payload.put("bucket_counts", histogram.getBucketCounts());
+        return payload;
+    }
+
+    private LogEntry toLogEntry(UUID projectId, IngestLogsCommand.LogData data) {
+        try {
+            LogEntry logEntry = new LogEntry(projectId, data.getServiceId(), LogLevel.fromString(data.getLevel()),
+                    data.getMessage(), Instant.parse(data.getTimestamp()), data.getTraceId(), data.getContext());
+            return logEntry.isValid() ? logEntry : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
 }
@@ -7,14 +7,16 @@ import com.asre.asre.domain.ingestion.LogIndexerPort;
 import com.asre.asre.domain.ingestion.LogMetadata;
 import com.asre.asre.domain.ingestion.LogMetadataRepository;
 import com.asre.asre.domain.ingestion.MetricsCollectorPort;
-import com.asre.asre.domain.logs.LogId;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -27,6 +29,7 @@ public class LogIngestionService {
     private final LogIndexerPort logIndexer;
     private final MetricsCollectorPort metricsCollector;
     private final ServiceDiscoveryService serviceDiscoveryService;
+    private final AdmissionControlService admissionControlService;
     private final LogSamplingService samplingService;
 
     @Transactional
@@ -52,8 +55,6 @@ public class LogIngestionService {
                 return;
             }
 
-            UUID projectId = validLogs.get(0).getProjectId();
-
             // Auto-discover services from logs
             validLogs.stream()
                     .collect(Collectors.groupingBy(LogEntry::getServiceId))
@@ -62,7 +63,7 @@ public class LogIngestionService {
                             // Use serviceId as name if not found (temporary - can be improved later)
                             String serviceName = "service-" + serviceId.toString().substring(0, 8);
                             try {
-                                serviceDiscoveryService.discoverService(
+                                serviceDiscoveryService.recordServiceSeen(
                                         logs.get(0).getProjectId(),
                                         serviceId,
                                         serviceName
@@ -73,35 +74,40 @@ public class LogIngestionService {
                         }
                     });
 
-            // Apply sampling policy (domain rule enforcement)
-            List<LogEntry> sampledLogs = samplingService.applySampling(validLogs, projectId);
-            
+            // Apply sampling policy (domain rule enforcement) to logs not already sampled at the edge
+            List<LogEntry> sampledLogs = new ArrayList<>(validLogs.size());
+            Map<UUID, List<LogEntry>> unsampledByProject = new HashMap<>();
+            for (LogEntry logEntry : validLogs) {
+                if (logEntry.isSamplingApplied()) {
+                    sampledLogs.add(logEntry);
+                } else {
+                    unsampledByProject.computeIfAbsent(logEntry.getProjectId(), id -> new ArrayList<>()).add(logEntry);
+                }
+            }
+            unsampledByProject.forEach((projectId, logs) ->
+                    sampledLogs.addAll(samplingService.applySampling(logs, projectId)));
+
             if (sampledLogs.isEmpty()) {
                 log.debug("All logs filtered out by sampling policy");
                 return;
             }
 
-            // Write to OpenSearch and create metadata
+            // Assign LogIds up front so OpenSearch document IDs match the metadata rows
+            sampledLogs.forEach(LogEntry::getOrCreateLogId);
+
+            // Write to search engine (OpenSearch) in bulk
+            logIndexer.indexBatch(sampledLogs);
+
+            // Create metadata
+            Instant ingestedAt = Instant.now();
             List<LogMetadata> metadataList = sampledLogs.stream()
-                    .map(log -> {
-                        // Set LogId if not already set
-                        LogId logId = log.getLogId() != null 
-                                ? log.getLogId() 
-                                : log.getOrCreateLogId();
-                        log.setLogId(logId);
-                        
-                        // Write to search engine (OpenSearch)
-                        logIndexer.indexLog(log, logId.getValue());
-                        
-                        // Create metadata
-                        return new LogMetadata(
-                                log.getProjectId(),
-                                log.getServiceId(),
-                                logId.getValue(),
-                                log.getTimestamp(),
-                                Instant.now(), // ingested_at
-                                log.getLevel().name()); // Convert enum to string for storage
-                    })
+                    .map(log -> new LogMetadata(
+                            log.getProjectId(),
+                            log.getServiceId(),
+                            log.getLogId().getValue(),
+                            log.getTimestamp(),
+                            ingestedAt,
+                            log.getLevel().name())) // Convert enum to string for storage
                     .collect(Collectors.toList());
 
             // Save metadata to PostgreSQL
@@ -114,6 +120,7 @@ public class LogIngestionService {
         } finally {
             long duration = System.currentTimeMillis() - startTime;
             metricsCollector.recordLogsIngestionDuration(duration);
+            admissionControlService.recordFlushLatency(IngestionPipeline.LOGS, duration);
         }
     }
 }
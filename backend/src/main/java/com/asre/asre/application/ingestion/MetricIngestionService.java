@@ -3,12 +3,15 @@ package com.asre.asre.application.ingestion;
 import com.asre.asre.application.service.ServiceDiscoveryService;
 import com.asre.asre.domain.ingestion.Metric;
 import com.asre.asre.domain.ingestion.MetricRepository;
+import com.asre.asre.domain.ingestion.MetricWindow;
 import com.asre.asre.domain.ingestion.MetricsCollectorPort;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,6 +22,7 @@ public class MetricIngestionService {
     private final MetricRepository metricRepository;
     private final MetricsCollectorPort metricsCollector;
     private final ServiceDiscoveryService serviceDiscoveryService;
+    private final AdmissionControlService admissionControlService;
 
     @Transactional
     public void ingestBatch(List<Metric> metricsList) {
@@ -43,31 +47,68 @@ public class MetricIngestionService {
             // Auto-discover services from metrics
             validMetrics.stream()
                     .collect(Collectors.groupingBy(Metric::getServiceId))
-                    .forEach((serviceId, metrics) -> {
-                        if (serviceId != null && !metrics.isEmpty()) {
-                            // Use serviceId as name if not found (temporary - can be improved later)
-                            String serviceName = "service-" + serviceId.toString().substring(0, 8);
-                            try {
-                                serviceDiscoveryService.discoverService(
-                                        metrics.get(0).getProjectId(),
-                                        serviceId,
-                                        serviceName
-                                );
-                            } catch (Exception e) {
-                                log.warn("Failed to discover service {}: {}", serviceId, e.getMessage());
-                            }
-                        }
-                    });
+                    .forEach((serviceId, metrics) -> recordServiceSeen(metrics.get(0).getProjectId(), serviceId));
 
-            metricRepository.saveBatch(validMetrics);
-            metricsCollector.recordMetricsIngested(validMetrics.size());
-            log.debug("Ingested {} metrics", validMetrics.size());
+            // Histogram points are stored like pre-aggregated windows, one row each
+            Map<Boolean, List<Metric>> byShape = validMetrics.stream()
+                    .collect(Collectors.partitioningBy(Metric::isHistogram));
+            List<Metric> histograms = byShape.get(true);
+            metricRepository.saveBatch(byShape.get(false));
+            if (!histograms.isEmpty()) {
+                metricRepository.saveWindows(histograms.stream().map(MetricWindow::ofHistogram).toList());
+            }
+
+            long observations = byShape.get(false).size()
+                    + histograms.stream().mapToLong(metric -> metric.getHistogram().getCount()).sum();
+            metricsCollector.recordMetricsIngested(observations);
+            log.debug("Ingested {} metrics ({} histograms)", validMetrics.size(), histograms.size());
         } catch (Exception e) {
             metricsCollector.recordMetricsIngestionError();
             throw e;
         } finally {
             long duration = System.currentTimeMillis() - startTime;
             metricsCollector.recordMetricsIngestionDuration(duration);
+            admissionControlService.recordFlushLatency(IngestionPipeline.METRICS, duration);
+        }
+    }
+
+    /**
+     * Writes windows folded by {@link MetricPreAggregationService}; their points count as ingested.
+     */
+    @Transactional
+    public void ingestWindows(List<MetricWindow> windows) {
+        if (windows.isEmpty()) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            windows.stream()
+                    .collect(Collectors.groupingBy(MetricWindow::getServiceId))
+                    .forEach((serviceId, serviceWindows) -> recordServiceSeen(serviceWindows.get(0).getProjectId(), serviceId));
+
+            metricRepository.saveWindows(windows);
+            long points = windows.stream().mapToLong(MetricWindow::getCount).sum();
+            metricsCollector.recordMetricsIngested(points);
+            metricsCollector.recordMetricWindowsWritten(windows.size());
+            log.debug("Ingested {} metric windows covering {} points", windows.size(), points);
+        } catch (Exception e) {
+            metricsCollector.recordMetricsIngestionError();
+            throw e;
+        } finally {
+            metricsCollector.recordMetricsIngestionDuration(System.currentTimeMillis() - startTime);
+        }
+    }
+
+    private void recordServiceSeen(UUID projectId, UUID serviceId) {
+        if (serviceId == null) {
+            return;
+        }
+        // Use serviceId as name if not found (temporary - can be improved later)
+        String serviceName = "service-" + serviceId.toString().substring(0, 8);
+        try {
+            serviceDiscoveryService.recordServiceSeen(projectId, serviceId, serviceName);
+        } catch (Exception e) {
+            log.warn("Failed to discover service {}: {}", serviceId, e.getMessage());
         }
     }
 }
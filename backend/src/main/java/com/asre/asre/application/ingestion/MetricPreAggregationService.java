@@ -0,0 +1,214 @@
+package com.asre.asre.application.ingestion;
+
+import com.asre.asre.domain.ingestion.HistogramValue;
+import com.asre.asre.domain.ingestion.Metric;
+import com.asre.asre.domain.ingestion.MetricKind;
+import com.asre.asre.domain.ingestion.MetricWindow;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Opt-in pre-aggregation for chatty series: points of selected projects or metric names are
+ * folded into fixed windows (count, sum, min, max and a quantile sketch per series) instead of
+ * being written one row each. Closed windows are flushed as metric_windows rows, which the
+ * query path merges with the rollups exactly like another rollup bucket.
+ * Points are held in memory after their message was acknowledged: a node that dies without a
+ * shutdown flush loses up to window + grace + flush interval seconds of opted-in series.
+ * Windows that fail to be written are returned to the caller for dead-lettering.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MetricPreAggregationService {
+
+    private final MetricIngestionService metricIngestionService;
+
+    private final Map<WindowKey, WindowAccumulator> openWindows = new ConcurrentHashMap<>();
+
+    @Value("${ingestion.preaggregation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ingestion.preaggregation.window-seconds:10}")
+    private long windowSeconds;
+
+    @Value("${ingestion.preaggregation.grace-seconds:5}")
+    private long graceSeconds;
+
+    @Value("${ingestion.preaggregation.projects:}")
+    private Set<String> projects;
+
+    @Value("${ingestion.preaggregation.metrics:}")
+    private Set<String> metricNames;
+
+    @Value("${ingestion.preaggregation.max-open-windows:100000}")
+    private int maxOpenWindows;
+
+    @Value("${ingestion.preaggregation.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    private Set<UUID> projectIds = Set.of();
+
+    private record WindowKey(UUID projectId, UUID serviceId, String metricName, Map<String, String> tags,
+                             long windowStartSeconds) {
+    }
+
+    /**
+     * Running aggregate of one window; only mutated inside ConcurrentHashMap.compute, which
+     * serializes access per key.
+     */
+    private static final class WindowAccumulator {
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private final QuantileBuckets sketch = new QuantileBuckets();
+
+        void add(double value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sketch.add(value, 1);
+        }
+
+        void add(HistogramValue histogram) {
+            count += histogram.getCount();
+            sum += histogram.getSum();
+            min = Math.min(min, histogram.getMin());
+            max = Math.max(max, histogram.getMax());
+            double[] values = histogram.getBucketValues();
+            long[] counts = histogram.getBucketCounts();
+            for (int i = 0; i < values.length; i++) {
+                sketch.add(values[i], counts[i]);
+            }
+        }
+
+        MetricWindow toWindow(WindowKey key) {
+            return new MetricWindow(key.projectId(), key.serviceId(), key.metricName(), key.tags(),
+                    Instant.ofEpochSecond(key.windowStartSeconds()), count, sum, min, max,
+                    sketch.values(), sketch.counts());
+        }
+    }
+
+    @PostConstruct
+    void validateConfiguration() {
+        if (windowSeconds <= 0 || 60 % windowSeconds != 0) {
+            // Windows must tile minutes so each one falls inside a single rollup bucket
+            throw new IllegalStateException(
+                    "ingestion.preaggregation.window-seconds must divide 60, got " + windowSeconds);
+        }
+        projectIds = projects.stream()
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .map(UUID::fromString)
+                .collect(Collectors.toUnmodifiableSet());
+        if (enabled) {
+            log.info("Metric pre-aggregation enabled: {}s windows for {} projects and metrics {}",
+                    windowSeconds, projectIds.size(), metricNames);
+        }
+    }
+
+    /**
+     * Folds the point into its window when its project or metric is opted in. Histogram points
+     * merge bucket by bucket; counters are never folded, since rates need their raw samples.
+     *
+     * @return true if the point was absorbed, false if it should be written as a raw sample
+     */
+    public boolean offer(Metric metric) {
+        if (!enabled || metric.getKind() == MetricKind.COUNTER || !isPreAggregated(metric)) {
+            return false;
+        }
+
+        long windowStart = Math.floorDiv(metric.getTimestamp().getEpochSecond(), windowSeconds) * windowSeconds;
+        WindowKey key = new WindowKey(metric.getProjectId(), metric.getServiceId(), metric.getMetricName(),
+                normalizeTags(metric.getTags()), windowStart);
+
+        if (openWindows.size() >= maxOpenWindows && !openWindows.containsKey(key)) {
+            // Cardinality guard: new series past the limit are written raw
+            return false;
+        }
+
+        openWindows.compute(key, (k, accumulator) -> {
+            WindowAccumulator target = accumulator != null ? accumulator : new WindowAccumulator();
+            if (metric.isHistogram()) {
+                target.add(metric.getHistogram());
+            } else {
+                target.add(metric.getValue());
+            }
+            return target;
+        });
+        return true;
+    }
+
+    /**
+     * Writes windows that ended more than the grace period ago; late points for a flushed
+     * window start a new row for the same window, which queries add up like any other.
+     *
+     * @return the windows that could not be written
+     */
+    public List<MetricWindow> flushClosedWindows() {
+        long cutoff = Instant.now().getEpochSecond() - windowSeconds - graceSeconds;
+        return flush(key -> key.windowStartSeconds() <= cutoff);
+    }
+
+    public List<MetricWindow> flushAll() {
+        return flush(key -> true);
+    }
+
+    private List<MetricWindow> flush(Predicate<WindowKey> closed) {
+        List<MetricWindow> windows = new ArrayList<>();
+        for (WindowKey key : openWindows.keySet()) {
+            if (!closed.test(key)) {
+                continue;
+            }
+            openWindows.computeIfPresent(key, (k, accumulator) -> {
+                windows.add(accumulator.toWindow(k));
+                return null;
+            });
+        }
+
+        List<MetricWindow> failed = new ArrayList<>();
+        for (int from = 0; from < windows.size(); from += flushBatchSize) {
+            List<MetricWindow> chunk = windows.subList(from, Math.min(from + flushBatchSize, windows.size()));
+            try {
+                metricIngestionService.ingestWindows(chunk);
+            } catch (Exception e) {
+                long points = chunk.stream().mapToLong(MetricWindow::getCount).sum();
+                log.error("Error writing {} metric windows ({} points)", chunk.size(), points, e);
+                failed.addAll(chunk);
+            }
+        }
+        return failed;
+    }
+
+    private boolean isPreAggregated(Metric metric) {
+        return projectIds.contains(metric.getProjectId()) || metricNames.contains(metric.getMetricName());
+    }
+
+    private static Map<String, String> normalizeTags(Map<String, String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> sorted = new TreeMap<>();
+        tags.forEach((key, value) -> {
+            if (key != null && value != null) {
+                sorted.put(key, value);
+            }
+        });
+        return sorted;
+    }
+}
@@ -0,0 +1,101 @@
+package com.asre.asre.application.ingestion;
+
+import java.util.Arrays;
+
+/**
+ * Log-spaced value histogram with the bucketing of a UddSketch at 0.5% relative error
+ * (the metric_rollup_* sketch parameters). Bucket i holds magnitudes in (gamma^(i-1), gamma^i]
+ * and is represented by 2 * gamma^i / (gamma + 1), so rebuilding a sketch from the
+ * representatives lands every value in the bucket it came from. Negative values are bucketed
+ * by magnitude; zeros are counted separately. Not thread-safe.
+ */
+class QuantileBuckets {
+
+    static final double RELATIVE_ERROR = 0.005;
+
+    private static final double GAMMA = (1 + RELATIVE_ERROR) / (1 - RELATIVE_ERROR);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private final Buckets positive = new Buckets();
+    private final Buckets negative = new Buckets();
+    private long zeroCount;
+
+    void add(double value, long count) {
+        if (value > 0) {
+            positive.increment(indexOf(value), count);
+        } else if (value < 0) {
+            negative.increment(indexOf(-value), count);
+        } else {
+            zeroCount += count;
+        }
+    }
+
+    /**
+     * Bucket representatives, ascending; pairs with {@link #counts()}.
+     */
+    double[] values() {
+        double[] values = new double[negative.size + (zeroCount > 0 ? 1 : 0) + positive.size];
+        int i = 0;
+        for (int b = negative.size - 1; b >= 0; b--) {
+            values[i++] = -representative(negative.keys[b]);
+        }
+        if (zeroCount > 0) {
+            values[i++] = 0.0;
+        }
+        for (int b = 0; b < positive.size; b++) {
+            values[i++] = representative(positive.keys[b]);
+        }
+        return values;
+    }
+
+    long[] counts() {
+        long[] counts = new long[negative.size + (zeroCount > 0 ? 1 : 0) + positive.size];
+        int i = 0;
+        for (int b = negative.size - 1; b >= 0; b--) {
+            counts[i++] = negative.counts[b];
+        }
+        if (zeroCount > 0) {
+            counts[i++] = zeroCount;
+        }
+        for (int b = 0; b < positive.size; b++) {
+            counts[i++] = positive.counts[b];
+        }
+        return counts;
+    }
+
+    private static int indexOf(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+    }
+
+    private static double representative(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+    /**
+     * Sorted bucket indexes with their counts. A window of one series rarely spans more than
+     * a few dozen buckets, so a binary-searched array beats a map.
+     */
+    private static final class Buckets {
+        private int[] keys = new int[8];
+        private long[] counts = new long[8];
+        private int size;
+
+        void increment(int key, long count) {
+            int pos = Arrays.binarySearch(keys, 0, size, key);
+            if (pos >= 0) {
+                counts[pos] += count;
+                return;
+            }
+            pos = -pos - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+            System.arraycopy(counts, pos, counts, pos + 1, size - pos);
+            keys[pos] = key;
+            counts[pos] = count;
+            size++;
+        }
+    }
+}
@@ -1,26 +1,37 @@
 package com.asre.asre.application.logs;
 
 import com.asre.asre.domain.ingestion.LogEntry;
+import com.asre.asre.domain.logs.LogLevel;
 import com.asre.asre.domain.logs.LogSamplingPolicy;
 import com.asre.asre.domain.logs.LogSamplingPolicyRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Application service for log sampling.
  * Applies domain sampling policies to log entries.
+ * Policies are cached in memory per node and not invalidated on change, so a policy
+ * saved to the repository takes effect on each node within the cache TTL.
+ * Decisions are a hash of the trace ID (or log ID), so every log of a trace is kept
+ * or dropped together.
  */
 @Service
 @RequiredArgsConstructor
 public class LogSamplingService {
 
     private final LogSamplingPolicyRepository policyRepository;
-    private final Random random = new Random();
+
+    private final ConcurrentHashMap<UUID, CachedPolicy> policyCache = new ConcurrentHashMap<>();
+
+    @Value("${ingestion.sampling.policy-cache-ttl-seconds:60}")
+    private long policyCacheTtlSeconds;
 
     /**
      * Apply sampling policy to a list of log entries.
@@ -32,36 +43,46 @@ public class LogSamplingService {
         }
 
         // Get sampling policy for project (or default)
-        LogSamplingPolicy policy = policyRepository.findByProjectId(projectId);
+        LogSamplingPolicy policy = getPolicy(projectId);
 
-        return logEntries.stream()
-                .map(logEntry -> {
-                    double samplingRate = policy.getSamplingRate(
-                            logEntry.getServiceId(),
-                            logEntry.getLevel()
-                    );
-                    
-                    boolean shouldKeep = shouldKeepLog(samplingRate);
-                    logEntry.setSampled(!shouldKeep || samplingRate < 1.0);
-                    
-                    return shouldKeep ? logEntry : null;
-                })
-                .filter(java.util.Objects::nonNull)
-                .collect(Collectors.toList());
+        List<LogEntry> kept = new ArrayList<>(logEntries.size());
+        for (LogEntry logEntry : logEntries) {
+            CharSequence key = logEntry.getTraceId() != null
+                    ? logEntry.getTraceId()
+                    : logEntry.getOrCreateLogId().getValue();
+            if (policy.shouldKeep(logEntry.getServiceId(), logEntry.getLevel(), LogSamplingPolicy.hashKey(key))) {
+                logEntry.setSampled(policy.getSamplingRate(logEntry.getServiceId(), logEntry.getLevel()) < 1.0);
+                kept.add(logEntry);
+            }
+        }
+        return kept;
     }
 
     /**
-     * Determine if a log should be kept based on sampling rate.
+     * Get the sampling policy for a project (or the default policy), served from cache.
      */
-    private boolean shouldKeepLog(double samplingRate) {
-        if (samplingRate >= 1.0) {
-            return true; // 100% - keep all
+    public LogSamplingPolicy getPolicy(UUID projectId) {
+        long now = System.nanoTime();
+        CachedPolicy cached = policyCache.get(projectId);
+        if (cached == null || now - cached.loadedAtNanos() > policyCacheTtlSeconds * 1_000_000_000L) {
+            cached = new CachedPolicy(policyRepository.findByProjectId(projectId), now);
+            policyCache.put(projectId, cached);
         }
-        if (samplingRate <= 0.0) {
-            return false; // 0% - keep none
-        }
-        return random.nextDouble() < samplingRate;
+        return cached.policy();
     }
-}
 
+    /**
+     * Decide whether a single log should be kept under the given policy.
+     * Used by edge sampling before logs are enqueued, where untraced logs have no ID yet;
+     * those fall back to a thread-local random draw.
+     */
+    public boolean shouldKeep(LogSamplingPolicy policy, UUID serviceId, LogLevel level, String traceId) {
+        long keyHash = traceId != null
+                ? LogSamplingPolicy.hashKey(traceId)
+                : ThreadLocalRandom.current().nextLong();
+        return policy.shouldKeep(serviceId, level, keyHash);
+    }
 
+    private record CachedPolicy(LogSamplingPolicy policy, long loadedAtNanos) {
+    }
+}
@@ -2,7 +2,10 @@ package com.asre.asre.application.metrics;
 
 import com.asre.asre.domain.metrics.*;
 
-import java.util.Optional;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Application-level port for caching metric query results.
@@ -11,35 +14,34 @@ import java.util.Optional;
  */
 public interface MetricCachePort {
     /**
-     * Get a cached metric query result.
-     * Cache key is derived from the query object internally.
+     * Get a cached metric query result, computing and caching it with the loader when absent
+     * or due for refresh. Cache key and TTL are derived from the query internally; concurrent
+     * misses across nodes are collapsed into one load while the others serve the previous value.
      */
-    Optional<MetricQueryResult> get(MetricQuery query);
+    MetricQueryResult getOrLoad(MetricQuery query, Supplier<MetricQueryResult> loader);
 
     /**
-     * Put a metric query result in cache.
-     * TTL is calculated based on query characteristics internally.
+     * Get cached per-bucket fragments of the query's series (its metric, aggregation, rollup,
+     * service and tag filters, independent of the time range).
+     * Buckets without a fragment are absent from the map; buckets cached as empty map to a
+     * point with a null value.
      */
-    void put(MetricQuery query, MetricQueryResult result);
+    Map<Instant, TimeSeriesPoint> getFragments(MetricQuery query, List<Instant> bucketStarts);
 
     /**
-     * Get a cached multi-metric query result.
+     * Put fragments of closed buckets, one point per bucket (null value for empty buckets).
+     * Closed buckets never change, so fragments are shared by every range that covers them;
+     * empty buckets are kept only briefly, in case late points still arrive.
      */
-    Optional<MultiMetricQueryResult> getMulti(MultiMetricQuery query);
+    void putFragments(MetricQuery query, List<TimeSeriesPoint> buckets);
 
     /**
-     * Put a multi-metric query result in cache.
+     * Get a cached multi-metric query result, loading it like {@link #getOrLoad}.
      */
-    void putMulti(MultiMetricQuery query, MultiMetricQueryResult result);
+    MultiMetricQueryResult getOrLoadMulti(MultiMetricQuery query, Supplier<MultiMetricQueryResult> loader);
 
     /**
-     * Get a cached histogram result.
+     * Get a cached histogram result, loading it like {@link #getOrLoad}.
      */
-    Optional<HistogramResult> getHistogram(HistogramQuery query);
-
-    /**
-     * Put a histogram result in cache.
-     */
-    void putHistogram(HistogramQuery query, HistogramResult result);
+    HistogramResult getOrLoadHistogram(HistogramQuery query, Supplier<HistogramResult> loader);
 }
-
@@ -1,11 +1,20 @@
 package com.asre.asre.application.metrics;
 
+import com.asre.asre.application.ingestion.IngestionBacklogPort;
+import com.asre.asre.application.ingestion.IngestionPipeline;
 import com.asre.asre.domain.metrics.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Application service for metrics querying.
@@ -21,6 +30,32 @@ public class MetricsQueryService {
     private final MetricCachePort cache;
     private final AnomalyDetectorPort anomalyDetector;
     private final AnomalyDetectionResultRepository anomalyRepository;
+    private final QueryMetricsCollectorPort queryMetrics;
+    private final IngestionBacklogPort ingestionBacklog;
+
+    // Identical concurrent queries (e.g. a dashboard opened by many people at once) share one execution
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    /**
+     * Origin of time_bucket for timestamptz (a Monday at midnight UTC), so bucket starts
+     * computed here match the database's buckets for every period.
+     */
+    private static final Instant BUCKET_ORIGIN = Instant.parse("2000-01-03T00:00:00Z");
+
+    // Contiguous runs of missing buckets fetched separately; beyond this one query spans them all
+    private static final int MAX_FRAGMENT_FETCHES = 4;
+
+    @Value("${metrics.query.fragment-cache.enabled:true}")
+    private boolean fragmentCacheEnabled;
+
+    @Value("${metrics.query.fragment-cache.settle-seconds:60}")
+    private long fragmentSettleSeconds;
+
+    @Value("${metrics.query.fragment-cache.max-queue-depth:100}")
+    private long fragmentMaxQueueDepth;
+
+    @Value("${metrics.query.fragment-cache.max-buckets:5000}")
+    private int maxFragmentBuckets;
 
     /**
      * Execute a single metric query with caching.
@@ -29,15 +64,105 @@ public class MetricsQueryService {
         // Validate query at domain level
         query.getTimeRange().validateBounds(90); // Max 90 days
 
-        // Try cache first - cache handles key generation internally
-        return cache.get(query)
-                .orElseGet(() -> {
-                    // Cache miss - execute query
-                    MetricQueryResult result = queryRepository.executeQuery(query);
-                    // Cache the result - TTL calculation handled by cache implementation
-                    cache.put(query, result);
-                    return result;
-                });
+        if (fragmentCacheEnabled && !query.isGrouped()) {
+            List<Instant> buckets = bucketStarts(query);
+            if (buckets.size() <= maxFragmentBuckets) {
+                return queryFromFragments(query, buckets);
+            }
+        }
+
+        // Try cache first - cache handles key generation, TTL and refresh internally
+        return cache.getOrLoad(query,
+                () -> executeCoalesced("single", query, () -> queryRepository.executeQuery(query)));
+    }
+
+    /**
+     * Serves a sliding-window query from per-bucket fragments: closed buckets come from the
+     * cache, and only missing runs of buckets plus the open tail are read from the database.
+     * Buckets count as closed once they ended more than the settle delay ago, which leaves
+     * time for late points and pre-aggregated windows to land. While the metrics queue has a
+     * backlog, points may land later than that, so no new fragments are cached then.
+     * Every bucket is aggregated over its full width, including the first one of an unaligned range.
+     */
+    private MetricQueryResult queryFromFragments(MetricQuery query, List<Instant> buckets) {
+        Duration period = query.getRollupPeriod().getDuration();
+        Instant closedBefore = Instant.now().minusSeconds(fragmentSettleSeconds);
+        List<Instant> closed = buckets.stream()
+                .filter(bucket -> !bucket.plus(period).isAfter(closedBefore))
+                .toList();
+
+        Map<Instant, TimeSeriesPoint> cached = closed.isEmpty() ? Map.of() : cache.getFragments(query, closed);
+
+        // Runs of consecutive buckets that have to be read, as [first, last] bucket starts
+        List<Instant[]> runs = new ArrayList<>();
+        Instant[] run = null;
+        for (Instant bucket : buckets) {
+            if (cached.containsKey(bucket)) {
+                run = null;
+            } else if (run == null) {
+                run = new Instant[]{bucket, bucket};
+                runs.add(run);
+            } else {
+                run[1] = bucket;
+            }
+        }
+        if (runs.size() > MAX_FRAGMENT_FETCHES) {
+            runs = List.<Instant[]>of(new Instant[]{runs.get(0)[0], runs.get(runs.size() - 1)[1]});
+        }
+
+        Map<Instant, TimeSeriesPoint> fetched = new HashMap<>();
+        for (Instant[] missing : runs) {
+            // Bucket ranges are half-open; the repository's end bound is inclusive
+            Instant end = missing[1].plus(period).minusNanos(1000);
+            if (end.isAfter(query.getTimeRange().getEndTime())) {
+                end = query.getTimeRange().getEndTime();
+            }
+            MetricQuery runQuery = query.withTimeRange(new TimeRange(missing[0], end));
+            executeCoalesced("fragment", runQuery, () -> queryRepository.executeQuery(runQuery)).getDataPoints()
+                    .forEach(point -> fetched.put(point.getTimestamp(), point));
+        }
+
+        List<TimeSeriesPoint> fresh = closed.stream()
+                .filter(bucket -> !cached.containsKey(bucket))
+                .map(bucket -> fetched.getOrDefault(bucket, new TimeSeriesPoint(bucket, null)))
+                .toList();
+        if (!fresh.isEmpty() && !hasIngestBacklog()) {
+            cache.putFragments(query, fresh);
+        }
+
+        List<TimeSeriesPoint> dataPoints = new ArrayList<>();
+        for (Instant bucket : buckets) {
+            TimeSeriesPoint point = cached.containsKey(bucket) ? cached.get(bucket) : fetched.get(bucket);
+            if (point != null && point.getValue() != null) {
+                dataPoints.add(point);
+            }
+        }
+        return new MetricQueryResult(query.getMetricName(), query.getAggregationType(), dataPoints, List.of());
+    }
+
+    /**
+     * True while more metric messages are queued than fragments tolerate; an unknown depth
+     * (queue not observed yet) does not count as a backlog.
+     */
+    private boolean hasIngestBacklog() {
+        return ingestionBacklog.getQueueDepth(IngestionPipeline.METRICS.getQueueName()) > fragmentMaxQueueDepth;
+    }
+
+    /**
+     * Starts of the buckets covering the query range, up to now.
+     */
+    private List<Instant> bucketStarts(MetricQuery query) {
+        long periodMillis = query.getRollupPeriod().getDuration().toMillis();
+        long origin = BUCKET_ORIGIN.toEpochMilli();
+        long start = query.getTimeRange().getStartTime().toEpochMilli();
+        long end = Math.min(query.getTimeRange().getEndTime().toEpochMilli(), System.currentTimeMillis());
+
+        List<Instant> buckets = new ArrayList<>();
+        long bucket = origin + Math.floorDiv(start - origin, periodMillis) * periodMillis;
+        for (; bucket <= end && buckets.size() <= maxFragmentBuckets; bucket += periodMillis) {
+            buckets.add(Instant.ofEpochMilli(bucket));
+        }
+        return buckets;
     }
 
     /**
@@ -47,12 +172,8 @@ public class MetricsQueryService {
         // Validate query
         query.getTimeRange().validateBounds(90);
 
-        return cache.getMulti(query)
-                .orElseGet(() -> {
-                    MultiMetricQueryResult result = queryRepository.executeMultiQuery(query);
-                    cache.putMulti(query, result);
-                    return result;
-                });
+        return cache.getOrLoadMulti(query,
+                () -> executeCoalesced("multi", query, () -> queryRepository.executeMultiQuery(query)));
     }
 
     /**
@@ -61,12 +182,21 @@ public class MetricsQueryService {
     public HistogramResult queryHistogram(HistogramQuery query) {
         query.getTimeRange().validateBounds(30); // Histograms limited to 30 days
 
-        return cache.getHistogram(query)
-                .orElseGet(() -> {
-                    HistogramResult result = queryRepository.executeHistogramQuery(query);
-                    cache.putHistogram(query, result);
-                    return result;
-                });
+        return cache.getOrLoadHistogram(query,
+                () -> executeCoalesced("histogram", query, () -> queryRepository.executeHistogramQuery(query)));
+    }
+
+    /**
+     * Runs the query unless an equal one is already in flight, in which case its result is shared.
+     */
+    private <T> T executeCoalesced(String queryType, Object query, Supplier<T> execution) {
+        SingleFlight.Result<T> result = singleFlight.execute(query, execution);
+        if (result.coalesced()) {
+            queryMetrics.recordQueryCoalesced(queryType);
+        } else {
+            queryMetrics.recordQueryExecuted(queryType);
+        }
+        return result.value();
     }
 
     /**
@@ -98,7 +228,7 @@ public class MetricsQueryService {
                 query.getMetricName());
 
         // Store results
-        results.forEach(anomalyRepository::save);
+        anomalyRepository.saveAll(results);
 
         return results;
     }
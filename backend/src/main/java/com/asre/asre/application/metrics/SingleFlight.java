@@ -0,0 +1,53 @@
+package com.asre.asre.application.metrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * In-process request coalescing: while a call for a key is running, callers with an equal key
+ * wait for its result (or exception) instead of running their own. Keys are the query value
+ * objects, whose equality covers every parameter. Nothing is kept once the call completes.
+ */
+class SingleFlight {
+
+    private final ConcurrentHashMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Outcome of a call; coalesced is true if the result came from another caller's execution.
+     */
+    record Result<T>(T value, boolean coalesced) {
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> Result<T> execute(Object key, Supplier<T> call) {
+        CompletableFuture<Object> own = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            return new Result<>((T) await(running), true);
+        }
+
+        try {
+            T value = call.get();
+            own.complete(value);
+            return new Result<>(value, false);
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -2,12 +2,21 @@ package com.asre.asre.application.service;
 
 import com.asre.asre.domain.service.Service;
 import com.asre.asre.domain.service.ServiceRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Application service for service auto-discovery.
@@ -20,6 +29,87 @@ public class ServiceDiscoveryService {
 
     private final ServiceRepository serviceRepository;
 
+    @Value("${ingestion.service-discovery.known-services-max:100000}")
+    private long knownServicesMax;
+
+    @Value("${ingestion.service-discovery.known-services-ttl-minutes:60}")
+    private long knownServicesTtlMinutes;
+
+    /**
+     * Services already known to exist for a project. Hits skip the database entirely; entries
+     * expire so deleted services are looked up again.
+     */
+    private Cache<ServiceKey, Boolean> knownServices;
+
+    /**
+     * Latest last_seen_at per service, written behind in one batch by {@link #flushLastSeen()}.
+     */
+    private final ConcurrentHashMap<UUID, Instant> pendingLastSeen = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void initKnownServices() {
+        knownServices = Caffeine.newBuilder()
+                .maximumSize(knownServicesMax)
+                .expireAfterWrite(Duration.ofMinutes(knownServicesTtlMinutes))
+                .build();
+    }
+
+    /**
+     * Records that a service was seen in ingested telemetry.
+     * Known services only update an in-memory last_seen_at; unknown ones are looked up once,
+     * and only services that do not exist yet take the synchronous insert path.
+     */
+    public void recordServiceSeen(UUID projectId, UUID serviceId, String serviceName) {
+        ServiceKey key = new ServiceKey(projectId, serviceId);
+        if (knownServices.getIfPresent(key) != null) {
+            markSeen(serviceId);
+            return;
+        }
+
+        Optional<Service> existing = serviceRepository.findById(serviceId);
+        if (existing.isPresent()) {
+            existing.get().ensureBelongsToProject(projectId);
+            markSeen(serviceId);
+        } else {
+            registerService(projectId, serviceId, serviceName);
+        }
+        knownServices.put(key, Boolean.TRUE);
+    }
+
+    /**
+     * Writes coalesced last_seen_at updates in one batched UPDATE.
+     */
+    public void flushLastSeen() {
+        if (pendingLastSeen.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, Instant> batch = new HashMap<>();
+        for (UUID serviceId : pendingLastSeen.keySet()) {
+            Instant lastSeen = pendingLastSeen.remove(serviceId);
+            if (lastSeen != null) {
+                batch.put(serviceId, lastSeen);
+            }
+        }
+
+        try {
+            serviceRepository.updateLastSeen(batch);
+            log.debug("Flushed last_seen_at for {} services", batch.size());
+        } catch (Exception e) {
+            // Put the timestamps back so the next flush retries them
+            batch.forEach(this::mergeLastSeen);
+            throw e;
+        }
+    }
+
+    private void markSeen(UUID serviceId) {
+        mergeLastSeen(serviceId, Instant.now());
+    }
+
+    private void mergeLastSeen(UUID serviceId, Instant lastSeen) {
+        pendingLastSeen.merge(serviceId, lastSeen, (current, candidate) -> current.isAfter(candidate) ? current : candidate);
+    }
+
     /**
      * Discover and register a service if it doesn't exist.
      * This is called during metric/log ingestion.
@@ -48,16 +138,7 @@ public class ServiceDiscoveryService {
                         service.updateLastSeen();
                         return serviceRepository.save(service);
                     })
-                    .orElseGet(() -> {
-                        // Service ID provided but not found - create new with that ID
-                        log.info("Service ID {} provided but not found, creating new service with name {}", 
-                                serviceId, serviceName);
-                        Service newService = Service.create(projectId, serviceName);
-                        // Set the provided ID
-                        newService.setId(serviceId);
-                        newService.setLastSeenAt(Instant.now());
-                        return serviceRepository.save(newService);
-                    });
+                    .orElseGet(() -> registerService(projectId, serviceId, serviceName));
         }
 
         // No serviceId provided - try to find by name
@@ -69,11 +150,24 @@ public class ServiceDiscoveryService {
                 .orElseGet(() -> createNewService(projectId, serviceName));
     }
 
+    /**
+     * Creates a service under the ID given in telemetry, once a lookup found none.
+     */
+    private Service registerService(UUID projectId, UUID serviceId, String serviceName) {
+        log.info("Service ID {} provided but not found, creating new service with name {}", serviceId, serviceName);
+        Service newService = Service.create(projectId, serviceName);
+        newService.setId(serviceId);
+        newService.setLastSeenAt(Instant.now());
+        return serviceRepository.save(newService);
+    }
+
     private Service createNewService(UUID projectId, String serviceName) {
         Service service = Service.create(projectId, serviceName);
         Service saved = serviceRepository.save(service);
         log.info("Auto-discovered new service: {} for project {}", serviceName, projectId);
         return saved;
     }
-}
 
+    private record ServiceKey(UUID projectId, UUID serviceId) {
+    }
+}
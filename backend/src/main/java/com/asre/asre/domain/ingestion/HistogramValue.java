@@ -0,0 +1,146 @@
+package com.asre.asre.domain.ingestion;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Distribution of one histogram point, normalized to non-empty buckets in ascending order:
+ * bucketCounts[i] observations fell into the bucket represented by bucketValues[i].
+ * Explicit-bucket histograms are represented by bucket midpoints, exponential histograms by
+ * a point inside each log-spaced bucket; open-ended and edge buckets are clamped to min/max.
+ */
+@Value
+public class HistogramValue {
+    long count;
+    double sum;
+    double min;
+    double max;
+    double[] bucketValues;
+    long[] bucketCounts;
+
+    /**
+     * Builds a histogram from explicit upper bounds: counts[i] observations in (bounds[i-1], bounds[i]],
+     * with one more count for the overflow bucket above the last bound.
+     * A missing sum is estimated from the bucket representatives; missing min/max from the
+     * outermost non-empty buckets.
+     */
+    public static HistogramValue ofExplicitBuckets(List<Double> bounds, List<Long> counts,
+                                                   Double sum, Double min, Double max) {
+        if (bounds == null || counts == null || counts.size() != bounds.size() + 1) {
+            throw new IllegalArgumentException("Histogram needs one more bucket count than bounds");
+        }
+        for (int i = 1; i < bounds.size(); i++) {
+            if (!(bounds.get(i) > bounds.get(i - 1))) {
+                throw new IllegalArgumentException("Histogram bounds must be strictly increasing");
+            }
+        }
+
+        Buckets buckets = new Buckets();
+        for (int i = 0; i < counts.size(); i++) {
+            double value;
+            if (bounds.isEmpty()) {
+                value = sum != null && totalOf(counts) > 0 ? sum / totalOf(counts) : 0.0;
+            } else if (i == 0) {
+                value = min != null ? Math.min(min, bounds.get(0)) : bounds.get(0);
+            } else if (i == bounds.size()) {
+                value = max != null ? Math.max(max, bounds.get(i - 1)) : bounds.get(i - 1);
+            } else {
+                value = (bounds.get(i - 1) + bounds.get(i)) / 2;
+            }
+            buckets.add(value, counts.get(i));
+        }
+        return buckets.toHistogram(sum, min, max);
+    }
+
+    /**
+     * Builds a histogram from OpenTelemetry-style exponential buckets: with
+     * base = 2^(2^-scale), positive bucket (offset + i) holds values in (base^(offset+i), base^(offset+i+1)],
+     * negative buckets mirror them, and zeroCount values are zero.
+     */
+    public static HistogramValue ofExponentialBuckets(int scale, long zeroCount,
+                                                      int positiveOffset, List<Long> positiveCounts,
+                                                      int negativeOffset, List<Long> negativeCounts,
+                                                      Double sum, Double min, Double max) {
+        if (scale < -10 || scale > 20) {
+            throw new IllegalArgumentException("Exponential histogram scale must be within [-10, 20]");
+        }
+        Buckets buckets = new Buckets();
+        List<Long> negatives = negativeCounts != null ? negativeCounts : List.of();
+        for (int i = negatives.size() - 1; i >= 0; i--) {
+            buckets.add(-representative(scale, negativeOffset + i), negatives.get(i));
+        }
+        buckets.add(0.0, zeroCount);
+        List<Long> positives = positiveCounts != null ? positiveCounts : List.of();
+        for (int i = 0; i < positives.size(); i++) {
+            buckets.add(representative(scale, positiveOffset + i), positives.get(i));
+        }
+        return buckets.toHistogram(sum, min, max);
+    }
+
+    public boolean isValid() {
+        return count > 0
+                && bucketValues != null && bucketCounts != null
+                && bucketValues.length == bucketCounts.length
+                && bucketValues.length > 0
+                && Double.isFinite(sum) && Double.isFinite(min) && Double.isFinite(max)
+                && min <= max;
+    }
+
+    /**
+     * Point inside (base^index, base^(index+1)]: 2 * base^(index+1) / (base + 1), computed as a
+     * power of two because base itself overflows at the coarsest scales (2^1024 at scale -10).
+     * Buckets reaching past the double range are represented by the largest or smallest double.
+     */
+    private static double representative(int scale, int index) {
+        double width = Math.pow(2, -scale);
+        double log2 = index * width + 1 - Math.log1p(Math.pow(2, -width)) / Math.log(2);
+        return Math.max(Double.MIN_VALUE, Math.min(Double.MAX_VALUE, Math.pow(2, log2)));
+    }
+
+    private static long totalOf(List<Long> counts) {
+        long total = 0;
+        for (Long count : counts) {
+            total += count != null ? count : 0;
+        }
+        return total;
+    }
+
+    private static final class Buckets {
+        private final List<Double> values = new ArrayList<>();
+        private final List<Long> counts = new ArrayList<>();
+
+        void add(double value, Long count) {
+            if (count == null || count == 0) {
+                return;
+            }
+            if (count < 0) {
+                throw new IllegalArgumentException("Histogram bucket counts must not be negative");
+            }
+            values.add(value);
+            counts.add(count);
+        }
+
+        HistogramValue toHistogram(Double sum, Double min, Double max) {
+            if (values.isEmpty()) {
+                throw new IllegalArgumentException("Histogram has no observations");
+            }
+            double low = min != null ? min : values.get(0);
+            double high = max != null ? max : values.get(values.size() - 1);
+
+            long total = 0;
+            double estimatedSum = 0;
+            double[] bucketValues = new double[values.size()];
+            long[] bucketCounts = new long[counts.size()];
+            for (int i = 0; i < bucketValues.length; i++) {
+                // Representatives never fall outside the observed range
+                bucketValues[i] = Math.max(low, Math.min(high, values.get(i)));
+                bucketCounts[i] = counts.get(i);
+                total += bucketCounts[i];
+                estimatedSum += bucketValues[i] * bucketCounts[i];
+            }
+            return new HistogramValue(total, sum != null ? sum : estimatedSum, low, high, bucketValues, bucketCounts);
+        }
+    }
+}
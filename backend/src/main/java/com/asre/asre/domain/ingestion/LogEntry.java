@@ -23,12 +23,18 @@ public class LogEntry {
     private String traceId;
     private Map<String, Object> context;
     private boolean sampled; // Whether this log was sampled
+    private boolean samplingApplied; // Whether the sampling decision was already made at the edge
 
     public LogEntry(UUID projectId, UUID serviceId, LogLevel level, String message, 
                    Instant timestamp, String traceId, Map<String, Object> context) {
         this(null, projectId, serviceId, level, message, timestamp, traceId, context, false);
     }
 
+    public LogEntry(LogId logId, UUID projectId, UUID serviceId, LogLevel level, String message,
+                   Instant timestamp, String traceId, Map<String, Object> context, boolean sampled) {
+        this(logId, projectId, serviceId, level, message, timestamp, traceId, context, sampled, false);
+    }
+
     public boolean isValid() {
         return projectId != null
                 && serviceId != null
@@ -8,5 +8,10 @@ import java.util.List;
  */
 public interface LogIndexerPort {
     void indexLog(LogEntry logEntry, String logId);
+
+    /**
+     * Indexes a batch of logs using each entry's LogId as the document ID.
+     * Blocks while the search engine applies backpressure.
+     */
     void indexBatch(List<LogEntry> logEntries);
 }
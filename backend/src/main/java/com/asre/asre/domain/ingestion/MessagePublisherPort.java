@@ -1,5 +1,8 @@
 package com.asre.asre.domain.ingestion;
 
+import java.util.List;
+import java.util.UUID;
+
 /**
  * Port for publishing messages to async processing queue.
  * Implementation will be in infrastructure layer.
@@ -7,4 +10,14 @@ package com.asre.asre.domain.ingestion;
 public interface MessagePublisherPort {
     void publishMetricsMessage(String queueName, String message);
     void publishLogsMessage(String queueName, String message);
+
+    /**
+     * Publish one project's metrics as a single batch in the binary batch format.
+     */
+    void publishMetrics(String queueName, UUID projectId, List<Metric> metrics);
+
+    /**
+     * Publish one project's log entries as a single batch in the binary batch format.
+     */
+    void publishLogs(String queueName, UUID projectId, List<LogEntry> logs);
 }
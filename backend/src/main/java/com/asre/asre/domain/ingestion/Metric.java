@@ -18,12 +18,27 @@ public class Metric {
     private Double value;
     private Instant timestamp;
     private Map<String, String> tags;
+    private MetricKind kind = MetricKind.GAUGE;
+    /**
+     * Set for HISTOGRAM points, which carry no single value.
+     */
+    private HistogramValue histogram;
+
+    public Metric(UUID projectId, UUID serviceId, String metricName, Double value, Instant timestamp,
+                  Map<String, String> tags) {
+        this(projectId, serviceId, metricName, value, timestamp, tags, MetricKind.GAUGE, null);
+    }
+
+    public boolean isHistogram() {
+        return kind == MetricKind.HISTOGRAM;
+    }
 
     public boolean isValid() {
         return projectId != null
                 && serviceId != null
                 && metricName != null && !metricName.isBlank()
-                && value != null
+                && kind != null
+                && (isHistogram() ? histogram != null && histogram.isValid() : value != null)
                 && timestamp != null;
     }
 }
@@ -0,0 +1,28 @@
+package com.asre.asre.domain.ingestion;
+
+/**
+ * Kind of a reported metric point, which decides how it is stored and aggregated.
+ * Gauges and counters carry a single value (counters are cumulative and queried as a rate);
+ * histograms carry a bucketed distribution of many observations.
+ */
+public enum MetricKind {
+    GAUGE,
+    COUNTER,
+    HISTOGRAM;
+
+    /**
+     * Parse a string to MetricKind (case-insensitive); null or blank means GAUGE.
+     *
+     * @throws IllegalArgumentException if string doesn't match any kind
+     */
+    public static MetricKind fromString(String kind) {
+        if (kind == null || kind.isBlank()) {
+            return GAUGE;
+        }
+        try {
+            return MetricKind.valueOf(kind.toUpperCase().trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid metric kind: " + kind, e);
+        }
+    }
+}
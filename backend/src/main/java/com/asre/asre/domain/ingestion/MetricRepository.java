@@ -4,4 +4,6 @@ import java.util.List;
 
 public interface MetricRepository {
     void saveBatch(List<Metric> metrics);
+
+    void saveWindows(List<MetricWindow> windows);
 }
@@ -0,0 +1,50 @@
+package com.asre.asre.domain.ingestion;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Points of one series folded into a fixed time window by worker pre-aggregation, or one
+ * client-side histogram point.
+ * The value distribution is carried as bucket representatives and their counts
+ * (sketchValues[i] occurred sketchCounts[i] times), from which the stored sketch is built.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricWindow {
+    private UUID projectId;
+    private UUID serviceId;
+    private String metricName;
+    private Map<String, String> tags;
+    private Instant windowStart;
+    private long count;
+    private double sum;
+    private double min;
+    private double max;
+    private double[] sketchValues;
+    private long[] sketchCounts;
+
+    /**
+     * A client-side histogram point is stored like a window starting at its timestamp.
+     */
+    public static MetricWindow ofHistogram(Metric metric) {
+        HistogramValue histogram = metric.getHistogram();
+        return new MetricWindow(metric.getProjectId(), metric.getServiceId(), metric.getMetricName(),
+                metric.getTags(), metric.getTimestamp(), histogram.getCount(), histogram.getSum(),
+                histogram.getMin(), histogram.getMax(), histogram.getBucketValues(), histogram.getBucketCounts());
+    }
+
+    /**
+     * The window as one histogram point at its start, e.g. to dead-letter it like any other point.
+     */
+    public Metric toHistogramMetric() {
+        return new Metric(projectId, serviceId, metricName, null, windowStart, tags, MetricKind.HISTOGRAM,
+                new HistogramValue(count, sum, min, max, sketchValues, sketchCounts));
+    }
+}
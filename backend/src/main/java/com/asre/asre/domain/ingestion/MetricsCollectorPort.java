@@ -11,9 +11,15 @@ public interface MetricsCollectorPort {
 
     void recordMetricsIngestionDuration(long durationMs);
 
+    void recordMetricWindowsWritten(long count);
+
     void recordLogsIngested(long count);
 
     void recordLogsIngestionError();
 
     void recordLogsIngestionDuration(long durationMs);
+
+    void recordAdmissionDecision(String pipeline, String outcome);
+
+    void recordAdmissionState(String pipeline, int pressureLevel, double flushLatencyMs);
 }
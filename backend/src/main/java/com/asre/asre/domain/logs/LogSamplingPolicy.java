@@ -67,6 +67,41 @@ public class LogSamplingPolicy {
         return defaultRates.getOrDefault(level, 1.0); // Default to 100% if not specified
     }
 
+    /**
+     * Decide whether to keep a log, given a 64-bit hash of its sampling key.
+     * Rates nest (a hash kept at 1% is also kept at 5%), so all logs sharing a key are
+     * kept or dropped together for a given level.
+     */
+    public boolean shouldKeep(UUID serviceId, LogLevel level, long keyHash) {
+        double samplingRate = getSamplingRate(serviceId, level);
+        if (samplingRate >= 1.0) {
+            return true; // 100% - keep all
+        }
+        if (samplingRate <= 0.0) {
+            return false; // 0% - keep none
+        }
+        // Top 53 bits of the hash as a uniform value in [0, 1)
+        return (keyHash >>> 11) * 0x1.0p-53 < samplingRate;
+    }
+
+    /**
+     * Hash a sampling key (trace ID or log ID) without allocating.
+     * FNV-1a over the characters, followed by a 64-bit finalizer for uniform high bits.
+     */
+    public static long hashKey(CharSequence key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
     /**
      * Create a default policy with standard rates.
      * INFO=5%, DEBUG=1%, ERROR=100% (unsampled), others=100%
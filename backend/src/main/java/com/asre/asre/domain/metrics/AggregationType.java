@@ -11,7 +11,11 @@ public enum AggregationType {
     P95("p95"),
     P99("p99"),
     SUM("sum"),
-    COUNT("count");
+    COUNT("count"),
+    /**
+     * Per-second increase of cumulative counters, reset-aware, summed across series.
+     */
+    RATE("rate");
 
     private final String value;
 
@@ -37,6 +41,7 @@ public enum AggregationType {
 
     /**
      * Returns true if this is a percentile aggregation.
+     * Percentiles are estimated from mergeable quantile sketches with at most 0.5% relative error.
      */
     public boolean isPercentile() {
         return this == P50 || this == P95 || this == P99;
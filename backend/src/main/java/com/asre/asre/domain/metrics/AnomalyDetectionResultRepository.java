@@ -12,6 +12,11 @@ public interface AnomalyDetectionResultRepository {
      */
     AnomalyDetectionResult save(AnomalyDetectionResult result);
 
+    /**
+     * Save a batch of anomaly detection results in one round trip.
+     */
+    void saveAll(List<AnomalyDetectionResult> results);
+
     /**
      * Find anomaly detection results for a query.
      */
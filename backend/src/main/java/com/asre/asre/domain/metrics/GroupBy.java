@@ -0,0 +1,52 @@
+package com.asre.asre.domain.metrics;
+
+import lombok.Value;
+
+/**
+ * Value object splitting a metric query into one series per service or per value of a tag.
+ * Parsed from {@code service} or {@code tag:<key>}.
+ */
+@Value
+public class GroupBy {
+    Dimension dimension;
+    String tagKey;
+
+    public enum Dimension {
+        SERVICE,
+        TAG
+    }
+
+    private GroupBy(Dimension dimension, String tagKey) {
+        this.dimension = dimension;
+        this.tagKey = tagKey;
+    }
+
+    public static GroupBy service() {
+        return new GroupBy(Dimension.SERVICE, null);
+    }
+
+    public static GroupBy tag(String tagKey) {
+        if (tagKey == null || tagKey.isBlank()) {
+            throw new InvalidMetricQueryException("Group-by tag key cannot be blank");
+        }
+        return new GroupBy(Dimension.TAG, tagKey.trim());
+    }
+
+    public static GroupBy fromString(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        if (trimmed.equalsIgnoreCase("service")) {
+            return service();
+        }
+        if (trimmed.startsWith("tag:")) {
+            return tag(trimmed.substring("tag:".length()));
+        }
+        throw new InvalidMetricQueryException("groupBy must be 'service' or 'tag:<key>', got: " + value);
+    }
+
+    public String toExpression() {
+        return dimension == Dimension.SERVICE ? "service" : "tag:" + tagKey;
+    }
+}
@@ -15,13 +15,15 @@ public class HistogramQuery {
     TimeRange timeRange;
     int bins;
     Optional<UUID> serviceId;
+    HistogramScale scale;
 
     public HistogramQuery(
             UUID projectId,
             String metricName,
             TimeRange timeRange,
             int bins,
-            UUID serviceId) {
+            UUID serviceId,
+            HistogramScale scale) {
         if (projectId == null) {
             throw new IllegalArgumentException("Project ID cannot be null");
         }
@@ -40,6 +42,16 @@ public class HistogramQuery {
         this.timeRange = timeRange;
         this.bins = bins;
         this.serviceId = Optional.ofNullable(serviceId);
+        this.scale = scale != null ? scale : HistogramScale.LINEAR;
+    }
+
+    public HistogramQuery(
+            UUID projectId,
+            String metricName,
+            TimeRange timeRange,
+            int bins,
+            UUID serviceId) {
+        this(projectId, metricName, timeRange, bins, serviceId, HistogramScale.LINEAR);
     }
 }
 
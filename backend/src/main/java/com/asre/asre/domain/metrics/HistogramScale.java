@@ -0,0 +1,32 @@
+package com.asre.asre.domain.metrics;
+
+/**
+ * Bin spacing of a histogram query. LOG bins grow geometrically between the smallest
+ * positive value and the maximum, which suits latencies; non-positive values are left out.
+ */
+public enum HistogramScale {
+    LINEAR("linear"),
+    LOG("log");
+
+    private final String value;
+
+    HistogramScale(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public static HistogramScale fromString(String value) {
+        if (value == null || value.isBlank()) {
+            return LINEAR;
+        }
+        for (HistogramScale scale : values()) {
+            if (scale.value.equalsIgnoreCase(value.trim())) {
+                return scale;
+            }
+        }
+        throw new IllegalArgumentException("Unknown histogram scale: " + value);
+    }
+}
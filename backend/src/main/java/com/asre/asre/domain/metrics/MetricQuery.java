@@ -2,6 +2,7 @@ package com.asre.asre.domain.metrics;
 
 import lombok.Value;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -18,7 +19,9 @@ public class MetricQuery {
     TimeRange timeRange;
     RollupPeriod rollupPeriod;
     Optional<UUID> serviceId;
-    Optional<Map<String, String>> tags;
+    List<TagFilter> tagFilters;
+    Optional<GroupBy> groupBy;
+    Optional<SeriesLimit> seriesLimit;
 
     public MetricQuery(
             UUID projectId,
@@ -27,7 +30,9 @@ public class MetricQuery {
             TimeRange timeRange,
             RollupPeriod rollupPeriod,
             UUID serviceId,
-            Map<String, String> tags) {
+            List<TagFilter> tagFilters,
+            GroupBy groupBy,
+            SeriesLimit seriesLimit) {
         if (projectId == null) {
             throw new IllegalArgumentException("Project ID cannot be null");
         }
@@ -43,14 +48,49 @@ public class MetricQuery {
         if (rollupPeriod == null) {
             throw new IllegalArgumentException("Rollup period cannot be null");
         }
-        
+        if (seriesLimit != null && groupBy == null) {
+            throw new InvalidMetricQueryException("topK/bottomK requires groupBy");
+        }
+
         this.projectId = projectId;
         this.metricName = metricName.trim();
         this.aggregationType = aggregationType;
         this.timeRange = timeRange;
         this.rollupPeriod = rollupPeriod;
         this.serviceId = Optional.ofNullable(serviceId);
-        this.tags = Optional.ofNullable(tags);
+        this.tagFilters = tagFilters != null ? List.copyOf(tagFilters) : List.of();
+        this.groupBy = Optional.ofNullable(groupBy);
+        this.seriesLimit = Optional.ofNullable(seriesLimit);
+    }
+
+    /**
+     * Query restricted to series carrying all of the given tags.
+     */
+    public MetricQuery(
+            UUID projectId,
+            String metricName,
+            AggregationType aggregationType,
+            TimeRange timeRange,
+            RollupPeriod rollupPeriod,
+            UUID serviceId,
+            Map<String, String> tags) {
+        this(projectId, metricName, aggregationType, timeRange, rollupPeriod, serviceId,
+                tags == null ? null : tags.entrySet().stream()
+                        .map(tag -> TagFilter.equalTo(tag.getKey(), tag.getValue()))
+                        .toList(),
+                null, null);
+    }
+
+    /**
+     * The same query over another time range.
+     */
+    public MetricQuery withTimeRange(TimeRange timeRange) {
+        return new MetricQuery(projectId, metricName, aggregationType, timeRange, rollupPeriod,
+                serviceId.orElse(null), tagFilters, groupBy.orElse(null), seriesLimit.orElse(null));
+    }
+
+    public boolean isGrouped() {
+        return groupBy.isPresent();
     }
 
     public MetricQuery(
@@ -59,7 +99,7 @@ public class MetricQuery {
             AggregationType aggregationType,
             TimeRange timeRange,
             RollupPeriod rollupPeriod) {
-        this(projectId, metricName, aggregationType, timeRange, rollupPeriod, null, null);
+        this(projectId, metricName, aggregationType, timeRange, rollupPeriod, null, null, null, null);
     }
 }
 
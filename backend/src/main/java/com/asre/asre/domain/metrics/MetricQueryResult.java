@@ -6,14 +6,18 @@ import java.util.List;
 
 /**
  * Domain object representing the result of a metric query.
+ * Grouped queries return their series in groups (ranked first for top/bottom-K queries)
+ * and no top-level data points.
  */
 @Value
 public class MetricQueryResult {
     String metricName;
     AggregationType aggregationType;
     List<TimeSeriesPoint> dataPoints;
+    List<SeriesGroup> groups;
 
-    public MetricQueryResult(String metricName, AggregationType aggregationType, List<TimeSeriesPoint> dataPoints) {
+    public MetricQueryResult(String metricName, AggregationType aggregationType, List<TimeSeriesPoint> dataPoints,
+                             List<SeriesGroup> groups) {
         if (metricName == null || metricName.isBlank()) {
             throw new IllegalArgumentException("Metric name cannot be null or blank");
         }
@@ -26,6 +30,7 @@ public class MetricQueryResult {
         this.metricName = metricName;
         this.aggregationType = aggregationType;
         this.dataPoints = List.copyOf(dataPoints); // Immutable copy
+        this.groups = groups != null ? List.copyOf(groups) : List.of();
     }
 }
 
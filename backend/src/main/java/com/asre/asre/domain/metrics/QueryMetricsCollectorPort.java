@@ -0,0 +1,17 @@
+package com.asre.asre.domain.metrics;
+
+/**
+ * Port for collecting metric query execution metrics.
+ * Implementation will be in infrastructure layer.
+ */
+public interface QueryMetricsCollectorPort {
+    /**
+     * A query of the given type (single, multi, histogram, fragment) ran against the database.
+     */
+    void recordQueryExecuted(String queryType);
+
+    /**
+     * A query of the given type was answered by an identical query already in flight.
+     */
+    void recordQueryCoalesced(String queryType);
+}
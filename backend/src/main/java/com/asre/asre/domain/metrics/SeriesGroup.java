@@ -0,0 +1,26 @@
+package com.asre.asre.domain.metrics;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * One series of a grouped metric query: the service ID or tag value it was grouped by
+ * (empty for series without the tag) and its points.
+ */
+@Value
+public class SeriesGroup {
+    String key;
+    List<TimeSeriesPoint> dataPoints;
+
+    public SeriesGroup(String key, List<TimeSeriesPoint> dataPoints) {
+        if (key == null) {
+            throw new IllegalArgumentException("Group key cannot be null");
+        }
+        if (dataPoints == null) {
+            throw new IllegalArgumentException("Data points cannot be null");
+        }
+        this.key = key;
+        this.dataPoints = List.copyOf(dataPoints);
+    }
+}
@@ -0,0 +1,39 @@
+package com.asre.asre.domain.metrics;
+
+import lombok.Value;
+
+/**
+ * Value object keeping only the K grouped series with the highest (TOP) or lowest (BOTTOM)
+ * value of the query's aggregation over the whole time range.
+ */
+@Value
+public class SeriesLimit {
+    public static final int MAX_SERIES = 100;
+
+    Order order;
+    int count;
+
+    public enum Order {
+        TOP,
+        BOTTOM
+    }
+
+    public SeriesLimit(Order order, int count) {
+        if (order == null) {
+            throw new InvalidMetricQueryException("Series limit order cannot be null");
+        }
+        if (count < 1 || count > MAX_SERIES) {
+            throw new InvalidMetricQueryException("Series limit must be between 1 and " + MAX_SERIES + ", got " + count);
+        }
+        this.order = order;
+        this.count = count;
+    }
+
+    public static SeriesLimit top(int count) {
+        return new SeriesLimit(Order.TOP, count);
+    }
+
+    public static SeriesLimit bottom(int count) {
+        return new SeriesLimit(Order.BOTTOM, count);
+    }
+}
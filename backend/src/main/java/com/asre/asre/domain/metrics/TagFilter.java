@@ -0,0 +1,185 @@
+package com.asre.asre.domain.metrics;
+
+import lombok.Value;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Value object restricting a query to series whose tag matches.
+ * Expressions: {@code key=value} (equality), {@code key=[a,b,c]} (any of the values)
+ * and {@code key=~regex} (regular expression, anchored like a full match).
+ * Regexes run inside the database as Postgres AREs, so they are limited to the subset that
+ * Java and Postgres read alike: literals, escaped metacharacters, {@code .}, bracket classes
+ * with ranges, non-capturing and plain groups, alternation and greedy {@code * + ? {m,n}}
+ * quantifiers. Anchors are implied.
+ */
+@Value
+public class TagFilter {
+
+    static final int MAX_REGEX_LENGTH = 256;
+    static final int MAX_REPETITION = 100;
+
+    // Metacharacters that may be escaped with a backslash to match literally
+    private static final String ESCAPABLE = ".^$|?*+()[]{}\\-/";
+
+    String key;
+    Operator operator;
+    List<String> values;
+
+    public enum Operator {
+        EQUALS,
+        IN,
+        REGEX
+    }
+
+    public TagFilter(String key, Operator operator, List<String> values) {
+        if (key == null || key.isBlank()) {
+            throw new InvalidMetricQueryException("Tag filter key cannot be blank");
+        }
+        if (operator == null) {
+            throw new InvalidMetricQueryException("Tag filter operator cannot be null");
+        }
+        if (values == null || values.isEmpty()) {
+            throw new InvalidMetricQueryException("Tag filter on '" + key + "' needs at least one value");
+        }
+        if (operator != Operator.IN && values.size() != 1) {
+            throw new InvalidMetricQueryException("Tag filter on '" + key + "' takes exactly one value");
+        }
+        if (operator == Operator.REGEX) {
+            validateRegex(key, values.get(0));
+        }
+        this.key = key.trim();
+        this.operator = operator;
+        this.values = List.copyOf(values);
+    }
+
+    public static TagFilter equalTo(String key, String value) {
+        return new TagFilter(key, Operator.EQUALS, List.of(value));
+    }
+
+    public static TagFilter parse(String expression) {
+        if (expression == null) {
+            throw new InvalidMetricQueryException("Tag filter cannot be null");
+        }
+        int eq = expression.indexOf('=');
+        if (eq <= 0) {
+            throw new InvalidMetricQueryException("Tag filter must look like key=value, key=[a,b] or key=~regex: " + expression);
+        }
+        String key = expression.substring(0, eq);
+        String rest = expression.substring(eq + 1);
+        if (rest.startsWith("~")) {
+            return new TagFilter(key, Operator.REGEX, List.of(rest.substring(1)));
+        }
+        if (rest.startsWith("[") && rest.endsWith("]")) {
+            List<String> values = Arrays.stream(rest.substring(1, rest.length() - 1).split(","))
+                    .map(String::trim)
+                    .filter(value -> !value.isEmpty())
+                    .toList();
+            return new TagFilter(key, Operator.IN, values);
+        }
+        return equalTo(key, rest);
+    }
+
+    private static void validateRegex(String key, String regex) {
+        if (regex.length() > MAX_REGEX_LENGTH) {
+            throw new InvalidMetricQueryException(
+                    "Regex for tag '" + key + "' is longer than " + MAX_REGEX_LENGTH + " characters");
+        }
+        String unsupported = unsupportedRegexConstruct(regex);
+        if (unsupported != null) {
+            throw new InvalidMetricQueryException("Unsupported regex for tag '" + key + "': " + unsupported);
+        }
+        try {
+            Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw new InvalidMetricQueryException("Invalid regex for tag '" + key + "': " + e.getDescription(), e);
+        }
+    }
+
+    /**
+     * Describes the first construct outside the supported subset, or null if there is none.
+     * Syntax errors inside the subset are left to {@link Pattern#compile}.
+     */
+    private static String unsupportedRegexConstruct(String regex) {
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            switch (c) {
+                case '\\' -> {
+                    if (i + 1 >= regex.length() || ESCAPABLE.indexOf(regex.charAt(i + 1)) < 0) {
+                        return "only metacharacters may be escaped";
+                    }
+                    i++;
+                }
+                case '[' -> {
+                    int end = i + 1;
+                    if (end < regex.length() && regex.charAt(end) == '^') {
+                        end++;
+                    }
+                    // A leading ']' is a literal in both dialects
+                    if (end < regex.length() && regex.charAt(end) == ']') {
+                        end++;
+                    }
+                    while (end < regex.length() && regex.charAt(end) != ']') {
+                        char member = regex.charAt(end);
+                        if (member == '[' || member == '\\' || member == '&') {
+                            return "bracket classes may not contain '" + member + "'";
+                        }
+                        end++;
+                    }
+                    i = end;
+                }
+                case '(' -> {
+                    if (i + 1 < regex.length() && regex.charAt(i + 1) == '?'
+                            && (i + 2 >= regex.length() || regex.charAt(i + 2) != ':')) {
+                        return "only (?:...) groups are supported";
+                    }
+                }
+                case '{' -> {
+                    int end = regex.indexOf('}', i);
+                    if (end < 0 || !regex.substring(i + 1, end).matches("\\d{1,3}(,\\d{0,3})?")) {
+                        return "repetition must look like {m}, {m,} or {m,n}";
+                    }
+                    for (String bound : regex.substring(i + 1, end).split(",")) {
+                        if (Integer.parseInt(bound) > MAX_REPETITION) {
+                            return "repetition bounds may not exceed " + MAX_REPETITION;
+                        }
+                    }
+                    i = end;
+                    if (isLazyOrPossessive(regex, i)) {
+                        return "only greedy quantifiers are supported";
+                    }
+                }
+                case '*', '+', '?' -> {
+                    if (isLazyOrPossessive(regex, i)) {
+                        return "only greedy quantifiers are supported";
+                    }
+                }
+                case '^', '$' -> {
+                    return "anchors are implied";
+                }
+                default -> {
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isLazyOrPossessive(String regex, int quantifierEnd) {
+        int next = quantifierEnd + 1;
+        return next < regex.length() && (regex.charAt(next) == '?' || regex.charAt(next) == '+');
+    }
+
+    /**
+     * Canonical form, e.g. for cache keys; parses back to an equal filter.
+     */
+    public String toExpression() {
+        return switch (operator) {
+            case EQUALS -> key + "=" + values.get(0);
+            case IN -> key + "=[" + String.join(",", values) + "]";
+            case REGEX -> key + "=~" + values.get(0);
+        };
+    }
+}
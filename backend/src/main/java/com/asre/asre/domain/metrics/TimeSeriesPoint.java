@@ -6,6 +6,7 @@ import java.time.Instant;
 
 /**
  * Value object representing a single point in a time series.
+ * The value is null only for empty buckets of gap-filled (aligned) series.
  */
 @Value
 public class TimeSeriesPoint {
@@ -16,9 +17,6 @@ public class TimeSeriesPoint {
         if (timestamp == null) {
             throw new IllegalArgumentException("Timestamp cannot be null");
         }
-        if (value == null) {
-            throw new IllegalArgumentException("Value cannot be null");
-        }
         this.timestamp = timestamp;
         this.value = value;
     }
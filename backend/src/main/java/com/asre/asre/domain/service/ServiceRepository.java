@@ -1,6 +1,8 @@
 package com.asre.asre.domain.service;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -24,6 +26,11 @@ public interface ServiceRepository {
      */
     Service save(Service service);
 
+    /**
+     * Update last_seen_at for many services at once (keyed by service ID).
+     */
+    void updateLastSeen(Map<UUID, Instant> lastSeenByServiceId);
+
     /**
      * Check if a service exists for the given project and name.
      */
@@ -0,0 +1,190 @@
+package com.asre.asre.infra.jdbc;
+
+import com.asre.asre.domain.ingestion.Metric;
+import com.asre.asre.domain.ingestion.MetricWindow;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves (project, service, metric, tag set) identities to compact series IDs in the
+ * metric_series dictionary, creating missing series on first sight.
+ * Resolved IDs are cached in memory; series are never deleted, so cached IDs stay valid.
+ */
+@Component
+@Slf4j
+public class MetricSeriesDictionary {
+
+    private static final String INSERT_MISSING_SQL = """
+            INSERT INTO metric_series (project_id, service_id, metric_name, tags)
+            SELECT project_id, service_id, metric_name, tags::jsonb
+            FROM unnest(?::uuid[], ?::uuid[], ?::text[], ?::text[]) AS t(project_id, service_id, metric_name, tags)
+            ON CONFLICT (project_id, service_id, metric_name, tags) DO NOTHING
+            """;
+
+    private static final String SELECT_IDS_SQL = """
+            SELECT t.ord, s.series_id
+            FROM unnest(?::uuid[], ?::uuid[], ?::text[], ?::text[]) WITH ORDINALITY
+                AS t(project_id, service_id, metric_name, tags, ord)
+            JOIN metric_series s
+              ON s.project_id = t.project_id
+             AND s.service_id = t.service_id
+             AND s.metric_name = t.metric_name
+             AND s.tags = t.tags::jsonb
+            """;
+
+    private final JdbcTemplate timescaleJdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Map<SeriesKey, Long> cache = new ConcurrentHashMap<>();
+
+    @Value("${ingestion.series-cache.max-size:100000}")
+    private int maxCacheSize;
+
+    public MetricSeriesDictionary(@Qualifier("timescaledbJdbcTemplate") JdbcTemplate timescaleJdbcTemplate,
+                                  ObjectMapper objectMapper) {
+        this.timescaleJdbcTemplate = timescaleJdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Identity of a series. Tags are held sorted with null values dropped, so equal tag
+     * sets produce equal keys regardless of the order they arrived in.
+     */
+    public record SeriesKey(UUID projectId, UUID serviceId, String metricName, Map<String, String> tags) {
+        public static SeriesKey of(Metric metric) {
+            return of(metric.getProjectId(), metric.getServiceId(), metric.getMetricName(), metric.getTags());
+        }
+
+        public static SeriesKey of(MetricWindow window) {
+            return of(window.getProjectId(), window.getServiceId(), window.getMetricName(), window.getTags());
+        }
+
+        private static SeriesKey of(UUID projectId, UUID serviceId, String metricName, Map<String, String> rawTags) {
+            Map<String, String> tags = new TreeMap<>();
+            if (rawTags != null) {
+                rawTags.forEach((key, value) -> {
+                    if (key != null && value != null) {
+                        tags.put(key, value);
+                    }
+                });
+            }
+            return new SeriesKey(projectId, serviceId, metricName, tags);
+        }
+    }
+
+    /**
+     * Returns the series ID for every metric in the batch, in the same order.
+     */
+    public long[] resolve(List<Metric> metrics) {
+        return resolveKeys(metrics.stream().map(SeriesKey::of).toList());
+    }
+
+    /**
+     * Returns the series ID for every key, in the same order.
+     */
+    public long[] resolveKeys(List<SeriesKey> keys) {
+        long[] seriesIds = new long[keys.size()];
+        LinkedHashSet<SeriesKey> misses = new LinkedHashSet<>();
+
+        for (SeriesKey key : keys) {
+            if (!cache.containsKey(key)) {
+                misses.add(key);
+            }
+        }
+
+        Map<SeriesKey, Long> resolved = misses.isEmpty() ? Map.of() : lookupOrCreate(new ArrayList<>(misses));
+
+        for (int i = 0; i < keys.size(); i++) {
+            Long seriesId = cache.get(keys.get(i));
+            if (seriesId == null) {
+                seriesId = resolved.get(keys.get(i));
+            }
+            if (seriesId == null) {
+                throw new IllegalStateException("Could not resolve series for metric " + keys.get(i).metricName());
+            }
+            seriesIds[i] = seriesId;
+        }
+        return seriesIds;
+    }
+
+    private Map<SeriesKey, Long> lookupOrCreate(List<SeriesKey> keys) {
+        Object[] projectIds = new Object[keys.size()];
+        Object[] serviceIds = new Object[keys.size()];
+        Object[] metricNames = new Object[keys.size()];
+        Object[] tags = new Object[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            SeriesKey key = keys.get(i);
+            projectIds[i] = key.projectId();
+            serviceIds[i] = key.serviceId();
+            metricNames[i] = key.metricName();
+            tags[i] = toJson(key.tags());
+        }
+
+        Map<SeriesKey, Long> resolved = timescaleJdbcTemplate.execute((ConnectionCallback<Map<SeriesKey, Long>>) connection -> {
+            Array projectArray = connection.createArrayOf("uuid", projectIds);
+            Array serviceArray = connection.createArrayOf("uuid", serviceIds);
+            Array nameArray = connection.createArrayOf("text", metricNames);
+            Array tagsArray = connection.createArrayOf("text", tags);
+
+            // Separate statements so the lookup sees series created concurrently by other workers
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_MISSING_SQL)) {
+                bindArrays(insert, projectArray, serviceArray, nameArray, tagsArray);
+                insert.executeUpdate();
+            }
+
+            Map<SeriesKey, Long> ids = new HashMap<>(keys.size() * 2);
+            try (PreparedStatement select = connection.prepareStatement(SELECT_IDS_SQL)) {
+                bindArrays(select, projectArray, serviceArray, nameArray, tagsArray);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        ids.put(keys.get((int) rs.getLong("ord") - 1), rs.getLong("series_id"));
+                    }
+                }
+            }
+            return ids;
+        });
+
+        if (cache.size() + resolved.size() > maxCacheSize) {
+            log.info("Series ID cache reached {} entries, clearing", cache.size());
+            cache.clear();
+        }
+        cache.putAll(resolved);
+        log.debug("Resolved {} series IDs from metric_series", resolved.size());
+        return resolved;
+    }
+
+    private void bindArrays(PreparedStatement statement, Array... arrays) throws SQLException {
+        for (int i = 0; i < arrays.length; i++) {
+            statement.setArray(i + 1, arrays[i]);
+        }
+    }
+
+    private String toJson(Map<String, String> tags) {
+        if (tags.isEmpty()) {
+            return "{}";
+        }
+        try {
+            return objectMapper.writeValueAsString(tags);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize metric tags", e);
+        }
+    }
+}
@@ -2,16 +2,21 @@ package com.asre.asre.infra.jdbc;
 
 import com.asre.asre.domain.ingestion.Metric;
 import com.asre.asre.domain.ingestion.MetricRepository;
+import com.asre.asre.domain.ingestion.MetricWindow;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
@@ -19,12 +24,55 @@ import java.util.stream.Collectors;
 public class TimescaleMetricRepository implements MetricRepository {
 
     private static final String INSERT_SQL = """
-            INSERT INTO metrics (time, project_id, service_id, metric_name, value, tags)
-            VALUES (?, ?, ?, ?, ?, ?::jsonb)
+            INSERT INTO metric_samples (time, series_id, value)
+            VALUES (?, ?, ?)
+            """;
+
+    private static final String COPY_SQL = """
+            COPY metric_samples (time, series_id, value)
+            FROM STDIN WITH (FORMAT binary)
+            """;
+
+    /**
+     * The sketch is built from the window's bucket representatives with the rollup parameters,
+     * without expanding each bucket into one row per observation: counts are taken bit by bit
+     * from the highest (Horner's scheme), and each level merges the sketch of the level above
+     * twice with the buckets whose count has that bit set. A window of N points over B buckets
+     * feeds O(B log N) rows instead of N.
+     */
+    private static final String INSERT_WINDOW_SQL = """
+            WITH RECURSIVE
+            w AS (SELECT ?::float8[] AS bucket_values, ?::bigint[] AS bucket_counts),
+            b AS (SELECT u.value, u.n FROM w, unnest(w.bucket_values, w.bucket_counts) AS u(value, n) WHERE u.n > 0),
+            top AS (SELECT floor(log(2, MAX(n)::numeric))::int AS level FROM b),
+            s(level, sketch) AS (
+                SELECT top.level,
+                       (SELECT uddsketch(2000, 0.005, b.value) FROM b WHERE (b.n >> top.level) & 1 = 1)
+                FROM top
+                UNION ALL
+                SELECT s.level - 1,
+                       (SELECT rollup(p.sketch) FROM (
+                            SELECT s.sketch
+                            UNION ALL SELECT s.sketch
+                            UNION ALL SELECT uddsketch(2000, 0.005, b.value) FROM b WHERE (b.n >> (s.level - 1)) & 1 = 1
+                        ) AS p(sketch) WHERE p.sketch IS NOT NULL)
+                FROM s WHERE s.level > 0
+            )
+            INSERT INTO metric_windows (time, series_id, sample_count, value_sum, value_min, value_max,
+                                        value_sketch, bucket_values, bucket_counts)
+            SELECT ?, ?, ?, ?, ?, ?, (SELECT sketch FROM s WHERE level = 0), w.bucket_values, w.bucket_counts
+            FROM w
             """;
 
     @Qualifier("timescaledbJdbcTemplate")
     private final JdbcTemplate timescaleJdbcTemplate;
+    private final MetricSeriesDictionary seriesDictionary;
+
+    /**
+     * Write path for ingestion batches: "insert" (JDBC batch INSERT) or "copy" (binary COPY FROM STDIN).
+     */
+    @Value("${ingestion.writer.mode:insert}")
+    private String writerMode;
 
     @Override
     public void saveBatch(List<Metric> metrics) {
@@ -32,42 +80,83 @@ public class TimescaleMetricRepository implements MetricRepository {
             return;
         }
 
-        List<Object[]> batchArgs = metrics.stream()
-                .map(metric -> new Object[]{
-                        Timestamp.from(metric.getTimestamp()),
-                        metric.getProjectId(),
-                        metric.getServiceId(),
-                        metric.getMetricName(),
-                        metric.getValue(),
-                        convertTagsToJson(metric.getTags())
-                })
-                .collect(Collectors.toList());
-
         try {
-            int[] results = timescaleJdbcTemplate.batchUpdate(INSERT_SQL, batchArgs);
-            log.debug("Inserted {} metrics into TimescaleDB", results.length);
+            // Samples store only (time, series_id, value); identity and tags live in metric_series
+            long[] seriesIds = seriesDictionary.resolve(metrics);
+            if ("copy".equalsIgnoreCase(writerMode)) {
+                copyBatch(metrics, seriesIds);
+            } else {
+                insertBatch(metrics, seriesIds);
+            }
         } catch (Exception e) {
             log.error("Error inserting metrics batch", e);
             throw new RuntimeException("Failed to insert metrics", e);
         }
     }
 
-    private String convertTagsToJson(Map<String, String> tags) {
-        if (tags == null || tags.isEmpty()) {
-            return "{}";
+    @Override
+    public void saveWindows(List<MetricWindow> windows) {
+        if (windows.isEmpty()) {
+            return;
         }
-        // Simple JSON conversion - in production, use Jackson ObjectMapper
-        StringBuilder json = new StringBuilder("{");
-        boolean first = true;
-        for (Map.Entry<String, String> entry : tags.entrySet()) {
-            if (!first) {
-                json.append(",");
-            }
-            json.append("\"").append(entry.getKey()).append("\":\"").append(entry.getValue()).append("\"");
-            first = false;
+
+        try {
+            long[] seriesIds = seriesDictionary.resolveKeys(
+                    windows.stream().map(MetricSeriesDictionary.SeriesKey::of).toList());
+            int[] results = timescaleJdbcTemplate.batchUpdate(INSERT_WINDOW_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    MetricWindow window = windows.get(i);
+                    ps.setArray(1, ps.getConnection().createArrayOf("float8",
+                            Arrays.stream(window.getSketchValues()).boxed().toArray()));
+                    ps.setArray(2, ps.getConnection().createArrayOf("int8",
+                            Arrays.stream(window.getSketchCounts()).boxed().toArray()));
+                    ps.setTimestamp(3, Timestamp.from(window.getWindowStart()));
+                    ps.setLong(4, seriesIds[i]);
+                    ps.setLong(5, window.getCount());
+                    ps.setDouble(6, window.getSum());
+                    ps.setDouble(7, window.getMin());
+                    ps.setDouble(8, window.getMax());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return windows.size();
+                }
+            });
+            log.debug("Inserted {} metric windows into TimescaleDB", results.length);
+        } catch (Exception e) {
+            log.error("Error inserting metric windows", e);
+            throw new RuntimeException("Failed to insert metric windows", e);
         }
-        json.append("}");
-        return json.toString();
     }
-}
 
+    private void insertBatch(List<Metric> metrics, long[] seriesIds) {
+        List<Object[]> batchArgs = new ArrayList<>(metrics.size());
+        for (int i = 0; i < metrics.size(); i++) {
+            Metric metric = metrics.get(i);
+            batchArgs.add(new Object[]{
+                    Timestamp.from(metric.getTimestamp()),
+                    seriesIds[i],
+                    metric.getValue()
+            });
+        }
+
+        int[] results = timescaleJdbcTemplate.batchUpdate(INSERT_SQL, batchArgs);
+        log.debug("Inserted {} metrics into TimescaleDB", results.length);
+    }
+
+    private void copyBatch(List<Metric> metrics, long[] seriesIds) {
+        PgBinaryCopyWriter writer = new PgBinaryCopyWriter(metrics.size());
+        for (int i = 0; i < metrics.size(); i++) {
+            Metric metric = metrics.get(i);
+            writer.startRow(3)
+                    .writeTimestamp(metric.getTimestamp())
+                    .writeLong(seriesIds[i])
+                    .writeDouble(metric.getValue());
+        }
+
+        long copied = writer.copyIn(timescaleJdbcTemplate, COPY_SQL);
+        log.debug("Copied {} metrics into TimescaleDB", copied);
+    }
+}
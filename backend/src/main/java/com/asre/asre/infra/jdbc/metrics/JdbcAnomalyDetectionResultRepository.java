@@ -3,16 +3,20 @@ package com.asre.asre.infra.jdbc.metrics;
 import com.asre.asre.domain.metrics.AnomalyDetectionQuery;
 import com.asre.asre.domain.metrics.AnomalyDetectionResult;
 import com.asre.asre.domain.metrics.AnomalyDetectionResultRepository;
+import com.asre.asre.infra.jdbc.PgBinaryCopyWriter;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -30,12 +34,21 @@ public class JdbcAnomalyDetectionResultRepository implements AnomalyDetectionRes
     private final JdbcTemplate timescaleJdbcTemplate;
     private final ObjectMapper objectMapper;
 
+    @Value("${ingestion.writer.mode:insert}")
+    private String writerMode;
+
     private static final String INSERT_SQL = """
             INSERT INTO anomaly_detection_results 
             (id, project_id, service_id, metric_name, timestamp, z_score, is_anomaly, context, created_at)
             VALUES (?, ?, ?, ?, ?, ?, ?, ?::jsonb, ?)
             """;
 
+    private static final String COPY_SQL = """
+            COPY anomaly_detection_results
+            (id, project_id, service_id, metric_name, timestamp, z_score, is_anomaly, context, created_at)
+            FROM STDIN WITH (FORMAT binary)
+            """;
+
     private static final String SELECT_SQL = """
             SELECT id, project_id, service_id, metric_name, timestamp, z_score, is_anomaly, context, created_at
             FROM anomaly_detection_results
@@ -104,6 +117,68 @@ public class JdbcAnomalyDetectionResultRepository implements AnomalyDetectionRes
         }
     }
 
+    @Override
+    public void saveAll(List<AnomalyDetectionResult> results) {
+        if (results.isEmpty()) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        for (AnomalyDetectionResult result : results) {
+            if (result.getId() == null) {
+                result.setId(UUID.randomUUID());
+            }
+            if (result.getCreatedAt() == null) {
+                result.setCreatedAt(now);
+            }
+        }
+
+        try {
+            if ("copy".equalsIgnoreCase(writerMode)) {
+                PgBinaryCopyWriter writer = new PgBinaryCopyWriter(results.size());
+                for (AnomalyDetectionResult result : results) {
+                    writer.startRow(9)
+                            .writeUuid(result.getId())
+                            .writeUuid(result.getProjectId())
+                            .writeUuid(result.getServiceId())
+                            .writeText(result.getMetricName())
+                            .writeTimestamp(result.getTimestamp())
+                            .writeDouble(result.getZScore())
+                            .writeBoolean(result.getIsAnomaly())
+                            .writeJsonb(toContextJson(result))
+                            .writeTimestamp(result.getCreatedAt());
+                }
+                writer.copyIn(timescaleJdbcTemplate, COPY_SQL);
+            } else {
+                List<Object[]> batchArgs = new ArrayList<>(results.size());
+                for (AnomalyDetectionResult result : results) {
+                    batchArgs.add(new Object[] {
+                            result.getId(),
+                            result.getProjectId(),
+                            result.getServiceId(),
+                            result.getMetricName(),
+                            Timestamp.from(result.getTimestamp()),
+                            result.getZScore(),
+                            result.getIsAnomaly(),
+                            toContextJson(result),
+                            Timestamp.from(result.getCreatedAt())
+                    });
+                }
+                timescaleJdbcTemplate.batchUpdate(INSERT_SQL, batchArgs);
+            }
+            log.debug("Saved {} anomaly detection results", results.size());
+        } catch (Exception e) {
+            log.error("Error saving anomaly detection results batch", e);
+            throw new RuntimeException("Failed to save anomaly detection results", e);
+        }
+    }
+
+    private String toContextJson(AnomalyDetectionResult result) throws JsonProcessingException {
+        return result.getContext() != null
+                ? objectMapper.writeValueAsString(result.getContext())
+                : "{}";
+    }
+
     @Override
     public List<AnomalyDetectionResult> findByQuery(AnomalyDetectionQuery query) {
         StringBuilder sql = new StringBuilder(SELECT_SQL);
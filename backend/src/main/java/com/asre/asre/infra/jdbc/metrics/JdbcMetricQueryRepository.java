@@ -1,224 +1,701 @@
 package com.asre.asre.infra.jdbc.metrics;
 
 import com.asre.asre.domain.metrics.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * JDBC-based implementation of MetricQueryRepository.
  * Executes queries against TimescaleDB using time_bucket for aggregation.
+ * Queries are routed to the coarsest continuous aggregate (metric_rollup_*) whose bucket
+ * width divides the rollup period; the aggregates include a real-time tail over raw samples.
+ * Percentiles are answered from mergeable UddSketches (relative error at most 0.5%), from the
+ * rollups' stored sketches or, on the raw path, from a sketch built with the same parameters.
+ * Windows pre-aggregated by the ingestion workers and client-side histogram points
+ * (metric_windows) are merged into both paths. Counter rates are computed from raw samples.
+ * Overlay queries scan once per (aggregation, service) group with metric_name = ANY(?),
+ * running the groups concurrently on a bounded pool.
+ * Tag filters are resolved against metric_series (GIN index on tags) before any samples are
+ * read; grouped queries return one series per service or tag value, and top/bottom-K ranks
+ * the groups in the same statement so only K series leave the database.
  */
 @Repository
 @RequiredArgsConstructor
 @Slf4j
 public class JdbcMetricQueryRepository implements MetricQueryRepository {
 
+    /**
+     * Continuous aggregates, coarsest first.
+     */
+    private static final List<RollupView> ROLLUP_VIEWS = List.of(
+            new RollupView("metric_rollup_1d", Duration.ofDays(1)),
+            new RollupView("metric_rollup_1h", Duration.ofHours(1)),
+            new RollupView("metric_rollup_5m", Duration.ofMinutes(5)),
+            new RollupView("metric_rollup_1m", Duration.ofMinutes(1)));
+
+    private record RollupView(String name, Duration bucketWidth) {
+    }
+
+    /**
+     * One SQL scan: the same aggregation over one or more metrics of a project, bucketed by
+     * the rollup period. With gap filling every metric that has data gets a point (null when
+     * empty) for each bucket of the range, so overlaid series share timestamps.
+     */
+    private record Scan(UUID projectId, List<String> metricNames, AggregationType aggregationType,
+                        Optional<UUID> serviceId, List<TagFilter> tagFilters, Optional<GroupBy> groupBy,
+                        Optional<SeriesLimit> seriesLimit, TimeRange timeRange, RollupPeriod rollupPeriod,
+                        boolean gapFill) {
+
+        boolean grouped() {
+            return groupBy.isPresent();
+        }
+    }
+
+    private record ScanGroup(AggregationType aggregationType, UUID serviceId) {
+    }
+
+    /**
+     * Same sketch parameters as the metric_rollup_* aggregates (V7), so raw and rolled-up
+     * percentiles share one error bound: 2000 buckets at 0.5% relative error.
+     */
+    private static final String RAW_SKETCH_SQL = "uddsketch(2000, 0.005, value)";
+
+    /**
+     * Value bounds of an hour-aligned range from pre-aggregated rows: the hourly rollup and the
+     * window rows. lo_positive bounds log bins.
+     */
+    private static final String HISTOGRAM_BOUNDS_SQL = "SELECT MIN(lo) AS lo, MIN(lo_positive) AS lo_positive, MAX(hi) AS hi FROM ("
+            + "SELECT MIN(value_min) AS lo, MIN(value_min) FILTER (WHERE value_min > 0) AS lo_positive, MAX(value_max) AS hi"
+            + " FROM metric_rollup_1h WHERE %s"
+            + " UNION ALL SELECT MIN(value_min), MIN(value_min) FILTER (WHERE value_min > 0), MAX(value_max)"
+            + " FROM metric_windows WHERE %s) b";
+
     @Qualifier("timescaledbJdbcTemplate")
     private final JdbcTemplate timescaleJdbcTemplate;
 
+    @Value("${metrics.query.rollup-routing.enabled:true}")
+    private boolean rollupRoutingEnabled;
+
+    @Value("${metrics.query.histogram.sketch-min-range-hours:24}")
+    private long histogramSketchMinRangeHours;
+
+    @Value("${metrics.query.multi.parallelism:4}")
+    private int multiQueryParallelism;
+
+    private ThreadPoolExecutor scanPool;
+
+    @PostConstruct
+    void startScanPool() {
+        int threads = Math.max(1, multiQueryParallelism);
+        AtomicInteger counter = new AtomicInteger();
+        // Bounded queue; when full the calling request thread runs the scan itself
+        scanPool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 16),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "metric-query-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void stopScanPool() {
+        scanPool.shutdown();
+    }
+
     @Override
     public MetricQueryResult executeQuery(MetricQuery query) {
         // Enforce project isolation at infrastructure level
-        String sql = buildQuerySql(query);
-        List<Object> params = buildQueryParams(query);
-
-        List<TimeSeriesPoint> dataPoints = timescaleJdbcTemplate.query(
-                sql,
-                (rs, rowNum) -> {
-                    Timestamp ts = rs.getTimestamp("bucket");
-                    Double value = rs.getDouble("value");
-                    return new TimeSeriesPoint(ts.toInstant(), value);
-                },
-                params.toArray()
-        );
+        Scan scan = new Scan(query.getProjectId(), List.of(query.getMetricName()), query.getAggregationType(),
+                query.getServiceId(), query.getTagFilters(), query.getGroupBy(), query.getSeriesLimit(),
+                query.getTimeRange(), query.getRollupPeriod(), false);
+        Map<String, List<TimeSeriesPoint>> series = executeScan(scan);
+
+        if (query.isGrouped()) {
+            List<SeriesGroup> groups = new ArrayList<>();
+            series.forEach((key, points) -> groups.add(new SeriesGroup(key, points)));
+            return new MetricQueryResult(query.getMetricName(), query.getAggregationType(), List.of(), groups);
+        }
 
         return new MetricQueryResult(
                 query.getMetricName(),
                 query.getAggregationType(),
-                dataPoints
+                series.getOrDefault(query.getMetricName(), List.of()),
+                List.of()
         );
     }
 
     @Override
     public MultiMetricQueryResult executeMultiQuery(MultiMetricQuery query) {
-        List<MetricQueryResult> results = new ArrayList<>();
+        // Metrics sharing aggregation and service filter are answered by a single scan
+        Map<ScanGroup, List<String>> groups = new LinkedHashMap<>();
+        for (MultiMetricQuery.SingleMetricQuery singleQuery : query.getQueries()) {
+            List<String> names = groups.computeIfAbsent(
+                    new ScanGroup(singleQuery.getAggregationType(), singleQuery.getServiceId()),
+                    group -> new ArrayList<>());
+            if (!names.contains(singleQuery.getMetricName())) {
+                names.add(singleQuery.getMetricName());
+            }
+        }
+
+        Map<ScanGroup, CompletableFuture<Map<String, List<TimeSeriesPoint>>>> scans = new HashMap<>();
+        groups.forEach((group, metricNames) -> {
+            Scan scan = new Scan(query.getProjectId(), metricNames, group.aggregationType(),
+                    Optional.ofNullable(group.serviceId()), List.of(), Optional.empty(), Optional.empty(),
+                    query.getTimeRange(), query.getRollupPeriod(), query.isAlignTimestamps());
+            scans.put(group, CompletableFuture.supplyAsync(() -> executeScan(scan), scanPool));
+        });
 
+        List<MetricQueryResult> results = new ArrayList<>();
         for (MultiMetricQuery.SingleMetricQuery singleQuery : query.getQueries()) {
-            // Build individual query for each metric
-            MetricQuery metricQuery = new MetricQuery(
-                    query.getProjectId(),
+            ScanGroup group = new ScanGroup(singleQuery.getAggregationType(), singleQuery.getServiceId());
+            Map<String, List<TimeSeriesPoint>> series = join(scans.get(group));
+            results.add(new MetricQueryResult(
                     singleQuery.getMetricName(),
                     singleQuery.getAggregationType(),
-                    query.getTimeRange(),
-                    query.getRollupPeriod(),
-                    singleQuery.getServiceId(),
-                    null
-            );
-
-            MetricQueryResult result = executeQuery(metricQuery);
-
-            // Align timestamps if requested
-            if (query.isAlignTimestamps()) {
-                result = alignTimestamps(result, query.getRollupPeriod());
-            }
-
-            results.add(result);
+                    series.getOrDefault(singleQuery.getMetricName(), List.of()),
+                    List.of()));
         }
 
         return new MultiMetricQueryResult(results);
     }
 
+    /**
+     * Builds the histogram in one statement, binning values in a single pass with width_bucket;
+     * long ranges are binned from the merged sketches without reading samples.
+     */
     @Override
     public HistogramResult executeHistogramQuery(HistogramQuery query) {
-        // Calculate min/max from data first
-        String minMaxSql = """
-                SELECT MIN(value) as min_val, MAX(value) as max_val
-                FROM metrics
-                WHERE project_id = ? AND metric_name = ?
-                AND time >= ? AND time <= ?
-                """;
+        Duration range = Duration.between(query.getTimeRange().getStartTime(), query.getTimeRange().getEndTime());
+        List<HistogramBin> bins = rollupRoutingEnabled
+                && range.compareTo(Duration.ofHours(histogramSketchMinRangeHours)) >= 0
+                ? sketchHistogram(query)
+                : scanHistogram(query);
+        return new HistogramResult(query.getMetricName(), bins);
+    }
 
-        if (query.getServiceId().isPresent()) {
-            minMaxSql += " AND service_id = ?";
+    /**
+     * Bounds come from the hourly rollup when the range is hour-aligned at both ends, so they
+     * cover exactly the binned rows. Otherwise those rollup buckets would reach outside the
+     * range (and give a short range coarse bins), so the bounds are taken from the binned
+     * rows themselves, materialized once.
+     */
+    private List<HistogramBin> scanHistogram(HistogramQuery query) {
+        boolean filterByService = query.getServiceId().isPresent();
+        boolean log = query.getScale() == HistogramScale.LOG;
+        boolean exactBounds = !isHourAligned(query.getTimeRange().getStartTime())
+                || !isHourAligned(query.getTimeRange().getEndTime());
+
+        String binExpression = log
+                ? "CASE WHEN bounds.hi > bounds.lo_positive"
+                + " THEN LEAST(GREATEST(width_bucket(ln(o.value), ln(bounds.lo_positive), ln(bounds.hi), ?), 1), ?)"
+                + " ELSE 1 END"
+                : "CASE WHEN bounds.hi > bounds.lo"
+                + " THEN LEAST(GREATEST(width_bucket(o.value, bounds.lo, bounds.hi, ?), 1), ?)"
+                + " ELSE 1 END";
+
+        String observations = "SELECT value, 1::bigint AS n FROM metric_samples WHERE " + seriesFilter(filterByService)
+                // Window and histogram rows contribute their buckets, weighted by count; rows without
+                // bucket arrays (written before they existed) count as their mean, not as nothing
+                + " UNION ALL SELECT CASE WHEN b.value IS NULL AND b.n IS NULL THEN w.value_sum / w.sample_count"
+                + " ELSE LEAST(GREATEST(b.value, w.value_min), w.value_max) END,"
+                + " CASE WHEN b.value IS NULL AND b.n IS NULL THEN w.sample_count ELSE b.n END"
+                + " FROM metric_windows w"
+                + " LEFT JOIN LATERAL unnest(w.bucket_values, w.bucket_counts) AS b(value, n) ON true WHERE "
+                + seriesFilter(filterByService) + " AND w.sample_count > 0";
+
+        String from = exactBounds
+                ? "WITH o AS MATERIALIZED (" + observations + "),"
+                + " bounds AS (SELECT MIN(value) AS lo, MIN(value) FILTER (WHERE value > 0) AS lo_positive,"
+                + " MAX(value) AS hi FROM o)"
+                : "WITH bounds AS (" + HISTOGRAM_BOUNDS_SQL.formatted(
+                        seriesFilter(filterByService, "bucket"), seriesFilter(filterByService)) + ")";
+        String sql = from
+                + " SELECT " + binExpression + " AS bin, SUM(o.n) AS count,"
+                + " MIN(bounds.lo) AS lo, MIN(bounds.lo_positive) AS lo_positive, MIN(bounds.hi) AS hi"
+                + (exactBounds ? " FROM o" : " FROM (" + observations + ") o") + " CROSS JOIN bounds"
+                + (log ? " WHERE o.value > 0 AND bounds.lo_positive IS NOT NULL" : "")
+                + " GROUP BY 1 ORDER BY 1";
+
+        // Placeholders in text order: the observation filters come first or last depending on the CTE
+        List<Object> observationParams = new ArrayList<>(histogramFilterParams(query, query.getTimeRange().getStartTime()));
+        observationParams.addAll(histogramFilterParams(query, query.getTimeRange().getStartTime()));
+        List<Object> params = new ArrayList<>(exactBounds ? observationParams : histogramBoundsParams(query));
+        params.add(query.getBins());
+        params.add(query.getBins());
+        if (!exactBounds) {
+            params.addAll(observationParams);
         }
 
-        List<Object> minMaxParams = new ArrayList<>();
-        minMaxParams.add(query.getProjectId());
-        minMaxParams.add(query.getMetricName());
-        minMaxParams.add(Timestamp.from(query.getTimeRange().getStartTime()));
-        minMaxParams.add(Timestamp.from(query.getTimeRange().getEndTime()));
-        if (query.getServiceId().isPresent()) {
-            minMaxParams.add(query.getServiceId().get());
-        }
+        return timescaleJdbcTemplate.query(sql, (rs, rowNum) -> {
+            double lo = rs.getDouble(log ? "lo_positive" : "lo");
+            double hi = rs.getDouble("hi");
+            return binOf(query, rs.getInt("bin"), lo, hi, rs.getLong("count"));
+        }, params.toArray());
+    }
 
-        Double[] minMax = timescaleJdbcTemplate.queryForObject(minMaxSql, (rs, rowNum) -> {
-            return new Double[]{rs.getDouble("min_val"), rs.getDouble("max_val")};
-        }, minMaxParams.toArray());
+    /**
+     * Long ranges: counts per bin are read off the merged sketch as rank differences at the
+     * bin edges, from rollup and window rows only.
+     */
+    private List<HistogramBin> sketchHistogram(HistogramQuery query) {
+        boolean filterByService = query.getServiceId().isPresent();
+        boolean log = query.getScale() == HistogramScale.LOG;
+
+        String edgeExpression = log
+                ? "exp(ln(agg.lo_positive) + e.i * (ln(agg.hi) - ln(agg.lo_positive)) / ?)"
+                : "agg.lo + e.i * (agg.hi - agg.lo) / ?";
+
+        String sql = "WITH agg AS (SELECT rollup(value_sketch) AS sketch, SUM(sample_count) AS total,"
+                + " MIN(value_min) AS lo, MIN(value_min) FILTER (WHERE value_min > 0) AS lo_positive, MAX(value_max) AS hi"
+                + " FROM (SELECT value_sketch, sample_count, value_min, value_max FROM metric_rollup_1h WHERE "
+                + seriesFilter(filterByService, "bucket")
+                + " UNION ALL SELECT value_sketch, sample_count, value_min, value_max FROM metric_windows WHERE "
+                + seriesFilter(filterByService) + ") p)"
+                + " SELECT e.i AS edge, agg.total, agg.lo, agg.lo_positive, agg.hi,"
+                + " approx_percentile_rank(" + edgeExpression + ", agg.sketch) AS rank,"
+                + " approx_percentile_rank(0.0, agg.sketch) AS zero_rank"
+                + " FROM agg CROSS JOIN generate_series(1, ?) AS e(i)"
+                + " WHERE agg.total > 0" + (log ? " AND agg.lo_positive IS NOT NULL AND agg.hi > 0" : "")
+                + " ORDER BY e.i";
+
+        // Placeholder order: agg filters, the edge divisor, then the number of edges
+        List<Object> params = new ArrayList<>(histogramBoundsParams(query));
+        params.add(query.getBins());
+        params.add(query.getBins());
+
+        List<Map<String, Object>> edges = timescaleJdbcTemplate.queryForList(sql, params.toArray());
+        if (edges.isEmpty()) {
+            return List.of();
+        }
 
-        if (minMax == null || minMax[0] == null || minMax[1] == null) {
-            return new HistogramResult(query.getMetricName(), List.of());
+        Map<String, Object> first = edges.get(0);
+        long total = ((Number) first.get("total")).longValue();
+        double lo = ((Number) first.get(log ? "lo_positive" : "lo")).doubleValue();
+        double hi = ((Number) first.get("hi")).doubleValue();
+        // Linear bins start at the minimum, log bins just above zero
+        double previousRank = log ? ((Number) first.get("zero_rank")).doubleValue() : 0.0;
+
+        List<HistogramBin> bins = new ArrayList<>();
+        for (Map<String, Object> edge : edges) {
+            int bin = ((Number) edge.get("edge")).intValue();
+            // Everything up to the maximum falls in the last bin
+            double rank = bin == query.getBins() ? 1.0 : ((Number) edge.get("rank")).doubleValue();
+            long count = Math.max(0, Math.round((rank - previousRank) * total));
+            bins.add(binOf(query, bin, lo, hi, count));
+            previousRank = Math.max(previousRank, rank);
         }
+        bins.removeIf(bin -> bin.getCount() == 0);
+        return bins;
+    }
 
-        double min = minMax[0];
-        double max = minMax[1];
-        double binWidth = (max - min) / query.getBins();
+    private List<Object> histogramBoundsParams(HistogramQuery query) {
+        List<Object> params = new ArrayList<>(histogramFilterParams(query, alignedHistogramStart(query)));
+        params.addAll(histogramFilterParams(query, query.getTimeRange().getStartTime()));
+        return params;
+    }
 
-        // Build histogram query
-        StringBuilder sql = new StringBuilder("""
-                SELECT
-                    CASE
-                """);
+    private List<Object> histogramFilterParams(HistogramQuery query, Instant start) {
+        return seriesFilterParams(query.getProjectId(), List.of(query.getMetricName()), query.getServiceId(),
+                start, query.getTimeRange().getEndTime());
+    }
 
-        for (int i = 0; i < query.getBins(); i++) {
-            double binMin = min + (i * binWidth);
-            double binMax = (i == query.getBins() - 1) ? max + 0.0001 : min + ((i + 1) * binWidth);
-            sql.append(String.format("""
-                        WHEN value >= %f AND value < %f THEN %d
-                    """, binMin, binMax, i));
-        }
+    private Instant alignedHistogramStart(HistogramQuery query) {
+        return query.getTimeRange().getStartTime().truncatedTo(ChronoUnit.HOURS);
+    }
 
-        sql.append("""
-                        ELSE -1
-                    END as bin,
-                    COUNT(*) as count
-                FROM metrics
-                WHERE project_id = ? AND metric_name = ?
-                AND time >= ? AND time <= ?
-                """);
+    private static boolean isHourAligned(Instant instant) {
+        return instant.equals(instant.truncatedTo(ChronoUnit.HOURS));
+    }
 
-        if (query.getServiceId().isPresent()) {
-            sql.append(" AND service_id = ?");
+    /**
+     * Edges of the 1-based bin between lo and hi, evenly spaced on the query's scale.
+     */
+    private HistogramBin binOf(HistogramQuery query, int bin, double lo, double hi, long count) {
+        if (hi <= lo) {
+            return new HistogramBin(lo, Math.max(lo, hi), count);
+        }
+        int bins = query.getBins();
+        if (query.getScale() == HistogramScale.LOG) {
+            double ratio = Math.log(hi / lo) / bins;
+            return new HistogramBin(lo * Math.exp((bin - 1) * ratio),
+                    bin == bins ? hi : lo * Math.exp(bin * ratio), count);
         }
+        double width = (hi - lo) / bins;
+        return new HistogramBin(lo + (bin - 1) * width, bin == bins ? hi : lo + bin * width, count);
+    }
 
-        sql.append("""
-                GROUP BY bin
-                ORDER BY bin
-                """);
+    /**
+     * Runs one scan and returns the points of each metric, or of each group for grouped scans
+     * (ranked order first when limited), in bucket order.
+     */
+    private Map<String, List<TimeSeriesPoint>> executeScan(Scan scan) {
+        String sql;
+        List<Object> params;
+        if (scan.aggregationType() == AggregationType.RATE) {
+            // Counter resets and increments between samples need the raw samples
+            sql = buildRateQuerySql(scan);
+            params = buildRateQueryParams(scan);
+        } else {
+            Optional<RollupView> rollupView = selectRollupView(scan.rollupPeriod());
+            sql = rollupView.map(view -> buildRollupQuerySql(scan, view))
+                    .orElseGet(() -> buildQuerySql(scan));
+            params = rollupView.map(view -> buildRollupQueryParams(scan, view))
+                    .orElseGet(() -> buildQueryParams(scan));
+        }
 
-        List<Object> params = new ArrayList<>();
-        params.add(query.getProjectId());
-        params.add(query.getMetricName());
-        params.add(Timestamp.from(query.getTimeRange().getStartTime()));
-        params.add(Timestamp.from(query.getTimeRange().getEndTime()));
-        if (query.getServiceId().isPresent()) {
-            params.add(query.getServiceId().get());
-        }
-
-        List<HistogramBin> bins = timescaleJdbcTemplate.query(
-                sql.toString(),
-                (rs, rowNum) -> {
-                    int binIndex = rs.getInt("bin");
-                    long count = rs.getLong("count");
-                    double binMin = min + (binIndex * binWidth);
-                    double binMax = (binIndex == query.getBins() - 1) ? max : min + ((binIndex + 1) * binWidth);
-                    return new HistogramBin(binMin, binMax, count);
+        Map<String, List<TimeSeriesPoint>> series = new LinkedHashMap<>();
+        timescaleJdbcTemplate.query(
+                sql,
+                rs -> {
+                    Timestamp ts = rs.getTimestamp("bucket");
+                    // COUNT sums bigints into a numeric, so read any numeric type as a double
+                    double raw = rs.getDouble("value");
+                    Double value = rs.wasNull() ? (scan.gapFill() ? null : 0.0) : raw;
+                    String key = scan.grouped() ? rs.getString("series_group") : rs.getString("metric_name");
+                    series.computeIfAbsent(key, name -> new ArrayList<>())
+                            .add(new TimeSeriesPoint(ts.toInstant(), value));
                 },
                 params.toArray()
         );
-
-        return new HistogramResult(query.getMetricName(), bins);
+        return series;
     }
 
-    private String buildQuerySql(MetricQuery query) {
-        StringBuilder sql = new StringBuilder("SELECT ");
-        sql.append("time_bucket(?, time) as bucket, ");
-
-        // Add aggregation based on type
-        if (query.getAggregationType().isPercentile()) {
-            double percentile = switch (query.getAggregationType()) {
-                case P50 -> 0.50;
-                case P95 -> 0.95;
-                case P99 -> 0.99;
-                default -> 0.50;
-            };
-            sql.append(String.format("percentile_cont(%.2f) WITHIN GROUP (ORDER BY value) as value", percentile));
-        } else {
-            switch (query.getAggregationType()) {
-                case AVG -> sql.append("AVG(value) as value");
-                case MIN -> sql.append("MIN(value) as value");
-                case MAX -> sql.append("MAX(value) as value");
-                case SUM -> sql.append("SUM(value) as value");
-                case COUNT -> sql.append("COUNT(*) as value");
-                default -> sql.append("AVG(value) as value");
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
+            throw e;
         }
+    }
+
+    /**
+     * Raw path: samples are grouped into per-series, per-bucket partials (count, sum, min,
+     * max, sketch) so they combine with pre-aggregated windows under the same outer aggregate.
+     */
+    private String buildQuerySql(Scan scan) {
+        String sketch = scan.aggregationType().isPercentile() ? RAW_SKETCH_SQL : "NULL::uddsketch";
+        String rawPartials = "SELECT series_id, time_bucket(?, time) AS bucket, count(*) AS sample_count, "
+                + "sum(value) AS value_sum, min(value) AS value_min, max(value) AS value_max, "
+                + sketch + " AS value_sketch"
+                + " FROM metric_samples WHERE " + seriesFilter(scan, "time")
+                + " GROUP BY 1, 2";
+        return buildPartialsQuerySql(scan, rawPartials);
+    }
 
-        sql.append(" FROM metrics WHERE project_id = ? AND metric_name = ?");
-        sql.append(" AND time >= ? AND time <= ?");
+    private List<Object> buildQueryParams(Scan scan) {
+        List<Object> sourceParams = new ArrayList<>();
+        // Rollup period as interval string (e.g., '1 minute', '5 minutes')
+        sourceParams.add(formatInterval(scan.rollupPeriod()));
+        sourceParams.addAll(seriesFilterParams(scan, scan.timeRange().getStartTime()));
+        return buildPartialsQueryParams(scan, sourceParams, scan.timeRange().getStartTime());
+    }
 
-        if (query.getServiceId().isPresent()) {
-            sql.append(" AND service_id = ?");
+    /**
+     * Re-buckets partial aggregates from the given source plus the pre-aggregated windows
+     * (metric_windows) per metric: counts and sums add up, min/max combine, averages are
+     * sum/count, and percentiles come from the merged sketches. Bind with
+     * {@link #buildPartialsQueryParams}.
+     */
+    private String buildPartialsQuerySql(Scan scan, String sourcePartials) {
+        String partials = sourcePartials
+                + " UNION ALL SELECT series_id, time AS bucket, sample_count, value_sum, value_min, value_max, value_sketch"
+                + " FROM metric_windows WHERE " + seriesFilter(scan, "time");
+
+        if (scan.seriesLimit().isPresent()) {
+            // Groups are ranked by the aggregate over the whole range, computed from the same partials
+            return "WITH partials AS (SELECT s.metric_name, " + groupExpression(scan) + " AS series_group,"
+                    + " p.bucket, p.sample_count, p.value_sum, p.value_min, p.value_max, p.value_sketch"
+                    + " FROM (" + partials + ") p JOIN metric_series s ON s.series_id = p.series_id),"
+                    + " ranked AS (SELECT series_group, " + aggregateExpression(scan) + " AS rank_value"
+                    + " FROM partials GROUP BY 1 ORDER BY 2 " + rankOrder(scan) + " LIMIT ?)"
+                    + " SELECT p.metric_name, p.series_group, " + bucketExpression(scan, "p.bucket") + " as bucket, "
+                    + aggregateExpression(scan) + " as value"
+                    + " FROM partials p JOIN ranked r ON r.series_group = p.series_group"
+                    + " GROUP BY 1, 2, 3, r.rank_value ORDER BY r.rank_value " + rankOrder(scan) + ", 2, 3";
         }
 
-        // TODO: Add tag filtering if tags are provided
+        StringBuilder sql = new StringBuilder("SELECT s.metric_name, ");
+        if (scan.grouped()) {
+            sql.append(groupExpression(scan)).append(" AS series_group, ");
+        }
+        sql.append(bucketExpression(scan, "p.bucket")).append(" as bucket, ");
+        sql.append(aggregateExpression(scan)).append(" as value");
+        sql.append(" FROM (").append(partials);
+        sql.append(") p JOIN metric_series s ON s.series_id = p.series_id");
 
-        sql.append(" GROUP BY bucket ORDER BY bucket");
+        // Partials carry a bucket column of their own, so group by position
+        sql.append(scan.grouped() ? " GROUP BY 1, 2, 3 ORDER BY 1, 2, 3" : " GROUP BY 1, 2 ORDER BY 1, 2");
 
         return sql.toString();
     }
 
-    private List<Object> buildQueryParams(MetricQuery query) {
+    /**
+     * Parameters in statement order: group key, bucket, source partials and window filter
+     * (ranked scans bind the bucket after the partials and the limit).
+     */
+    private List<Object> buildPartialsQueryParams(Scan scan, List<Object> sourceParams, Instant windowStart) {
+        List<Object> params = groupParams(scan);
+        if (scan.seriesLimit().isEmpty()) {
+            params.addAll(bucketParams(scan));
+        }
+        params.addAll(sourceParams);
+        params.addAll(seriesFilterParams(scan, windowStart));
+        scan.seriesLimit().ifPresent(limit -> {
+            params.add(limit.getCount());
+            params.addAll(bucketParams(scan));
+        });
+        return params;
+    }
+
+    private String aggregateExpression(Scan scan) {
+        if (scan.aggregationType().isPercentile()) {
+            return String.format(Locale.ROOT, "approx_percentile(%.2f, rollup(value_sketch))",
+                    percentileOf(scan.aggregationType()));
+        }
+        return switch (scan.aggregationType()) {
+            case MIN -> "MIN(value_min)";
+            case MAX -> "MAX(value_max)";
+            case SUM -> "SUM(value_sum)";
+            case COUNT -> "SUM(sample_count)::float8";
+            default -> "SUM(value_sum) / NULLIF(SUM(sample_count), 0)";
+        };
+    }
+
+    /**
+     * Group key of a series: its service ID or the value of the grouped tag ('' when absent).
+     * Bind with {@link #groupParams}.
+     */
+    private String groupExpression(Scan scan) {
+        return scan.groupBy()
+                .map(groupBy -> groupBy.getDimension() == GroupBy.Dimension.SERVICE
+                        ? "s.service_id::text"
+                        : "COALESCE(s.tags ->> ?, '')")
+                .orElse("''");
+    }
+
+    private List<Object> groupParams(Scan scan) {
         List<Object> params = new ArrayList<>();
-        // Rollup period as interval string (e.g., '1 minute', '5 minutes')
-        String interval = formatInterval(query.getRollupPeriod());
-        params.add(interval);
-        params.add(query.getProjectId());
-        params.add(query.getMetricName());
-        params.add(Timestamp.from(query.getTimeRange().getStartTime()));
-        params.add(Timestamp.from(query.getTimeRange().getEndTime()));
-        if (query.getServiceId().isPresent()) {
-            params.add(query.getServiceId().get());
+        scan.groupBy()
+                .filter(groupBy -> groupBy.getDimension() == GroupBy.Dimension.TAG)
+                .ifPresent(groupBy -> params.add(groupBy.getTagKey()));
+        return params;
+    }
+
+    private String rankOrder(Scan scan) {
+        return scan.seriesLimit()
+                .filter(limit -> limit.getOrder() == SeriesLimit.Order.BOTTOM)
+                .map(limit -> "ASC NULLS LAST")
+                .orElse("DESC NULLS LAST");
+    }
+
+    /**
+     * Outer bucket: time_bucket, or time_bucket_gapfill over the query range when aligning.
+     * Bind with {@link #bucketParams}.
+     */
+    private String bucketExpression(Scan scan, String timeColumn) {
+        if (scan.gapFill()) {
+            return "time_bucket_gapfill(?::interval, " + timeColumn + ", ?::timestamptz, ?::timestamptz)";
+        }
+        return "time_bucket(?, " + timeColumn + ")";
+    }
+
+    private List<Object> bucketParams(Scan scan) {
+        List<Object> params = new ArrayList<>();
+        params.add(formatInterval(scan.rollupPeriod()));
+        if (scan.gapFill()) {
+            params.add(Timestamp.from(scan.timeRange().getStartTime()));
+            params.add(Timestamp.from(scan.timeRange().getEndTime()));
+        }
+        return params;
+    }
+
+    /**
+     * Selects samples through the series dictionary: the project/metric/service predicates
+     * resolve to series IDs in metric_series, which then drive the (series_id, time) index
+     * on metric_samples. Bind with {@link #seriesFilterParams}.
+     */
+    private String seriesFilter(boolean filterByService) {
+        return seriesFilter(filterByService, "time");
+    }
+
+    private String seriesFilter(boolean filterByService, String timeColumn) {
+        return seriesFilter(filterByService, List.of(), timeColumn);
+    }
+
+    private String seriesFilter(Scan scan, String timeColumn) {
+        return seriesFilter(scan.serviceId().isPresent(), scan.tagFilters(), timeColumn);
+    }
+
+    private String seriesFilter(boolean filterByService, List<TagFilter> tagFilters, String timeColumn) {
+        StringBuilder filter = new StringBuilder(
+                "series_id IN (SELECT series_id FROM metric_series WHERE project_id = ? AND metric_name = ANY(?)");
+        if (filterByService) {
+            filter.append(" AND service_id = ?");
+        }
+        tagFilters.forEach(tagFilter -> filter.append(" AND ").append(tagFilterSql(tagFilter)));
+        return filter.append(") AND ").append(timeColumn).append(" >= ? AND ").append(timeColumn).append(" <= ?")
+                .toString();
+    }
+
+    /**
+     * Equality and IN filters are jsonb containment, served by the GIN index on tags; regex
+     * filters use the index for the key-exists test (?? is the JDBC escape for the ? operator)
+     * and match the value on the remaining series. Regexes must match the whole value.
+     */
+    private String tagFilterSql(TagFilter tagFilter) {
+        return switch (tagFilter.getOperator()) {
+            case EQUALS -> "tags @> jsonb_build_object(?::text, ?::text)";
+            case IN -> tagFilter.getValues().stream()
+                    .map(value -> "tags @> jsonb_build_object(?::text, ?::text)")
+                    .collect(Collectors.joining(" OR ", "(", ")"));
+            case REGEX -> "tags ?? ? AND tags ->> ? ~ ('^(?:' || ? || ')$')";
+        };
+    }
+
+    private List<Object> tagFilterParams(TagFilter tagFilter) {
+        List<Object> params = new ArrayList<>();
+        if (tagFilter.getOperator() == TagFilter.Operator.REGEX) {
+            params.add(tagFilter.getKey());
+            params.add(tagFilter.getKey());
+            params.add(tagFilter.getValues().get(0));
+            return params;
+        }
+        for (String value : tagFilter.getValues()) {
+            params.add(tagFilter.getKey());
+            params.add(value);
+        }
+        return params;
+    }
+
+    private List<Object> seriesFilterParams(Scan scan, Instant start) {
+        return seriesFilterParams(scan.projectId(), scan.metricNames(), scan.serviceId(), scan.tagFilters(),
+                start, scan.timeRange().getEndTime());
+    }
+
+    private List<Object> seriesFilterParams(UUID projectId, List<String> metricNames, Optional<UUID> serviceId,
+                                            Instant start, Instant end) {
+        return seriesFilterParams(projectId, metricNames, serviceId, List.of(), start, end);
+    }
+
+    private List<Object> seriesFilterParams(UUID projectId, List<String> metricNames, Optional<UUID> serviceId,
+                                            List<TagFilter> tagFilters, Instant start, Instant end) {
+        List<Object> params = new ArrayList<>();
+        params.add(projectId);
+        params.add(metricNames.toArray(String[]::new));
+        serviceId.ifPresent(params::add);
+        tagFilters.forEach(tagFilter -> params.addAll(tagFilterParams(tagFilter)));
+        params.add(Timestamp.from(start));
+        params.add(Timestamp.from(end));
+        return params;
+    }
+
+    /**
+     * Picks the coarsest aggregate whose bucket width evenly divides the rollup period.
+     * Periods finer than a minute (or not a whole number of minutes) read raw samples.
+     */
+    private Optional<RollupView> selectRollupView(RollupPeriod rollupPeriod) {
+        if (!rollupRoutingEnabled) {
+            return Optional.empty();
         }
+        long rollupSeconds = rollupPeriod.getDuration().toSeconds();
+        for (RollupView view : ROLLUP_VIEWS) {
+            long widthSeconds = view.bucketWidth().toSeconds();
+            if (rollupSeconds >= widthSeconds && rollupSeconds % widthSeconds == 0) {
+                return Optional.of(view);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private String buildRollupQuerySql(Scan scan, RollupView view) {
+        String rollupPartials = "SELECT series_id, bucket, sample_count, value_sum, value_min, value_max, value_sketch"
+                + " FROM " + view.name()
+                + " WHERE " + seriesFilter(scan, "bucket");
+        return buildPartialsQuerySql(scan, rollupPartials);
+    }
+
+    private List<Object> buildRollupQueryParams(Scan scan, RollupView view) {
+        // Include the aggregate bucket containing the start of the range
+        long widthSeconds = view.bucketWidth().toSeconds();
+        Instant alignedStart = Instant.ofEpochSecond(
+                Math.floorDiv(scan.timeRange().getStartTime().getEpochSecond(), widthSeconds) * widthSeconds);
+        // Windows of the same aggregate bucket are included alike
+        return buildPartialsQueryParams(scan, seriesFilterParams(scan, alignedStart), alignedStart);
+    }
+
+    /**
+     * Per-second rate of cumulative counters: counter_agg handles resets within each series,
+     * and the per-series rates of a bucket add up. Ranked scans order groups by their average
+     * rate over the range.
+     */
+    private String buildRateQuerySql(Scan scan) {
+        String rates = "SELECT s.metric_name, "
+                + (scan.grouped() ? groupExpression(scan) + " AS series_group, " : "")
+                + bucketExpression(scan, "r.bucket") + " as bucket, SUM(series_rate) as value"
+                + " FROM (SELECT series_id, time_bucket(?, time) AS bucket, rate(counter_agg(time, value)) AS series_rate"
+                + " FROM metric_samples WHERE " + seriesFilter(scan, "time")
+                + " GROUP BY 1, 2) r JOIN metric_series s ON s.series_id = r.series_id"
+                + (scan.grouped() ? " GROUP BY 1, 2, 3" : " GROUP BY 1, 2");
+
+        if (scan.seriesLimit().isPresent()) {
+            return "WITH rates AS (" + rates + "),"
+                    + " ranked AS (SELECT series_group, AVG(value) AS rank_value FROM rates"
+                    + " GROUP BY 1 ORDER BY 2 " + rankOrder(scan) + " LIMIT ?)"
+                    + " SELECT rates.* FROM rates JOIN ranked r ON r.series_group = rates.series_group"
+                    + " ORDER BY r.rank_value " + rankOrder(scan) + ", 2, 3";
+        }
+        return rates + (scan.grouped() ? " ORDER BY 1, 2, 3" : " ORDER BY 1, 2");
+    }
+
+    private List<Object> buildRateQueryParams(Scan scan) {
+        List<Object> params = groupParams(scan);
+        params.addAll(bucketParams(scan));
+        params.add(formatInterval(scan.rollupPeriod()));
+        params.addAll(seriesFilterParams(scan, scan.timeRange().getStartTime()));
+        scan.seriesLimit().ifPresent(limit -> params.add(limit.getCount()));
         return params;
     }
 
+    private double percentileOf(AggregationType aggregationType) {
+        return switch (aggregationType) {
+            case P50 -> 0.50;
+            case P95 -> 0.95;
+            case P99 -> 0.99;
+            default -> 0.50;
+        };
+    }
+
     private String formatInterval(RollupPeriod rollupPeriod) {
         long minutes = rollupPeriod.getDuration().toMinutes();
         if (minutes < 60) {
@@ -231,11 +708,4 @@ public class JdbcMetricQueryRepository implements MetricQueryRepository {
         long days = rollupPeriod.getDuration().toDays();
         return days + " day" + (days != 1 ? "s" : "");
     }
-
-    private MetricQueryResult alignTimestamps(MetricQueryResult result, RollupPeriod rollupPeriod) {
-        // Simple alignment - in production, this would align all series to common timestamps
-        // For now, just return as-is
-        return result;
-    }
 }
-
@@ -0,0 +1,196 @@
+package com.asre.asre.infra.jdbc.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Applies storage policies to the metric_samples and metric_windows hypertables:
+ * compression after a configurable age, global retention, per-project retention overrides
+ * (project_metric_retention) and, for raw samples, a chunk interval sized from the observed
+ * ingest volume.
+ * Policies are applied on startup and re-checked by the nightly maintenance run.
+ */
+@Component
+@Slf4j
+public class MetricStoragePolicyManager {
+
+    private static final String HYPERTABLE = "metric_samples";
+
+    // Pre-aggregated windows age out with the raw samples they replace
+    private static final List<String> RETAINED_HYPERTABLES = List.of(HYPERTABLE, "metric_windows");
+
+    private static final String POLICY_MATCHES_SQL = """
+            SELECT EXISTS (
+                SELECT 1 FROM timescaledb_information.jobs
+                WHERE hypertable_name = ? AND proc_name = ?
+                AND (config ->> ?)::interval = make_interval(days => ?)
+            )
+            """;
+
+    // Bytes written per second over recently closed, not yet compressed chunks
+    private static final String INGEST_RATE_SQL = """
+            SELECT COALESCE(SUM(s.total_bytes), 0) AS bytes,
+                   COALESCE(SUM(EXTRACT(EPOCH FROM (c.range_end - c.range_start))), 0) AS seconds
+            FROM timescaledb_information.chunks c
+            JOIN chunks_detailed_size('metric_samples') s
+              ON s.chunk_schema = c.chunk_schema AND s.chunk_name = c.chunk_name
+            WHERE c.hypertable_name = 'metric_samples'
+              AND NOT c.is_compressed
+              AND c.range_end <= now()
+              AND c.range_end > now() - INTERVAL '7 days'
+            """;
+
+    private static final String CURRENT_CHUNK_INTERVAL_SQL = """
+            SELECT EXTRACT(EPOCH FROM time_interval)
+            FROM timescaledb_information.dimensions
+            WHERE hypertable_name = 'metric_samples' AND column_name = 'time'
+            """;
+
+    private static final String PURGE_PROJECT_SQL = """
+            DELETE FROM %s
+            WHERE series_id IN (SELECT series_id FROM metric_series WHERE project_id = ?)
+            AND time < now() - make_interval(days => ?)
+            """;
+
+    private final JdbcTemplate timescaleJdbcTemplate;
+
+    @Value("${metrics.storage.policies-enabled:true}")
+    private boolean policiesEnabled;
+
+    @Value("${metrics.storage.compress-after-days:2}")
+    private int compressAfterDays;
+
+    @Value("${metrics.storage.retention-days:90}")
+    private int retentionDays;
+
+    @Value("${metrics.storage.target-chunk-bytes:1073741824}")
+    private long targetChunkBytes;
+
+    @Value("${metrics.storage.min-chunk-interval-hours:1}")
+    private long minChunkIntervalHours;
+
+    @Value("${metrics.storage.max-chunk-interval-hours:168}")
+    private long maxChunkIntervalHours;
+
+    public MetricStoragePolicyManager(@Qualifier("timescaledbJdbcTemplate") JdbcTemplate timescaleJdbcTemplate) {
+        this.timescaleJdbcTemplate = timescaleJdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void applyPolicies() {
+        if (!policiesEnabled) {
+            return;
+        }
+        try {
+            applyCompressionPolicy();
+            applyRetentionPolicy();
+            adjustChunkInterval();
+        } catch (Exception e) {
+            log.error("Error applying metric storage policies", e);
+        }
+    }
+
+    @Scheduled(cron = "${metrics.storage.maintenance-cron:0 15 3 * * *}")
+    public void runMaintenance() {
+        if (!policiesEnabled) {
+            return;
+        }
+        try {
+            adjustChunkInterval();
+            purgeProjectOverrides();
+        } catch (Exception e) {
+            log.error("Error running metric storage maintenance", e);
+        }
+    }
+
+    private void applyCompressionPolicy() {
+        for (String hypertable : RETAINED_HYPERTABLES) {
+            if (policyMatches(hypertable, "policy_compression", "compress_after", compressAfterDays)) {
+                continue;
+            }
+            timescaleJdbcTemplate.queryForObject(
+                    "SELECT remove_compression_policy('" + hypertable + "', if_exists => true)", Object.class);
+            timescaleJdbcTemplate.queryForObject(
+                    "SELECT add_compression_policy('" + hypertable + "', make_interval(days => ?), if_not_exists => true)",
+                    Integer.class, compressAfterDays);
+            log.info("Compression policy on {} set to {} days", hypertable, compressAfterDays);
+        }
+    }
+
+    private void applyRetentionPolicy() {
+        for (String hypertable : RETAINED_HYPERTABLES) {
+            if (policyMatches(hypertable, "policy_retention", "drop_after", retentionDays)) {
+                continue;
+            }
+            timescaleJdbcTemplate.queryForObject(
+                    "SELECT remove_retention_policy('" + hypertable + "', if_exists => true)", Object.class);
+            timescaleJdbcTemplate.queryForObject(
+                    "SELECT add_retention_policy('" + hypertable + "', make_interval(days => ?), if_not_exists => true)",
+                    Integer.class, retentionDays);
+            log.info("Retention policy on {} set to {} days", hypertable, retentionDays);
+        }
+    }
+
+    private boolean policyMatches(String hypertable, String procName, String configKey, int days) {
+        Boolean matches = timescaleJdbcTemplate.queryForObject(
+                POLICY_MATCHES_SQL, Boolean.class, hypertable, procName, configKey, days);
+        return Boolean.TRUE.equals(matches);
+    }
+
+    /**
+     * Sizes new chunks so one uncompressed chunk, indexes included, stays near the target size.
+     * Only chunks created after the change use the new interval.
+     */
+    private void adjustChunkInterval() {
+        Map<String, Object> rate = timescaleJdbcTemplate.queryForMap(INGEST_RATE_SQL);
+        double bytes = ((Number) rate.get("bytes")).doubleValue();
+        double seconds = ((Number) rate.get("seconds")).doubleValue();
+        if (bytes <= 0 || seconds <= 0) {
+            return;
+        }
+
+        long hours = Math.round(targetChunkBytes / (bytes / seconds) / 3600);
+        hours = Math.max(minChunkIntervalHours, Math.min(maxChunkIntervalHours, hours));
+
+        Number current = timescaleJdbcTemplate.queryForObject(CURRENT_CHUNK_INTERVAL_SQL, Number.class);
+        long currentHours = current != null ? Math.round(current.doubleValue() / 3600) : 0;
+        // Ignore small drifts so the interval does not flap between runs
+        if (currentHours > 0 && Math.abs(hours - currentHours) <= currentHours / 4) {
+            return;
+        }
+
+        timescaleJdbcTemplate.queryForObject(
+                "SELECT set_chunk_time_interval('metric_samples', make_interval(hours => ?))", Object.class, (int) hours);
+        log.info("Chunk interval on {} changed from {}h to {}h ({} bytes/s ingested)",
+                HYPERTABLE, currentHours, hours, Math.round(bytes / seconds));
+    }
+
+    /**
+     * Deletes samples and windows past a project's own retention when it is shorter than the global one.
+     */
+    private void purgeProjectOverrides() {
+        List<Map<String, Object>> overrides = timescaleJdbcTemplate.queryForList(
+                "SELECT project_id, retention_days FROM project_metric_retention WHERE retention_days < ?",
+                retentionDays);
+        for (Map<String, Object> override : overrides) {
+            UUID projectId = (UUID) override.get("project_id");
+            int days = ((Number) override.get("retention_days")).intValue();
+            for (String hypertable : RETAINED_HYPERTABLES) {
+                int deleted = timescaleJdbcTemplate.update(PURGE_PROJECT_SQL.formatted(hypertable), projectId, days);
+                if (deleted > 0) {
+                    log.info("Purged {} rows of {} older than {} days for project {}", deleted, hypertable, days, projectId);
+                }
+            }
+        }
+    }
+}
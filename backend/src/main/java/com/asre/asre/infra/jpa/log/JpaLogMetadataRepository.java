@@ -2,9 +2,11 @@ package com.asre.asre.infra.jpa.log;
 
 import com.asre.asre.domain.ingestion.LogMetadata;
 import com.asre.asre.domain.ingestion.LogMetadataRepository;
+import com.asre.asre.infra.jdbc.PgBinaryCopyWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
@@ -22,15 +24,36 @@ public class JpaLogMetadataRepository implements LogMetadataRepository {
             VALUES (?, ?, ?, ?, ?, ?)
             """;
 
+    private static final String COPY_SQL = """
+            COPY log_metadata (project_id, service_id, log_id, timestamp, ingested_at, level)
+            FROM STDIN WITH (FORMAT binary)
+            """;
+
     @Qualifier("supabaseJdbcTemplate")
     private final JdbcTemplate supabaseJdbcTemplate;
 
+    @Value("${ingestion.writer.mode:insert}")
+    private String writerMode;
+
     @Override
     public void saveBatch(List<LogMetadata> logMetadataList) {
         if (logMetadataList.isEmpty()) {
             return;
         }
 
+        try {
+            if ("copy".equalsIgnoreCase(writerMode)) {
+                copyBatch(logMetadataList);
+            } else {
+                insertBatch(logMetadataList);
+            }
+        } catch (Exception e) {
+            log.error("Error inserting log metadata batch", e);
+            throw new RuntimeException("Failed to insert log metadata", e);
+        }
+    }
+
+    private void insertBatch(List<LogMetadata> logMetadataList) {
         List<Object[]> batchArgs = logMetadataList.stream()
                 .map(metadata -> new Object[] {
                         metadata.getProjectId(),
@@ -42,12 +65,23 @@ public class JpaLogMetadataRepository implements LogMetadataRepository {
                 })
                 .collect(Collectors.toList());
 
-        try {
-            int[] results = supabaseJdbcTemplate.batchUpdate(INSERT_SQL, batchArgs);
-            log.debug("Inserted {} log metadata records into PostgreSQL", results.length);
-        } catch (Exception e) {
-            log.error("Error inserting log metadata batch", e);
-            throw new RuntimeException("Failed to insert log metadata", e);
+        int[] results = supabaseJdbcTemplate.batchUpdate(INSERT_SQL, batchArgs);
+        log.debug("Inserted {} log metadata records into PostgreSQL", results.length);
+    }
+
+    private void copyBatch(List<LogMetadata> logMetadataList) {
+        PgBinaryCopyWriter writer = new PgBinaryCopyWriter(logMetadataList.size());
+        for (LogMetadata metadata : logMetadataList) {
+            writer.startRow(6)
+                    .writeUuid(metadata.getProjectId())
+                    .writeUuid(metadata.getServiceId())
+                    .writeText(metadata.getLogId())
+                    .writeTimestamp(metadata.getTimestamp())
+                    .writeTimestamp(metadata.getIngestedAt())
+                    .writeText(metadata.getLevel());
         }
+
+        long copied = writer.copyIn(supabaseJdbcTemplate, COPY_SQL);
+        log.debug("Copied {} log metadata records into PostgreSQL", copied);
     }
 }
@@ -10,6 +10,7 @@ import org.springframework.stereotype.Repository;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -73,28 +74,30 @@ public class JpaServiceRepository implements ServiceRepository {
             entity.setCreatedAt(now);
             entity.setLastSeenAt(now);
         } else {
-            // Check if service exists
-            Optional<Service> existing = findById(entity.getId());
-            if (existing.isEmpty()) {
-                // Insert with provided ID
-                Instant now = entity.getCreatedAt() != null ? entity.getCreatedAt() : Instant.now();
-                Instant lastSeen = entity.getLastSeenAt() != null ? entity.getLastSeenAt() : now;
-                String sql = "INSERT INTO services (id, project_id, name, created_at, last_seen_at) VALUES (?, ?, ?, ?, ?)";
-                jdbcTemplate.update(sql, entity.getId(), entity.getProjectId(), entity.getName(),
-                        Timestamp.from(now), Timestamp.from(lastSeen));
-                entity.setCreatedAt(now);
-                entity.setLastSeenAt(lastSeen);
-            } else {
-                // Update existing service
-                Instant lastSeen = entity.getLastSeenAt() != null ? entity.getLastSeenAt() : Instant.now();
-                String sql = "UPDATE services SET name = ?, last_seen_at = ? WHERE id = ?";
-                jdbcTemplate.update(sql, entity.getName(), Timestamp.from(lastSeen), entity.getId());
-                entity.setLastSeenAt(lastSeen);
-            }
+            // Insert with provided ID, or update name/last_seen_at if it already exists
+            Instant now = entity.getCreatedAt() != null ? entity.getCreatedAt() : Instant.now();
+            Instant lastSeen = entity.getLastSeenAt() != null ? entity.getLastSeenAt() : Instant.now();
+            String sql = "INSERT INTO services (id, project_id, name, created_at, last_seen_at) VALUES (?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name, last_seen_at = EXCLUDED.last_seen_at " +
+                    "RETURNING id, project_id, name, created_at, last_seen_at";
+            entity = jdbcTemplate.queryForObject(sql, SERVICE_ENTITY_ROW_MAPPER, entity.getId(), entity.getProjectId(),
+                    entity.getName(), Timestamp.from(now), Timestamp.from(lastSeen));
         }
         return mapper.toDomain(entity);
     }
 
+    @Override
+    public void updateLastSeen(Map<UUID, Instant> lastSeenByServiceId) {
+        if (lastSeenByServiceId.isEmpty()) {
+            return;
+        }
+        String sql = "UPDATE services SET last_seen_at = GREATEST(last_seen_at, ?) WHERE id = ?";
+        List<Object[]> batchArgs = lastSeenByServiceId.entrySet().stream()
+                .map(entry -> new Object[] { Timestamp.from(entry.getValue()), entry.getKey() })
+                .toList();
+        jdbcTemplate.batchUpdate(sql, batchArgs);
+    }
+
     @Override
     public boolean existsByProjectIdAndName(UUID projectId, String name) {
         String sql = "SELECT COUNT(*) FROM services WHERE project_id = ? AND name = ?";
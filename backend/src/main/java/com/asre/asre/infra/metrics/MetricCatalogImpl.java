@@ -25,12 +25,19 @@ public class MetricCatalogImpl implements MetricCatalogPort {
     public boolean metricExists(UUID projectId, String metricName) {
         try {
             // Check if metric has any data in the last 30 days
-            String sql = "SELECT COUNT(*) FROM metrics " +
-                    "WHERE project_id = ? AND metric_name = ? " +
+            // Pre-aggregated series only have rows in metric_windows
+            String sql = "SELECT COUNT(*) FROM (" +
+                    "SELECT 1 FROM metric_samples " +
+                    "WHERE series_id IN (SELECT series_id FROM metric_series WHERE project_id = ? AND metric_name = ?) " +
                     "AND time > NOW() - INTERVAL '30 days' " +
-                    "LIMIT 1";
+                    "UNION ALL " +
+                    "SELECT 1 FROM metric_windows " +
+                    "WHERE series_id IN (SELECT series_id FROM metric_series WHERE project_id = ? AND metric_name = ?) " +
+                    "AND time > NOW() - INTERVAL '30 days' " +
+                    "LIMIT 1) recent";
             
-            Integer count = timescaleJdbcTemplate.queryForObject(sql, Integer.class, projectId, metricName);
+            Integer count = timescaleJdbcTemplate.queryForObject(sql, Integer.class,
+                    projectId, metricName, projectId, metricName);
             return count != null && count > 0;
         } catch (Exception e) {
             // If query fails, assume metric doesn't exist
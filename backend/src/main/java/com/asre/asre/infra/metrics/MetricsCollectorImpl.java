@@ -2,17 +2,26 @@ package com.asre.asre.infra.metrics;
 
 import com.asre.asre.domain.ingestion.MetricsCollectorPort;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Component
 @RequiredArgsConstructor
 public class MetricsCollectorImpl implements MetricsCollectorPort {
 
     private final MeterRegistry meterRegistry;
 
+    // Backing values for admission gauges, one per pipeline
+    private final Map<String, AtomicLong> admissionPressure = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> admissionFlushLatency = new ConcurrentHashMap<>();
+
     @Override
     public void recordMetricsIngested(long count) {
         Counter.builder("ingestion.metrics.count")
@@ -37,6 +46,14 @@ public class MetricsCollectorImpl implements MetricsCollectorPort {
                 .record(durationMs, java.util.concurrent.TimeUnit.MILLISECONDS);
     }
 
+    @Override
+    public void recordMetricWindowsWritten(long count) {
+        Counter.builder("ingestion.metrics.windows")
+                .description("Total number of pre-aggregated metric windows written")
+                .register(meterRegistry)
+                .increment(count);
+    }
+
     @Override
     public void recordLogsIngested(long count) {
         Counter.builder("ingestion.logs.count")
@@ -60,6 +77,35 @@ public class MetricsCollectorImpl implements MetricsCollectorPort {
                 .register(meterRegistry)
                 .record(durationMs, java.util.concurrent.TimeUnit.MILLISECONDS);
     }
-}
 
+    @Override
+    public void recordAdmissionDecision(String pipeline, String outcome) {
+        Counter.builder("ingestion.admission.decisions")
+                .description("Ingestion admission decisions")
+                .tag("pipeline", pipeline)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
 
+    @Override
+    public void recordAdmissionState(String pipeline, int pressureLevel, double flushLatencyMs) {
+        admissionPressure.computeIfAbsent(pipeline, name -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("ingestion.admission.pressure", value, AtomicLong::get)
+                    .description("Admission pressure level (0=normal, 1=throttling, 2=overloaded)")
+                    .tag("pipeline", name)
+                    .register(meterRegistry);
+            return value;
+        }).set(pressureLevel);
+
+        admissionFlushLatency.computeIfAbsent(pipeline, name -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("ingestion.admission.flush_latency_ms", value, AtomicLong::get)
+                    .description("Smoothed worker batch flush latency used for admission")
+                    .tag("pipeline", name)
+                    .register(meterRegistry);
+            return value;
+        }).set(Math.round(flushLatencyMs));
+    }
+}
@@ -0,0 +1,32 @@
+package com.asre.asre.infra.metrics;
+
+import com.asre.asre.domain.metrics.QueryMetricsCollectorPort;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class QueryMetricsCollectorImpl implements QueryMetricsCollectorPort {
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public void recordQueryExecuted(String queryType) {
+        Counter.builder("metrics.query.executions")
+                .description("Metric queries executed against the database")
+                .tag("type", queryType)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @Override
+    public void recordQueryCoalesced(String queryType) {
+        Counter.builder("metrics.query.coalesced")
+                .description("Metric queries served by an identical query already in flight")
+                .tag("type", queryType)
+                .register(meterRegistry)
+                .increment();
+    }
+}
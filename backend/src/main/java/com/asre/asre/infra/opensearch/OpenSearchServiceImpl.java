@@ -1,8 +1,10 @@
 package com.asre.asre.infra.opensearch;
 
 import com.asre.asre.domain.ingestion.LogIndexerPort;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.opensearch.action.bulk.BulkItemResponse;
 import org.opensearch.action.bulk.BulkRequest;
 import org.opensearch.action.bulk.BulkResponse;
 import org.opensearch.action.index.IndexRequest;
@@ -13,10 +15,11 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.Semaphore;
 
 @Service
 @RequiredArgsConstructor
@@ -26,29 +29,37 @@ public class OpenSearchServiceImpl implements LogIndexerPort {
     @Value("${opensearch.index.name:opensearch-logs}")
     private String indexName;
 
+    @Value("${opensearch.bulk.max-bytes:5242880}")
+    private long maxBulkBytes;
+
+    @Value("${opensearch.bulk.max-in-flight:4}")
+    private int maxInFlight;
+
+    @Value("${opensearch.bulk.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${opensearch.bulk.initial-backoff-ms:200}")
+    private long initialBackoffMs;
+
     private final RestHighLevelClient openSearchClient;
 
+    /**
+     * Caps concurrent _bulk requests across all writer threads. Callers block when
+     * OpenSearch is slow, which propagates back to the RabbitMQ consumers.
+     */
+    private Semaphore inFlightRequests;
+
+    @PostConstruct
+    void initInFlightLimit() {
+        inFlightRequests = new Semaphore(Math.max(1, maxInFlight), true);
+    }
+
     @Override
     public void indexLog(com.asre.asre.domain.ingestion.LogEntry logEntry, String logId) {
-        Map<String, Object> document = new HashMap<>();
-        document.put("project_id", logEntry.getProjectId().toString());
-        document.put("service_id", logEntry.getServiceId().toString());
-        document.put("timestamp", logEntry.getTimestamp().toString());
-        document.put("ingested_at", Instant.now().toString());
-        document.put("level", logEntry.getLevel().name()); // Convert enum to string
-        document.put("message", logEntry.getMessage());
-        document.put("sampled", logEntry.isSampled()); // Store sampling flag
-        if (logEntry.getTraceId() != null) {
-            document.put("trace_id", logEntry.getTraceId());
-        }
-        if (logEntry.getContext() != null) {
-            document.put("context", logEntry.getContext());
-        }
-
         try {
             IndexRequest request = new IndexRequest(indexName)
                     .id(logId)
-                    .source(document, XContentType.JSON);
+                    .source(toDocument(logEntry), XContentType.JSON);
 
             openSearchClient.index(request, RequestOptions.DEFAULT);
         } catch (Exception e) {
@@ -57,6 +68,11 @@ public class OpenSearchServiceImpl implements LogIndexerPort {
         }
     }
 
+    /**
+     * Indexes logs through byte-bounded _bulk requests, using each entry's LogId as the
+     * document ID so documents match their log_metadata rows.
+     * Only items that failed with a retryable status are re-sent.
+     */
     @Override
     public void indexBatch(List<com.asre.asre.domain.ingestion.LogEntry> logEntries) {
         if (logEntries.isEmpty()) {
@@ -64,40 +80,115 @@ public class OpenSearchServiceImpl implements LogIndexerPort {
         }
 
         BulkRequest bulkRequest = new BulkRequest();
-
         for (com.asre.asre.domain.ingestion.LogEntry logEntry : logEntries) {
-            String logId = UUID.randomUUID().toString();
-            Map<String, Object> document = new HashMap<>();
-            document.put("project_id", logEntry.getProjectId().toString());
-            document.put("service_id", logEntry.getServiceId().toString());
-            document.put("timestamp", logEntry.getTimestamp().toString());
-            document.put("ingested_at", Instant.now().toString());
-            document.put("level", logEntry.getLevel().name()); // Convert enum to string
-            document.put("message", logEntry.getMessage());
-            document.put("sampled", logEntry.isSampled()); // Store sampling flag
-            if (logEntry.getTraceId() != null) {
-                document.put("trace_id", logEntry.getTraceId());
+            IndexRequest request = new IndexRequest(indexName)
+                    .id(logEntry.getOrCreateLogId().getValue())
+                    .source(toDocument(logEntry), XContentType.JSON);
+            bulkRequest.add(request);
+
+            if (bulkRequest.estimatedSizeInBytes() >= maxBulkBytes) {
+                executeWithRetry(bulkRequest);
+                bulkRequest = new BulkRequest();
             }
-            if (logEntry.getContext() != null) {
-                document.put("context", logEntry.getContext());
+        }
+        if (bulkRequest.numberOfActions() > 0) {
+            executeWithRetry(bulkRequest);
+        }
+
+        log.debug("Indexed {} logs to OpenSearch", logEntries.size());
+    }
+
+    private void executeWithRetry(BulkRequest bulkRequest) {
+        BulkRequest attempt = bulkRequest;
+        long backoffMs = initialBackoffMs;
+
+        for (int retry = 0; ; retry++) {
+            BulkResponse response;
+            try {
+                response = sendBulk(attempt);
+            } catch (Exception e) {
+                if (retry >= maxRetries) {
+                    log.error("Error bulk indexing logs to OpenSearch", e);
+                    throw new RuntimeException("Failed to bulk index logs to OpenSearch", e);
+                }
+                log.warn("Bulk request of {} logs failed, retrying in {}ms: {}",
+                        attempt.numberOfActions(), backoffMs, e.getMessage());
+                backoffMs = backoff(backoffMs);
+                continue;
             }
 
-            IndexRequest request = new IndexRequest(indexName)
-                    .id(logId)
-                    .source(document, XContentType.JSON);
-            bulkRequest.add(request);
+            if (!response.hasFailures()) {
+                return;
+            }
+
+            BulkRequest retryRequest = new BulkRequest();
+            List<String> permanentFailures = new ArrayList<>();
+            for (BulkItemResponse item : response.getItems()) {
+                if (!item.isFailed()) {
+                    continue;
+                }
+                if (retry < maxRetries && isRetryable(item.status().getStatus())) {
+                    retryRequest.add(attempt.requests().get(item.getItemId()));
+                } else {
+                    permanentFailures.add(item.getId() + ": " + item.getFailureMessage());
+                }
+            }
+
+            if (!permanentFailures.isEmpty()) {
+                log.error("OpenSearch bulk indexing had {} permanent failures, first: {}",
+                        permanentFailures.size(), permanentFailures.get(0));
+                throw new RuntimeException("Failed to bulk index " + permanentFailures.size() + " logs to OpenSearch");
+            }
+
+            log.warn("Retrying {} of {} bulk items rejected by OpenSearch in {}ms",
+                    retryRequest.numberOfActions(), attempt.numberOfActions(), backoffMs);
+            backoffMs = backoff(backoffMs);
+            attempt = retryRequest;
         }
+    }
 
+    private BulkResponse sendBulk(BulkRequest bulkRequest) throws Exception {
+        inFlightRequests.acquire();
         try {
-            BulkResponse bulkResponse = openSearchClient.bulk(bulkRequest, RequestOptions.DEFAULT);
-            if (bulkResponse.hasFailures()) {
-                log.error("OpenSearch bulk indexing had failures: {}", bulkResponse.buildFailureMessage());
-            } else {
-                log.debug("Indexed {} logs to OpenSearch", logEntries.size());
-            }
-        } catch (Exception e) {
-            log.error("Error bulk indexing logs to OpenSearch", e);
-            throw new RuntimeException("Failed to bulk index logs to OpenSearch", e);
+            return openSearchClient.bulk(bulkRequest, RequestOptions.DEFAULT);
+        } finally {
+            inFlightRequests.release();
+        }
+    }
+
+    private long backoff(long backoffMs) {
+        try {
+            Thread.sleep(backoffMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrying bulk indexing", e);
+        }
+        return backoffMs * 2;
+    }
+
+    /**
+     * Rejections (429) and transient gateway/unavailable errors are worth retrying;
+     * mapping and validation errors are not.
+     */
+    private boolean isRetryable(int status) {
+        return status == 429 || status == 502 || status == 503 || status == 504;
+    }
+
+    private Map<String, Object> toDocument(com.asre.asre.domain.ingestion.LogEntry logEntry) {
+        Map<String, Object> document = new HashMap<>();
+        document.put("project_id", logEntry.getProjectId().toString());
+        document.put("service_id", logEntry.getServiceId().toString());
+        document.put("timestamp", logEntry.getTimestamp().toString());
+        document.put("ingested_at", Instant.now().toString());
+        document.put("level", logEntry.getLevel().name()); // Convert enum to string
+        document.put("message", logEntry.getMessage());
+        document.put("sampled", logEntry.isSampled()); // Store sampling flag
+        if (logEntry.getTraceId() != null) {
+            document.put("trace_id", logEntry.getTraceId());
+        }
+        if (logEntry.getContext() != null) {
+            document.put("context", logEntry.getContext());
         }
+        return document;
     }
 }
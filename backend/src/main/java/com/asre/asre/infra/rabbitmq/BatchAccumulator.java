@@ -0,0 +1,190 @@
+package com.asre.asre.infra.rabbitmq;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Lock-free batch accumulator for ingestion workers.
+ * Listener threads append to a concurrent queue without blocking each other; batches are cut
+ * by item count, estimated bytes or age and handed to a bounded pool of writer threads, so
+ * consuming and writing overlap. When every writer is busy and the hand-off queue is full,
+ * the calling listener thread runs the flush itself, which pushes back on RabbitMQ.
+ */
+@Slf4j
+public class BatchAccumulator<T> implements AutoCloseable {
+
+    private final String name;
+    private final int maxBatchSize;
+    private final long maxBatchBytes;
+    private final long maxAgeNanos;
+    private final ToLongFunction<T> weigher;
+    private final Consumer<List<T>> flusher;
+
+    private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingItems = new AtomicInteger();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicLong lastFlushNanos = new AtomicLong(System.nanoTime());
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    private final ThreadPoolExecutor writerPool;
+    private final ScheduledExecutorService ticker;
+
+    public BatchAccumulator(String name, int maxBatchSize, long maxBatchBytes, long maxAgeMillis,
+                            int writerThreads, ToLongFunction<T> weigher, Consumer<List<T>> flusher) {
+        this.name = name;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxBatchBytes = maxBatchBytes > 0 ? maxBatchBytes : Long.MAX_VALUE;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, maxAgeMillis));
+        this.weigher = weigher;
+        this.flusher = flusher;
+
+        int threads = Math.max(1, writerThreads);
+        this.writerPool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 2),
+                namedThreads(name + "-writer"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(namedThreads(name + "-flush-timer"));
+        long tickMillis = Math.max(10, maxAgeMillis / 4);
+        ticker.scheduleWithFixedDelay(this::flushIfExpired, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Appends items and triggers a flush if the size or byte threshold is crossed.
+     */
+    public void addAll(List<T> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        if (closed) {
+            // Accumulator is shutting down: write synchronously so nothing is lost
+            runFlush(new ArrayList<>(items));
+            return;
+        }
+
+        long bytes = 0;
+        for (T item : items) {
+            bytes += weigher.applyAsLong(item);
+        }
+        queue.addAll(items);
+        int size = pendingItems.addAndGet(items.size());
+        long totalBytes = pendingBytes.addAndGet(bytes);
+
+        if (size >= maxBatchSize || totalBytes >= maxBatchBytes) {
+            drain(false);
+        }
+    }
+
+    /**
+     * Hands every pending item to the writer pool.
+     */
+    public void flush() {
+        drain(true);
+    }
+
+    private void flushIfExpired() {
+        try {
+            if (pendingItems.get() > 0 && System.nanoTime() - lastFlushNanos.get() >= maxAgeNanos) {
+                drain(true);
+            }
+        } catch (Exception e) {
+            log.error("Error flushing {} batch on timeout", name, e);
+        }
+    }
+
+    private void drain(boolean force) {
+        // Only one thread cuts batches at a time; others keep appending
+        while (draining.compareAndSet(false, true)) {
+            try {
+                while (pendingItems.get() >= maxBatchSize
+                        || pendingBytes.get() >= maxBatchBytes
+                        || (force && pendingItems.get() > 0)) {
+                    List<T> batch = pollBatch();
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    submit(batch);
+                }
+            } finally {
+                draining.set(false);
+            }
+            // Re-check for items appended while the flag was held
+            if (pendingItems.get() < maxBatchSize && pendingBytes.get() < maxBatchBytes
+                    && !(force && pendingItems.get() > 0)) {
+                return;
+            }
+        }
+    }
+
+    private List<T> pollBatch() {
+        List<T> batch = new ArrayList<>(Math.min(maxBatchSize, pendingItems.get()));
+        long bytes = 0;
+        T item;
+        while (batch.size() < maxBatchSize && bytes < maxBatchBytes && (item = queue.poll()) != null) {
+            batch.add(item);
+            bytes += weigher.applyAsLong(item);
+        }
+        pendingItems.addAndGet(-batch.size());
+        pendingBytes.addAndGet(-bytes);
+        lastFlushNanos.set(System.nanoTime());
+        return batch;
+    }
+
+    private void submit(List<T> batch) {
+        if (writerPool.isShutdown()) {
+            runFlush(batch);
+            return;
+        }
+        writerPool.execute(() -> runFlush(batch));
+    }
+
+    private void runFlush(List<T> batch) {
+        try {
+            flusher.accept(batch);
+        } catch (Exception e) {
+            log.error("Unhandled error flushing {} batch of {} items", name, batch.size(), e);
+        }
+    }
+
+    /**
+     * Stops the timer, flushes everything still buffered and waits for in-flight writes.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        ticker.shutdown();
+        flush();
+        writerPool.shutdown();
+        try {
+            if (!writerPool.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for {} writers to finish", name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
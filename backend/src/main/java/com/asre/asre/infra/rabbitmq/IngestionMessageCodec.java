@@ -0,0 +1,389 @@
+package com.asre.asre.infra.rabbitmq;
+
+import com.asre.asre.domain.ingestion.HistogramValue;
+import com.asre.asre.domain.ingestion.LogEntry;
+import com.asre.asre.domain.ingestion.Metric;
+import com.asre.asre.domain.ingestion.MetricKind;
+import com.asre.asre.domain.logs.LogLevel;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary encoding of ingestion batches between the API and the workers.
+ * UUIDs are written as two longs and timestamps as epoch nanos. Metric names and tag
+ * keys/values are written once per message in a string table and referenced by index;
+ * decoded strings are interned so repeated names share one instance across messages.
+ *
+ * <pre>
+ * metrics v2: 'M' version projectId(2 longs) stringTable count
+ *             { serviceId(2 longs) name(idx) kind(byte) value(double) | histogram
+ *               timestampNanos(long) tagCount { key(idx) value(idx) } }
+ *   histogram: count(long) sum min max(doubles) bucketCount { value(double) count(long) }
+ * metrics v1: as v2 without kind, always a value
+ * logs v1/v2: 'L' version projectId(2 longs) count
+ *             { serviceId(2 longs) level(byte) timestampNanos(long) flags(byte) message [traceId] [contextJson] }
+ * </pre>
+ * Counts, indexes and string lengths are unsigned varints. Version 1 batches are still decoded.
+ */
+@Component
+@RequiredArgsConstructor
+public class IngestionMessageCodec {
+
+    public static final String CONTENT_TYPE = "application/x-asre-batch";
+    public static final int VERSION = 2;
+    private static final int MIN_VERSION = 1;
+
+    private static final byte METRICS_KIND = 'M';
+    private static final byte LOGS_KIND = 'L';
+
+    private static final int FLAG_TRACE_ID = 1;
+    private static final int FLAG_CONTEXT = 1 << 1;
+    private static final int FLAG_SAMPLING_APPLIED = 1 << 2;
+    private static final int FLAG_SAMPLED = 1 << 3;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    // Bounded so high-cardinality tag values cannot grow it without limit
+    private static final int MAX_INTERNED_STRINGS = 50_000;
+
+    private static final LogLevel[] LEVELS = LogLevel.values();
+    private static final MetricKind[] KINDS = MetricKind.values();
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, String> internedStrings = new ConcurrentHashMap<>();
+
+    /**
+     * Wraps an encoded batch in an AMQP message tagged with the batch content type.
+     */
+    public static Message toMessage(byte[] body) {
+        return MessageBuilder.withBody(body)
+                .setContentType(CONTENT_TYPE)
+                .build();
+    }
+
+    public static boolean isBinaryBatch(Message message) {
+        return CONTENT_TYPE.equals(message.getMessageProperties().getContentType());
+    }
+
+    /**
+     * Encodes metrics of a single project.
+     */
+    public byte[] encodeMetrics(UUID projectId, List<Metric> metrics) {
+        try {
+            Map<String, Integer> stringIndex = new LinkedHashMap<>();
+            for (Metric metric : metrics) {
+                stringIndex.putIfAbsent(metric.getMetricName(), stringIndex.size());
+                if (metric.getTags() != null) {
+                    for (Map.Entry<String, String> tag : metric.getTags().entrySet()) {
+                        if (tag.getValue() == null) {
+                            continue;
+                        }
+                        stringIndex.putIfAbsent(tag.getKey(), stringIndex.size());
+                        stringIndex.putIfAbsent(tag.getValue(), stringIndex.size());
+                    }
+                }
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + metrics.size() * 48);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(METRICS_KIND);
+            out.writeByte(VERSION);
+            writeUuid(out, projectId);
+
+            writeVarint(out, stringIndex.size());
+            for (String value : stringIndex.keySet()) {
+                writeString(out, value);
+            }
+
+            writeVarint(out, metrics.size());
+            for (Metric metric : metrics) {
+                writeUuid(out, metric.getServiceId());
+                writeVarint(out, stringIndex.get(metric.getMetricName()));
+                out.writeByte(metric.getKind().ordinal());
+                if (metric.isHistogram()) {
+                    writeHistogram(out, metric.getHistogram());
+                } else {
+                    out.writeDouble(metric.getValue());
+                }
+                out.writeLong(toEpochNanos(metric.getTimestamp()));
+                Map<String, String> tags = metric.getTags();
+                writeVarint(out, tags != null ? countTags(tags) : 0);
+                if (tags != null) {
+                    for (Map.Entry<String, String> tag : tags.entrySet()) {
+                        if (tag.getValue() == null) {
+                            continue;
+                        }
+                        writeVarint(out, stringIndex.get(tag.getKey()));
+                        writeVarint(out, stringIndex.get(tag.getValue()));
+                    }
+                }
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode metrics batch", e);
+        }
+    }
+
+    public List<Metric> decodeMetrics(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        int version = readHeader(in, METRICS_KIND);
+        UUID projectId = readUuid(in);
+
+        String[] strings = new String[readLength(in)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = intern(readString(in));
+        }
+
+        int count = readLength(in);
+        List<Metric> metrics = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UUID serviceId = readUuid(in);
+            String name = strings[readVarint(in)];
+            MetricKind kind = MetricKind.GAUGE;
+            if (version >= 2) {
+                int ordinal = in.readUnsignedByte();
+                if (ordinal >= KINDS.length) {
+                    throw new IOException("Unknown metric kind ordinal " + ordinal);
+                }
+                kind = KINDS[ordinal];
+            }
+            HistogramValue histogram = kind == MetricKind.HISTOGRAM ? readHistogram(in) : null;
+            Double value = histogram == null ? in.readDouble() : null;
+            Instant timestamp = fromEpochNanos(in.readLong());
+            int tagCount = readLength(in);
+            Map<String, String> tags = null;
+            if (tagCount > 0) {
+                tags = new HashMap<>(tagCount * 2);
+                for (int t = 0; t < tagCount; t++) {
+                    tags.put(strings[readVarint(in)], strings[readVarint(in)]);
+                }
+            }
+            metrics.add(new Metric(projectId, serviceId, name, value, timestamp, tags, kind, histogram));
+        }
+        return metrics;
+    }
+
+    /**
+     * Encodes log entries of a single project, including edge sampling decisions.
+     */
+    public byte[] encodeLogs(UUID projectId, List<LogEntry> logs) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + logs.size() * 160);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(LOGS_KIND);
+            out.writeByte(VERSION);
+            writeUuid(out, projectId);
+
+            writeVarint(out, logs.size());
+            for (LogEntry entry : logs) {
+                writeUuid(out, entry.getServiceId());
+                out.writeByte(entry.getLevel().ordinal());
+                out.writeLong(toEpochNanos(entry.getTimestamp()));
+
+                boolean hasContext = entry.getContext() != null && !entry.getContext().isEmpty();
+                int flags = (entry.getTraceId() != null ? FLAG_TRACE_ID : 0)
+                        | (hasContext ? FLAG_CONTEXT : 0)
+                        | (entry.isSamplingApplied() ? FLAG_SAMPLING_APPLIED : 0)
+                        | (entry.isSampled() ? FLAG_SAMPLED : 0);
+                out.writeByte(flags);
+
+                writeString(out, entry.getMessage());
+                if (entry.getTraceId() != null) {
+                    writeString(out, entry.getTraceId());
+                }
+                if (hasContext) {
+                    // Context is free-form; it stays JSON inside the binary frame
+                    byte[] context = objectMapper.writeValueAsBytes(entry.getContext());
+                    writeVarint(out, context.length);
+                    out.write(context);
+                }
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode logs batch", e);
+        }
+    }
+
+    public List<LogEntry> decodeLogs(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        readHeader(in, LOGS_KIND);
+        UUID projectId = readUuid(in);
+
+        int count = readLength(in);
+        List<LogEntry> logs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UUID serviceId = readUuid(in);
+            int level = in.readUnsignedByte();
+            if (level >= LEVELS.length) {
+                throw new IOException("Unknown log level ordinal " + level);
+            }
+            Instant timestamp = fromEpochNanos(in.readLong());
+            int flags = in.readUnsignedByte();
+            String message = readString(in);
+            String traceId = (flags & FLAG_TRACE_ID) != 0 ? readString(in) : null;
+            Map<String, Object> context = null;
+            if ((flags & FLAG_CONTEXT) != 0) {
+                byte[] json = new byte[readLength(in)];
+                in.readFully(json);
+                context = objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+            }
+
+            LogEntry entry = new LogEntry(projectId, serviceId, LEVELS[level], message, timestamp, traceId, context);
+            entry.setSamplingApplied((flags & FLAG_SAMPLING_APPLIED) != 0);
+            entry.setSampled((flags & FLAG_SAMPLED) != 0);
+            logs.add(entry);
+        }
+        return logs;
+    }
+
+    private static void writeHistogram(DataOutputStream out, HistogramValue histogram) throws IOException {
+        out.writeLong(histogram.getCount());
+        out.writeDouble(histogram.getSum());
+        out.writeDouble(histogram.getMin());
+        out.writeDouble(histogram.getMax());
+        double[] values = histogram.getBucketValues();
+        long[] counts = histogram.getBucketCounts();
+        writeVarint(out, values.length);
+        for (int i = 0; i < values.length; i++) {
+            out.writeDouble(values[i]);
+            out.writeLong(counts[i]);
+        }
+    }
+
+    private static HistogramValue readHistogram(DataInputStream in) throws IOException {
+        long count = in.readLong();
+        double sum = in.readDouble();
+        double min = in.readDouble();
+        double max = in.readDouble();
+        int buckets = readLength(in);
+        double[] values = new double[buckets];
+        long[] counts = new long[buckets];
+        for (int i = 0; i < buckets; i++) {
+            values[i] = in.readDouble();
+            counts[i] = in.readLong();
+        }
+        return new HistogramValue(count, sum, min, max, values, counts);
+    }
+
+    private static int countTags(Map<String, String> tags) {
+        int count = 0;
+        for (String value : tags.values()) {
+            if (value != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int readHeader(DataInputStream in, byte expectedKind) throws IOException {
+        byte kind = in.readByte();
+        int version = in.readUnsignedByte();
+        if (kind != expectedKind) {
+            throw new IOException("Unexpected batch kind '" + (char) kind + "', expected '" + (char) expectedKind + "'");
+        }
+        if (version < MIN_VERSION || version > VERSION) {
+            throw new IOException("Unsupported batch version " + version);
+        }
+        return version;
+    }
+
+    private String intern(String value) {
+        String existing = internedStrings.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (internedStrings.size() >= MAX_INTERNED_STRINGS) {
+            return value;
+        }
+        existing = internedStrings.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    private static long toEpochNanos(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), NANOS_PER_SECOND), instant.getNano());
+    }
+
+    private static Instant fromEpochNanos(long nanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND), Math.floorMod(nanos, NANOS_PER_SECOND));
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] utf8 = new byte[readLength(in)];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a length or count, rejecting values past the end of the message before allocating
+     * (every element takes at least one byte).
+     */
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = readVarint(in);
+        if (length > in.available()) {
+            throw new EOFException("Length " + length + " exceeds remaining message bytes");
+        }
+        return length;
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated varint");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Negative varint");
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
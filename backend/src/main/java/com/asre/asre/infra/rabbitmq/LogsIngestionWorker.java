@@ -5,21 +5,25 @@ import com.asre.asre.domain.ingestion.LogEntry;
 import com.asre.asre.domain.logs.LogLevel;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Component
 @RequiredArgsConstructor
@@ -29,6 +33,7 @@ public class LogsIngestionWorker {
     private final LogIngestionService logIngestionService;
     private final RabbitTemplate rabbitTemplate;
     private final ObjectMapper objectMapper;
+    private final IngestionMessageCodec codec;
 
     @Value("${ingestion.batch.size:100}")
     private int batchSize;
@@ -36,69 +41,137 @@ public class LogsIngestionWorker {
     @Value("${ingestion.batch.timeout-seconds:1}")
     private int timeoutSeconds;
 
-    private final List<LogEntry> batchBuffer = new ArrayList<>();
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    private volatile boolean processing = false;
+    @Value("${ingestion.batch.max-bytes:1048576}")
+    private long maxBatchBytes;
 
-    @RabbitListener(queues = "logs.ingest")
-    public void handleMessage(String message) {
-        try {
-            // Parse message
-            Map<String, Object> payload = objectMapper.readValue(message, new TypeReference<Map<String, Object>>() {});
-            LogEntry logEntry = parseLogEntry(payload);
+    @Value("${ingestion.writer.threads:4}")
+    private int writerThreads;
 
-            if (logEntry == null || !logEntry.isValid()) {
-                log.warn("Invalid log entry received, sending to DLQ");
-                sendToDlq(message, "logs.dlq");
-                return;
-            }
+    private BatchAccumulator<LogEntry> accumulator;
+
+    @PostConstruct
+    void startAccumulator() {
+        accumulator = new BatchAccumulator<>("logs-ingest", batchSize, maxBatchBytes,
+                TimeUnit.SECONDS.toMillis(timeoutSeconds), writerThreads,
+                this::estimateBytes, this::processBatch);
+    }
+
+    @PreDestroy
+    void stopAccumulator() {
+        accumulator.close();
+    }
 
-            synchronized (batchBuffer) {
-                batchBuffer.add(logEntry);
+    @RabbitListener(queues = "logs.ingest")
+    public void handleMessage(Message message) {
+        if (IngestionMessageCodec.isBinaryBatch(message)) {
+            handleBinaryBatch(message);
+        } else {
+            handleJsonMessage(new String(message.getBody(), StandardCharsets.UTF_8));
+        }
+    }
 
-                if (batchBuffer.size() >= batchSize) {
-                    processBatch();
-                } else if (!processing) {
-                    // Schedule timeout processing
-                    processing = true;
-                    scheduler.schedule(this::processBatchOnTimeout, timeoutSeconds, TimeUnit.SECONDS);
+    /**
+     * Binary batches decode straight into domain objects; they were validated before publishing.
+     */
+    private void handleBinaryBatch(Message message) {
+        try {
+            List<LogEntry> batch = codec.decodeLogs(message.getBody());
+            List<LogEntry> valid = new ArrayList<>(batch.size());
+            for (LogEntry item : batch) {
+                if (item.isValid()) {
+                    valid.add(item);
+                } else {
+                    log.warn("Invalid log entry in binary batch, sending to DLQ");
+                    sendToDlq(IngestionMessageCodec.toMessage(codec.encodeLogs(item.getProjectId(), List.of(item))), "logs.dlq");
                 }
             }
+            if (!valid.isEmpty()) {
+                accumulator.addAll(valid);
+            }
         } catch (Exception e) {
-            log.error("Error processing log message", e);
+            log.error("Error decoding logs batch", e);
             sendToDlq(message, "logs.dlq");
         }
     }
 
-    private void processBatch() {
-        List<LogEntry> batch;
-        synchronized (batchBuffer) {
-            if (batchBuffer.isEmpty()) {
-                processing = false;
+    private void handleJsonMessage(String message) {
+        try {
+            // Parse message (batch envelope or legacy single entry)
+            Map<String, Object> payload = objectMapper.readValue(message, new TypeReference<Map<String, Object>>() {});
+            List<LogEntry> logEntries = new ArrayList<>();
+
+            Object entries = payload.get("logs");
+            if (entries instanceof List<?> entryList) {
+                Object projectId = payload.get("project_id");
+                for (Object entry : entryList) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> entryPayload = new HashMap<>((Map<String, Object>) entry);
+                    entryPayload.put("project_id", projectId);
+
+                    LogEntry logEntry = parseLogEntry(entryPayload);
+                    if (logEntry == null || !logEntry.isValid()) {
+                        log.warn("Invalid log entry in batch envelope, sending to DLQ");
+                        sendToDlq(objectMapper.writeValueAsString(entryPayload), "logs.dlq");
+                        continue;
+                    }
+                    if (entryPayload.get("sampled") instanceof Boolean sampled) {
+                        // Sampling already decided at the edge (IngestionService)
+                        logEntry.setSampled(sampled);
+                        logEntry.setSamplingApplied(true);
+                    }
+                    logEntries.add(logEntry);
+                }
+            } else {
+                LogEntry logEntry = parseLogEntry(payload);
+                if (logEntry == null || !logEntry.isValid()) {
+                    log.warn("Invalid log entry received, sending to DLQ");
+                    sendToDlq(message, "logs.dlq");
+                    return;
+                }
+                logEntries.add(logEntry);
+            }
+
+            if (logEntries.isEmpty()) {
                 return;
             }
-            batch = new ArrayList<>(batchBuffer);
-            batchBuffer.clear();
-            processing = false;
+
+            accumulator.addAll(logEntries);
+        } catch (Exception e) {
+            log.error("Error processing log message", e);
+            sendToDlq(message, "logs.dlq");
         }
+    }
 
+    private void processBatch(List<LogEntry> batch) {
         try {
             logIngestionService.ingestBatch(batch);
         } catch (Exception e) {
             log.error("Error ingesting logs batch", e);
             // Send to DLQ
-            batch.forEach(logEntry -> {
-                try {
-                    sendToDlq(objectMapper.writeValueAsString(logEntry), "logs.dlq");
-                } catch (Exception ex) {
-                    log.error("Error sending log to DLQ", ex);
-                }
-            });
+            batch.stream()
+                    .collect(Collectors.groupingBy(LogEntry::getProjectId))
+                    .forEach((projectId, items) -> {
+                        try {
+                            sendToDlq(IngestionMessageCodec.toMessage(codec.encodeLogs(projectId, items)), "logs.dlq");
+                        } catch (Exception ex) {
+                            log.error("Error sending log to DLQ", ex);
+                        }
+                    });
         }
     }
 
-    private void processBatchOnTimeout() {
-        processBatch();
+    /**
+     * Rough in-memory size of a log entry, used for the accumulator's byte threshold.
+     */
+    private long estimateBytes(LogEntry logEntry) {
+        long bytes = 128 + (logEntry.getMessage() != null ? logEntry.getMessage().length() : 0);
+        if (logEntry.getTraceId() != null) {
+            bytes += logEntry.getTraceId().length();
+        }
+        if (logEntry.getContext() != null) {
+            bytes += 64L * logEntry.getContext().size();
+        }
+        return bytes;
     }
 
     private LogEntry parseLogEntry(Map<String, Object> payload) {
@@ -134,6 +207,14 @@ public class LogsIngestionWorker {
         }
     }
 
+    private void sendToDlq(Message message, String dlqName) {
+        try {
+            rabbitTemplate.send(dlqName, message);
+        } catch (Exception e) {
+            log.error("Error sending message to DLQ: {}", dlqName, e);
+        }
+    }
+
     private void sendToDlq(String message, String dlqName) {
         try {
             rabbitTemplate.convertAndSend(dlqName, message);
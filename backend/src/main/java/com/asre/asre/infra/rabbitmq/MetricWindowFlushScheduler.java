@@ -0,0 +1,66 @@
+package com.asre.asre.infra.rabbitmq;
+
+import com.asre.asre.application.ingestion.MetricPreAggregationService;
+import com.asre.asre.config.RabbitMQConfig;
+import com.asre.asre.domain.ingestion.Metric;
+import com.asre.asre.domain.ingestion.MetricWindow;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Periodically writes the pre-aggregated metric windows that have closed. Windows that fail
+ * to be written go to the metrics DLQ as histogram points, which replay like any other batch.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MetricWindowFlushScheduler {
+
+    private final MetricPreAggregationService preAggregationService;
+    private final RabbitTemplate rabbitTemplate;
+    private final IngestionMessageCodec codec;
+
+    @Scheduled(fixedDelayString = "${ingestion.preaggregation.flush-interval-ms:5000}")
+    public void flushClosedWindows() {
+        try {
+            deadLetter(preAggregationService.flushClosedWindows());
+        } catch (Exception e) {
+            log.error("Failed to flush metric windows: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            deadLetter(preAggregationService.flushAll());
+        } catch (Exception e) {
+            log.error("Failed to flush metric windows on shutdown: {}", e.getMessage(), e);
+        }
+    }
+
+    private void deadLetter(List<MetricWindow> windows) {
+        if (windows.isEmpty()) {
+            return;
+        }
+        log.warn("Sending {} unwritten metric windows to {}", windows.size(), RabbitMQConfig.METRICS_DLQ);
+        windows.stream()
+                .map(MetricWindow::toHistogramMetric)
+                .collect(Collectors.groupingBy(Metric::getProjectId))
+                .forEach((projectId, points) -> {
+                    try {
+                        rabbitTemplate.send(RabbitMQConfig.METRICS_DLQ,
+                                IngestionMessageCodec.toMessage(codec.encodeMetrics(projectId, points)));
+                    } catch (Exception e) {
+                        log.error("Error sending {} metric windows of project {} to DLQ, windows dropped",
+                                points.size(), projectId, e);
+                    }
+                });
+    }
+}
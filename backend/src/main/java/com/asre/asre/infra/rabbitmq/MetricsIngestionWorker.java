@@ -1,24 +1,31 @@
 package com.asre.asre.infra.rabbitmq;
 
 import com.asre.asre.application.ingestion.MetricIngestionService;
+import com.asre.asre.application.ingestion.MetricPreAggregationService;
+import com.asre.asre.domain.ingestion.HistogramValue;
 import com.asre.asre.domain.ingestion.Metric;
+import com.asre.asre.domain.ingestion.MetricKind;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Component
 @RequiredArgsConstructor
@@ -26,8 +33,10 @@ import java.util.concurrent.TimeUnit;
 public class MetricsIngestionWorker {
 
     private final MetricIngestionService metricIngestionService;
+    private final MetricPreAggregationService preAggregationService;
     private final RabbitTemplate rabbitTemplate;
     private final ObjectMapper objectMapper;
+    private final IngestionMessageCodec codec;
 
     @Value("${ingestion.batch.size:100}")
     private int batchSize;
@@ -35,69 +44,137 @@ public class MetricsIngestionWorker {
     @Value("${ingestion.batch.timeout-seconds:1}")
     private int timeoutSeconds;
 
-    private final List<Metric> batchBuffer = new ArrayList<>();
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    private volatile boolean processing = false;
+    @Value("${ingestion.batch.max-bytes:1048576}")
+    private long maxBatchBytes;
 
-    @RabbitListener(queues = "metrics.ingest")
-    public void handleMessage(String message) {
-        try {
-            // Parse message
-            Map<String, Object> payload = objectMapper.readValue(message, new TypeReference<Map<String, Object>>() {});
-            Metric metric = parseMetric(payload);
+    @Value("${ingestion.writer.threads:4}")
+    private int writerThreads;
 
-            if (metric == null || !metric.isValid()) {
-                log.warn("Invalid metric received, sending to DLQ");
-                sendToDlq(message, "metrics.dlq");
-                return;
-            }
+    private BatchAccumulator<Metric> accumulator;
 
-            synchronized (batchBuffer) {
-                batchBuffer.add(metric);
+    @PostConstruct
+    void startAccumulator() {
+        accumulator = new BatchAccumulator<>("metrics-ingest", batchSize, maxBatchBytes,
+                TimeUnit.SECONDS.toMillis(timeoutSeconds), writerThreads,
+                this::estimateBytes, this::processBatch);
+    }
+
+    @PreDestroy
+    void stopAccumulator() {
+        accumulator.close();
+    }
+
+    @RabbitListener(queues = "metrics.ingest")
+    public void handleMessage(Message message) {
+        if (IngestionMessageCodec.isBinaryBatch(message)) {
+            handleBinaryBatch(message);
+        } else {
+            handleJsonMessage(new String(message.getBody(), StandardCharsets.UTF_8));
+        }
+    }
 
-                if (batchBuffer.size() >= batchSize) {
-                    processBatch();
-                } else if (!processing) {
-                    // Schedule timeout processing
-                    processing = true;
-                    scheduler.schedule(this::processBatchOnTimeout, timeoutSeconds, TimeUnit.SECONDS);
+    /**
+     * Binary batches decode straight into domain objects; they were validated before publishing.
+     */
+    private void handleBinaryBatch(Message message) {
+        try {
+            List<Metric> batch = codec.decodeMetrics(message.getBody());
+            List<Metric> valid = new ArrayList<>(batch.size());
+            for (Metric item : batch) {
+                if (item.isValid()) {
+                    valid.add(item);
+                } else {
+                    log.warn("Invalid metric in binary batch, sending to DLQ");
+                    sendToDlq(IngestionMessageCodec.toMessage(codec.encodeMetrics(item.getProjectId(), List.of(item))), "metrics.dlq");
                 }
             }
+            // Opted-in series are folded into windows instead of written raw
+            valid.removeIf(preAggregationService::offer);
+            if (!valid.isEmpty()) {
+                accumulator.addAll(valid);
+            }
         } catch (Exception e) {
-            log.error("Error processing metric message", e);
+            log.error("Error decoding metrics batch", e);
             sendToDlq(message, "metrics.dlq");
         }
     }
 
-    private void processBatch() {
-        List<Metric> batch;
-        synchronized (batchBuffer) {
-            if (batchBuffer.isEmpty()) {
-                processing = false;
+    private void handleJsonMessage(String message) {
+        try {
+            // Parse message (batch envelope or legacy single point)
+            Map<String, Object> payload = objectMapper.readValue(message, new TypeReference<Map<String, Object>>() {});
+            List<Metric> metrics = new ArrayList<>();
+
+            Object points = payload.get("metrics");
+            if (points instanceof List<?> pointList) {
+                Object projectId = payload.get("project_id");
+                for (Object point : pointList) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> pointPayload = new HashMap<>((Map<String, Object>) point);
+                    pointPayload.put("project_id", projectId);
+
+                    Metric metric = parseMetric(pointPayload);
+                    if (metric == null || !metric.isValid()) {
+                        log.warn("Invalid metric in batch envelope, sending to DLQ");
+                        sendToDlq(objectMapper.writeValueAsString(pointPayload), "metrics.dlq");
+                        continue;
+                    }
+                    metrics.add(metric);
+                }
+            } else {
+                Metric metric = parseMetric(payload);
+                if (metric == null || !metric.isValid()) {
+                    log.warn("Invalid metric received, sending to DLQ");
+                    sendToDlq(message, "metrics.dlq");
+                    return;
+                }
+                metrics.add(metric);
+            }
+
+            metrics.removeIf(preAggregationService::offer);
+            if (metrics.isEmpty()) {
                 return;
             }
-            batch = new ArrayList<>(batchBuffer);
-            batchBuffer.clear();
-            processing = false;
+
+            accumulator.addAll(metrics);
+        } catch (Exception e) {
+            log.error("Error processing metric message", e);
+            sendToDlq(message, "metrics.dlq");
         }
+    }
 
+    private void processBatch(List<Metric> batch) {
         try {
             metricIngestionService.ingestBatch(batch);
         } catch (Exception e) {
             log.error("Error ingesting metrics batch", e);
             // Send to DLQ - in production, you might want to retry
-            batch.forEach(metric -> {
-                try {
-                    sendToDlq(objectMapper.writeValueAsString(metric), "metrics.dlq");
-                } catch (Exception ex) {
-                    log.error("Error sending metric to DLQ", ex);
-                }
-            });
+            batch.stream()
+                    .collect(Collectors.groupingBy(Metric::getProjectId))
+                    .forEach((projectId, items) -> {
+                        try {
+                            sendToDlq(IngestionMessageCodec.toMessage(codec.encodeMetrics(projectId, items)), "metrics.dlq");
+                        } catch (Exception ex) {
+                            log.error("Error sending metric to DLQ", ex);
+                        }
+                    });
         }
     }
 
-    private void processBatchOnTimeout() {
-        processBatch();
+    /**
+     * Rough in-memory size of a metric, used for the accumulator's byte threshold.
+     */
+    private long estimateBytes(Metric metric) {
+        long bytes = 96 + (metric.getMetricName() != null ? metric.getMetricName().length() : 0);
+        if (metric.getHistogram() != null) {
+            bytes += 64 + 16L * metric.getHistogram().getBucketValues().length;
+        }
+        if (metric.getTags() != null) {
+            for (Map.Entry<String, String> tag : metric.getTags().entrySet()) {
+                bytes += 32 + tag.getKey().length() + (tag.getValue() != null ? tag.getValue().length() : 0);
+            }
+        }
+        return bytes;
     }
 
     private Metric parseMetric(Map<String, Object> payload) {
@@ -106,7 +183,9 @@ public class MetricsIngestionWorker {
             metric.setProjectId(UUID.fromString((String) payload.get("project_id")));
             metric.setServiceId(UUID.fromString((String) payload.get("service_id")));
             metric.setMetricName((String) payload.get("metric_name"));
-            metric.setValue(((Number) payload.get("value")).doubleValue());
+            Object value = payload.get("value");
+            metric.setValue(value != null ? ((Number) value).doubleValue() : null);
+            metric.setKind(MetricKind.fromString((String) payload.get("kind")));
             
             String timestampStr = (String) payload.get("timestamp");
             metric.setTimestamp(Instant.parse(timestampStr));
@@ -115,6 +194,12 @@ public class MetricsIngestionWorker {
             Map<String, String> tags = (Map<String, String>) payload.get("tags");
             metric.setTags(tags);
 
+            @SuppressWarnings("unchecked")
+            Map<String, Object> histogram = (Map<String, Object>) payload.get("histogram");
+            if (histogram != null) {
+                metric.setHistogram(parseHistogram(histogram));
+            }
+
             return metric;
         } catch (Exception e) {
             log.error("Error parsing metric from payload", e);
@@ -122,6 +207,34 @@ public class MetricsIngestionWorker {
         }
     }
 
+    private HistogramValue parseHistogram(Map<String, Object> payload) {
+        List<?> values = (List<?>) payload.get("bucket_values");
+        List<?> counts = (List<?>) payload.get("bucket_counts");
+        double[] bucketValues = new double[values.size()];
+        long[] bucketCounts = new long[counts.size()];
+        for (int i = 0; i < bucketValues.length; i++) {
+            bucketValues[i] = ((Number) values.get(i)).doubleValue();
+        }
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = ((Number) counts.get(i)).longValue();
+        }
+        return new HistogramValue(
+                ((Number) payload.get("count")).longValue(),
+                ((Number) payload.get("sum")).doubleValue(),
+                ((Number) payload.get("min")).doubleValue(),
+                ((Number) payload.get("max")).doubleValue(),
+                bucketValues,
+                bucketCounts);
+    }
+
+    private void sendToDlq(Message message, String dlqName) {
+        try {
+            rabbitTemplate.send(dlqName, message);
+        } catch (Exception e) {
+            log.error("Error sending message to DLQ: {}", dlqName, e);
+        }
+    }
+
     private void sendToDlq(String message, String dlqName) {
         try {
             rabbitTemplate.convertAndSend(dlqName, message);
@@ -1,15 +1,21 @@
 package com.asre.asre.infra.rabbitmq;
 
+import com.asre.asre.domain.ingestion.LogEntry;
 import com.asre.asre.domain.ingestion.MessagePublisherPort;
+import com.asre.asre.domain.ingestion.Metric;
 import lombok.RequiredArgsConstructor;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.UUID;
+
 @Component
 @RequiredArgsConstructor
 public class RabbitMessagePublisher implements MessagePublisherPort {
 
     private final RabbitTemplate rabbitTemplate;
+    private final IngestionMessageCodec codec;
 
     @Override
     public void publishMetricsMessage(String queueName, String message) {
@@ -20,6 +26,14 @@ public class RabbitMessagePublisher implements MessagePublisherPort {
     public void publishLogsMessage(String queueName, String message) {
         rabbitTemplate.convertAndSend(queueName, message);
     }
-}
 
+    @Override
+    public void publishMetrics(String queueName, UUID projectId, List<Metric> metrics) {
+        rabbitTemplate.send(queueName, IngestionMessageCodec.toMessage(codec.encodeMetrics(projectId, metrics)));
+    }
 
+    @Override
+    public void publishLogs(String queueName, UUID projectId, List<LogEntry> logs) {
+        rabbitTemplate.send(queueName, IngestionMessageCodec.toMessage(codec.encodeLogs(projectId, logs)));
+    }
+}
@@ -0,0 +1,68 @@
+package com.asre.asre.infra.rabbitmq;
+
+import com.asre.asre.application.ingestion.IngestionBacklogPort;
+import com.asre.asre.config.RabbitMQConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polls the depth of the ingestion queues so admission checks never call the broker
+ * on the request path. Depths are also exported as Micrometer gauges.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RabbitQueueDepthMonitor implements IngestionBacklogPort {
+
+    private static final List<String> MONITORED_QUEUES = List.of(
+            RabbitMQConfig.METRICS_INGEST_QUEUE,
+            RabbitMQConfig.LOGS_INGEST_QUEUE);
+
+    private final AmqpAdmin amqpAdmin;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, AtomicLong> depths = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void registerGauges() {
+        for (String queue : MONITORED_QUEUES) {
+            AtomicLong depth = new AtomicLong(-1);
+            depths.put(queue, depth);
+            Gauge.builder("ingestion.queue.depth", depth, AtomicLong::get)
+                    .description("Messages waiting in the ingestion queue (-1 if unknown)")
+                    .tag("queue", queue)
+                    .register(meterRegistry);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.admission.poll-interval-ms:1000}")
+    public void pollQueueDepths() {
+        for (String queue : MONITORED_QUEUES) {
+            try {
+                QueueInformation info = amqpAdmin.getQueueInfo(queue);
+                depths.get(queue).set(info != null ? info.getMessageCount() : -1);
+            } catch (Exception e) {
+                log.debug("Error reading depth of queue {}: {}", queue, e.getMessage());
+                depths.get(queue).set(-1);
+            }
+        }
+    }
+
+    @Override
+    public long getQueueDepth(String queueName) {
+        AtomicLong depth = depths.get(queueName);
+        return depth != null ? depth.get() : -1;
+    }
+}
@@ -0,0 +1,319 @@
+package com.asre.asre.infra.redis;
+
+import com.asre.asre.domain.logs.LogVolumePoint;
+import com.asre.asre.domain.logs.LogVolumeResult;
+import com.asre.asre.domain.metrics.AggregationType;
+import com.asre.asre.domain.metrics.MetricQueryResult;
+import com.asre.asre.domain.metrics.MultiMetricQueryResult;
+import com.asre.asre.domain.metrics.SeriesGroup;
+import com.asre.asre.domain.metrics.TimeSeriesPoint;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.airlift.compress.lz4.Lz4Compressor;
+import io.airlift.compress.lz4.Lz4Decompressor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary payloads for cached query results. Time series results (metric, multi-metric and log
+ * volume) are written column-wise through {@link SeriesCodec}: a 1-day series of 1-minute
+ * buckets takes a few hundred bytes instead of ~80 KB of JSON, and decoding fills primitive
+ * arrays without a JSON parser. Other results stay JSON. Payloads above a size threshold are
+ * LZ4-compressed, which mostly helps the JSON ones and group keys.
+ * <p>
+ * Layout: {@code [format byte][body]}, where the high bit of the format byte marks an LZ4 body
+ * ({@code [uncompressed length int][compressed bytes]}).
+ */
+@Component
+@RequiredArgsConstructor
+public class CachedValueCodec {
+
+    private static final byte FORMAT_JSON = 0;
+    private static final byte FORMAT_METRIC = 1;
+    private static final byte FORMAT_MULTI_METRIC = 2;
+    private static final byte FORMAT_LOG_VOLUME = 3;
+    private static final int LZ4_FLAG = 0x80;
+
+    // Rough heap footprint of a decoded point (Instant, Double and list slot) and of a result
+    private static final int POINT_WEIGHT = 56;
+    private static final int RESULT_WEIGHT = 128;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${cache.query.codec.lz4:true}")
+    private boolean lz4Enabled;
+
+    @Value("${cache.query.codec.lz4-min-bytes:1024}")
+    private int lz4MinBytes;
+
+    /**
+     * An encoded payload and the approximate in-memory size of the decoded value, used to weigh L1 entries.
+     */
+    public record Encoded(byte[] bytes, int weight) {
+    }
+
+    public Encoded encode(Object value) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        byte format;
+        int weight;
+        if (value instanceof MetricQueryResult result) {
+            format = FORMAT_METRIC;
+            weight = writeMetric(out, result);
+        } else if (value instanceof MultiMetricQueryResult multi) {
+            format = FORMAT_MULTI_METRIC;
+            out.writeInt(multi.getResults().size());
+            weight = RESULT_WEIGHT;
+            for (MetricQueryResult result : multi.getResults()) {
+                weight += writeMetric(out, result);
+            }
+        } else if (value instanceof LogVolumeResult volume) {
+            format = FORMAT_LOG_VOLUME;
+            weight = writeLogVolume(out, volume);
+        } else {
+            format = FORMAT_JSON;
+            byte[] json = objectMapper.writeValueAsBytes(value);
+            out.write(json);
+            weight = json.length;
+        }
+        out.flush();
+        return new Encoded(frame(format, buffer.toByteArray()), weight);
+    }
+
+    public <T> T decode(byte[] bytes, Class<T> type) throws IOException {
+        if (bytes.length == 0) {
+            throw new IOException("Empty cache payload");
+        }
+        int format = bytes[0] & ~LZ4_FLAG;
+        byte[] body = (bytes[0] & LZ4_FLAG) != 0 ? decompress(bytes) : Arrays.copyOfRange(bytes, 1, bytes.length);
+        if (format == FORMAT_JSON) {
+            return objectMapper.readValue(body, type);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        Object value = switch (format) {
+            case FORMAT_METRIC -> readMetric(in);
+            case FORMAT_MULTI_METRIC -> {
+                int count = in.readInt();
+                List<MetricQueryResult> results = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    results.add(readMetric(in));
+                }
+                yield new MultiMetricQueryResult(results);
+            }
+            case FORMAT_LOG_VOLUME -> readLogVolume(in);
+            default -> throw new IOException("Unknown cache payload format " + format);
+        };
+        if (!type.isInstance(value)) {
+            throw new IOException("Cached " + value.getClass().getSimpleName() + " is not a " + type.getSimpleName());
+        }
+        return type.cast(value);
+    }
+
+    /**
+     * Weight of an already decoded value, as {@link #encode} would report it; values stored as
+     * JSON are weighed by their payload size.
+     */
+    public int weigh(Object value, int payloadLength) {
+        if (value instanceof MetricQueryResult result) {
+            return RESULT_WEIGHT + POINT_WEIGHT * pointCount(result);
+        } else if (value instanceof MultiMetricQueryResult multi) {
+            int weight = RESULT_WEIGHT;
+            for (MetricQueryResult result : multi.getResults()) {
+                weight += RESULT_WEIGHT + POINT_WEIGHT * pointCount(result);
+            }
+            return weight;
+        } else if (value instanceof LogVolumeResult volume) {
+            return RESULT_WEIGHT + POINT_WEIGHT * volume.getDataPoints().size();
+        }
+        return payloadLength;
+    }
+
+    private static int pointCount(MetricQueryResult result) {
+        int points = result.getDataPoints().size();
+        for (SeriesGroup group : result.getGroups()) {
+            points += group.getDataPoints().size();
+        }
+        return points;
+    }
+
+    private byte[] frame(byte format, byte[] body) {
+        if (lz4Enabled && body.length >= lz4MinBytes) {
+            Lz4Compressor compressor = new Lz4Compressor();
+            byte[] compressed = new byte[5 + compressor.maxCompressedLength(body.length)];
+            int length = compressor.compress(body, 0, body.length, compressed, 5, compressed.length - 5);
+            if (length < body.length) {
+                compressed[0] = (byte) (format | LZ4_FLAG);
+                writeInt(compressed, 1, body.length);
+                return Arrays.copyOf(compressed, 5 + length);
+            }
+        }
+        byte[] framed = new byte[1 + body.length];
+        framed[0] = format;
+        System.arraycopy(body, 0, framed, 1, body.length);
+        return framed;
+    }
+
+    private static byte[] decompress(byte[] bytes) throws IOException {
+        if (bytes.length < 5) {
+            throw new IOException("Truncated LZ4 cache payload");
+        }
+        int length = (bytes[1] & 0xFF) << 24 | (bytes[2] & 0xFF) << 16 | (bytes[3] & 0xFF) << 8 | (bytes[4] & 0xFF);
+        byte[] body = new byte[length];
+        int written = new Lz4Decompressor().decompress(bytes, 5, bytes.length - 5, body, 0, length);
+        if (written != length) {
+            throw new IOException("LZ4 cache payload decompressed to " + written + " bytes, expected " + length);
+        }
+        return body;
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    private static int writeMetric(DataOutputStream out, MetricQueryResult result) throws IOException {
+        out.writeUTF(result.getMetricName());
+        out.writeUTF(result.getAggregationType().getValue());
+        writeSeries(out, result.getDataPoints());
+        out.writeInt(result.getGroups().size());
+        for (SeriesGroup group : result.getGroups()) {
+            out.writeUTF(group.getKey());
+            writeSeries(out, group.getDataPoints());
+        }
+        return RESULT_WEIGHT + POINT_WEIGHT * pointCount(result);
+    }
+
+    private static MetricQueryResult readMetric(DataInputStream in) throws IOException {
+        String metricName = in.readUTF();
+        AggregationType aggregationType = AggregationType.fromString(in.readUTF());
+        List<TimeSeriesPoint> dataPoints = readSeries(in);
+        int groupCount = in.readInt();
+        List<SeriesGroup> groups = new ArrayList<>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            String key = in.readUTF();
+            groups.add(new SeriesGroup(key, readSeries(in)));
+        }
+        return new MetricQueryResult(metricName, aggregationType, dataPoints, groups);
+    }
+
+    /**
+     * {@code [count int][has nulls boolean][bit length int][bits]}: timestamps, then the presence
+     * mask (only if some values are null) interleaved with the values.
+     */
+    private static void writeSeries(DataOutputStream out, List<TimeSeriesPoint> points) throws IOException {
+        int count = points.size();
+        long[] timestamps = new long[count];
+        double[] values = new double[count];
+        boolean[] present = new boolean[count];
+        boolean hasNulls = false;
+        for (int i = 0; i < count; i++) {
+            TimeSeriesPoint point = points.get(i);
+            timestamps[i] = point.getTimestamp().toEpochMilli();
+            present[i] = point.getValue() != null;
+            values[i] = present[i] ? point.getValue() : 0.0;
+            hasNulls |= !present[i];
+        }
+
+        SeriesCodec.BitWriter bits = new SeriesCodec.BitWriter();
+        SeriesCodec.writeTimestamps(bits, timestamps);
+        SeriesCodec.writeValues(bits, values, hasNulls ? present : null);
+        writeBits(out, count, hasNulls, bits);
+    }
+
+    private static List<TimeSeriesPoint> readSeries(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        boolean hasNulls = in.readBoolean();
+        SeriesCodec.BitReader bits = readBits(in);
+        long[] timestamps = SeriesCodec.readTimestamps(bits, count);
+        boolean[] present = hasNulls ? new boolean[count] : null;
+        double[] values = SeriesCodec.readValues(bits, count, present);
+
+        List<TimeSeriesPoint> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Double value = present == null || present[i] ? values[i] : null;
+            points.add(new TimeSeriesPoint(Instant.ofEpochMilli(timestamps[i]), value));
+        }
+        return points;
+    }
+
+    /**
+     * {@code [sampled boolean][count int][has estimates boolean][bit length int][bits]}: timestamps,
+     * counts, then the estimated counts with a presence mask. Counts go through the XOR value
+     * encoding as doubles, which is exact below 2^53.
+     */
+    private static int writeLogVolume(DataOutputStream out, LogVolumeResult result) throws IOException {
+        List<LogVolumePoint> points = result.getDataPoints();
+        int count = points.size();
+        long[] timestamps = new long[count];
+        double[] counts = new double[count];
+        double[] estimates = new double[count];
+        boolean[] estimated = new boolean[count];
+        boolean hasEstimates = false;
+        for (int i = 0; i < count; i++) {
+            LogVolumePoint point = points.get(i);
+            timestamps[i] = point.getTimestamp().toEpochMilli();
+            counts[i] = point.getCount();
+            estimated[i] = point.getEstimatedCount().isPresent();
+            estimates[i] = estimated[i] ? point.getEstimatedCount().get() : 0.0;
+            hasEstimates |= estimated[i];
+        }
+
+        out.writeBoolean(result.isSampled());
+        SeriesCodec.BitWriter bits = new SeriesCodec.BitWriter();
+        SeriesCodec.writeTimestamps(bits, timestamps);
+        SeriesCodec.writeValues(bits, counts, null);
+        if (hasEstimates) {
+            SeriesCodec.writeValues(bits, estimates, estimated);
+        }
+        writeBits(out, count, hasEstimates, bits);
+        return RESULT_WEIGHT + POINT_WEIGHT * count;
+    }
+
+    private static LogVolumeResult readLogVolume(DataInputStream in) throws IOException {
+        boolean sampled = in.readBoolean();
+        int count = in.readInt();
+        boolean hasEstimates = in.readBoolean();
+        SeriesCodec.BitReader bits = readBits(in);
+        long[] timestamps = SeriesCodec.readTimestamps(bits, count);
+        double[] counts = SeriesCodec.readValues(bits, count, null);
+        boolean[] estimated = new boolean[count];
+        double[] estimates = hasEstimates ? SeriesCodec.readValues(bits, count, estimated) : null;
+
+        List<LogVolumePoint> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Instant timestamp = Instant.ofEpochMilli(timestamps[i]);
+            points.add(estimated[i]
+                    ? new LogVolumePoint(timestamp, (long) counts[i], (long) estimates[i])
+                    : new LogVolumePoint(timestamp, (long) counts[i]));
+        }
+        return new LogVolumeResult(points, sampled);
+    }
+
+    private static void writeBits(DataOutputStream out, int count, boolean flag, SeriesCodec.BitWriter bits)
+            throws IOException {
+        byte[] packed = bits.toByteArray();
+        out.writeInt(count);
+        out.writeBoolean(flag);
+        out.writeInt(packed.length);
+        out.write(packed);
+    }
+
+    private static SeriesCodec.BitReader readBits(DataInputStream in) throws IOException {
+        byte[] packed = new byte[in.readInt()];
+        in.readFully(packed);
+        return new SeriesCodec.BitReader(packed);
+    }
+}
@@ -0,0 +1,58 @@
+package com.asre.asre.infra.redis;
+
+import com.asre.asre.application.ingestion.HistogramBaselinePort;
+import com.asre.asre.application.ingestion.HistogramSnapshot;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Redis implementation of HistogramBaselinePort. Values are {@code <timeUnixNano>|<json>};
+ * the script only replaces a baseline with a newer point, so exports of one series arriving
+ * at two nodes out of order cannot move the baseline backwards.
+ */
+@Component
+@RequiredArgsConstructor
+public class HistogramBaselineCacheImpl implements HistogramBaselinePort {
+
+    private static final String KEY_PREFIX = "otlp:histogram-baseline:";
+
+    private static final String SWAP_SCRIPT = """
+            local previous = redis.call('get', KEYS[1])
+            if previous then
+                local separator = string.find(previous, '|', 1, true)
+                if separator and tonumber(string.sub(previous, 1, separator - 1)) >= tonumber(ARGV[1]) then
+                    return previous
+                end
+            end
+            redis.call('set', KEYS[1], ARGV[1] .. '|' .. ARGV[2], 'PX', ARGV[3])
+            return previous
+            """;
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final DefaultRedisScript<String> swapScript = new DefaultRedisScript<>(SWAP_SCRIPT, String.class);
+
+    @Override
+    public Optional<HistogramSnapshot> swap(String seriesKey, HistogramSnapshot snapshot, Duration ttl) {
+        try {
+            String previous = redisTemplate.execute(swapScript, List.of(KEY_PREFIX + seriesKey),
+                    Long.toString(snapshot.timeUnixNano()), objectMapper.writeValueAsString(snapshot),
+                    Long.toString(ttl.toMillis()));
+            if (previous == null) {
+                return Optional.empty();
+            }
+            return Optional.of(objectMapper.readValue(previous.substring(previous.indexOf('|') + 1),
+                    HistogramSnapshot.class));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable histogram baseline for " + seriesKey, e);
+        }
+    }
+}
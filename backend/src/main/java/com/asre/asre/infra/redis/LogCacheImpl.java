@@ -2,17 +2,15 @@ package com.asre.asre.infra.redis;
 
 import com.asre.asre.application.logs.LogCachePort;
 import com.asre.asre.domain.logs.*;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
 import java.util.Optional;
 
 /**
- * Redis implementation of LogCache.
+ * Redis implementation of LogCache, with an in-process L1 in front (see {@link TwoTierQueryCache}).
  * Centralizes all cache key generation and TTL calculation in infrastructure layer.
  */
 @Component
@@ -20,8 +18,7 @@ import java.util.Optional;
 @Slf4j
 public class LogCacheImpl implements LogCachePort {
 
-    private final RedisTemplate<String, String> redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final TwoTierQueryCache queryCache;
 
     private static final String VOLUME_CACHE_PREFIX = "log:volume:";
     private static final String ERROR_SPIKE_CACHE_PREFIX = "log:error-spike:";
@@ -30,12 +27,7 @@ public class LogCacheImpl implements LogCachePort {
     public Optional<LogVolumeResult> getVolume(LogVolumeQuery query) {
         try {
             String cacheKey = generateVolumeCacheKey(query);
-            String value = redisTemplate.opsForValue().get(cacheKey);
-            if (value == null) {
-                return Optional.empty();
-            }
-            LogVolumeResult result = objectMapper.readValue(value, LogVolumeResult.class);
-            return Optional.of(result);
+            return queryCache.get(cacheKey, LogVolumeResult.class);
         } catch (Exception e) {
             log.warn("Error reading volume cache", e);
             return Optional.empty();
@@ -47,8 +39,7 @@ public class LogCacheImpl implements LogCachePort {
         try {
             String cacheKey = generateVolumeCacheKey(query);
             int ttlSeconds = calculateCacheTtl(query.getRollupPeriod());
-            String value = objectMapper.writeValueAsString(result);
-            redisTemplate.opsForValue().set(cacheKey, value, Duration.ofSeconds(ttlSeconds));
+            queryCache.put(cacheKey, result, Duration.ofSeconds(ttlSeconds));
         } catch (Exception e) {
             log.warn("Error writing volume cache", e);
         }
@@ -58,12 +49,7 @@ public class LogCacheImpl implements LogCachePort {
     public Optional<ErrorSpikeResult> getErrorSpikes(ErrorSpikeQuery query) {
         try {
             String cacheKey = generateErrorSpikeCacheKey(query);
-            String value = redisTemplate.opsForValue().get(cacheKey);
-            if (value == null) {
-                return Optional.empty();
-            }
-            ErrorSpikeResult result = objectMapper.readValue(value, ErrorSpikeResult.class);
-            return Optional.of(result);
+            return queryCache.get(cacheKey, ErrorSpikeResult.class);
         } catch (Exception e) {
             log.warn("Error reading error spike cache", e);
             return Optional.empty();
@@ -75,8 +61,7 @@ public class LogCacheImpl implements LogCachePort {
         try {
             String cacheKey = generateErrorSpikeCacheKey(query);
             int ttlSeconds = calculateCacheTtl(query.getRollupPeriod());
-            String value = objectMapper.writeValueAsString(result);
-            redisTemplate.opsForValue().set(cacheKey, value, Duration.ofSeconds(ttlSeconds));
+            queryCache.put(cacheKey, result, Duration.ofSeconds(ttlSeconds));
         } catch (Exception e) {
             log.warn("Error writing error spike cache", e);
         }
@@ -2,18 +2,24 @@ package com.asre.asre.infra.redis;
 
 import com.asre.asre.application.metrics.MetricCachePort;
 import com.asre.asre.domain.metrics.*;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
- * Redis implementation of MetricCache.
+ * Redis implementation of MetricCache, with an in-process L1 in front (see {@link TwoTierQueryCache}).
  * Centralizes all cache key generation and TTL calculation in infrastructure layer.
  */
 @Component
@@ -22,95 +28,124 @@ import java.util.Optional;
 public class MetricCacheImpl implements MetricCachePort {
 
     private final RedisTemplate<String, String> redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final TwoTierQueryCache queryCache;
 
     private static final String CACHE_PREFIX = "metric:query:";
     private static final String MULTI_CACHE_PREFIX = "metric:multi:";
     private static final String HISTOGRAM_CACHE_PREFIX = "metric:histogram:";
+    private static final String FRAGMENT_CACHE_PREFIX = "metric:fragment:";
 
-    @Override
-    public Optional<MetricQueryResult> get(MetricQuery query) {
-        try {
-            String cacheKey = generateCacheKey(query);
-            String value = redisTemplate.opsForValue().get(cacheKey);
-            if (value == null) {
-                return Optional.empty();
-            }
-            MetricQueryResult result = objectMapper.readValue(value, MetricQueryResult.class);
-            return Optional.of(result);
-        } catch (Exception e) {
-            log.warn("Error reading from cache for query: {}", query.getMetricName(), e);
-            return Optional.empty();
-        }
-    }
+    // Fragments of one series are sharded into hashes of this many buckets (one day at 1m)
+    private static final long BUCKETS_PER_SHARD = 1440;
+
+    // Marks a bucket known to have no data, followed by the epoch millis until which that holds
+    private static final String EMPTY_FRAGMENT_PREFIX = "~";
+
+    // Approximate in-memory size of one fragment point, for L1 weighing
+    private static final int FRAGMENT_WEIGHT = 64;
+
+    @Value("${metrics.query.fragment-cache.ttl-hours:24}")
+    private long fragmentTtlHours;
+
+    @Value("${metrics.query.fragment-cache.empty-ttl-minutes:10}")
+    private long emptyFragmentTtlMinutes;
 
     @Override
-    public void put(MetricQuery query, MetricQueryResult result) {
-        try {
-            String cacheKey = generateCacheKey(query);
-            int ttlSeconds = calculateCacheTtl(query.getRollupPeriod());
-            String value = objectMapper.writeValueAsString(result);
-            redisTemplate.opsForValue().set(cacheKey, value, Duration.ofSeconds(ttlSeconds));
-        } catch (Exception e) {
-            log.warn("Error writing to cache for query: {}", query.getMetricName(), e);
-        }
+    public MetricQueryResult getOrLoad(MetricQuery query, Supplier<MetricQueryResult> loader) {
+        return queryCache.getOrLoad(generateCacheKey(query), MetricQueryResult.class,
+                Duration.ofSeconds(calculateCacheTtl(query.getRollupPeriod())), loader);
     }
 
     @Override
-    public Optional<MultiMetricQueryResult> getMulti(MultiMetricQuery query) {
+    public Map<Instant, TimeSeriesPoint> getFragments(MetricQuery query, List<Instant> bucketStarts) {
+        Map<Instant, TimeSeriesPoint> fragments = new HashMap<>();
         try {
-            String cacheKey = generateMultiCacheKey(query);
-            String value = redisTemplate.opsForValue().get(cacheKey);
-            if (value == null) {
-                return Optional.empty();
+            for (Map.Entry<String, List<Instant>> shard : groupByShard(query, bucketStarts).entrySet()) {
+                // Fragments never change, so L1 copies need no invalidation
+                List<Instant> remote = new ArrayList<>();
+                for (Instant bucket : shard.getValue()) {
+                    queryCache.getLocal(fragmentKey(shard.getKey(), bucket), TimeSeriesPoint.class)
+                            .ifPresentOrElse(point -> fragments.put(bucket, point), () -> remote.add(bucket));
+                }
+                if (remote.isEmpty()) {
+                    continue;
+                }
+
+                List<Object> fields = remote.stream()
+                        .map(bucket -> (Object) Long.toString(bucket.toEpochMilli()))
+                        .toList();
+                List<Object> values = redisTemplate.opsForHash().multiGet(shard.getKey(), fields);
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < values.size(); i++) {
+                    Object value = values.get(i);
+                    if (value == null) {
+                        continue;
+                    }
+                    Instant bucket = remote.get(i);
+                    String raw = value.toString();
+                    Duration localTtl = Duration.ofHours(fragmentTtlHours);
+                    Double parsed = null;
+                    if (raw.startsWith(EMPTY_FRAGMENT_PREFIX)) {
+                        // Empty buckets may still receive late points, so they expire early
+                        long remainingMillis = Long.parseLong(raw.substring(1)) - now;
+                        if (remainingMillis <= 0) {
+                            continue;
+                        }
+                        localTtl = Duration.ofMillis(remainingMillis);
+                    } else if (raw.isEmpty()) {
+                        // Empty marker without expiry, written by an older version
+                        continue;
+                    } else {
+                        parsed = Double.valueOf(raw);
+                    }
+                    TimeSeriesPoint point = new TimeSeriesPoint(bucket, parsed);
+                    fragments.put(bucket, point);
+                    queryCache.putLocal(fragmentKey(shard.getKey(), bucket), point, FRAGMENT_WEIGHT, localTtl);
+                }
             }
-            MultiMetricQueryResult result = objectMapper.readValue(value, MultiMetricQueryResult.class);
-            return Optional.of(result);
         } catch (Exception e) {
-            log.warn("Error reading multi-metric cache", e);
-            return Optional.empty();
+            log.warn("Error reading fragment cache for query: {}", query.getMetricName(), e);
+            return Map.of();
         }
+        return fragments;
     }
 
     @Override
-    public void putMulti(MultiMetricQuery query, MultiMetricQueryResult result) {
+    public void putFragments(MetricQuery query, List<TimeSeriesPoint> buckets) {
         try {
-            String cacheKey = generateMultiCacheKey(query);
-            int ttlSeconds = calculateCacheTtl(query.getRollupPeriod());
-            String value = objectMapper.writeValueAsString(result);
-            redisTemplate.opsForValue().set(cacheKey, value, Duration.ofSeconds(ttlSeconds));
+            Duration ttl = Duration.ofHours(fragmentTtlHours);
+            Duration emptyTtl = Duration.ofMinutes(emptyFragmentTtlMinutes);
+            String emptyMarker = EMPTY_FRAGMENT_PREFIX + (System.currentTimeMillis() + emptyTtl.toMillis());
+            Map<String, Map<String, String>> shards = new LinkedHashMap<>();
+            for (TimeSeriesPoint point : buckets) {
+                String shardKey = shardKey(query, point.getTimestamp());
+                boolean empty = point.getValue() == null;
+                shards.computeIfAbsent(shardKey, key -> new HashMap<>())
+                        .put(Long.toString(point.getTimestamp().toEpochMilli()),
+                                empty ? emptyMarker : Double.toString(point.getValue()));
+                queryCache.putLocal(fragmentKey(shardKey, point.getTimestamp()), point, FRAGMENT_WEIGHT,
+                        empty ? emptyTtl : ttl);
+            }
+            shards.forEach((key, fields) -> {
+                redisTemplate.opsForHash().putAll(key, fields);
+                redisTemplate.expire(key, ttl);
+            });
         } catch (Exception e) {
-            log.warn("Error writing multi-metric cache", e);
+            log.warn("Error writing fragment cache for query: {}", query.getMetricName(), e);
         }
     }
 
     @Override
-    public Optional<HistogramResult> getHistogram(HistogramQuery query) {
-        try {
-            String cacheKey = generateHistogramCacheKey(query);
-            String value = redisTemplate.opsForValue().get(cacheKey);
-            if (value == null) {
-                return Optional.empty();
-            }
-            HistogramResult result = objectMapper.readValue(value, HistogramResult.class);
-            return Optional.of(result);
-        } catch (Exception e) {
-            log.warn("Error reading histogram cache", e);
-            return Optional.empty();
-        }
+    public MultiMetricQueryResult getOrLoadMulti(MultiMetricQuery query, Supplier<MultiMetricQueryResult> loader) {
+        return queryCache.getOrLoad(generateMultiCacheKey(query), MultiMetricQueryResult.class,
+                Duration.ofSeconds(calculateCacheTtl(query.getRollupPeriod())), loader);
     }
 
     @Override
-    public void putHistogram(HistogramQuery query, HistogramResult result) {
-        try {
-            String cacheKey = generateHistogramCacheKey(query);
-            // Cache histograms for 5 minutes
-            int ttlSeconds = 300;
-            String value = objectMapper.writeValueAsString(result);
-            redisTemplate.opsForValue().set(cacheKey, value, Duration.ofSeconds(ttlSeconds));
-        } catch (Exception e) {
-            log.warn("Error writing histogram cache", e);
-        }
+    public HistogramResult getOrLoadHistogram(HistogramQuery query, Supplier<HistogramResult> loader) {
+        // Cache histograms for 5 minutes
+        return queryCache.getOrLoad(generateHistogramCacheKey(query), HistogramResult.class,
+                Duration.ofSeconds(300), loader);
     }
 
     /**
@@ -131,16 +166,67 @@ public class MetricCacheImpl implements MetricCachePort {
             key.append(":service:").append(query.getServiceId().get());
         }
         
-        // Include tags if present (for future use)
-        if (query.getTags().isPresent() && !query.getTags().get().isEmpty()) {
-            query.getTags().get().entrySet().stream()
-                    .sorted(Map.Entry.comparingByKey())
-                    .forEach(entry -> key.append(":tag:").append(entry.getKey()).append("=").append(entry.getValue()));
-        }
+        // Include tag filters, grouping and series limit if present
+        appendTagFilters(key, query.getTagFilters());
+        query.getGroupBy().ifPresent(groupBy -> appendLengthPrefixed(key.append(":group"), groupBy.toExpression()));
+        query.getSeriesLimit().ifPresent(limit ->
+                key.append(":").append(limit.getOrder().name().toLowerCase()).append(":").append(limit.getCount()));
         
         return key.toString();
     }
 
+    /**
+     * Fragment hash of the query's series holding the given bucket: everything that identifies
+     * the series except the time range, plus the shard the bucket falls into.
+     */
+    private String shardKey(MetricQuery query, Instant bucketStart) {
+        long shardMillis = query.getRollupPeriod().getDuration().toMillis() * BUCKETS_PER_SHARD;
+        StringBuilder key = new StringBuilder(FRAGMENT_CACHE_PREFIX);
+        key.append(query.getProjectId()).append(":");
+        key.append(query.getMetricName()).append(":");
+        key.append(query.getAggregationType().getValue()).append(":");
+        key.append(query.getRollupPeriod().toPeriodString());
+        query.getServiceId().ifPresent(serviceId -> key.append(":service:").append(serviceId));
+        appendTagFilters(key, query.getTagFilters());
+        key.append(":").append(Math.floorDiv(bucketStart.toEpochMilli(), shardMillis));
+        return key.toString();
+    }
+
+    /**
+     * Appends the tag filters in a canonical order. Keys and values are length-prefixed rather
+     * than joined as expressions, which are ambiguous once a value contains ':', ',' or brackets.
+     */
+    private static void appendTagFilters(StringBuilder key, List<TagFilter> tagFilters) {
+        tagFilters.stream()
+                .map(MetricCacheImpl::tagFilterKey)
+                .sorted()
+                .forEach(filterKey -> key.append(":tag:").append(filterKey));
+    }
+
+    private static String tagFilterKey(TagFilter tagFilter) {
+        StringBuilder key = new StringBuilder(tagFilter.getOperator().name().toLowerCase(Locale.ROOT));
+        appendLengthPrefixed(key, tagFilter.getKey());
+        key.append(":").append(tagFilter.getValues().size());
+        tagFilter.getValues().forEach(value -> appendLengthPrefixed(key, value));
+        return key.toString();
+    }
+
+    private static StringBuilder appendLengthPrefixed(StringBuilder key, String value) {
+        return key.append(":").append(value.length()).append(":").append(value);
+    }
+
+    private static String fragmentKey(String shardKey, Instant bucketStart) {
+        return shardKey + "#" + bucketStart.toEpochMilli();
+    }
+
+    private Map<String, List<Instant>> groupByShard(MetricQuery query, List<Instant> bucketStarts) {
+        Map<String, List<Instant>> shards = new LinkedHashMap<>();
+        for (Instant bucket : bucketStarts) {
+            shards.computeIfAbsent(shardKey(query, bucket), key -> new ArrayList<>()).add(bucket);
+        }
+        return shards;
+    }
+
     /**
      * Generate cache key for multi-metric query.
      */
@@ -183,7 +269,8 @@ public class MetricCacheImpl implements MetricCachePort {
         key.append(query.getMetricName()).append(":");
         key.append(query.getTimeRange().getStartTime().toEpochMilli()).append(":");
         key.append(query.getTimeRange().getEndTime().toEpochMilli()).append(":");
-        key.append(query.getBins());
+        key.append(query.getBins()).append(":");
+        key.append(query.getScale().getValue());
         
         if (query.getServiceId().isPresent()) {
             key.append(":service:").append(query.getServiceId().get());
@@ -0,0 +1,242 @@
+package com.asre.asre.infra.redis;
+
+import java.util.Arrays;
+
+/**
+ * Gorilla-style bit packing for cached time series (Pelkonen et al., VLDB 2015).
+ * Timestamps (epoch millis) are stored as delta-of-delta, so evenly spaced buckets cost one
+ * bit each; values are XORed with their predecessor and only the meaningful bits are kept,
+ * so repeated or slowly changing values cost one or a few bits. Optional values carry a
+ * presence bit each, and only present values enter the XOR chain.
+ */
+final class SeriesCodec {
+
+    private SeriesCodec() {
+    }
+
+    static void writeTimestamps(BitWriter out, long[] timestamps) {
+        if (timestamps.length == 0) {
+            return;
+        }
+        out.write(timestamps[0], 64);
+        long previousDelta = 0;
+        for (int i = 1; i < timestamps.length; i++) {
+            long delta = timestamps[i] - timestamps[i - 1];
+            writeDeltaOfDelta(out, delta - previousDelta);
+            previousDelta = delta;
+        }
+    }
+
+    static long[] readTimestamps(BitReader in, int count) {
+        long[] timestamps = new long[count];
+        if (count == 0) {
+            return timestamps;
+        }
+        timestamps[0] = in.read(64);
+        long previousDelta = 0;
+        for (int i = 1; i < count; i++) {
+            long delta = previousDelta + readDeltaOfDelta(in);
+            timestamps[i] = timestamps[i - 1] + delta;
+            previousDelta = delta;
+        }
+        return timestamps;
+    }
+
+    /**
+     * Zigzag-encoded, with a prefix selecting the width: 0 | 10+7 | 110+9 | 1110+12 | 11110+32 | 11111+64.
+     */
+    private static void writeDeltaOfDelta(BitWriter out, long deltaOfDelta) {
+        long zigzag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+        if (zigzag == 0) {
+            out.write(0b0, 1);
+        } else if (zigzag >>> 7 == 0) {
+            out.write(0b10, 2);
+            out.write(zigzag, 7);
+        } else if (zigzag >>> 9 == 0) {
+            out.write(0b110, 3);
+            out.write(zigzag, 9);
+        } else if (zigzag >>> 12 == 0) {
+            out.write(0b1110, 4);
+            out.write(zigzag, 12);
+        } else if (zigzag >>> 32 == 0) {
+            out.write(0b11110, 5);
+            out.write(zigzag, 32);
+        } else {
+            out.write(0b11111, 5);
+            out.write(zigzag, 64);
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader in) {
+        int width;
+        if (in.read(1) == 0) {
+            return 0;
+        } else if (in.read(1) == 0) {
+            width = 7;
+        } else if (in.read(1) == 0) {
+            width = 9;
+        } else if (in.read(1) == 0) {
+            width = 12;
+        } else {
+            width = in.read(1) == 0 ? 32 : 64;
+        }
+        long zigzag = in.read(width);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * Writes the values; with a presence mask, absent entries cost one bit and are skipped.
+     */
+    static void writeValues(BitWriter out, double[] values, boolean[] present) {
+        long previous = 0;
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        boolean first = true;
+        for (int i = 0; i < values.length; i++) {
+            if (present != null) {
+                out.write(present[i] ? 1 : 0, 1);
+                if (!present[i]) {
+                    continue;
+                }
+            }
+            long bits = Double.doubleToRawLongBits(values[i]);
+            if (first) {
+                out.write(bits, 64);
+                previous = bits;
+                first = false;
+                continue;
+            }
+
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.write(0b0, 1);
+                continue;
+            }
+            int leading = Long.numberOfLeadingZeros(xor);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                // Meaningful bits fit in the previous window
+                out.write(0b10, 2);
+                out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int length = 64 - leading - trailing;
+                out.write(0b11, 2);
+                out.write(leading, 6);
+                out.write(length - 1, 6);
+                out.write(xor >>> trailing, length);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+    }
+
+    static double[] readValues(BitReader in, int count, boolean[] present) {
+        double[] values = new double[count];
+        long previous = 0;
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        boolean first = true;
+        for (int i = 0; i < count; i++) {
+            if (present != null) {
+                present[i] = in.read(1) == 1;
+                if (!present[i]) {
+                    continue;
+                }
+            }
+            if (first) {
+                previous = in.read(64);
+                first = false;
+            } else if (in.read(1) == 1) {
+                if (in.read(1) == 1) {
+                    previousLeading = (int) in.read(6);
+                    previousTrailing = 64 - previousLeading - ((int) in.read(6) + 1);
+                }
+                int length = 64 - previousLeading - previousTrailing;
+                previous ^= in.read(length) << previousTrailing;
+            }
+            values[i] = Double.longBitsToDouble(previous);
+        }
+        return values;
+    }
+
+    /**
+     * Appends bits most significant first into 64-bit words.
+     */
+    static final class BitWriter {
+        private long[] words = new long[8];
+        private int bits;
+
+        /**
+         * Writes the low {@code count} bits of {@code value} (0 to 64).
+         */
+        void write(long value, int count) {
+            if (count == 0) {
+                return;
+            }
+            if (count < 64) {
+                value &= (1L << count) - 1;
+            }
+            int index = bits >>> 6;
+            int free = 64 - (bits & 63);
+            if (index + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            if (count <= free) {
+                words[index] |= value << (free - count);
+            } else {
+                int spill = count - free;
+                words[index] |= value >>> spill;
+                words[index + 1] |= value << (64 - spill);
+            }
+            bits += count;
+        }
+
+        int bitLength() {
+            return bits;
+        }
+
+        byte[] toByteArray() {
+            byte[] bytes = new byte[(bits + 7) >>> 3];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) (words[i >>> 3] >>> (56 - ((i & 7) << 3)));
+            }
+            return bytes;
+        }
+    }
+
+    static final class BitReader {
+        private final long[] words;
+        private int position;
+
+        BitReader(byte[] bytes) {
+            // One spare word so reads never index past the end
+            words = new long[(bytes.length >>> 3) + 2];
+            for (int i = 0; i < bytes.length; i++) {
+                words[i >>> 3] |= (bytes[i] & 0xFFL) << (56 - ((i & 7) << 3));
+            }
+        }
+
+        /**
+         * Reads the next {@code count} bits (0 to 64) as an unsigned value.
+         */
+        long read(int count) {
+            if (count == 0) {
+                return 0;
+            }
+            int index = position >>> 6;
+            int offset = position & 63;
+            int free = 64 - offset;
+            long result;
+            if (count <= free) {
+                result = (words[index] << offset) >>> (64 - count);
+            } else {
+                int spill = count - free;
+                long high = (words[index] << offset) >>> offset;
+                result = (high << spill) | (words[index + 1] >>> (64 - spill));
+            }
+            position += count;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package com.asre.asre.infra.redis;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Query result cache with two tiers: a bounded in-process L1 (Caffeine, W-TinyLFU eviction,
+ * weighted by the approximate size of each entry) in front of Redis (L2).
+ * L1 holds the deserialized domain objects, so hot keys are served without a network hop or
+ * decoding; Redis holds compact binary payloads ({@link CachedValueCodec}). Writes go to both tiers and are announced on a pub/sub channel, so other nodes
+ * drop their L1 copy and re-read L2. Mutable entries stay in L1 for at most the L1 TTL (and
+ * never longer than their L2 TTL), which bounds staleness if a message is missed.
+ * Hit, miss and eviction counts are exported per tier as cache.* meters (cache=query.l1|query.l2).
+ * Loading reads ({@link #getOrLoad}) add cross-node stampede protection on top.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TwoTierQueryCache {
+
+    private static final String INVALIDATION_CHANNEL = "cache:query:invalidate";
+    private static final String L1_NAME = "query.l1";
+    private static final String L2_NAME = "query.l2";
+    private static final String LEASE_PREFIX = "lease:";
+    private static final long LEASE_POLL_MILLIS = 50;
+
+    // Deletes the lease only if this caller still holds it
+    private static final String RELEASE_LEASE_SCRIPT = """
+            if redis.call('get', KEYS[1]) == ARGV[1] then
+                return redis.call('del', KEYS[1])
+            end
+            return 0
+            """;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisTemplate<String, byte[]> binaryRedisTemplate;
+    private final CachedValueCodec codec;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    // Distinguishes this node's own invalidations, which it has already applied
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Value("${cache.query.l1.enabled:true}")
+    private boolean l1Enabled;
+
+    @Value("${cache.query.l1.max-bytes:67108864}")
+    private long l1MaxBytes;
+
+    @Value("${cache.query.l1.ttl-seconds:30}")
+    private long l1TtlSeconds;
+
+    @Value("${cache.query.stampede.stale-seconds:60}")
+    private long staleSeconds;
+
+    @Value("${cache.query.stampede.lease-ms:10000}")
+    private long leaseMillis;
+
+    @Value("${cache.query.stampede.wait-ms:2000}")
+    private long leaseWaitMillis;
+
+    @Value("${cache.query.stampede.beta:1.0}")
+    private double xfetchBeta;
+
+    private Cache<String, Entry> l1;
+    private Counter l2Hits;
+    private Counter l2Misses;
+    private Counter l2Stale;
+    private final Map<String, Counter> refreshes = new ConcurrentHashMap<>();
+    private final DefaultRedisScript<Long> releaseScript = new DefaultRedisScript<>(RELEASE_LEASE_SCRIPT, Long.class);
+
+    /**
+     * A cached value with its weight (approximate size in bytes) and how long L1 may keep it.
+     */
+    private record Entry(Object value, int weight, long ttlNanos) {
+    }
+
+    @PostConstruct
+    void start() {
+        l1 = Caffeine.newBuilder()
+                .maximumWeight(l1MaxBytes)
+                .weigher((String key, Entry entry) -> key.length() + entry.weight())
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return entry.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return entry.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, l1, L1_NAME);
+
+        l2Hits = Counter.builder("cache.gets").tag("cache", L2_NAME).tag("result", "hit")
+                .description("Query cache lookups served by Redis")
+                .register(meterRegistry);
+        l2Misses = Counter.builder("cache.gets").tag("cache", L2_NAME).tag("result", "miss")
+                .description("Query cache lookups missing in Redis")
+                .register(meterRegistry);
+        l2Stale = Counter.builder("cache.gets").tag("cache", L2_NAME).tag("result", "stale")
+                .description("Expired values served while another node recomputes them")
+                .register(meterRegistry);
+
+        listenerContainer.addMessageListener(this::onInvalidation, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    /**
+     * Reads L1, then Redis; values found in Redis are kept in L1 for the L1 TTL at most.
+     * Values past their logical expiry count as misses.
+     */
+    public <T> Optional<T> get(String key, Class<T> type) throws Exception {
+        Optional<T> local = getLocal(key, type);
+        if (local.isPresent()) {
+            return local;
+        }
+
+        Envelope envelope = Envelope.parse(binaryRedisTemplate.opsForValue().get(key));
+        long now = System.currentTimeMillis();
+        if (envelope == null || envelope.isExpired(now)) {
+            l2Misses.increment();
+            return Optional.empty();
+        }
+        l2Hits.increment();
+        return Optional.of(readFromL2(key, envelope, type, now));
+    }
+
+    /**
+     * Writes both tiers and tells other nodes to drop their L1 copy of the key.
+     */
+    public void put(String key, Object value, Duration ttl) throws Exception {
+        store(key, value, ttl, 0);
+    }
+
+    /**
+     * Read-through with stampede protection across nodes:
+     * <ul>
+     *   <li>A fresh value is returned, except that each reader may decide to refresh it early
+     *       (XFetch): the closer to expiry and the longer the last recomputation took, the more
+     *       likely, so hot keys are usually recomputed by a single reader before they expire.</li>
+     *   <li>Recomputation requires a short Redis lease (SET NX PX), so only one node recomputes
+     *       a key at a time. Without the lease, a node keeps serving the current value, which is
+     *       retained for the stale period past its TTL.</li>
+     *   <li>With no value at all, nodes without the lease wait briefly for the lease holder's
+     *       write and only then compute themselves.</li>
+     * </ul>
+     * Redis errors fall back to calling the loader; loader exceptions propagate.
+     */
+    public <T> T getOrLoad(String key, Class<T> type, Duration ttl, Supplier<T> loader) {
+        Optional<T> local = getLocal(key, type);
+        if (local.isPresent()) {
+            return local.get();
+        }
+
+        Envelope envelope;
+        try {
+            envelope = Envelope.parse(binaryRedisTemplate.opsForValue().get(key));
+        } catch (Exception e) {
+            log.warn("Error reading query cache key {}", key, e);
+            return loader.get();
+        }
+
+        long now = System.currentTimeMillis();
+        if (envelope != null && !envelope.shouldRecompute(now, xfetchBeta)) {
+            l2Hits.increment();
+            T value = readQuietly(key, envelope, type, now);
+            if (value != null) {
+                return value;
+            }
+            envelope = null;
+        }
+
+        String trigger = envelope == null ? "miss" : envelope.isExpired(now) ? "expired" : "early";
+        String lease = tryAcquireLease(key);
+        if (lease != null) {
+            refreshes.computeIfAbsent(trigger, this::refreshCounter).increment();
+            try {
+                return loadAndStore(key, ttl, loader);
+            } finally {
+                releaseLease(key, lease);
+            }
+        }
+
+        // Another node is recomputing: serve what there is, stale or not
+        if (envelope != null) {
+            T value = readQuietly(key, envelope, type, now);
+            if (value != null) {
+                (envelope.isExpired(now) ? l2Stale : l2Hits).increment();
+                return value;
+            }
+        }
+
+        l2Misses.increment();
+        long deadline = now + leaseWaitMillis;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(LEASE_POLL_MILLIS);
+                Envelope written = Envelope.parse(binaryRedisTemplate.opsForValue().get(key));
+                T value = written != null ? readQuietly(key, written, type, System.currentTimeMillis()) : null;
+                if (value != null) {
+                    return value;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.warn("Error polling query cache key {}", key, e);
+                break;
+            }
+        }
+        // The lease holder is slow or failed
+        return loadAndStore(key, ttl, loader);
+    }
+
+    private <T> T loadAndStore(String key, Duration ttl, Supplier<T> loader) {
+        long started = System.nanoTime();
+        T value = loader.get();
+        long computeMillis = Duration.ofNanos(System.nanoTime() - started).toMillis();
+        try {
+            store(key, value, ttl, computeMillis);
+        } catch (Exception e) {
+            log.warn("Error writing query cache key {}", key, e);
+        }
+        return value;
+    }
+
+    /**
+     * Writes the envelope to Redis, kept for the stale period past its logical TTL, then L1.
+     */
+    private void store(String key, Object value, Duration ttl, long computeMillis) throws Exception {
+        CachedValueCodec.Encoded encoded = codec.encode(value);
+        long expiresAt = System.currentTimeMillis() + ttl.toMillis();
+        binaryRedisTemplate.opsForValue().set(key, new Envelope(expiresAt, computeMillis, encoded.bytes()).format(),
+                ttl.plusSeconds(staleSeconds));
+        Duration l1Ttl = Duration.ofSeconds(l1TtlSeconds);
+        putLocal(key, value, encoded.weight(), ttl.compareTo(l1Ttl) < 0 ? ttl : l1Ttl);
+        redisTemplate.convertAndSend(INVALIDATION_CHANNEL, nodeId + "|" + key);
+    }
+
+    private <T> T readFromL2(String key, Envelope envelope, Class<T> type, long now) throws Exception {
+        T value = codec.decode(envelope.payload(), type);
+        // Only fresh values go to L1, and never past their logical expiry
+        long remainingMillis = Math.min(envelope.expiresAt() - now, Duration.ofSeconds(l1TtlSeconds).toMillis());
+        if (remainingMillis > 0) {
+            putLocal(key, value, codec.weigh(value, envelope.payload().length), Duration.ofMillis(remainingMillis));
+        }
+        return value;
+    }
+
+    private <T> T readQuietly(String key, Envelope envelope, Class<T> type, long now) {
+        try {
+            return readFromL2(key, envelope, type, now);
+        } catch (Exception e) {
+            log.warn("Error reading query cache key {}", key, e);
+            return null;
+        }
+    }
+
+    private String tryAcquireLease(String key) {
+        try {
+            String token = nodeId + ":" + UUID.randomUUID();
+            Boolean acquired = redisTemplate.opsForValue()
+                    .setIfAbsent(LEASE_PREFIX + key, token, Duration.ofMillis(leaseMillis));
+            return Boolean.TRUE.equals(acquired) ? token : null;
+        } catch (Exception e) {
+            log.warn("Error acquiring query cache lease for {}", key, e);
+            // Without Redis there is no one to coordinate with
+            return "";
+        }
+    }
+
+    private void releaseLease(String key, String token) {
+        if (token.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.execute(releaseScript, List.of(LEASE_PREFIX + key), token);
+        } catch (Exception e) {
+            log.warn("Error releasing query cache lease for {}", key, e);
+        }
+    }
+
+    private Counter refreshCounter(String trigger) {
+        return Counter.builder("cache.refreshes").tag("cache", L2_NAME).tag("trigger", trigger)
+                .description("Query cache recomputations by trigger (miss, expired, early)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Redis value layout: {@code [version byte][expiresAtMillis long][computeMillis long][payload]}.
+     * The logical expiry precedes the Redis TTL by the stale period; computeMillis drives early
+     * refresh. Values in any other layout (e.g. written by an older version) read as missing.
+     */
+    private record Envelope(long expiresAt, long computeMillis, byte[] payload) {
+
+        private static final byte VERSION = 1;
+        private static final int HEADER_BYTES = 1 + 2 * Long.BYTES;
+
+        static Envelope parse(byte[] raw) {
+            if (raw == null || raw.length <= HEADER_BYTES || raw[0] != VERSION) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(raw, 1, raw.length - 1);
+            long expiresAt = buffer.getLong();
+            long computeMillis = buffer.getLong();
+            byte[] payload = new byte[buffer.remaining()];
+            buffer.get(payload);
+            return new Envelope(expiresAt, computeMillis, payload);
+        }
+
+        byte[] format() {
+            return ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                    .put(VERSION)
+                    .putLong(expiresAt)
+                    .putLong(computeMillis)
+                    .put(payload)
+                    .array();
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+
+        /**
+         * XFetch: recompute once now - computeMillis * beta * ln(U) reaches the expiry, U uniform in (0, 1].
+         */
+        boolean shouldRecompute(long now, double beta) {
+            double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+            return now - computeMillis * beta * Math.log(random) >= expiresAt;
+        }
+    }
+
+    /**
+     * L1 only, for immutable values whose L2 layout is managed by the caller; they are not
+     * announced to other nodes and may stay for their full TTL.
+     */
+    public <T> Optional<T> getLocal(String key, Class<T> type) {
+        if (!l1Enabled) {
+            return Optional.empty();
+        }
+        Entry entry = l1.getIfPresent(key);
+        return entry != null && type.isInstance(entry.value()) ? Optional.of(type.cast(entry.value())) : Optional.empty();
+    }
+
+    public void putLocal(String key, Object value, int weight, Duration ttl) {
+        if (!l1Enabled) {
+            return;
+        }
+        l1.put(key, new Entry(value, weight, ttl.toNanos()));
+    }
+
+    private void onInvalidation(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = payload.indexOf('|');
+        if (separator < 0 || payload.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        l1.invalidate(payload.substring(separator + 1));
+    }
+}
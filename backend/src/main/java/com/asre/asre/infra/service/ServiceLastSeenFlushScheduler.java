@@ -0,0 +1,33 @@
+package com.asre.asre.infra.service;
+
+import com.asre.asre.application.service.ServiceDiscoveryService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically writes the coalesced service last_seen_at updates collected during ingestion.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ServiceLastSeenFlushScheduler {
+
+    private final ServiceDiscoveryService serviceDiscoveryService;
+
+    @Scheduled(fixedDelayString = "${ingestion.service-discovery.flush-interval-ms:30000}")
+    public void flushLastSeen() {
+        try {
+            serviceDiscoveryService.flushLastSeen();
+        } catch (Exception e) {
+            log.error("Failed to flush service last_seen_at updates: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushLastSeen();
+    }
+}
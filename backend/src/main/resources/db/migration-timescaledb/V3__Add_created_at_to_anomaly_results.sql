@@ -0,0 +1,7 @@
+------------------------------------------------------------
+-- ANOMALY DETECTION RESULTS: created_at
+-- Written by JdbcAnomalyDetectionResultRepository (INSERT and COPY paths)
+------------------------------------------------------------
+
+ALTER TABLE anomaly_detection_results
+    ADD COLUMN IF NOT EXISTS created_at timestamptz NOT NULL DEFAULT now();
@@ -0,0 +1,60 @@
+------------------------------------------------------------
+-- METRIC SERIES (dictionary)
+-- One row per (project, service, metric, canonical tag set).
+-- jsonb stores keys in a canonical order, so equal tag sets compare equal.
+-- Samples reference a series by its compact series_id instead of
+-- repeating the identity and tags on every row.
+------------------------------------------------------------
+
+CREATE TABLE metric_series (
+    series_id bigserial PRIMARY KEY,
+    project_id uuid NOT NULL,  -- Multi-tenant isolation (mandatory)
+    service_id uuid NOT NULL,
+    metric_name text NOT NULL,
+    tags jsonb NOT NULL DEFAULT '{}',
+    created_at timestamptz NOT NULL DEFAULT now(),
+    CONSTRAINT uq_metric_series_identity UNIQUE (project_id, service_id, metric_name, tags)
+);
+
+-- Query path: project + metric (optionally service) -> series IDs
+CREATE INDEX idx_metric_series_project_name
+    ON metric_series(project_id, metric_name, service_id);
+
+CREATE INDEX idx_metric_series_tags
+    ON metric_series USING GIN (tags);
+
+------------------------------------------------------------
+-- METRIC SAMPLES (hypertable)
+-- RAW SAMPLES only: (time, series_id, value)
+------------------------------------------------------------
+
+CREATE TABLE metric_samples (
+    time timestamptz NOT NULL,
+    series_id bigint NOT NULL,
+    value double precision NOT NULL
+);
+
+SELECT create_hypertable('metric_samples', 'time', if_not_exists => TRUE);
+
+CREATE INDEX idx_metric_samples_series_time
+    ON metric_samples(series_id, time DESC);
+
+------------------------------------------------------------
+-- Move existing samples into the dictionary layout
+------------------------------------------------------------
+
+INSERT INTO metric_series (project_id, service_id, metric_name, tags)
+SELECT DISTINCT project_id, service_id, metric_name, COALESCE(tags, '{}'::jsonb)
+FROM metrics
+ON CONFLICT DO NOTHING;
+
+INSERT INTO metric_samples (time, series_id, value)
+SELECT m.time, s.series_id, m.value
+FROM metrics m
+JOIN metric_series s
+  ON s.project_id = m.project_id
+ AND s.service_id = m.service_id
+ AND s.metric_name = m.metric_name
+ AND s.tags = COALESCE(m.tags, '{}'::jsonb);
+
+DROP TABLE metrics;
@@ -0,0 +1,27 @@
+------------------------------------------------------------
+-- METRIC SAMPLES: native compression
+-- segmentby series_id: each compressed batch holds one series, so the
+-- series_id IN (...) filter used by every query skips whole segments.
+-- orderby time DESC: per-segment min/max time metadata prunes by range.
+-- Compression, retention and chunk-interval policies are applied by
+-- MetricStoragePolicyManager from metrics.storage.* configuration.
+------------------------------------------------------------
+
+ALTER TABLE metric_samples SET (
+    timescaledb.compress,
+    timescaledb.compress_segmentby = 'series_id',
+    timescaledb.compress_orderby = 'time DESC'
+);
+
+------------------------------------------------------------
+-- PER-PROJECT RETENTION
+-- Optional overrides shorter than the global retention policy
+-- (metrics.storage.retention-days); older samples of these projects
+-- are purged by the nightly storage maintenance.
+------------------------------------------------------------
+
+CREATE TABLE project_metric_retention (
+    project_id uuid PRIMARY KEY,
+    retention_days integer NOT NULL CHECK (retention_days > 0),
+    updated_at timestamptz NOT NULL DEFAULT now()
+);
@@ -0,0 +1,103 @@
+------------------------------------------------------------
+-- METRIC ROLLUPS: explicit percentile sketch parameters
+-- percentile_agg() is uddsketch(200, 0.001): with only 200 buckets it
+-- collapses on wide value ranges (latencies spanning ms..s), doubling its
+-- error bound on every collapse. The rollups are rebuilt with
+-- uddsketch(2000, 0.005): relative error <= 0.5% for any value range up to
+-- ~4.8e8x (e.g. 1us..8min) without collapsing. Sketches merge with rollup()
+-- across buckets and series at the same bound; error(sketch) reports the
+-- bound actually achieved.
+-- Runs outside a transaction (see .conf) so the rollups can be backfilled.
+------------------------------------------------------------
+
+DROP MATERIALIZED VIEW IF EXISTS metric_rollup_1d;
+DROP MATERIALIZED VIEW IF EXISTS metric_rollup_1h;
+DROP MATERIALIZED VIEW IF EXISTS metric_rollup_5m;
+DROP MATERIALIZED VIEW IF EXISTS metric_rollup_1m;
+
+CREATE MATERIALIZED VIEW metric_rollup_1m
+WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS
+SELECT time_bucket(INTERVAL '1 minute', time) AS bucket,
+       series_id,
+       count(*) AS sample_count,
+       sum(value) AS value_sum,
+       min(value) AS value_min,
+       max(value) AS value_max,
+       uddsketch(2000, 0.005, value) AS value_sketch
+FROM metric_samples
+GROUP BY time_bucket(INTERVAL '1 minute', time), series_id
+WITH NO DATA;
+
+CREATE MATERIALIZED VIEW metric_rollup_5m
+WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS
+SELECT time_bucket(INTERVAL '5 minutes', bucket) AS bucket,
+       series_id,
+       sum(sample_count)::bigint AS sample_count,
+       sum(value_sum) AS value_sum,
+       min(value_min) AS value_min,
+       max(value_max) AS value_max,
+       rollup(value_sketch) AS value_sketch
+FROM metric_rollup_1m
+GROUP BY time_bucket(INTERVAL '5 minutes', bucket), series_id
+WITH NO DATA;
+
+CREATE MATERIALIZED VIEW metric_rollup_1h
+WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS
+SELECT time_bucket(INTERVAL '1 hour', bucket) AS bucket,
+       series_id,
+       sum(sample_count)::bigint AS sample_count,
+       sum(value_sum) AS value_sum,
+       min(value_min) AS value_min,
+       max(value_max) AS value_max,
+       rollup(value_sketch) AS value_sketch
+FROM metric_rollup_5m
+GROUP BY time_bucket(INTERVAL '1 hour', bucket), series_id
+WITH NO DATA;
+
+CREATE MATERIALIZED VIEW metric_rollup_1d
+WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS
+SELECT time_bucket(INTERVAL '1 day', bucket) AS bucket,
+       series_id,
+       sum(sample_count)::bigint AS sample_count,
+       sum(value_sum) AS value_sum,
+       min(value_min) AS value_min,
+       max(value_max) AS value_max,
+       rollup(value_sketch) AS value_sketch
+FROM metric_rollup_1h
+GROUP BY time_bucket(INTERVAL '1 day', bucket), series_id
+WITH NO DATA;
+
+------------------------------------------------------------
+-- Refresh policies
+-- start_offset bounds how late data may arrive and still be rolled up;
+-- end_offset keeps the open bucket in the real-time tail.
+------------------------------------------------------------
+
+SELECT add_continuous_aggregate_policy('metric_rollup_1m',
+    start_offset => INTERVAL '3 hours',
+    end_offset => INTERVAL '1 minute',
+    schedule_interval => INTERVAL '1 minute');
+
+SELECT add_continuous_aggregate_policy('metric_rollup_5m',
+    start_offset => INTERVAL '6 hours',
+    end_offset => INTERVAL '5 minutes',
+    schedule_interval => INTERVAL '5 minutes');
+
+SELECT add_continuous_aggregate_policy('metric_rollup_1h',
+    start_offset => INTERVAL '3 days',
+    end_offset => INTERVAL '1 hour',
+    schedule_interval => INTERVAL '30 minutes');
+
+SELECT add_continuous_aggregate_policy('metric_rollup_1d',
+    start_offset => INTERVAL '7 days',
+    end_offset => INTERVAL '1 day',
+    schedule_interval => INTERVAL '1 hour');
+
+------------------------------------------------------------
+-- Backfill from raw samples, finest level first
+------------------------------------------------------------
+
+CALL refresh_continuous_aggregate('metric_rollup_1m', NULL, NULL);
+CALL refresh_continuous_aggregate('metric_rollup_5m', NULL, NULL);
+CALL refresh_continuous_aggregate('metric_rollup_1h', NULL, NULL);
+CALL refresh_continuous_aggregate('metric_rollup_1d', NULL, NULL);
@@ -0,0 +1,30 @@
+------------------------------------------------------------
+-- METRIC WINDOWS: pre-aggregated samples
+-- Series opted into worker pre-aggregation (ingestion.preaggregation.*)
+-- are folded into fixed windows (e.g. 10s) before they reach the
+-- database and stored here as one row per series and window, in the same
+-- shape as the metric_rollup_* aggregates. The sketch uses the rollup
+-- parameters (V7) so it merges with rollup() at the same error bound.
+-- Queries combine these rows with the rollups / raw samples.
+------------------------------------------------------------
+
+CREATE TABLE metric_windows (
+    time timestamptz NOT NULL,
+    series_id bigint NOT NULL,
+    sample_count bigint NOT NULL,
+    value_sum double precision NOT NULL,
+    value_min double precision NOT NULL,
+    value_max double precision NOT NULL,
+    value_sketch uddsketch NOT NULL
+);
+
+SELECT create_hypertable('metric_windows', 'time', if_not_exists => TRUE);
+
+CREATE INDEX idx_metric_windows_series_time
+    ON metric_windows (series_id, time DESC);
+
+ALTER TABLE metric_windows SET (
+    timescaledb.compress,
+    timescaledb.compress_segmentby = 'series_id',
+    timescaledb.compress_orderby = 'time DESC'
+);
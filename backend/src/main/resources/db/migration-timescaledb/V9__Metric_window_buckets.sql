@@ -0,0 +1,12 @@
+------------------------------------------------------------
+-- METRIC WINDOWS: bucket arrays
+-- Client-side histogram points (explicit or exponential buckets) are
+-- stored in metric_windows like pre-aggregated windows. The non-empty
+-- buckets are kept next to the sketch, as parallel arrays of bucket
+-- representative values and counts, so value histograms can be built
+-- by merging buckets instead of reading individual observations.
+------------------------------------------------------------
+
+ALTER TABLE metric_windows
+    ADD COLUMN bucket_values double precision[],
+    ADD COLUMN bucket_counts bigint[];
@@ -0,0 +1,97 @@
+package com.asre.asre.api.ingestion;
+
+import com.asre.asre.api.ingestion.dto.MetricsIngestionRequest;
+import com.asre.asre.config.JacksonConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IngestionRequestReaderTest {
+
+    private static final long LIMIT = 4096;
+
+    private IngestionRequestReader reader;
+
+    @BeforeEach
+    void setUp() {
+        reader = new IngestionRequestReader(new JacksonConfig().objectMapper());
+        ReflectionTestUtils.setField(reader, "chunkSize", 500);
+        ReflectionTestUtils.setField(reader, "maxDecompressedBytes", LIMIT);
+    }
+
+    @Test
+    void readsGzipBodiesWithinTheLimit() throws IOException {
+        MockHttpServletRequest request = gzipRequest("{\"metrics\": [{\"name\": \"cpu.usage\", \"value\": 1.5}]}");
+        List<MetricsIngestionRequest.MetricDto> items = new ArrayList<>();
+
+        int read = reader.read(request, "metrics", MetricsIngestionRequest.MetricDto.class, items::addAll);
+
+        assertThat(read).isEqualTo(1);
+        assertThat(items).hasSize(1);
+    }
+
+    @Test
+    void gzipBodiesDecodingPastTheLimitAreRejected() throws IOException {
+        // Compresses to a few dozen bytes, decodes to sixteen times the limit
+        MockHttpServletRequest request = gzipRequest("{\"metrics\": [], \"padding\": \""
+                + " ".repeat((int) LIMIT * 16) + "\"}");
+
+        assertThat(request.getContentAsByteArray().length).isLessThan((int) LIMIT);
+        assertThatThrownBy(() -> reader.read(request, "metrics", MetricsIngestionRequest.MetricDto.class, chunk -> {
+        })).isInstanceOf(IngestionRequestReader.DecompressedBodyTooLargeException.class);
+    }
+
+    @Test
+    void openBodyStopsAtTheLimitForRawReads() throws IOException {
+        MockHttpServletRequest request = gzipRequest("x".repeat((int) LIMIT + 1));
+
+        try (InputStream body = reader.openBody(request)) {
+            assertThatThrownBy(body::readAllBytes)
+                    .isInstanceOf(IngestionRequestReader.DecompressedBodyTooLargeException.class);
+        }
+    }
+
+    @Test
+    void bodiesOfExactlyTheLimitAreRead() throws IOException {
+        MockHttpServletRequest request = gzipRequest("x".repeat((int) LIMIT));
+
+        try (InputStream body = reader.openBody(request)) {
+            assertThat(body.readAllBytes()).hasSize((int) LIMIT);
+        }
+    }
+
+    @Test
+    void uncompressedBodiesAreNotCapped() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/ingest/metrics");
+        request.setContent("x".repeat((int) LIMIT * 2).getBytes(StandardCharsets.UTF_8));
+
+        try (InputStream body = reader.openBody(request)) {
+            assertThat(body.readAllBytes()).hasSize((int) LIMIT * 2);
+        }
+    }
+
+    private static MockHttpServletRequest gzipRequest(String body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/ingest/metrics");
+        request.setContentType("application/json");
+        request.addHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        request.setContent(compressed.toByteArray());
+        return request;
+    }
+}
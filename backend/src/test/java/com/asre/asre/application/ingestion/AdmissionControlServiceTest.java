@@ -0,0 +1,202 @@
+package com.asre.asre.application.ingestion;
+
+import com.asre.asre.domain.ingestion.MetricsCollectorPort;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class AdmissionControlServiceTest {
+
+    private static final UUID HEAVY = UUID.fromString("6f1c2a8e-0b7d-4c1e-9a55-3d2f8e7b1c40");
+    private static final UUID LIGHT = UUID.fromString("2b7e1516-28ae-4d2a-abf7-15880928cf4f");
+    private static final IngestionPipeline PIPELINE = IngestionPipeline.METRICS;
+
+    private final MutableClock clock = new MutableClock();
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final MetricsCollectorPort metricsCollector = mock(MetricsCollectorPort.class);
+
+    private AdmissionControlService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new AdmissionControlService(queueName -> queueDepth.get(), metricsCollector, clock);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "softQueueDepth", 2000L);
+        ReflectionTestUtils.setField(service, "hardQueueDepth", 10000L);
+        ReflectionTestUtils.setField(service, "softFlushLatencyMs", 2000L);
+        ReflectionTestUtils.setField(service, "hardFlushLatencyMs", 10000L);
+        ReflectionTestUtils.setField(service, "idleLatencyHalfLifeSeconds", 5L);
+        ReflectionTestUtils.setField(service, "baseRetryAfterSeconds", 5);
+        ReflectionTestUtils.setField(service, "maxRetryAfterSeconds", 60);
+        ReflectionTestUtils.setField(service, "trafficWindowSeconds", 10L);
+    }
+
+    @Test
+    void idleFlushLatencyHalvesEveryHalfLife() {
+        // EWMA from zero: 0.2 * 60000
+        service.recordFlushLatency(PIPELINE, 60_000);
+        assertThat(service.getFlushLatencyMs(PIPELINE)).isCloseTo(12_000, within(1e-9));
+
+        assertThat(service.admit(LIGHT, PIPELINE, 1).outcome()).isEqualTo(AdmissionDecision.Outcome.OVERLOADED);
+
+        clock.advance(Duration.ofSeconds(5));
+        assertThat(service.admit(LIGHT, PIPELINE, 1).isAccepted()).isTrue();
+        assertThat(service.getFlushLatencyMs(PIPELINE)).isCloseTo(6_000, within(1e-9));
+
+        clock.advance(Duration.ofMillis(12_500));
+        service.admit(LIGHT, PIPELINE, 1);
+        assertThat(service.getFlushLatencyMs(PIPELINE)).isCloseTo(6_000 * Math.pow(0.5, 2.5), within(1e-9));
+
+        ArgumentCaptor<Double> latency = ArgumentCaptor.forClass(Double.class);
+        verify(metricsCollector, times(3)).recordAdmissionState(eq("metrics"), anyInt(), latency.capture());
+        assertThat(latency.getAllValues()).containsExactly(12_000.0, 6_000.0, 6_000 * Math.pow(0.5, 2.5));
+    }
+
+    @Test
+    void decayIsKeptAcrossChecks() {
+        service.recordFlushLatency(PIPELINE, 50_000);
+        clock.advance(Duration.ofSeconds(5));
+        service.admit(LIGHT, PIPELINE, 1);
+        clock.advance(Duration.ofSeconds(5));
+        service.admit(LIGHT, PIPELINE, 1);
+
+        // Two half-lives in two steps decay as much as one step over both
+        assertThat(service.getFlushLatencyMs(PIPELINE)).isCloseTo(10_000 / 4.0, within(1e-9));
+    }
+
+    @Test
+    void flushLatencyDoesNotDecayWhileThereIsABacklog() {
+        service.recordFlushLatency(PIPELINE, 60_000);
+        queueDepth.set(1);
+        clock.advance(Duration.ofMinutes(5));
+
+        AdmissionDecision decision = service.admit(LIGHT, PIPELINE, 1);
+
+        assertThat(decision.outcome()).isEqualTo(AdmissionDecision.Outcome.OVERLOADED);
+        assertThat(service.getFlushLatencyMs(PIPELINE)).isCloseTo(12_000, within(1e-9));
+    }
+
+    @Test
+    void softPressureThrottlesOnlyProjectsOverTheirFairShare() {
+        fillWindow(900, 100);
+        queueDepth.set(3000);
+
+        AdmissionDecision heavy = service.admit(HEAVY, PIPELINE, 10);
+        AdmissionDecision light = service.admit(LIGHT, PIPELINE, 10);
+
+        // Pressure 1.5 scales the 5s base retry to 7.5, rounded
+        assertThat(heavy).isEqualTo(new AdmissionDecision(AdmissionDecision.Outcome.THROTTLED, 8));
+        assertThat(light.isAccepted()).isTrue();
+        verify(metricsCollector).recordAdmissionDecision("metrics", "throttled");
+    }
+
+    @Test
+    void hardLimitsRejectEveryProject() {
+        fillWindow(900, 100);
+        queueDepth.set(10_000);
+
+        AdmissionDecision heavy = service.admit(HEAVY, PIPELINE, 10);
+        AdmissionDecision light = service.admit(LIGHT, PIPELINE, 10);
+
+        // Pressure 5 scales the retry to 25s
+        assertThat(heavy).isEqualTo(new AdmissionDecision(AdmissionDecision.Outcome.OVERLOADED, 25));
+        assertThat(light).isEqualTo(new AdmissionDecision(AdmissionDecision.Outcome.OVERLOADED, 25));
+    }
+
+    @Test
+    void retryAfterIsCapped() {
+        queueDepth.set(1_000_000);
+
+        assertThat(service.admit(LIGHT, PIPELINE, 1).retryAfterSeconds()).isEqualTo(60);
+    }
+
+    @Test
+    void aLoneProjectIsNeverThrottledUnderSoftPressure() {
+        service.admit(HEAVY, PIPELINE, 1000);
+        clock.advance(Duration.ofSeconds(10));
+        queueDepth.set(9_999);
+
+        assertThat(service.admit(HEAVY, PIPELINE, 1000).isAccepted()).isTrue();
+    }
+
+    @Test
+    void fairShareUsesTheLastCompleteWindow() {
+        // Traffic in the window still being filled does not count yet
+        service.admit(HEAVY, PIPELINE, 900);
+        service.admit(LIGHT, PIPELINE, 100);
+        clock.advance(Duration.ofSeconds(9));
+        queueDepth.set(3000);
+
+        assertThat(service.admit(HEAVY, PIPELINE, 10).isAccepted()).isTrue();
+
+        clock.advance(Duration.ofSeconds(1));
+        assertThat(service.admit(HEAVY, PIPELINE, 10).outcome()).isEqualTo(AdmissionDecision.Outcome.THROTTLED);
+    }
+
+    @Test
+    void rejectedRequestsDoNotCountTowardTheShare() {
+        fillWindow(100, 100);
+        queueDepth.set(10_000);
+        service.admit(HEAVY, PIPELINE, 10_000);
+        clock.advance(Duration.ofSeconds(10));
+        queueDepth.set(3000);
+
+        // The last window is empty, so no one is over a share of it
+        assertThat(service.admit(HEAVY, PIPELINE, 10).isAccepted()).isTrue();
+    }
+
+    /**
+     * Accepts traffic from both projects without pressure, then starts the next window.
+     */
+    private void fillWindow(int heavyPoints, int lightPoints) {
+        service.admit(HEAVY, PIPELINE, heavyPoints);
+        service.admit(LIGHT, PIPELINE, lightPoints);
+        clock.advance(Duration.ofSeconds(10));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private final AtomicLong millis = new AtomicLong(Instant.parse("2024-03-01T12:00:00Z").toEpochMilli());
+
+        void advance(Duration duration) {
+            millis.addAndGet(duration.toMillis());
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
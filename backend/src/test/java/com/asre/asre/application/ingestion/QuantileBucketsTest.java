@@ -0,0 +1,87 @@
+package com.asre.asre.application.ingestion;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class QuantileBucketsTest {
+
+    @ParameterizedTest
+    @ValueSource(doubles = {1e-9, 0.001, 0.5, 1.0, 1.005, 3.14159, 42.0, 999.999, 1e6, 1e12, Double.MAX_VALUE / 4})
+    void representativeIsWithinTheRelativeError(double value) {
+        QuantileBuckets positive = new QuantileBuckets();
+        positive.add(value, 1);
+        QuantileBuckets negative = new QuantileBuckets();
+        negative.add(-value, 1);
+
+        assertThat(positive.values()).hasSize(1);
+        assertThat(positive.values()[0] / value - 1).isCloseTo(0, within(QuantileBuckets.RELATIVE_ERROR));
+        assertThat(negative.values()).containsExactly(-positive.values()[0]);
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0.002, 1.0, 7.5, 250.0, 8e9})
+    void representativeLandsInItsOwnBucket(double value) {
+        QuantileBuckets buckets = new QuantileBuckets();
+        buckets.add(value, 2);
+        buckets.add(buckets.values()[0], 3);
+
+        assertThat(buckets.counts()).containsExactly(5L);
+    }
+
+    @Test
+    void valuesAscendAcrossNegativesZeroAndPositives() {
+        QuantileBuckets buckets = new QuantileBuckets();
+        buckets.add(100.0, 1);
+        buckets.add(-0.5, 2);
+        buckets.add(0.0, 3);
+        buckets.add(-200.0, 4);
+        buckets.add(-0.0, 1);
+        buckets.add(0.25, 5);
+        buckets.add(100.1, 6);
+
+        double[] values = buckets.values();
+        assertThat(values).hasSize(5);
+        assertThat(values).isSorted();
+        assertThat(values[0]).isCloseTo(-200.0, within(1.0));
+        assertThat(values[1]).isCloseTo(-0.5, within(0.0025));
+        assertThat(values[2]).isZero();
+        assertThat(values[3]).isCloseTo(0.25, within(0.00125));
+        assertThat(values[4]).isCloseTo(100.0, within(0.5));
+        // 100.0 and 100.1 share a bucket; both signed zeros count as zero
+        assertThat(buckets.counts()).containsExactly(4L, 2L, 4L, 5L, 7L);
+    }
+
+    @Test
+    void zerosOnlyWhenCounted() {
+        QuantileBuckets buckets = new QuantileBuckets();
+        buckets.add(2.0, 1);
+
+        assertThat(buckets.values()).hasSize(1);
+        assertThat(new QuantileBuckets().values()).isEmpty();
+        assertThat(new QuantileBuckets().counts()).isEmpty();
+    }
+
+    @Test
+    void keepsManyBucketsSorted() {
+        QuantileBuckets buckets = new QuantileBuckets();
+        // Out of order, enough distinct buckets to outgrow the initial arrays several times
+        for (int i = 0; i < 200; i++) {
+            int exponent = (i * 37) % 200 - 100;
+            buckets.add(Math.pow(1.1, exponent), i + 1);
+            buckets.add(-Math.pow(1.1, exponent), 1);
+        }
+
+        double[] values = buckets.values();
+        long[] counts = buckets.counts();
+        assertThat(values).hasSize(400).isSorted();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        assertThat(total).isEqualTo(200L * 201 / 2 + 200);
+    }
+}
@@ -0,0 +1,206 @@
+package com.asre.asre.application.metrics;
+
+import com.asre.asre.application.ingestion.IngestionBacklogPort;
+import com.asre.asre.domain.metrics.AggregationType;
+import com.asre.asre.domain.metrics.AnomalyDetectionResultRepository;
+import com.asre.asre.domain.metrics.AnomalyDetectorPort;
+import com.asre.asre.domain.metrics.MetricQuery;
+import com.asre.asre.domain.metrics.MetricQueryRepository;
+import com.asre.asre.domain.metrics.MetricQueryResult;
+import com.asre.asre.domain.metrics.QueryMetricsCollectorPort;
+import com.asre.asre.domain.metrics.RollupPeriod;
+import com.asre.asre.domain.metrics.TimeRange;
+import com.asre.asre.domain.metrics.TimeSeriesPoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MetricsQueryServiceTest {
+
+    private static final UUID PROJECT_ID = UUID.fromString("6f1c2a8e-0b7d-4c1e-9a55-3d2f8e7b1c40");
+    private static final Duration HOUR = Duration.ofHours(1);
+
+    private final MetricQueryRepository queryRepository = mock(MetricQueryRepository.class);
+    private final MetricCachePort cache = mock(MetricCachePort.class);
+    private final IngestionBacklogPort ingestionBacklog = mock(IngestionBacklogPort.class);
+    private final QueryMetricsCollectorPort queryMetrics = mock(QueryMetricsCollectorPort.class);
+
+    // Hourly buckets well past the settle delay, so every bucket in the range counts as closed
+    private final Instant first = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(Duration.ofHours(12));
+
+    private MetricsQueryService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new MetricsQueryService(queryRepository, cache, mock(AnomalyDetectorPort.class),
+                mock(AnomalyDetectionResultRepository.class), queryMetrics, ingestionBacklog);
+        ReflectionTestUtils.setField(service, "fragmentCacheEnabled", true);
+        ReflectionTestUtils.setField(service, "fragmentSettleSeconds", 60L);
+        ReflectionTestUtils.setField(service, "fragmentMaxQueueDepth", 100L);
+        ReflectionTestUtils.setField(service, "maxFragmentBuckets", 5000);
+    }
+
+    @Test
+    void stitchesCachedFragmentsWithFetchedRuns() {
+        // Buckets 0..6: 0, 1 cached with values, 2 cached as empty, 3..6 missing; the database has no bucket 5
+        MetricQuery query = query(0, 6);
+        when(cache.getFragments(eq(query), anyList())).thenReturn(Map.of(
+                bucket(0), point(0, 10.0),
+                bucket(1), point(1, 11.0),
+                bucket(2), new TimeSeriesPoint(bucket(2), null)));
+        serveFromDatabase(Set.of(5));
+
+        MetricQueryResult result = service.queryMetrics(query);
+
+        assertThat(result.getDataPoints()).containsExactly(
+                point(0, 10.0), point(1, 11.0), point(3, 3.0), point(4, 4.0), point(6, 6.0));
+        // One read for the missing run, clamped to the query's end
+        ArgumentCaptor<MetricQuery> reads = ArgumentCaptor.forClass(MetricQuery.class);
+        verify(queryRepository).executeQuery(reads.capture());
+        assertThat(reads.getValue().getTimeRange()).isEqualTo(new TimeRange(bucket(3), bucket(6)));
+        // Fetched buckets become fragments, the one without data as an empty fragment
+        verify(cache).putFragments(query, List.of(
+                point(3, 3.0), point(4, 4.0), new TimeSeriesPoint(bucket(5), null), point(6, 6.0)));
+        verify(queryMetrics).recordQueryExecuted("fragment");
+    }
+
+    @Test
+    void readsEachMissingRunUpToTheLimitSeparately() {
+        // Missing runs [1] and [3, 4]; each read ends just before the next bucket starts
+        MetricQuery query = query(0, 6);
+        when(cache.getFragments(eq(query), anyList())).thenReturn(Map.of(
+                bucket(0), point(0, 0.5),
+                bucket(2), point(2, 2.5),
+                bucket(5), point(5, 5.5),
+                bucket(6), point(6, 6.5)));
+        serveFromDatabase(Set.of());
+
+        MetricQueryResult result = service.queryMetrics(query);
+
+        ArgumentCaptor<MetricQuery> reads = ArgumentCaptor.forClass(MetricQuery.class);
+        verify(queryRepository, times(2)).executeQuery(reads.capture());
+        assertThat(reads.getAllValues()).extracting(MetricQuery::getTimeRange).containsExactly(
+                new TimeRange(bucket(1), bucket(2).minusNanos(1000)),
+                new TimeRange(bucket(3), bucket(5).minusNanos(1000)));
+        assertThat(result.getDataPoints()).containsExactly(
+                point(0, 0.5), point(1, 1.0), point(2, 2.5), point(3, 3.0), point(4, 4.0),
+                point(5, 5.5), point(6, 6.5));
+    }
+
+    @Test
+    void spansAllMissingBucketsOnceTooManyRunsAreMissing() {
+        // Every even bucket cached: five missing runs, one more than are read separately
+        MetricQuery query = query(0, 10);
+        Map<Instant, TimeSeriesPoint> cached = new HashMap<>();
+        for (int i = 0; i <= 10; i += 2) {
+            cached.put(bucket(i), point(i, i));
+        }
+        when(cache.getFragments(eq(query), anyList())).thenReturn(cached);
+        serveFromDatabase(Set.of());
+
+        MetricQueryResult result = service.queryMetrics(query);
+
+        ArgumentCaptor<MetricQuery> reads = ArgumentCaptor.forClass(MetricQuery.class);
+        verify(queryRepository).executeQuery(reads.capture());
+        assertThat(reads.getValue().getTimeRange()).isEqualTo(new TimeRange(bucket(1), bucket(10).minusNanos(1000)));
+        assertThat(result.getDataPoints()).hasSize(11);
+        // Cached buckets read again by the spanning query keep their cached fragment
+        verify(cache).putFragments(query, List.of(
+                point(1, 1.0), point(3, 3.0), point(5, 5.0), point(7, 7.0), point(9, 9.0)));
+    }
+
+    @Test
+    void cachesEmptyFragmentsForARangeWithoutData() {
+        MetricQuery query = query(0, 2);
+        when(cache.getFragments(eq(query), anyList())).thenReturn(Map.of());
+        serveFromDatabase(Set.of(0, 1, 2));
+
+        MetricQueryResult result = service.queryMetrics(query);
+
+        assertThat(result.getDataPoints()).isEmpty();
+        verify(cache).putFragments(query, List.of(
+                new TimeSeriesPoint(bucket(0), null),
+                new TimeSeriesPoint(bucket(1), null),
+                new TimeSeriesPoint(bucket(2), null)));
+    }
+
+    @Test
+    void servesFullyCachedRangesWithoutReading() {
+        MetricQuery query = query(0, 2);
+        when(cache.getFragments(eq(query), anyList())).thenReturn(Map.of(
+                bucket(0), new TimeSeriesPoint(bucket(0), null),
+                bucket(1), point(1, 1.5),
+                bucket(2), new TimeSeriesPoint(bucket(2), null)));
+
+        MetricQueryResult result = service.queryMetrics(query);
+
+        assertThat(result.getDataPoints()).containsExactly(point(1, 1.5));
+        verify(queryRepository, never()).executeQuery(any());
+        verify(cache, never()).putFragments(any(), anyList());
+    }
+
+    @Test
+    void doesNotCacheFragmentsDuringAnIngestBacklog() {
+        MetricQuery query = query(0, 2);
+        when(cache.getFragments(eq(query), anyList())).thenReturn(Map.of());
+        when(ingestionBacklog.getQueueDepth(anyString())).thenReturn(101L);
+        serveFromDatabase(Set.of());
+
+        MetricQueryResult result = service.queryMetrics(query);
+
+        assertThat(result.getDataPoints()).hasSize(3);
+        verify(cache, never()).putFragments(any(), anyList());
+    }
+
+    private MetricQuery query(int firstBucket, int lastBucket) {
+        return new MetricQuery(PROJECT_ID, "http.requests", AggregationType.SUM,
+                new TimeRange(bucket(firstBucket), bucket(lastBucket)), RollupPeriod.ONE_HOUR);
+    }
+
+    /**
+     * Answers each read with one point per bucket in its range, valued by bucket index,
+     * except for the buckets without data.
+     */
+    private void serveFromDatabase(Set<Integer> emptyBuckets) {
+        when(queryRepository.executeQuery(any())).thenAnswer(invocation -> {
+            MetricQuery read = invocation.getArgument(0);
+            List<TimeSeriesPoint> points = new ArrayList<>();
+            for (int i = 0; !bucket(i).isAfter(read.getTimeRange().getEndTime()); i++) {
+                if (!bucket(i).isBefore(read.getTimeRange().getStartTime()) && !emptyBuckets.contains(i)) {
+                    points.add(point(i, i));
+                }
+            }
+            return new MetricQueryResult(read.getMetricName(), read.getAggregationType(), points, List.of());
+        });
+    }
+
+    private Instant bucket(int index) {
+        return first.plus(HOUR.multipliedBy(index));
+    }
+
+    private TimeSeriesPoint point(int index, double value) {
+        return new TimeSeriesPoint(bucket(index), value);
+    }
+}
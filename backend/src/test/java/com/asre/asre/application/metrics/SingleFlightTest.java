@@ -0,0 +1,132 @@
+package com.asre.asre.application.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsForOneKeyShareOneExecution() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<SingleFlight.Result<String>> leader = executor.submit(() -> singleFlight.execute("query", () -> {
+            executions.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "rows";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        List<Future<SingleFlight.Result<String>>> followers = new ArrayList<>();
+        for (int i = 1; i < CALLERS; i++) {
+            followers.add(executor.submit(() -> singleFlight.execute("query", () -> {
+                executions.incrementAndGet();
+                return "own rows";
+            })));
+        }
+        // Followers are waiting on the leader's call, not running their own
+        Thread.sleep(100);
+        assertThat(followers).noneMatch(Future::isDone);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(new SingleFlight.Result<>("rows", false));
+        for (Future<SingleFlight.Result<String>> follower : followers) {
+            assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo(new SingleFlight.Result<>("rows", true));
+        }
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void exceptionsReachEveryWaitingCaller() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("query timed out");
+
+        Future<SingleFlight.Result<String>> leader = executor.submit(() -> singleFlight.execute("query", () -> {
+            started.countDown();
+            await(release);
+            throw failure;
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<SingleFlight.Result<String>> follower = executor.submit(
+                () -> singleFlight.execute("query", () -> "own rows"));
+        Thread.sleep(100);
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class).cause().isSameAs(failure);
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class).cause().isSameAs(failure);
+    }
+
+    @Test
+    void failedCallsAreNotRemembered() {
+        assertThatThrownBy(() -> singleFlight.execute("query", () -> {
+            throw new IllegalStateException("database unavailable");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(singleFlight.execute("query", () -> "rows")).isEqualTo(new SingleFlight.Result<>("rows", false));
+    }
+
+    @Test
+    void completedCallsAreNotShared() {
+        AtomicInteger executions = new AtomicInteger();
+
+        singleFlight.execute("query", executions::incrementAndGet);
+        SingleFlight.Result<Integer> second = singleFlight.execute("query", executions::incrementAndGet);
+
+        assertThat(second).isEqualTo(new SingleFlight.Result<>(2, false));
+    }
+
+    @Test
+    void differentKeysRunIndependently() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+
+        Future<SingleFlight.Result<String>> first = executor.submit(() -> singleFlight.execute("a", () -> {
+            bothStarted.countDown();
+            await(bothStarted);
+            return "a rows";
+        }));
+        Future<SingleFlight.Result<String>> second = executor.submit(() -> singleFlight.execute("b", () -> {
+            bothStarted.countDown();
+            await(bothStarted);
+            return "b rows";
+        }));
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(new SingleFlight.Result<>("a rows", false));
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(new SingleFlight.Result<>("b rows", false));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.asre.asre.domain.ingestion;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HistogramValueTest {
+
+    private static final double EPSILON = 1e-12;
+
+    @Test
+    void explicitEdgeBucketsUseMinAndMax() {
+        HistogramValue histogram = HistogramValue.ofExplicitBuckets(
+                List.of(1.0, 2.0, 5.0), List.of(1L, 2L, 3L, 4L), 40.0, 0.5, 9.0);
+
+        assertThat(histogram.getBucketValues()).containsExactly(0.5, 1.5, 3.5, 9.0);
+        assertThat(histogram.getBucketCounts()).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(histogram.getCount()).isEqualTo(10);
+        assertThat(histogram.getSum()).isEqualTo(40.0);
+        assertThat(histogram.getMin()).isEqualTo(0.5);
+        assertThat(histogram.getMax()).isEqualTo(9.0);
+        assertThat(histogram.isValid()).isTrue();
+    }
+
+    @Test
+    void explicitEdgeBucketsFallBackToTheOuterBounds() {
+        HistogramValue histogram = HistogramValue.ofExplicitBuckets(
+                List.of(1.0, 2.0, 5.0), List.of(1L, 2L, 3L, 4L), null, null, null);
+
+        assertThat(histogram.getBucketValues()).containsExactly(1.0, 1.5, 3.5, 5.0);
+        assertThat(histogram.getMin()).isEqualTo(1.0);
+        assertThat(histogram.getMax()).isEqualTo(5.0);
+        assertThat(histogram.getSum()).isEqualTo(1.0 + 1.5 * 2 + 3.5 * 3 + 5.0 * 4);
+    }
+
+    @Test
+    void explicitRepresentativesAreClampedToTheObservedRange() {
+        HistogramValue histogram = HistogramValue.ofExplicitBuckets(
+                List.of(1.0, 2.0, 5.0), List.of(1L, 2L, 3L, 4L), 30.0, 1.2, 4.0);
+
+        assertThat(histogram.getBucketValues()).containsExactly(1.2, 1.5, 3.5, 4.0);
+    }
+
+    @Test
+    void explicitEmptyBucketsAreDropped() {
+        HistogramValue histogram = HistogramValue.ofExplicitBuckets(
+                List.of(1.0, 2.0, 5.0), List.of(0L, 2L, 0L, 0L), null, null, null);
+
+        assertThat(histogram.getBucketValues()).containsExactly(1.5);
+        assertThat(histogram.getBucketCounts()).containsExactly(2L);
+        assertThat(histogram.getMin()).isEqualTo(1.5);
+        assertThat(histogram.getMax()).isEqualTo(1.5);
+        assertThat(histogram.getSum()).isEqualTo(3.0);
+    }
+
+    @Test
+    void explicitWithoutBoundsUsesTheMean() {
+        HistogramValue withSum = HistogramValue.ofExplicitBuckets(List.of(), List.of(4L), 10.0, null, null);
+        HistogramValue withoutSum = HistogramValue.ofExplicitBuckets(List.of(), List.of(4L), null, null, null);
+
+        assertThat(withSum.getBucketValues()).containsExactly(2.5);
+        assertThat(withSum.getSum()).isEqualTo(10.0);
+        assertThat(withoutSum.getBucketValues()).containsExactly(0.0);
+    }
+
+    @Test
+    void rejectsInvalidExplicitBuckets() {
+        assertThatThrownBy(() -> HistogramValue.ofExplicitBuckets(List.of(1.0), List.of(1L), null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HistogramValue.ofExplicitBuckets(List.of(2.0, 1.0), List.of(1L, 1L, 1L),
+                null, null, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HistogramValue.ofExplicitBuckets(List.of(1.0, 1.0), List.of(1L, 1L, 1L),
+                null, null, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HistogramValue.ofExplicitBuckets(List.of(1.0, Double.NaN), List.of(1L, 1L, 1L),
+                null, null, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HistogramValue.ofExplicitBuckets(List.of(1.0), List.of(1L, -1L), null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HistogramValue.ofExplicitBuckets(List.of(1.0), List.of(0L, 0L), null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HistogramValue.ofExplicitBuckets(null, List.of(1L), null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void exponentialMirrorsNegativesAroundTheZeroBucket() {
+        HistogramValue histogram = HistogramValue.ofExponentialBuckets(
+                0, 2, 0, List.of(1L, 0L, 3L), 0, List.of(1L), null, null, null);
+
+        // Scale 0: bucket i holds (2^i, 2^(i+1)] and is represented by 2^(i+2) / 3
+        assertThat(histogram.getBucketValues()).containsExactly(
+                new double[]{-4.0 / 3, 0.0, 4.0 / 3, 16.0 / 3}, within(EPSILON));
+        assertThat(histogram.getBucketCounts()).containsExactly(1L, 2L, 1L, 3L);
+        assertThat(histogram.getCount()).isEqualTo(7);
+        assertThat(histogram.getMin()).isCloseTo(-4.0 / 3, within(EPSILON));
+        assertThat(histogram.getMax()).isCloseTo(16.0 / 3, within(EPSILON));
+    }
+
+    @Test
+    void exponentialNegativeBucketsAscend() {
+        HistogramValue histogram = HistogramValue.ofExponentialBuckets(
+                1, 0, 0, null, -2, List.of(1L, 1L, 1L, 1L), null, null, null);
+
+        double[] values = histogram.getBucketValues();
+        assertThat(values).hasSize(4).isSorted();
+        assertThat(values[3]).isNegative();
+    }
+
+    @Test
+    void exponentialEdgeBucketsAreClampedToMinAndMax() {
+        HistogramValue histogram = HistogramValue.ofExponentialBuckets(
+                0, 0, 0, List.of(2L, 5L), 0, null, 20.0, 1.5, 3.0);
+
+        assertThat(histogram.getBucketValues()).containsExactly(new double[]{1.5, 8.0 / 3}, within(EPSILON));
+        assertThat(histogram.getSum()).isEqualTo(20.0);
+    }
+
+    @Test
+    void exponentialZeroBucketOnly() {
+        HistogramValue histogram = HistogramValue.ofExponentialBuckets(
+                3, 5, 0, List.of(), 0, List.of(), 0.0, 0.0, 0.0);
+
+        assertThat(histogram.getBucketValues()).containsExactly(0.0);
+        assertThat(histogram.getBucketCounts()).containsExactly(5L);
+        assertThat(histogram.isValid()).isTrue();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-3, 0, 1, 4, 8, 12, 20})
+    void exponentialRepresentativesFallInsideTheirBuckets(int scale) {
+        double width = Math.pow(2, -scale);
+        // Indexes around 1 and at both ends of the range that stays finite
+        int maxIndex = (int) Math.floor(1000 / width);
+        int[] indexes = {-maxIndex, -2, -1, 0, 1, 2, maxIndex - 1};
+        for (int index : indexes) {
+            HistogramValue histogram = HistogramValue.ofExponentialBuckets(
+                    scale, 0, index, List.of(1L), 0, null, null, null, null);
+
+            double log2 = Math.log(histogram.getBucketValues()[0]) / Math.log(2);
+            assertThat(log2).as("scale %d index %d", scale, index)
+                    .isGreaterThan(index * width)
+                    .isLessThanOrEqualTo((index + 1) * width);
+        }
+    }
+
+    @Test
+    void exponentialCoarsestScaleStaysFinite() {
+        // Scale -10: base 2^1024, so bucket -1 is (2^-1024, 1] and bucket 0 is (1, 2^1024]
+        HistogramValue histogram = HistogramValue.ofExponentialBuckets(
+                -10, 0, -1, List.of(1L, 1L), -1, List.of(1L, 1L), null, null, null);
+
+        double[] values = histogram.getBucketValues();
+        assertThat(values).hasSize(4).isSorted();
+        assertThat(values[3]).isCloseTo(2.0, within(EPSILON));
+        assertThat(values[2]).isGreaterThan(0.0).isLessThanOrEqualTo(1.0);
+        assertThat(values[1]).isEqualTo(-values[2]);
+        assertThat(values[0]).isEqualTo(-values[3]);
+        assertThat(histogram.isValid()).isTrue();
+    }
+
+    @Test
+    void exponentialBucketsPastTheDoubleRangeAreCapped() {
+        HistogramValue histogram = HistogramValue.ofExponentialBuckets(
+                -10, 0, 1, List.of(1L), -3, List.of(1L), null, null, null);
+
+        assertThat(histogram.getBucketValues()).containsExactly(-Double.MIN_VALUE, Double.MAX_VALUE);
+    }
+
+    @Test
+    void rejectsScalesOutsideTheOtlpRange() {
+        assertThatThrownBy(() -> HistogramValue.ofExponentialBuckets(
+                -11, 0, 0, List.of(1L), 0, null, null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HistogramValue.ofExponentialBuckets(
+                21, 0, 0, List.of(1L), 0, null, null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HistogramValue.ofExponentialBuckets(
+                0, 0, 0, List.of(0L), 0, List.of(0L), null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,72 @@
+package com.asre.asre.domain.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TagFilterTest {
+
+    @Test
+    void parsesEachOperator() {
+        assertThat(TagFilter.parse("env=prod")).isEqualTo(TagFilter.equalTo("env", "prod"));
+        assertThat(TagFilter.parse("env=[prod, staging]"))
+                .isEqualTo(new TagFilter("env", TagFilter.Operator.IN, List.of("prod", "staging")));
+        assertThat(TagFilter.parse("host=~web-[0-9]+"))
+                .isEqualTo(new TagFilter("host", TagFilter.Operator.REGEX, List.of("web-[0-9]+")));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "web-[0-9]+",
+            "api|worker",
+            "(?:eu|us)-(east|west)-[0-9]?",
+            "v1\\.2\\.\\*",
+            "[^.]*\\.internal",
+            "[]a-z]{2,8}",
+            "a{3}b{1,}c?",
+            ".*"
+    })
+    void acceptsThePortableSubset(String regex) {
+        assertThat(TagFilter.parse("host=~" + regex).getValues()).containsExactly(regex);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "^web",
+            "web$",
+            "(?i)web",
+            "(?=web)web",
+            "(?<name>web)",
+            "(web)\\1",
+            "\\bweb",
+            "\\p{L}+",
+            "\\Qweb\\E",
+            "[[:alpha:]]+",
+            "[a-z&&[^x]]",
+            "[\\w]",
+            "web.*?",
+            "web++",
+            "a{2,5}?",
+            "a{1000}",
+            "a{,5}"
+    })
+    void rejectsConstructsOutsideTheSubset(String regex) {
+        assertThatThrownBy(() -> TagFilter.parse("host=~" + regex))
+                .isInstanceOf(InvalidMetricQueryException.class)
+                .hasMessageContaining("host");
+    }
+
+    @Test
+    void rejectsSyntaxErrorsAndLongPatterns() {
+        assertThatThrownBy(() -> TagFilter.parse("host=~web-(")).isInstanceOf(InvalidMetricQueryException.class);
+        assertThatThrownBy(() -> TagFilter.parse("host=~[a-z")).isInstanceOf(InvalidMetricQueryException.class);
+        assertThatThrownBy(() -> TagFilter.parse("host=~" + "a".repeat(TagFilter.MAX_REGEX_LENGTH + 1)))
+                .isInstanceOf(InvalidMetricQueryException.class);
+        assertThat(TagFilter.parse("host=~" + "a".repeat(TagFilter.MAX_REGEX_LENGTH)).getValues()).hasSize(1);
+    }
+}
@@ -0,0 +1,132 @@
+package com.asre.asre.infra.jdbc;
+
+import com.asre.asre.config.JacksonConfig;
+import com.asre.asre.domain.ingestion.Metric;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second written to metric_samples by the two ingestion writer modes: JDBC batch INSERT and
+ * binary COPY FROM STDIN. Series are resolved once at setup so only the sample write is measured.
+ * <p>
+ * Needs a TimescaleDB with the Flyway schema applied. <b>metric_samples is truncated after every
+ * iteration</b>, so point it at a scratch database:
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.asre.asre.infra.jdbc.MetricWriteBenchmark
+ * -Dbench.jdbc.url=jdbc:postgresql://localhost:5432/asre_bench -Dbench.jdbc.user=... -Dbench.jdbc.password=...}.
+ * Add {@code reWriteBatchedInserts=true} to the URL to compare against the driver's multi-row INSERT
+ * rewrite as well. The {@code rows} counter is the figure to compare.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MetricWriteBenchmark {
+
+    private static final int SERIES = 500;
+
+    @Param({"insert", "copy"})
+    private String writerMode;
+
+    @Param({"500", "5000"})
+    private int batchSize;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TimescaleMetricRepository repository;
+    private List<Metric> template;
+    private long nextTimestampMillis;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Rows {
+        public long rows;
+    }
+
+    @Setup
+    public void setUp() {
+        String url = System.getProperty("bench.jdbc.url");
+        if (url == null || url.isEmpty()) {
+            throw new IllegalStateException("Set -Dbench.jdbc.url to a scratch TimescaleDB database");
+        }
+        // One connection for the whole trial, so connection setup is not part of either write path
+        dataSource = new SingleConnectionDataSource(url, System.getProperty("bench.jdbc.user", "postgres"),
+                System.getProperty("bench.jdbc.password", ""), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        MetricSeriesDictionary dictionary = new MetricSeriesDictionary(jdbcTemplate,
+                new JacksonConfig().objectMapper());
+        ReflectionTestUtils.setField(dictionary, "maxCacheSize", SERIES * 2);
+        repository = new TimescaleMetricRepository(jdbcTemplate, dictionary);
+        ReflectionTestUtils.setField(repository, "writerMode", writerMode);
+
+        UUID projectId = UUID.randomUUID();
+        UUID serviceId = UUID.randomUUID();
+        template = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            int series = i % SERIES;
+            template.add(new Metric(projectId, serviceId, "bench.metric." + (series % 10), (double) i,
+                    Instant.EPOCH, Map.of("host", "host-" + series)));
+        }
+        dictionary.resolve(template);
+        nextTimestampMillis = Instant.now().toEpochMilli();
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        jdbcTemplate.execute("TRUNCATE metric_samples");
+    }
+
+    @TearDown
+    public void close() {
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public void saveBatch(Rows rows) {
+        // A fresh timestamp per batch so each row is a new sample rather than a duplicate
+        Instant timestamp = Instant.ofEpochMilli(nextTimestampMillis++);
+        for (Metric metric : template) {
+            metric.setTimestamp(timestamp);
+        }
+        repository.saveBatch(template);
+        rows.rows += template.size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MetricWriteBenchmark.class.getSimpleName())
+                .jvmArgsAppend(
+                        "-Dbench.jdbc.url=" + System.getProperty("bench.jdbc.url", ""),
+                        "-Dbench.jdbc.user=" + System.getProperty("bench.jdbc.user", "postgres"),
+                        "-Dbench.jdbc.password=" + System.getProperty("bench.jdbc.password", ""))
+                .build()).run();
+    }
+}
@@ -0,0 +1,155 @@
+package com.asre.asre.infra.jdbc.metrics;
+
+import com.asre.asre.domain.metrics.AggregationType;
+import com.asre.asre.domain.metrics.HistogramQuery;
+import com.asre.asre.domain.metrics.HistogramScale;
+import com.asre.asre.domain.metrics.MetricQuery;
+import com.asre.asre.domain.metrics.MetricQueryResult;
+import com.asre.asre.domain.metrics.MultiMetricQuery;
+import com.asre.asre.domain.metrics.MultiMetricQueryResult;
+import com.asre.asre.domain.metrics.RollupPeriod;
+import com.asre.asre.domain.metrics.TimeRange;
+import com.asre.asre.domain.metrics.TimeSeriesPoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JdbcMetricQueryRepositoryTest {
+
+    private static final UUID PROJECT_ID = UUID.fromString("3b7a4c1e-2f60-4d8a-9e15-6c0b8f2d7a31");
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+    private static final TimeRange RANGE = new TimeRange(START, START.plusSeconds(120));
+
+    private final RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate();
+    private final JdbcMetricQueryRepository repository = new JdbcMetricQueryRepository(jdbcTemplate);
+
+    @BeforeEach
+    void setUp() {
+        repository.startScanPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.stopScanPool();
+    }
+
+    @Test
+    void countReadsNumericSums() {
+        // SUM over bigint comes back from PgJDBC as BigDecimal
+        jdbcTemplate.rows.add(row("requests", START, new BigDecimal("42")));
+        jdbcTemplate.rows.add(row("requests", START.plusSeconds(60), null));
+
+        MetricQueryResult result = repository.executeQuery(
+                new MetricQuery(PROJECT_ID, "requests", AggregationType.COUNT, RANGE, RollupPeriod.ONE_MINUTE));
+
+        assertThat(result.getDataPoints()).containsExactly(
+                new TimeSeriesPoint(START, 42.0),
+                new TimeSeriesPoint(START.plusSeconds(60), 0.0));
+        assertThat(jdbcTemplate.sql).contains("SUM(sample_count)::float8");
+    }
+
+    @Test
+    void countReadsNumericSumsInOverlays() {
+        jdbcTemplate.rows.add(row("requests", START, new BigDecimal("7")));
+        jdbcTemplate.rows.add(row("requests", START.plusSeconds(60), null));
+        jdbcTemplate.rows.add(row("errors", START, new BigDecimal("1")));
+
+        MultiMetricQueryResult result = repository.executeMultiQuery(new MultiMetricQuery(PROJECT_ID,
+                List.of(new MultiMetricQuery.SingleMetricQuery("requests", AggregationType.COUNT, null),
+                        new MultiMetricQuery.SingleMetricQuery("errors", AggregationType.COUNT, null)),
+                RANGE, RollupPeriod.ONE_MINUTE, true));
+
+        assertThat(result.getResults()).hasSize(2);
+        // Aligned overlays keep empty buckets as nulls
+        assertThat(result.getResults().get(0).getDataPoints()).containsExactly(
+                new TimeSeriesPoint(START, 7.0),
+                new TimeSeriesPoint(START.plusSeconds(60), null));
+        assertThat(result.getResults().get(1).getDataPoints()).containsExactly(new TimeSeriesPoint(START, 1.0));
+    }
+
+    @Test
+    void histogramScanKeepsWindowsWithoutBucketArrays() {
+        for (HistogramScale scale : HistogramScale.values()) {
+            repository.executeHistogramQuery(new HistogramQuery(PROJECT_ID, "latency", RANGE, 10, null, scale));
+
+            // An inner join with unnest() would drop windows whose bucket arrays are null
+            assertThat(jdbcTemplate.sql)
+                    .contains("LEFT JOIN LATERAL unnest(w.bucket_values, w.bucket_counts) AS b(value, n) ON true")
+                    .doesNotContain("metric_windows w, unnest");
+            assertThat(jdbcTemplate.sql.chars().filter(c -> c == '?').count()).isEqualTo(jdbcTemplate.args.length);
+        }
+    }
+
+    private static Map<String, Object> row(String metricName, Instant bucket, Object value) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("metric_name", metricName);
+        row.put("bucket", Timestamp.from(bucket));
+        row.put("value", value);
+        return row;
+    }
+
+    /**
+     * Feeds canned rows to row callbacks through a result set that converts numbers the way
+     * the driver does.
+     */
+    private static final class RecordingJdbcTemplate extends JdbcTemplate {
+        private final List<Map<String, Object>> rows = new ArrayList<>();
+        private volatile String sql;
+        private volatile Object[] args;
+
+        @Override
+        public void query(String sql, RowCallbackHandler rch, Object... args) {
+            this.sql = sql;
+            for (Map<String, Object> row : rows) {
+                try {
+                    rch.processRow(resultSet(row));
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            this.sql = sql;
+            this.args = args;
+            return List.of();
+        }
+
+        private static ResultSet resultSet(Map<String, Object> row) {
+            boolean[] wasNull = new boolean[1];
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("wasNull")) {
+                            return wasNull[0];
+                        }
+                        Object value = row.get((String) args[0]);
+                        wasNull[0] = value == null;
+                        return switch (method.getName()) {
+                            case "getDouble" -> value == null ? 0.0 : ((Number) value).doubleValue();
+                            case "getTimestamp" -> value;
+                            case "getString" -> value == null ? null : value.toString();
+                            case "getObject" -> value;
+                            default -> throw new UnsupportedOperationException(method.getName());
+                        };
+                    });
+        }
+    }
+}
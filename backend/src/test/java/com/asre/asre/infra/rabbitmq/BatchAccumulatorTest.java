@@ -0,0 +1,198 @@
+package com.asre.asre.infra.rabbitmq;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchAccumulatorTest {
+
+    private static final long NO_AGE_FLUSH_MILLIS = 60_000;
+
+    private final BlockingQueue<List<Integer>> flushed = new LinkedBlockingQueue<>();
+    private BatchAccumulator<Integer> accumulator;
+
+    @AfterEach
+    void tearDown() {
+        if (accumulator != null) {
+            accumulator.close();
+        }
+    }
+
+    @Test
+    void flushesFullBatchesBySize() throws InterruptedException {
+        accumulator = new BatchAccumulator<>("test", 3, 0, NO_AGE_FLUSH_MILLIS, 2, item -> 1, flushed::add);
+
+        accumulator.addAll(List.of(1, 2));
+        assertThat(flushed.poll(100, TimeUnit.MILLISECONDS)).isNull();
+
+        accumulator.addAll(List.of(3, 4, 5, 6, 7));
+
+        List<Integer> items = new ArrayList<>(nextBatch());
+        items.addAll(nextBatch());
+        assertThat(items).containsExactlyInAnyOrder(1, 2, 3, 4, 5, 6);
+        // The seventh item waits for the next threshold, the timer or close()
+        assertThat(flushed.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void flushesByEstimatedBytes() throws InterruptedException {
+        accumulator = new BatchAccumulator<>("test", 100, 25, NO_AGE_FLUSH_MILLIS, 1, item -> 10, flushed::add);
+
+        accumulator.addAll(List.of(1, 2));
+        assertThat(flushed.poll(100, TimeUnit.MILLISECONDS)).isNull();
+
+        accumulator.addAll(List.of(3));
+
+        assertThat(nextBatch()).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void timerFlushesPartialBatches() throws InterruptedException {
+        long start = System.nanoTime();
+        accumulator = new BatchAccumulator<>("test", 100, 0, 50, 1, item -> 1, flushed::add);
+
+        accumulator.addAll(List.of(1, 2));
+
+        assertThat(nextBatch()).containsExactly(1, 2);
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void failedFlushDoesNotStopLaterBatches() throws InterruptedException {
+        List<List<Integer>> failed = Collections.synchronizedList(new ArrayList<>());
+        // Mirrors the workers: the flusher routes a batch it cannot write to the dead-letter path
+        Consumer<List<Integer>> flusher = batch -> {
+            if (batch.contains(1)) {
+                failed.add(batch);
+                throw new IllegalStateException("database unavailable");
+            }
+            flushed.add(batch);
+        };
+        accumulator = new BatchAccumulator<>("test", 2, 0, NO_AGE_FLUSH_MILLIS, 1, item -> 1, flusher);
+
+        accumulator.addAll(List.of(1, 2));
+        accumulator.addAll(List.of(3, 4));
+
+        assertThat(nextBatch()).containsExactly(3, 4);
+        assertThat(failed).containsExactly(List.of(1, 2));
+    }
+
+    @Test
+    void runsTheFlushOnTheCallerWhenWritersAreSaturated() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<String> flushThreads = new LinkedBlockingQueue<>();
+        accumulator = new BatchAccumulator<>("test", 1, 0, NO_AGE_FLUSH_MILLIS, 1, item -> 1, batch -> {
+            String thread = Thread.currentThread().getName();
+            flushThreads.add(thread);
+            if (thread.startsWith("test-writer")) {
+                awaitQuietly(release);
+            }
+            flushed.add(batch);
+        });
+
+        // One batch blocks the only writer and two fill its hand-off queue
+        accumulator.addAll(List.of(1));
+        assertThat(flushThreads.poll(5, TimeUnit.SECONDS)).startsWith("test-writer");
+        accumulator.addAll(List.of(2));
+        accumulator.addAll(List.of(3));
+
+        accumulator.addAll(List.of(4));
+
+        assertThat(flushThreads.poll(5, TimeUnit.SECONDS)).isEqualTo(Thread.currentThread().getName());
+        assertThat(nextBatch()).containsExactly(4);
+
+        release.countDown();
+        accumulator.close();
+        assertThat(drainFlushedItems()).containsExactlyInAnyOrder(1, 2, 3);
+    }
+
+    @Test
+    void closeDrainsEverythingFromConcurrentProducers() throws Exception {
+        accumulator = new BatchAccumulator<>("test", 7, 0, NO_AGE_FLUSH_MILLIS, 2, item -> 1, batch -> {
+            // Slow writers, so the hand-off queue fills and producers also flush on their own threads
+            sleepQuietly(1);
+            flushed.add(batch);
+        });
+        int producers = 4;
+        int itemsPerProducer = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int base = p * itemsPerProducer;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < itemsPerProducer; i += 5) {
+                        int from = base + i;
+                        accumulator.addAll(IntStream.range(from, from + 5).boxed().toList());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        accumulator.close();
+
+        List<Integer> items = drainFlushedItems();
+        assertThat(items).hasSize(producers * itemsPerProducer);
+        assertThat(items).containsExactlyInAnyOrderElementsOf(
+                IntStream.range(0, producers * itemsPerProducer).boxed().toList());
+    }
+
+    @Test
+    void itemsAddedAfterCloseAreWrittenSynchronously() {
+        accumulator = new BatchAccumulator<>("test", 100, 0, NO_AGE_FLUSH_MILLIS, 1, item -> 1, flushed::add);
+        accumulator.close();
+
+        accumulator.addAll(List.of(1, 2));
+
+        assertThat(flushed).containsExactly(List.of(1, 2));
+    }
+
+    private List<Integer> nextBatch() throws InterruptedException {
+        List<Integer> batch = flushed.poll(5, TimeUnit.SECONDS);
+        assertThat(batch).as("flushed batch").isNotNull();
+        return batch;
+    }
+
+    private List<Integer> drainFlushedItems() {
+        List<Integer> items = new ArrayList<>();
+        for (List<Integer> batch : flushed) {
+            items.addAll(batch);
+        }
+        return items;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
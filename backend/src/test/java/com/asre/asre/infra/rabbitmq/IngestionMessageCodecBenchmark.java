@@ -0,0 +1,136 @@
+package com.asre.asre.infra.rabbitmq;
+
+import com.asre.asre.config.JacksonConfig;
+import com.asre.asre.domain.ingestion.Metric;
+import com.asre.asre.domain.ingestion.MetricKind;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the binary queue codec with the JSON batch envelope it replaced, both ways: encoding a batch
+ * at the API and decoding it back into {@link Metric}s in the worker. The JSON side builds and parses the
+ * same envelope shape as IngestionService and MetricsIngestionWorker.
+ * <p>
+ * Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.asre.asre.infra.rabbitmq.IngestionMessageCodecBenchmark}.
+ * The encoded size of each format is printed once per batch size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestionMessageCodecBenchmark {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    @Param({"100", "1000"})
+    private int batchSize;
+
+    private ObjectMapper objectMapper;
+    private IngestionMessageCodec codec;
+    private UUID projectId;
+    private List<Metric> metrics;
+    private byte[] binary;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new JacksonConfig().objectMapper();
+        codec = new IngestionMessageCodec(objectMapper);
+        projectId = UUID.randomUUID();
+
+        // A handful of services and metric names with low-cardinality tags, as a typical agent flush looks
+        List<UUID> services = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        String[] names = {"http.requests", "http.latency", "cpu.usage", "memory.used", "queue.depth"};
+        Instant start = Instant.parse("2024-03-01T12:00:00Z");
+        metrics = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            Map<String, String> tags = Map.of("host", "web-" + (i % 8), "route", "/api/v1/items/" + (i % 5));
+            metrics.add(new Metric(projectId, services.get(i % services.size()), names[i % names.length],
+                    i * 0.37, start.plusMillis(i * 10L), tags, MetricKind.GAUGE, null));
+        }
+
+        binary = encodeBinary();
+        json = encodeJson();
+        System.out.printf("batch %d: binary %d bytes, json %d bytes%n", batchSize, binary.length, json.length);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return codec.encodeMetrics(projectId, metrics);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        List<Map<String, Object>> points = new ArrayList<>(metrics.size());
+        for (Metric metric : metrics) {
+            Map<String, Object> point = new HashMap<>();
+            point.put("service_id", metric.getServiceId().toString());
+            point.put("metric_name", metric.getMetricName());
+            point.put("value", metric.getValue());
+            point.put("timestamp", metric.getTimestamp().toString());
+            point.put("tags", metric.getTags());
+            point.put("kind", metric.getKind().name());
+            points.add(point);
+        }
+        Map<String, Object> envelope = new LinkedHashMap<>();
+        envelope.put("version", 1);
+        envelope.put("project_id", projectId.toString());
+        envelope.put("metrics", points);
+        return objectMapper.writeValueAsBytes(envelope);
+    }
+
+    @Benchmark
+    public List<Metric> decodeBinary() throws IOException {
+        return codec.decodeMetrics(binary);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Metric> decodeJson() throws IOException {
+        Map<String, Object> envelope = objectMapper.readValue(json, MAP_TYPE);
+        UUID project = UUID.fromString((String) envelope.get("project_id"));
+        List<Map<String, Object>> points = (List<Map<String, Object>>) envelope.get("metrics");
+        List<Metric> decoded = new ArrayList<>(points.size());
+        for (Map<String, Object> point : points) {
+            Object value = point.get("value");
+            decoded.add(new Metric(project, UUID.fromString((String) point.get("service_id")),
+                    (String) point.get("metric_name"), value != null ? ((Number) value).doubleValue() : null,
+                    Instant.parse((String) point.get("timestamp")), (Map<String, String>) point.get("tags"),
+                    MetricKind.fromString((String) point.get("kind")), null));
+        }
+        return decoded;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IngestionMessageCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,178 @@
+package com.asre.asre.infra.rabbitmq;
+
+import com.asre.asre.config.JacksonConfig;
+import com.asre.asre.domain.ingestion.HistogramValue;
+import com.asre.asre.domain.ingestion.LogEntry;
+import com.asre.asre.domain.ingestion.Metric;
+import com.asre.asre.domain.ingestion.MetricKind;
+import com.asre.asre.domain.logs.LogLevel;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IngestionMessageCodecTest {
+
+    private static final UUID PROJECT_ID = UUID.fromString("6f1c2a8e-0b7d-4c1e-9a55-3d2f8e7b1c40");
+    private static final UUID SERVICE_ID = UUID.fromString("0d9e4b62-51f3-4a8c-b6e0-7c1a2f3e4d5b");
+    private static final Instant TIMESTAMP = Instant.parse("2024-03-01T12:00:00.123456789Z");
+
+    private final IngestionMessageCodec codec = new IngestionMessageCodec(new JacksonConfig().objectMapper());
+
+    @Test
+    void metricsRoundTripAllKinds() throws IOException {
+        HistogramValue histogram = HistogramValue.ofExplicitBuckets(
+                List.of(10.0, 50.0), List.of(3L, 5L, 2L), 180.0, 1.0, 90.0);
+        List<Metric> metrics = List.of(
+                new Metric(PROJECT_ID, SERVICE_ID, "cpu.usage", 0.75, TIMESTAMP, Map.of("host", "web-1")),
+                new Metric(PROJECT_ID, SERVICE_ID, "http.requests", 1234.0, TIMESTAMP.plusNanos(1),
+                        Map.of("host", "web-1", "route", "/checkout"), MetricKind.COUNTER, null),
+                new Metric(PROJECT_ID, SERVICE_ID, "http.latency", null, TIMESTAMP.plusSeconds(10),
+                        Map.of("route", "/checkout"), MetricKind.HISTOGRAM, histogram),
+                new Metric(PROJECT_ID, UUID.randomUUID(), "cpu.usage", -0.0,
+                        Instant.parse("1969-12-31T23:59:59.999999999Z"), null));
+
+        List<Metric> decoded = codec.decodeMetrics(codec.encodeMetrics(PROJECT_ID, metrics));
+
+        assertThat(decoded).isEqualTo(metrics);
+        assertThat(decoded.get(2).getHistogram().getBucketValues()).containsExactly(histogram.getBucketValues());
+        assertThat(decoded.get(2).getHistogram().getBucketCounts()).containsExactly(3L, 5L, 2L);
+        assertThat(Double.doubleToRawLongBits(decoded.get(3).getValue()))
+                .isEqualTo(Double.doubleToRawLongBits(-0.0));
+    }
+
+    @Test
+    void metricsDropNullTagValues() throws IOException {
+        Map<String, String> tags = new HashMap<>();
+        tags.put("host", "web-1");
+        tags.put("zone", null);
+        Metric metric = new Metric(PROJECT_ID, SERVICE_ID, "cpu.usage", 1.0, TIMESTAMP, tags);
+
+        Metric decoded = codec.decodeMetrics(codec.encodeMetrics(PROJECT_ID, List.of(metric))).get(0);
+
+        assertThat(decoded.getTags()).containsExactly(Map.entry("host", "web-1"));
+    }
+
+    @Test
+    void decodedStringsAreSharedAcrossMessages() throws IOException {
+        Metric metric = new Metric(PROJECT_ID, SERVICE_ID, new String("queue.depth".toCharArray()), 3.0, TIMESTAMP,
+                null);
+
+        Metric first = codec.decodeMetrics(codec.encodeMetrics(PROJECT_ID, List.of(metric))).get(0);
+        Metric second = codec.decodeMetrics(codec.encodeMetrics(PROJECT_ID, List.of(metric))).get(0);
+
+        assertThat(second.getMetricName()).isSameAs(first.getMetricName());
+    }
+
+    @Test
+    void decodesVersionOneMetricsAsGauges() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte('M');
+        out.writeByte(1);
+        writeUuid(out, PROJECT_ID);
+        // String table: name, tag key, tag value
+        out.writeByte(3);
+        writeString(out, "cpu.usage");
+        writeString(out, "host");
+        writeString(out, "web-1");
+        out.writeByte(2);
+        // Point with a tag
+        writeUuid(out, SERVICE_ID);
+        out.writeByte(0);
+        out.writeDouble(0.5);
+        out.writeLong(TIMESTAMP.getEpochSecond() * 1_000_000_000L + TIMESTAMP.getNano());
+        out.writeByte(1);
+        out.writeByte(1);
+        out.writeByte(2);
+        // Point without tags
+        writeUuid(out, SERVICE_ID);
+        out.writeByte(0);
+        out.writeDouble(Double.NaN);
+        out.writeLong(0L);
+        out.writeByte(0);
+
+        List<Metric> decoded = codec.decodeMetrics(bytes.toByteArray());
+
+        assertThat(decoded).hasSize(2);
+        assertThat(decoded.get(0)).isEqualTo(
+                new Metric(PROJECT_ID, SERVICE_ID, "cpu.usage", 0.5, TIMESTAMP, Map.of("host", "web-1")));
+        assertThat(decoded.get(0).getKind()).isEqualTo(MetricKind.GAUGE);
+        assertThat(decoded.get(1).getValue()).isNaN();
+        assertThat(decoded.get(1).getTimestamp()).isEqualTo(Instant.EPOCH);
+        assertThat(decoded.get(1).getTags()).isNull();
+        assertThat(decoded.get(1).getHistogram()).isNull();
+    }
+
+    @Test
+    void rejectsUnsupportedVersionsAndKinds() {
+        byte[] metrics = codec.encodeMetrics(PROJECT_ID,
+                List.of(new Metric(PROJECT_ID, SERVICE_ID, "cpu.usage", 1.0, TIMESTAMP, null)));
+
+        byte[] future = Arrays.copyOf(metrics, metrics.length);
+        future[1] = (byte) (IngestionMessageCodec.VERSION + 1);
+        byte[] zero = Arrays.copyOf(metrics, metrics.length);
+        zero[1] = 0;
+        byte[] unknownKind = Arrays.copyOf(metrics, metrics.length);
+        // Header, project ID, string table, point count, service ID and name index precede the kind
+        unknownKind[2 + 16 + (1 + 1 + "cpu.usage".length()) + 1 + 16 + 1] = (byte) MetricKind.values().length;
+
+        assertThatThrownBy(() -> codec.decodeMetrics(future)).isInstanceOf(IOException.class)
+                .hasMessageContaining("version");
+        assertThatThrownBy(() -> codec.decodeMetrics(zero)).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> codec.decodeMetrics(unknownKind)).isInstanceOf(IOException.class)
+                .hasMessageContaining("kind");
+        assertThatThrownBy(() -> codec.decodeLogs(metrics)).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> codec.decodeMetrics(Arrays.copyOf(metrics, metrics.length - 3)))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void logsRoundTripWithFlagsAndContext() throws IOException {
+        LogEntry plain = new LogEntry(PROJECT_ID, SERVICE_ID, LogLevel.INFO, "started", TIMESTAMP, null, null);
+        LogEntry traced = new LogEntry(PROJECT_ID, SERVICE_ID, LogLevel.ERROR,
+                "payment failed: \u00fcn\u00efcode \u2713", TIMESTAMP.plusMillis(5), "4bf92f3577b34da6a3ce929d0e0e4736",
+                Map.of("orderId", "A-17", "attempt", 3, "details", Map.of("gateway", "stripe")));
+        traced.setSamplingApplied(true);
+        traced.setSampled(true);
+        LogEntry dropped = new LogEntry(PROJECT_ID, SERVICE_ID, LogLevel.DEBUG, "", TIMESTAMP, null, null);
+        dropped.setSamplingApplied(true);
+
+        List<LogEntry> logs = List.of(plain, traced, dropped);
+        List<LogEntry> decoded = codec.decodeLogs(codec.encodeLogs(PROJECT_ID, logs));
+
+        assertThat(decoded).isEqualTo(logs);
+    }
+
+    @Test
+    void logsDropEmptyContext() throws IOException {
+        LogEntry entry = new LogEntry(PROJECT_ID, SERVICE_ID, LogLevel.WARN, "slow", TIMESTAMP, null, Map.of());
+
+        LogEntry decoded = codec.decodeLogs(codec.encodeLogs(PROJECT_ID, List.of(entry))).get(0);
+
+        assertThat(decoded.getContext()).isNull();
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    // Single-byte varint length, enough for the short strings used here
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(utf8.length);
+        out.write(utf8);
+    }
+}
@@ -0,0 +1,93 @@
+package com.asre.asre.infra.rabbitmq;
+
+import com.asre.asre.application.ingestion.MetricIngestionService;
+import com.asre.asre.application.ingestion.MetricPreAggregationService;
+import com.asre.asre.config.JacksonConfig;
+import com.asre.asre.domain.ingestion.Metric;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class MetricsIngestionWorkerTest {
+
+    private static final UUID PROJECT_A = UUID.fromString("6f1c2a8e-0b7d-4c1e-9a55-3d2f8e7b1c40");
+    private static final UUID PROJECT_B = UUID.fromString("2b7e1516-28ae-4d2a-abf7-15880928cf4f");
+    private static final UUID SERVICE_ID = UUID.fromString("0d9e4b62-51f3-4a8c-b6e0-7c1a2f3e4d5b");
+    private static final Instant TIMESTAMP = Instant.parse("2024-03-01T12:00:00Z");
+
+    private final MetricIngestionService ingestionService = mock(MetricIngestionService.class);
+    private final MetricPreAggregationService preAggregationService = mock(MetricPreAggregationService.class);
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private final IngestionMessageCodec codec = new IngestionMessageCodec(objectMapper);
+
+    private MetricsIngestionWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        worker = new MetricsIngestionWorker(ingestionService, preAggregationService, rabbitTemplate, objectMapper,
+                codec);
+        ReflectionTestUtils.setField(worker, "batchSize", 100);
+        ReflectionTestUtils.setField(worker, "timeoutSeconds", 60);
+        ReflectionTestUtils.setField(worker, "writerThreads", 1);
+        worker.startAccumulator();
+    }
+
+    @Test
+    void failedBatchesAreDeadLetteredPerProject() throws IOException {
+        doThrow(new IllegalStateException("database unavailable")).when(ingestionService).ingestBatch(anyList());
+        List<Metric> projectA = List.of(metric(PROJECT_A, "cpu.usage", 0.5), metric(PROJECT_A, "cpu.usage", 0.7));
+        List<Metric> projectB = List.of(metric(PROJECT_B, "queue.depth", 12.0));
+
+        worker.handleMessage(IngestionMessageCodec.toMessage(codec.encodeMetrics(PROJECT_A, projectA)));
+        worker.handleMessage(IngestionMessageCodec.toMessage(codec.encodeMetrics(PROJECT_B, projectB)));
+        worker.stopAccumulator();
+
+        ArgumentCaptor<Message> dlq = ArgumentCaptor.forClass(Message.class);
+        verify(rabbitTemplate, times(2)).send(eq("metrics.dlq"), dlq.capture());
+        List<Metric> deadLettered = new ArrayList<>();
+        for (Message message : dlq.getAllValues()) {
+            assertThat(IngestionMessageCodec.isBinaryBatch(message)).isTrue();
+            List<Metric> decoded = codec.decodeMetrics(message.getBody());
+            assertThat(decoded).extracting(Metric::getProjectId).containsOnly(decoded.get(0).getProjectId());
+            deadLettered.addAll(decoded);
+        }
+        assertThat(deadLettered).containsExactlyInAnyOrder(projectA.get(0), projectA.get(1), projectB.get(0));
+    }
+
+    @Test
+    void writtenBatchesAreNotDeadLettered() {
+        List<Metric> metrics = List.of(metric(PROJECT_A, "cpu.usage", 0.5));
+
+        worker.handleMessage(IngestionMessageCodec.toMessage(codec.encodeMetrics(PROJECT_A, metrics)));
+        worker.stopAccumulator();
+
+        verify(ingestionService).ingestBatch(metrics);
+        verify(rabbitTemplate, never()).send(any(String.class), any(Message.class));
+    }
+
+    private static Metric metric(UUID projectId, String name, double value) {
+        return new Metric(projectId, SERVICE_ID, name, value, TIMESTAMP, Map.of("host", "web-1"));
+    }
+}
@@ -0,0 +1,188 @@
+package com.asre.asre.infra.redis;
+
+import com.asre.asre.config.JacksonConfig;
+import com.asre.asre.domain.logs.LogVolumePoint;
+import com.asre.asre.domain.logs.LogVolumeResult;
+import com.asre.asre.domain.metrics.AggregationType;
+import com.asre.asre.domain.metrics.MetricQueryResult;
+import com.asre.asre.domain.metrics.MultiMetricQueryResult;
+import com.asre.asre.domain.metrics.SeriesGroup;
+import com.asre.asre.domain.metrics.TimeSeriesPoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachedValueCodecTest {
+
+    private static final int LZ4_FLAG = 0x80;
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    private CachedValueCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        codec = new CachedValueCodec(new JacksonConfig().objectMapper());
+        configure(true, 1024);
+    }
+
+    @Test
+    void metricResultRoundTripsWithNullsAndGroups() throws IOException {
+        MetricQueryResult result = new MetricQueryResult("http.latency", AggregationType.P95,
+                series(60, 60_000, true),
+                List.of(new SeriesGroup("checkout", series(10, 60_000, false)),
+                        new SeriesGroup("", List.of()),
+                        new SeriesGroup("payments", series(3, 1_000, true))));
+
+        CachedValueCodec.Encoded encoded = codec.encode(result);
+
+        assertThat(codec.decode(encoded.bytes(), MetricQueryResult.class)).isEqualTo(result);
+        assertThat(encoded.weight()).isEqualTo(codec.weigh(result, encoded.bytes().length));
+    }
+
+    @Test
+    void specialValuesSurviveTheSeriesFormat() throws IOException {
+        List<TimeSeriesPoint> points = List.of(
+                new TimeSeriesPoint(START, 0.0),
+                new TimeSeriesPoint(START.plusSeconds(60), -0.0),
+                new TimeSeriesPoint(START.plusSeconds(120), Double.NaN),
+                new TimeSeriesPoint(START.plusSeconds(180), null),
+                new TimeSeriesPoint(START.plusSeconds(240), Double.POSITIVE_INFINITY));
+        MetricQueryResult result = new MetricQueryResult("cpu", AggregationType.AVG, points, List.of());
+
+        MetricQueryResult decoded = codec.decode(codec.encode(result).bytes(), MetricQueryResult.class);
+
+        List<TimeSeriesPoint> decodedPoints = decoded.getDataPoints();
+        assertThat(Double.doubleToRawLongBits(decodedPoints.get(0).getValue())).isEqualTo(0L);
+        assertThat(Double.doubleToRawLongBits(decodedPoints.get(1).getValue()))
+                .isEqualTo(Double.doubleToRawLongBits(-0.0));
+        assertThat(decodedPoints.get(2).getValue()).isNaN();
+        assertThat(decodedPoints.get(3).getValue()).isNull();
+        assertThat(decodedPoints.get(4).getValue()).isEqualTo(Double.POSITIVE_INFINITY);
+    }
+
+    @Test
+    void multiMetricResultRoundTrips() throws IOException {
+        MultiMetricQueryResult result = new MultiMetricQueryResult(List.of(
+                new MetricQueryResult("requests", AggregationType.SUM, series(30, 10_000, false), List.of()),
+                new MetricQueryResult("errors", AggregationType.COUNT, List.of(),
+                        List.of(new SeriesGroup("api", series(5, 10_000, true))))));
+
+        CachedValueCodec.Encoded encoded = codec.encode(result);
+
+        assertThat(codec.decode(encoded.bytes(), MultiMetricQueryResult.class)).isEqualTo(result);
+        assertThat(encoded.weight()).isEqualTo(codec.weigh(result, encoded.bytes().length));
+    }
+
+    @Test
+    void logVolumeRoundTripsWithAndWithoutEstimates() throws IOException {
+        List<LogVolumePoint> points = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Instant timestamp = START.plusSeconds(60L * i);
+            points.add(i % 3 == 0
+                    ? new LogVolumePoint(timestamp, i * 7L, i * 70L)
+                    : new LogVolumePoint(timestamp, i * 7L));
+        }
+        points.add(new LogVolumePoint(START.plusSeconds(3600), (1L << 53) - 1, 1L << 52));
+        LogVolumeResult sampled = new LogVolumeResult(points, true);
+        LogVolumeResult exact = new LogVolumeResult(List.of(new LogVolumePoint(START, 3)), false);
+
+        assertThat(codec.decode(codec.encode(sampled).bytes(), LogVolumeResult.class)).isEqualTo(sampled);
+        assertThat(codec.decode(codec.encode(exact).bytes(), LogVolumeResult.class)).isEqualTo(exact);
+        assertThat(codec.decode(codec.encode(new LogVolumeResult(List.of(), false)).bytes(), LogVolumeResult.class)
+                .getDataPoints()).isEmpty();
+    }
+
+    @Test
+    void otherValuesFallBackToJson() throws IOException {
+        Map<String, Object> value = Map.of("metric", "cpu", "values", List.of(1, 2, 3));
+
+        CachedValueCodec.Encoded encoded = codec.encode(value);
+
+        assertThat(encoded.bytes()[0]).isZero();
+        assertThat(codec.decode(encoded.bytes(), Map.class)).isEqualTo(value);
+        assertThat(encoded.weight()).isEqualTo(encoded.bytes().length - 1);
+    }
+
+    @Test
+    void compressesOnlyFromTheMinimumSize() throws IOException {
+        MetricQueryResult result = groupedResult();
+        configure(false, 0);
+        int bodyLength = codec.encode(result).bytes().length - 1;
+
+        configure(true, bodyLength + 1);
+        byte[] below = codec.encode(result).bytes();
+        assertThat(below[0] & LZ4_FLAG).isZero();
+        assertThat(below).hasSize(bodyLength + 1);
+        assertThat(codec.decode(below, MetricQueryResult.class)).isEqualTo(result);
+
+        configure(true, bodyLength);
+        byte[] atThreshold = codec.encode(result).bytes();
+        assertThat(atThreshold[0] & LZ4_FLAG).isEqualTo(LZ4_FLAG);
+        assertThat(atThreshold.length).isLessThan(below.length);
+        assertThat(codec.decode(atThreshold, MetricQueryResult.class)).isEqualTo(result);
+    }
+
+    @Test
+    void compressesJsonPayloads() throws IOException {
+        Map<String, Object> value = Map.of("keys", Collections.nCopies(500, "service-name"));
+        configure(true, 64);
+
+        byte[] bytes = codec.encode(value).bytes();
+
+        assertThat(bytes[0] & 0xFF).isEqualTo(LZ4_FLAG);
+        assertThat(codec.decode(bytes, Map.class)).isEqualTo(value);
+    }
+
+    @Test
+    void keepsBodiesThatDoNotShrink() throws IOException {
+        configure(true, 1);
+
+        byte[] bytes = codec.encode(Map.of("a", "b")).bytes();
+
+        assertThat(bytes[0]).isZero();
+        assertThat(codec.decode(bytes, Map.class)).isEqualTo(Map.of("a", "b"));
+    }
+
+    @Test
+    void rejectsMismatchedAndMalformedPayloads() throws IOException {
+        byte[] metric = codec.encode(groupedResult()).bytes();
+
+        assertThatThrownBy(() -> codec.decode(metric, LogVolumeResult.class)).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> codec.decode(new byte[0], MetricQueryResult.class)).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> codec.decode(new byte[]{(byte) (1 | LZ4_FLAG), 0, 0}, MetricQueryResult.class))
+                .isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> codec.decode(new byte[]{9}, MetricQueryResult.class)).isInstanceOf(IOException.class);
+    }
+
+    private void configure(boolean lz4Enabled, int lz4MinBytes) {
+        ReflectionTestUtils.setField(codec, "lz4Enabled", lz4Enabled);
+        ReflectionTestUtils.setField(codec, "lz4MinBytes", lz4MinBytes);
+    }
+
+    private static MetricQueryResult groupedResult() {
+        List<SeriesGroup> groups = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            groups.add(new SeriesGroup("service-" + "a".repeat(40) + i, series(60, 60_000, false)));
+        }
+        return new MetricQueryResult("http.requests", AggregationType.SUM, List.of(), groups);
+    }
+
+    private static List<TimeSeriesPoint> series(int count, long stepMillis, boolean withNulls) {
+        List<TimeSeriesPoint> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Double value = withNulls && i % 4 == 1 ? null : Math.sin(i / 10.0) * 100;
+            points.add(new TimeSeriesPoint(START.plusMillis(i * stepMillis), value));
+        }
+        return points;
+    }
+}
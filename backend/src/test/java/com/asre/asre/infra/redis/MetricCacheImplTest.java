@@ -0,0 +1,148 @@
+package com.asre.asre.infra.redis;
+
+import com.asre.asre.domain.metrics.AggregationType;
+import com.asre.asre.domain.metrics.MetricQuery;
+import com.asre.asre.domain.metrics.RollupPeriod;
+import com.asre.asre.domain.metrics.TimeRange;
+import com.asre.asre.domain.metrics.TimeSeriesPoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MetricCacheImplTest {
+
+    private static final UUID PROJECT_ID = UUID.fromString("6f1c2a8e-0b7d-4c1e-9a55-3d2f8e7b1c40");
+    private static final int FRAGMENT_WEIGHT = 64;
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+    private final TwoTierQueryCache queryCache = mock(TwoTierQueryCache.class);
+
+    // Inside one fragment shard (a day of 1m buckets)
+    private final Instant first = Instant.now().truncatedTo(ChronoUnit.DAYS).minus(Duration.ofDays(2));
+
+    private MetricCacheImpl cache;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        cache = new MetricCacheImpl(redisTemplate, queryCache);
+        ReflectionTestUtils.setField(cache, "fragmentTtlHours", 24L);
+        ReflectionTestUtils.setField(cache, "emptyFragmentTtlMinutes", 10L);
+    }
+
+    @Test
+    void readsValuesAndUnexpiredEmptyMarkers() {
+        long now = System.currentTimeMillis();
+        List<Instant> buckets = List.of(bucket(0), bucket(1), bucket(2), bucket(3), bucket(4));
+        when(hashOperations.multiGet(anyString(), anyCollection())).thenReturn(Arrays.asList(
+                "12.5",
+                "~" + (now + 60_000),
+                "~" + (now - 1),
+                "",
+                null));
+
+        Map<Instant, TimeSeriesPoint> fragments = cache.getFragments(query(), buckets);
+
+        // Expired markers, markers without expiry and absent fields are all misses
+        assertThat(fragments).containsOnlyKeys(bucket(0), bucket(1));
+        assertThat(fragments.get(bucket(0)).getValue()).isEqualTo(12.5);
+        assertThat(fragments.get(bucket(1)).getValue()).isNull();
+
+        ArgumentCaptor<Duration> emptyTtl = ArgumentCaptor.forClass(Duration.class);
+        verify(queryCache).putLocal(anyString(), eq(new TimeSeriesPoint(bucket(1), null)), eq(FRAGMENT_WEIGHT),
+                emptyTtl.capture());
+        assertThat(emptyTtl.getValue()).isPositive().isLessThanOrEqualTo(Duration.ofMinutes(1));
+        verify(queryCache).putLocal(anyString(), eq(new TimeSeriesPoint(bucket(0), 12.5)), eq(FRAGMENT_WEIGHT),
+                eq(Duration.ofHours(24)));
+    }
+
+    @Test
+    void readsLocalFragmentsWithoutRedis() {
+        when(queryCache.getLocal(anyString(), eq(TimeSeriesPoint.class)))
+                .thenReturn(Optional.of(new TimeSeriesPoint(bucket(0), 3.0)));
+
+        Map<Instant, TimeSeriesPoint> fragments = cache.getFragments(query(), List.of(bucket(0)));
+
+        assertThat(fragments).containsEntry(bucket(0), new TimeSeriesPoint(bucket(0), 3.0));
+        verify(hashOperations, never()).multiGet(anyString(), anyCollection());
+    }
+
+    @Test
+    void writesEmptyBucketsAsExpiringMarkers() {
+        long before = System.currentTimeMillis();
+
+        cache.putFragments(query(), List.of(
+                new TimeSeriesPoint(bucket(0), 7.25),
+                new TimeSeriesPoint(bucket(1), null)));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, String>> fields = ArgumentCaptor.forClass(Map.class);
+        verify(hashOperations).putAll(anyString(), fields.capture());
+        Map<String, String> written = fields.getValue();
+        assertThat(written).containsEntry(Long.toString(bucket(0).toEpochMilli()), "7.25");
+        String marker = written.get(Long.toString(bucket(1).toEpochMilli()));
+        assertThat(marker).startsWith("~");
+        assertThat(Long.parseLong(marker.substring(1)))
+                .isBetween(before + Duration.ofMinutes(10).toMillis(), System.currentTimeMillis()
+                        + Duration.ofMinutes(10).toMillis());
+        verify(redisTemplate).expire(anyString(), eq(Duration.ofHours(24)));
+        verify(queryCache).putLocal(anyString(), eq(new TimeSeriesPoint(bucket(1), null)), eq(FRAGMENT_WEIGHT),
+                eq(Duration.ofMinutes(10)));
+    }
+
+    @Test
+    void writtenMarkersReadBackAsEmptyFragments() {
+        cache.putFragments(query(), List.of(new TimeSeriesPoint(bucket(0), null)));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, String>> fields = ArgumentCaptor.forClass(Map.class);
+        verify(hashOperations).putAll(anyString(), fields.capture());
+        when(hashOperations.multiGet(anyString(), anyCollection()))
+                .thenReturn(List.copyOf(fields.getValue().values()));
+
+        Map<Instant, TimeSeriesPoint> fragments = cache.getFragments(query(), List.of(bucket(0)));
+
+        assertThat(fragments).containsExactly(Map.entry(bucket(0), new TimeSeriesPoint(bucket(0), null)));
+    }
+
+    @Test
+    void redisErrorsReadAsNoFragments() {
+        when(hashOperations.multiGet(anyString(), anyCollection())).thenThrow(new IllegalStateException("down"));
+
+        assertThat(cache.getFragments(query(), List.of(bucket(0), bucket(1)))).isEmpty();
+        verify(queryCache, never()).putLocal(anyString(), any(), eq(FRAGMENT_WEIGHT), any());
+    }
+
+    private MetricQuery query() {
+        return new MetricQuery(PROJECT_ID, "http.requests", AggregationType.SUM,
+                new TimeRange(first, first.plus(Duration.ofMinutes(10))), RollupPeriod.ONE_MINUTE);
+    }
+
+    private Instant bucket(int index) {
+        return first.plus(Duration.ofMinutes(index));
+    }
+}
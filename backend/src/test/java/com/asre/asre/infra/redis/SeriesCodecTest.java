@@ -0,0 +1,229 @@
+package com.asre.asre.infra.redis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SeriesCodecTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @ParameterizedTest
+    @CsvSource({
+            // delta-of-delta, bits it takes (prefix + zigzag width)
+            "0, 1",
+            "63, 9",
+            "-64, 9",
+            "64, 12",
+            "-65, 12",
+            "255, 12",
+            "-256, 12",
+            "256, 16",
+            "-257, 16",
+            "2047, 16",
+            "-2048, 16",
+            "2048, 37",
+            "-2049, 37",
+            "2147483647, 37",
+            "-2147483648, 37",
+            "2147483648, 69",
+            "-2147483649, 69",
+            "2305843009213693951, 69",
+            "-2305843009213693952, 69"
+    })
+    void deltaOfDeltaRoundTripsAtEachWidthBoundary(long deltaOfDelta, int expectedBits) {
+        // The first delta is 0, so the second delta-of-delta is exactly the one under test
+        long[] timestamps = {START, START, START + deltaOfDelta};
+
+        SeriesCodec.BitWriter out = new SeriesCodec.BitWriter();
+        SeriesCodec.writeTimestamps(out, timestamps);
+
+        assertThat(out.bitLength()).isEqualTo(64 + 1 + expectedBits);
+        assertThat(readTimestamps(out, timestamps.length)).containsExactly(timestamps);
+    }
+
+    @Test
+    void evenlySpacedTimestampsCostOneBitEach() {
+        long[] timestamps = new long[1440];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = START + i * 60_000L;
+        }
+
+        SeriesCodec.BitWriter out = new SeriesCodec.BitWriter();
+        SeriesCodec.writeTimestamps(out, timestamps);
+
+        // First delta is a 60000 delta-of-delta (32-bit width), the rest are zero
+        assertThat(out.bitLength()).isEqualTo(64 + 37 + (timestamps.length - 2));
+        assertThat(readTimestamps(out, timestamps.length)).containsExactly(timestamps);
+    }
+
+    @Test
+    void irregularTimestampsRoundTrip() {
+        Random random = new Random(42);
+        long[] timestamps = new long[500];
+        timestamps[0] = START;
+        for (int i = 1; i < timestamps.length; i++) {
+            long jump = switch (i % 4) {
+                case 0 -> random.nextInt(100);
+                case 1 -> random.nextInt(5_000);
+                case 2 -> random.nextInt(Integer.MAX_VALUE);
+                default -> -random.nextInt(1_000_000);
+            };
+            timestamps[i] = timestamps[i - 1] + jump;
+        }
+
+        SeriesCodec.BitWriter out = new SeriesCodec.BitWriter();
+        SeriesCodec.writeTimestamps(out, timestamps);
+
+        assertThat(readTimestamps(out, timestamps.length)).containsExactly(timestamps);
+    }
+
+    @Test
+    void emptyAndSingleTimestampSeries() {
+        SeriesCodec.BitWriter empty = new SeriesCodec.BitWriter();
+        SeriesCodec.writeTimestamps(empty, new long[0]);
+        assertThat(empty.bitLength()).isZero();
+        assertThat(readTimestamps(empty, 0)).isEmpty();
+
+        SeriesCodec.BitWriter single = new SeriesCodec.BitWriter();
+        SeriesCodec.writeTimestamps(single, new long[]{Long.MIN_VALUE});
+        assertThat(single.bitLength()).isEqualTo(64);
+        assertThat(readTimestamps(single, 1)).containsExactly(Long.MIN_VALUE);
+    }
+
+    @Test
+    void xorWithAllSixtyFourBitsMeaningful() {
+        // 0.0 XOR (sign bit | lowest bit) has no leading or trailing zeros
+        double full = Double.longBitsToDouble(0x8000_0000_0000_0001L);
+        double[] values = {0.0, full, 0.0, full};
+
+        SeriesCodec.BitWriter out = new SeriesCodec.BitWriter();
+        SeriesCodec.writeValues(out, values, null);
+
+        // First value, then a new 64-bit window, then two values reusing it
+        assertThat(out.bitLength()).isEqualTo(64 + (2 + 6 + 6 + 64) + 2 * (2 + 64));
+        assertSameBits(readValues(out, values.length, null), values);
+    }
+
+    @Test
+    void repeatedValuesCostOneBitEach() {
+        double[] values = new double[100];
+        Arrays.fill(values, 42.5);
+
+        SeriesCodec.BitWriter out = new SeriesCodec.BitWriter();
+        SeriesCodec.writeValues(out, values, null);
+
+        assertThat(out.bitLength()).isEqualTo(64 + 99);
+        assertSameBits(readValues(out, values.length, null), values);
+    }
+
+    @Test
+    void specialValuesKeepTheirExactBits() {
+        double[] values = {
+                0.0, -0.0, 0.0,
+                Double.NaN, Double.longBitsToDouble(0x7ff8_0000_0000_0001L), Double.NaN,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+                1.0, 1.0000000000000002, -1.0
+        };
+
+        SeriesCodec.BitWriter out = new SeriesCodec.BitWriter();
+        SeriesCodec.writeValues(out, values, null);
+
+        assertSameBits(readValues(out, values.length, null), values);
+    }
+
+    @Test
+    void randomValuesRoundTrip() {
+        Random random = new Random(7);
+        double[] values = new double[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = switch (i % 3) {
+                case 0 -> random.nextGaussian() * 1e6;
+                case 1 -> Double.longBitsToDouble(random.nextLong());
+                default -> Math.round(random.nextDouble() * 100) / 4.0;
+            };
+        }
+
+        SeriesCodec.BitWriter out = new SeriesCodec.BitWriter();
+        SeriesCodec.writeValues(out, values, null);
+
+        assertSameBits(readValues(out, values.length, null), values);
+    }
+
+    @Test
+    void presenceMaskSkipsAbsentValues() {
+        boolean[] present = {false, false, true, false, true, true, false, true, false};
+        double[] values = {0, 0, 1.5, 0, -0.0, Double.NaN, 0, 1.5, 0};
+
+        SeriesCodec.BitWriter out = new SeriesCodec.BitWriter();
+        SeriesCodec.writeValues(out, values, present);
+
+        boolean[] decodedPresent = new boolean[present.length];
+        double[] decoded = readValues(out, values.length, decodedPresent);
+
+        assertThat(decodedPresent).containsExactly(present);
+        for (int i = 0; i < values.length; i++) {
+            if (present[i]) {
+                assertThat(Double.doubleToRawLongBits(decoded[i]))
+                        .as("value %d", i)
+                        .isEqualTo(Double.doubleToRawLongBits(values[i]));
+            }
+        }
+    }
+
+    @Test
+    void allAbsentValuesCostOnlyTheMask() {
+        boolean[] present = new boolean[50];
+
+        SeriesCodec.BitWriter out = new SeriesCodec.BitWriter();
+        SeriesCodec.writeValues(out, new double[present.length], present);
+
+        assertThat(out.bitLength()).isEqualTo(present.length);
+        boolean[] decodedPresent = new boolean[present.length];
+        readValues(out, present.length, decodedPresent);
+        assertThat(decodedPresent).containsExactly(present);
+    }
+
+    @Test
+    void timestampsAndValuesShareOneStream() {
+        long[] timestamps = {START, START + 1_000, START + 2_000, START + 3_500};
+        double[] values = {1.0, 2.0, 2.0, -0.0};
+        boolean[] present = {true, false, true, true};
+
+        SeriesCodec.BitWriter out = new SeriesCodec.BitWriter();
+        SeriesCodec.writeTimestamps(out, timestamps);
+        SeriesCodec.writeValues(out, values, null);
+        SeriesCodec.writeValues(out, values, present);
+
+        SeriesCodec.BitReader in = new SeriesCodec.BitReader(out.toByteArray());
+        assertThat(SeriesCodec.readTimestamps(in, timestamps.length)).containsExactly(timestamps);
+        assertSameBits(SeriesCodec.readValues(in, values.length, null), values);
+        boolean[] decodedPresent = new boolean[present.length];
+        double[] masked = SeriesCodec.readValues(in, values.length, decodedPresent);
+        assertThat(decodedPresent).containsExactly(present);
+        assertThat(Double.doubleToRawLongBits(masked[3])).isEqualTo(Double.doubleToRawLongBits(-0.0));
+    }
+
+    private static long[] readTimestamps(SeriesCodec.BitWriter out, int count) {
+        return SeriesCodec.readTimestamps(new SeriesCodec.BitReader(out.toByteArray()), count);
+    }
+
+    private static double[] readValues(SeriesCodec.BitWriter out, int count, boolean[] present) {
+        return SeriesCodec.readValues(new SeriesCodec.BitReader(out.toByteArray()), count, present);
+    }
+
+    private static void assertSameBits(double[] actual, double[] expected) {
+        assertThat(actual).hasSameSizeAs(expected);
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(Double.doubleToRawLongBits(actual[i]))
+                    .as("value %d", i)
+                    .isEqualTo(Double.doubleToRawLongBits(expected[i]));
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.asre.asre.infra.redis;
+
+import com.asre.asre.config.JacksonConfig;
+import com.asre.asre.domain.metrics.AggregationType;
+import com.asre.asre.domain.metrics.MetricQueryResult;
+import com.asre.asre.domain.metrics.TimeSeriesPoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TwoTierQueryCacheTest {
+
+    private static final String KEY = "metric:query:test";
+    private static final String LEASE_KEY = "lease:" + KEY;
+    private static final Duration TTL = Duration.ofSeconds(60);
+    private static final MetricQueryResult CACHED = result(1.0);
+    private static final MetricQueryResult LOADED = result(2.0);
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, byte[]> binaryRedisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> stringValues = mock(ValueOperations.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, byte[]> binaryValues = mock(ValueOperations.class);
+    private final RedisMessageListenerContainer listenerContainer = mock(RedisMessageListenerContainer.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CachedValueCodec codec = new CachedValueCodec(new JacksonConfig().objectMapper());
+
+    // In-memory stand-ins for the Redis values and leases
+    private final Map<String, byte[]> values = new ConcurrentHashMap<>();
+    private final Map<String, String> leases = new ConcurrentHashMap<>();
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private TwoTierQueryCache cache;
+
+    @BeforeEach
+    void setUp() {
+        when(binaryRedisTemplate.opsForValue()).thenReturn(binaryValues);
+        when(binaryValues.get(anyString())).thenAnswer(invocation -> values.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> values.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(binaryValues).set(anyString(), any(byte[].class), any(Duration.class));
+
+        when(redisTemplate.opsForValue()).thenReturn(stringValues);
+        when(stringValues.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenAnswer(invocation ->
+                leases.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(invocation -> {
+            List<String> keys = invocation.getArgument(1);
+            return leases.remove(keys.get(0), invocation.getArgument(2)) ? 1L : 0L;
+        });
+
+        ReflectionTestUtils.setField(codec, "lz4Enabled", false);
+        cache = new TwoTierQueryCache(redisTemplate, binaryRedisTemplate, codec, listenerContainer, meterRegistry);
+        ReflectionTestUtils.setField(cache, "l1Enabled", false);
+        ReflectionTestUtils.setField(cache, "l1MaxBytes", 1L << 20);
+        ReflectionTestUtils.setField(cache, "l1TtlSeconds", 30L);
+        ReflectionTestUtils.setField(cache, "staleSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "leaseMillis", 10_000L);
+        ReflectionTestUtils.setField(cache, "leaseWaitMillis", 2_000L);
+        ReflectionTestUtils.setField(cache, "xfetchBeta", 1.0);
+        cache.start();
+    }
+
+    @Test
+    void missLoadsUnderALeaseAndStoresTheValue() {
+        assertThat(load()).isEqualTo(LOADED);
+
+        assertThat(loads).hasValue(1);
+        assertThat(leases).isEmpty();
+        assertThat(values).containsKey(KEY);
+        assertThat(refreshes("miss")).isEqualTo(1.0);
+        verify(redisTemplate).convertAndSend(eq("cache:query:invalidate"), anyString());
+
+        // The stored value is fresh and cheap to compute, so the next read uses it
+        assertThat(load()).isEqualTo(LOADED);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void freshValuesAreServedWithoutLoading() {
+        values.put(KEY, envelope(CACHED, System.currentTimeMillis() + TTL.toMillis(), 0));
+
+        assertThat(load()).isEqualTo(CACHED);
+        assertThat(loads).hasValue(0);
+        assertThat(gets("hit")).isEqualTo(1.0);
+    }
+
+    @Test
+    void expiredValuesAreRecomputedByTheLeaseHolder() {
+        values.put(KEY, envelope(CACHED, System.currentTimeMillis() - 1, 0));
+
+        assertThat(load()).isEqualTo(LOADED);
+        assertThat(refreshes("expired")).isEqualTo(1.0);
+    }
+
+    @Test
+    void staleValuesAreServedWhileAnotherNodeHoldsTheLease() {
+        values.put(KEY, envelope(CACHED, System.currentTimeMillis() - 1, 0));
+        leases.put(LEASE_KEY, "other-node");
+
+        assertThat(load()).isEqualTo(CACHED);
+        assertThat(loads).hasValue(0);
+        assertThat(gets("stale")).isEqualTo(1.0);
+        assertThat(leases).containsEntry(LEASE_KEY, "other-node");
+    }
+
+    @Test
+    void missWaitsForTheLeaseHoldersWrite() {
+        leases.put(LEASE_KEY, "other-node");
+        // The first read misses; the lease holder's value shows up on the first poll
+        AtomicInteger reads = new AtomicInteger();
+        when(binaryValues.get(KEY)).thenAnswer(invocation -> reads.incrementAndGet() == 1
+                ? null
+                : envelope(CACHED, System.currentTimeMillis() + TTL.toMillis(), 5));
+
+        assertThat(load()).isEqualTo(CACHED);
+        assertThat(loads).hasValue(0);
+    }
+
+    @Test
+    void missLoadsItselfOnceTheLeaseWaitRunsOut() {
+        leases.put(LEASE_KEY, "other-node");
+        ReflectionTestUtils.setField(cache, "leaseWaitMillis", 150L);
+        long started = System.nanoTime();
+
+        assertThat(load()).isEqualTo(LOADED);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isGreaterThanOrEqualTo(Duration.ofMillis(100));
+        assertThat(loads).hasValue(1);
+        assertThat(values).containsKey(KEY);
+        // The other node's lease is left alone
+        assertThat(leases).containsEntry(LEASE_KEY, "other-node");
+    }
+
+    @Test
+    void slowComputationsAreRefreshedBeforeTheyExpire() {
+        // With a recomputation this slow, XFetch refreshes a value that still has ten seconds left
+        values.put(KEY, envelope(CACHED, System.currentTimeMillis() + 10_000, 1_000_000_000_000L));
+
+        assertThat(load()).isEqualTo(LOADED);
+        assertThat(refreshes("early")).isEqualTo(1.0);
+    }
+
+    @Test
+    void earlyRefreshKeepsServingTheValueWithoutTheLease() {
+        values.put(KEY, envelope(CACHED, System.currentTimeMillis() + 10_000, 1_000_000_000_000L));
+        leases.put(LEASE_KEY, "other-node");
+
+        assertThat(load()).isEqualTo(CACHED);
+        assertThat(loads).hasValue(0);
+        assertThat(gets("hit")).isEqualTo(1.0);
+    }
+
+    @Test
+    void earlyRefreshIsOffWithAZeroBeta() {
+        ReflectionTestUtils.setField(cache, "xfetchBeta", 0.0);
+        values.put(KEY, envelope(CACHED, System.currentTimeMillis() + 10_000, 1_000_000_000_000L));
+
+        assertThat(load()).isEqualTo(CACHED);
+        assertThat(loads).hasValue(0);
+    }
+
+    @Test
+    void loaderExceptionsPropagateAndReleaseTheLease() {
+        IllegalStateException failure = new IllegalStateException("database unavailable");
+
+        assertThatThrownBy(() -> cache.getOrLoad(KEY, MetricQueryResult.class, TTL, () -> {
+            throw failure;
+        })).isSameAs(failure);
+        assertThat(leases).isEmpty();
+        assertThat(values).doesNotContainKey(KEY);
+    }
+
+    @Test
+    void redisErrorsFallBackToTheLoader() {
+        when(binaryValues.get(KEY)).thenThrow(new IllegalStateException("connection refused"));
+
+        assertThat(load()).isEqualTo(LOADED);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void otherNodesWritesDropTheLocalCopy() {
+        ReflectionTestUtils.setField(cache, "l1Enabled", true);
+        ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+        verify(listenerContainer).addMessageListener(listener.capture(), any(Topic.class));
+        String nodeId = (String) ReflectionTestUtils.getField(cache, "nodeId");
+
+        load();
+        values.clear();
+        // L1 still holds the value, and this node's own announcement does not drop it
+        invalidate(listener.getValue(), nodeId + "|" + KEY);
+        assertThat(load()).isEqualTo(LOADED);
+        assertThat(loads).hasValue(1);
+
+        invalidate(listener.getValue(), "other-node|" + KEY);
+        load();
+        assertThat(loads).hasValue(2);
+    }
+
+    private MetricQueryResult load() {
+        Supplier<MetricQueryResult> loader = () -> {
+            loads.incrementAndGet();
+            return LOADED;
+        };
+        return cache.getOrLoad(KEY, MetricQueryResult.class, TTL, loader);
+    }
+
+    private static void invalidate(MessageListener listener, String payload) {
+        listener.onMessage(new DefaultMessage("cache:query:invalidate".getBytes(StandardCharsets.UTF_8),
+                payload.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    /**
+     * Redis value layout written by the cache: version, logical expiry, compute time, payload.
+     */
+    private byte[] envelope(Object value, long expiresAt, long computeMillis) {
+        try {
+            byte[] payload = codec.encode(value).bytes();
+            return ByteBuffer.allocate(1 + 2 * Long.BYTES + payload.length)
+                    .put((byte) 1)
+                    .putLong(expiresAt)
+                    .putLong(computeMillis)
+                    .put(payload)
+                    .array();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double refreshes(String trigger) {
+        return meterRegistry.get("cache.refreshes").tag("trigger", trigger).counter().count();
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "query.l2").tag("result", result).counter().count();
+    }
+
+    private static MetricQueryResult result(double value) {
+        return new MetricQueryResult("cpu.usage", AggregationType.AVG,
+                List.of(new TimeSeriesPoint(Instant.parse("2024-01-01T00:00:00Z"), value)), List.of());
+    }
+}